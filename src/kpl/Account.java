@@ -24,8 +24,10 @@ import kpl.crypto.EncryptedData;
 import kpl.db.DbClause;
 import kpl.db.DbIterator;
 import kpl.db.DbKey;
+import kpl.db.DbKeyset;
 import kpl.db.DbUtils;
 import kpl.db.DerivedDbTable;
+import kpl.db.EntityStore;
 import kpl.db.VersionedEntityDbTable;
 import kpl.db.VersionedPersistentDbTable;
 import kpl.util.Convert;
@@ -33,6 +35,7 @@ import kpl.util.Listener;
 import kpl.util.Listeners;
 import kpl.util.Logger;
 
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -40,6 +43,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
@@ -422,6 +426,16 @@ public final class Account {
             this.height = rs.getInt("height");
         }
 
+        private PublicKey(DbKey dbKey, ByteBuffer buffer) {
+            this.accountId = buffer.getLong();
+            this.dbKey = dbKey;
+            this.height = buffer.getInt();
+            if (buffer.hasRemaining()) {
+                this.publicKey = new byte[buffer.remaining()];
+                buffer.get(this.publicKey);
+            }
+        }
+
         private void save(Connection con) throws SQLException {
             height = Kpl.getBlockchain().getHeight();
             try (PreparedStatement pstmt = con.prepareStatement("MERGE INTO public_key (account_id, public_key, height, latest) "
@@ -470,7 +484,28 @@ public final class Account {
 
     };
 
-    private static final VersionedEntityDbTable<Account> accountTable = new VersionedEntityDbTable<Account>("account", accountDbKeyFactory) {
+    private static final EntityStore.Codec<Account> accountCodec = new EntityStore.Codec<Account>() {
+
+        @Override
+        public byte[] encode(Account account) {
+            ByteBuffer buffer = ByteBuffer.allocate(8 + 8 + 8 + 8 + 8 + 1);
+            buffer.putLong(account.id);
+            buffer.putLong(account.balanceNQT);
+            buffer.putLong(account.unconfirmedBalanceNQT);
+            buffer.putLong(account.forgedBalanceNQT);
+            buffer.putLong(account.activeLesseeId);
+            buffer.put((byte)(account.controls.contains(ControlType.PHASING_ONLY) ? 1 : 0));
+            return buffer.array();
+        }
+
+        @Override
+        public Account decode(DbKey dbKey, byte[] bytes) {
+            return new Account(dbKey, ByteBuffer.wrap(bytes));
+        }
+
+    };
+
+    private static final VersionedEntityDbTable<Account> accountTable = new VersionedEntityDbTable<Account>("account", accountDbKeyFactory, accountCodec) {
 
         @Override
         protected Account load(Connection con, ResultSet rs, DbKey dbKey) throws SQLException {
@@ -546,7 +581,27 @@ public final class Account {
 
     };
 
-    private static final VersionedPersistentDbTable<PublicKey> publicKeyTable = new VersionedPersistentDbTable<PublicKey>("public_key", publicKeyDbKeyFactory) {
+    private static final EntityStore.Codec<PublicKey> publicKeyCodec = new EntityStore.Codec<PublicKey>() {
+
+        @Override
+        public byte[] encode(PublicKey publicKey) {
+            ByteBuffer buffer = ByteBuffer.allocate(8 + 4 + (publicKey.publicKey != null ? publicKey.publicKey.length : 0));
+            buffer.putLong(publicKey.accountId);
+            buffer.putInt(publicKey.height);
+            if (publicKey.publicKey != null) {
+                buffer.put(publicKey.publicKey);
+            }
+            return buffer.array();
+        }
+
+        @Override
+        public PublicKey decode(DbKey dbKey, byte[] bytes) {
+            return new PublicKey(dbKey, ByteBuffer.wrap(bytes));
+        }
+
+    };
+
+    private static final VersionedPersistentDbTable<PublicKey> publicKeyTable = new VersionedPersistentDbTable<PublicKey>("public_key", publicKeyDbKeyFactory, publicKeyCodec) {
 
         @Override
         protected PublicKey load(Connection con, ResultSet rs, DbKey dbKey) throws SQLException {
@@ -569,7 +624,28 @@ public final class Account {
 
     };
 
-    private static final VersionedEntityDbTable<AccountAsset> accountAssetTable = new VersionedEntityDbTable<AccountAsset>("account_asset", accountAssetDbKeyFactory) {
+    private static final EntityStore.Codec<AccountAsset> accountAssetCodec = new EntityStore.Codec<AccountAsset>() {
+
+        @Override
+        public byte[] encode(AccountAsset accountAsset) {
+            ByteBuffer buffer = ByteBuffer.allocate(8 + 8 + 8 + 8);
+            buffer.putLong(accountAsset.accountId);
+            buffer.putLong(accountAsset.assetId);
+            buffer.putLong(accountAsset.quantityQNT);
+            buffer.putLong(accountAsset.unconfirmedQuantityQNT);
+            return buffer.array();
+        }
+
+        @Override
+        public AccountAsset decode(DbKey dbKey, byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new AccountAsset(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+        }
+
+    };
+
+    private static final VersionedEntityDbTable<AccountAsset> accountAssetTable = new VersionedEntityDbTable<AccountAsset>("account_asset", accountAssetDbKeyFactory,
+            accountAssetCodec) {
 
         @Override
         protected AccountAsset load(Connection con, ResultSet rs, DbKey dbKey) throws SQLException {
@@ -855,7 +931,7 @@ public final class Account {
     }
 
     public static long getId(byte[] publicKey) {
-        byte[] publicKeyHash = Crypto.sha256().digest(publicKey);
+        byte[] publicKeyHash = Crypto.sha256(publicKey);
         return Convert.fullHashToId(publicKeyHash);
     }
 
@@ -921,6 +997,21 @@ public final class Account {
         return accountAssetTable.getManyBy(new DbClause.LongClause("account_id", accountId), height, from, to);
     }
 
+    // the latest balances are read with a range scan of the account_asset key, which does not need SQL
+    // when the table is kept in the key-value store
+    public static List<AccountAsset> getAccountAssets(long accountId, int height) {
+        if (height >= 0 && height != Kpl.getBlockchain().getHeight()) {
+            List<AccountAsset> accountAssets = new ArrayList<>();
+            try (DbIterator<AccountAsset> iterator = getAccountAssets(accountId, height, 0, -1)) {
+                iterator.forEach(accountAssets::add);
+            }
+            return accountAssets;
+        }
+        List<AccountAsset> accountAssets = accountAssetTable.getManyByKeyPrefix(accountId);
+        accountAssets.sort(accountAssetComparator);
+        return accountAssets;
+    }
+
     public static AccountAsset getAccountAsset(long accountId, long assetId) {
         return accountAssetTable.get(accountAssetDbKeyFactory.newKey(accountId, assetId));
     }
@@ -933,6 +1024,16 @@ public final class Account {
         return accountAssetTable.getManyBy(new DbClause.LongClause("asset_id", assetId), from, to, " ORDER BY quantity DESC, account_id ");
     }
 
+    /** Account asset order used by the account_asset table: quantity descending, then asset */
+    private static final Comparator<AccountAsset> accountAssetComparator =
+            Comparator.comparingLong(AccountAsset::getQuantityQNT).reversed().thenComparingLong(AccountAsset::getAssetId);
+
+    public static final DbKeyset ASSET_ACCOUNTS_KEYSET = new DbKeyset(" ORDER BY quantity DESC, account_id ");
+
+    public static DbIterator<AccountAsset> getAssetAccounts(long assetId, String continuation, int limit) {
+        return accountAssetTable.getManyBy(new DbClause.LongClause("asset_id", assetId), ASSET_ACCOUNTS_KEYSET, continuation, limit);
+    }
+
     public static DbIterator<AccountAsset> getAssetAccounts(long assetId, int height, int from, int to) {
         return accountAssetTable.getManyBy(new DbClause.LongClause("asset_id", assetId), height, from, to, " ORDER BY quantity DESC, account_id ");
     }
@@ -1098,6 +1199,20 @@ public final class Account {
         }
     }
 
+    private Account(DbKey dbKey, ByteBuffer buffer) {
+        this.id = buffer.getLong();
+        this.dbKey = dbKey;
+        this.balanceNQT = buffer.getLong();
+        this.unconfirmedBalanceNQT = buffer.getLong();
+        this.forgedBalanceNQT = buffer.getLong();
+        this.activeLesseeId = buffer.getLong();
+        if (buffer.get() != 0) {
+            controls = Collections.unmodifiableSet(EnumSet.of(ControlType.PHASING_ONLY));
+        } else {
+            controls = Collections.emptySet();
+        }
+    }
+
     private void save(Connection con) throws SQLException {
         try (PreparedStatement pstmt = con.prepareStatement("MERGE INTO account (id, "
                 + "balance, unconfirmed_balance, forged_balance, "
@@ -1315,6 +1430,10 @@ public final class Account {
         }
     }
 
+    public List<AccountAsset> getAssets() {
+        return getAccountAssets(this.id, -1);
+    }
+
     public DbIterator<AccountAsset> getAssets(int from, int to) {
         return accountAssetTable.getManyBy(new DbClause.LongClause("account_id", this.id), from, to);
     }
@@ -16,6 +16,8 @@
 
 package kpl;
 
+import kpl.db.DbIterator;
+import kpl.db.DbKeyset;
 import kpl.db.DbUtils;
 import kpl.db.DerivedDbTable;
 import kpl.util.Convert;
@@ -56,6 +58,12 @@ public class AccountLedger {
     /** Number of blocks to keep when trimming */
     public static final int trimKeep = Kpl.getIntProperty("kpl.ledgerTrimKeep", 30000);
 
+    /** Keyset used to page through the ledger entries */
+    public static final DbKeyset LEDGER_KEYSET = new DbKeyset("ORDER BY db_id DESC");
+
+    /** Keyset used to export the ledger entries for an account in chronological order */
+    public static final DbKeyset EXPORT_KEYSET = new DbKeyset("ORDER BY timestamp, db_id");
+
     /** Blockchain */
     private static final Blockchain blockchain = Kpl.getBlockchain();
 
@@ -314,11 +322,60 @@ public class AccountLedger {
             return Collections.emptyList();
         }
         List<LedgerEntry> entryList = new ArrayList<>();
+        blockchain.readLock();
+        try (DbIterator<LedgerEntry> entries = getEntryIterator(accountId, event, eventId, holding, holdingId,
+                                                                firstIndex, lastIndex)) {
+            entries.forEach(entryList::add);
+        } finally {
+            blockchain.readUnlock();
+        }
+        return entryList;
+    }
+
+    /**
+     * Return an iterator over the ledger entries sorted in descending insert order.  The entries
+     * are read from the database as the iterator advances and the iterator must be closed when
+     * it is no longer needed.
+     *
+     * @param   accountId                   Account identifier or zero if no account identifier
+     * @param   event                       Ledger event or null
+     * @param   eventId                     Ledger event identifier or zero if no event identifier
+     * @param   holding                     Ledger holding or null
+     * @param   holdingId                   Ledger holding identifier or zero if no holding identifier
+     * @param   firstIndex                  First matching entry index, inclusive
+     * @param   lastIndex                   Last matching entry index, inclusive
+     * @return                              Ledger entry iterator
+     */
+    public static DbIterator<LedgerEntry> getEntryIterator(long accountId, LedgerEvent event, long eventId,
+                                                           LedgerHolding holding, long holdingId,
+                                                           int firstIndex, int lastIndex) {
+        return getEntryIterator(accountId, event, eventId, holding, holdingId, null, firstIndex, lastIndex);
+    }
+
+    /**
+     * Return an iterator over the ledger entries sorted in descending insert order, starting
+     * after the entry identified by a continuation token.  The continuation token of each entry
+     * is available from the iterator.
+     *
+     * @param   accountId                   Account identifier or zero if no account identifier
+     * @param   event                       Ledger event or null
+     * @param   eventId                     Ledger event identifier or zero if no event identifier
+     * @param   holding                     Ledger holding or null
+     * @param   holdingId                   Ledger holding identifier or zero if no holding identifier
+     * @param   continuation                Continuation token or null to start with the most recent entry
+     * @param   firstIndex                  First matching entry index, inclusive
+     * @param   lastIndex                   Last matching entry index, inclusive
+     * @return                              Ledger entry iterator
+     */
+    public static DbIterator<LedgerEntry> getEntryIterator(long accountId, LedgerEvent event, long eventId,
+                                                           LedgerHolding holding, long holdingId,
+                                                           String continuation, int firstIndex, int lastIndex) {
+        long[] continuationValues = (continuation != null ? LEDGER_KEYSET.decode(continuation) : null);
         //
         // Build the SELECT statement to search the entries
         StringBuilder sb = new StringBuilder(128);
         sb.append("SELECT * FROM account_ledger ");
-        if (accountId != 0 || event != null || holding != null) {
+        if (accountId != 0 || event != null || holding != null || continuationValues != null) {
             sb.append("WHERE ");
         }
         if (accountId != 0) {
@@ -340,14 +397,21 @@ public class AccountLedger {
             if (holdingId != 0)
                 sb.append("AND holding_id = ? ");
         }
-        sb.append("ORDER BY db_id DESC ");
+        if (continuationValues != null) {
+            if (accountId != 0 || event != null || holding != null) {
+                sb.append("AND ");
+            }
+            sb.append(LEDGER_KEYSET.getClause(null));
+        }
+        sb.append(LEDGER_KEYSET.getSort());
         sb.append(DbUtils.limitsClause(firstIndex, lastIndex));
         //
         // Get the ledger entries
         //
-        blockchain.readLock();
-        try (Connection con = Db.db.getConnection();
-             PreparedStatement pstmt = con.prepareStatement(sb.toString())) {
+        Connection con = null;
+        try {
+            con = Db.db.getConnection();
+            PreparedStatement pstmt = con.prepareStatement(sb.toString());
             int i = 0;
             if (accountId != 0) {
                 pstmt.setLong(++i, accountId);
@@ -364,18 +428,66 @@ public class AccountLedger {
                     pstmt.setLong(++i, holdingId);
                 }
             }
+            if (continuationValues != null) {
+                i = LEDGER_KEYSET.setClause(pstmt, i, continuationValues);
+            }
             DbUtils.setLimits(++i, pstmt, firstIndex, lastIndex);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    entryList.add(new LedgerEntry(rs));
-                }
+            return new DbIterator<>(con, pstmt, (connection, rs) -> new LedgerEntry(rs)).setKeyset(LEDGER_KEYSET);
+        } catch (SQLException e) {
+            DbUtils.close(con);
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    /**
+     * Return an iterator over the ledger entries for an account within a time range, sorted in
+     * ascending timestamp order.  The entries are returned starting after the entry identified by
+     * the continuation token, which allows a large export to be read one page at a time without
+     * holding a database connection between pages.  Each page must be read with the same maximum
+     * height, so that entries for blocks pushed while the export is in progress do not change the
+     * entries returned by the following pages.
+     *
+     * @param   accountId                   Account identifier
+     * @param   firstTimestamp              First entry timestamp, inclusive
+     * @param   lastTimestamp               Last entry timestamp, inclusive
+     * @param   height                      Maximum entry height, inclusive
+     * @param   continuation                Continuation token or null to start with the first entry
+     * @param   limit                       Maximum number of entries to return
+     * @return                              Ledger entry iterator
+     */
+    public static DbIterator<LedgerEntry> getExportIterator(long accountId, int firstTimestamp, int lastTimestamp,
+                                                            int height, String continuation, int limit) {
+        long[] continuationValues = (continuation != null ? EXPORT_KEYSET.decode(continuation) : null);
+        Connection con = null;
+        try {
+            con = Db.db.getConnection();
+            PreparedStatement pstmt = con.prepareStatement("SELECT * FROM account_ledger "
+                    + "WHERE account_id = ? AND timestamp >= ? AND timestamp <= ? AND height <= ? "
+                    + (continuationValues != null ? "AND" + EXPORT_KEYSET.getClause(null) : "")
+                    + EXPORT_KEYSET.getSort() + DbUtils.limitsClause(0, limit - 1));
+            int i = 0;
+            pstmt.setLong(++i, accountId);
+            pstmt.setInt(++i, firstTimestamp);
+            pstmt.setInt(++i, lastTimestamp);
+            pstmt.setInt(++i, height);
+            if (continuationValues != null) {
+                i = EXPORT_KEYSET.setClause(pstmt, i, continuationValues);
             }
+            DbUtils.setLimits(++i, pstmt, 0, limit - 1);
+            return new DbIterator<>(con, pstmt, (connection, rs) -> new LedgerEntry(rs)).setKeyset(EXPORT_KEYSET);
         } catch (SQLException e) {
+            DbUtils.close(con);
             throw new RuntimeException(e.toString(), e);
-        } finally {
-            blockchain.readUnlock();
         }
-        return entryList;
+    }
+
+    /**
+     * Check if the account ledger is enabled
+     *
+     * @return                              TRUE if the ledger is enabled
+     */
+    public static boolean isEnabled() {
+        return ledgerEnabled;
     }
 
     /**
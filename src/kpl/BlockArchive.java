@@ -0,0 +1,945 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl;
+
+import kpl.util.Convert;
+import kpl.util.Logger;
+import kpl.util.ThreadPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Append-only archive of the blocks below the rollback horizon.
+ *
+ * Blocks are copied from the database by a background thread once they are more than
+ * MAX_ROLLBACK blocks deep.  Lookups of archived blocks and transactions are then served
+ * from the archive segments instead of the database, so that peers downloading the
+ * blockchain and explorers reading old blocks do not compete with block processing for
+ * the database cache.  Records are read through the segment file channel, leaving the
+ * caching of the segment files to the operating system.  The archive is truncated when
+ * blocks are deleted from the database.
+ *
+ * The database remains the source of truth unless kpl.blockArchiveCompactDb is enabled.
+ * The attachment bytes of archived transactions are then removed from the transaction
+ * table and archived transactions without attachment bytes are loaded from the archive,
+ * so the archive can no longer be rebuilt from the database.
+ *
+ * The archive directory contains:
+ *   blocks.idx         Block id and record offset for each archived height
+ *   transactions.idx   Transaction id and block height for each archived transaction
+ *   blocks.nnnn.dat    Block records, a new segment is started when a segment is full
+ *   compacted.idx      Height below which the transaction table has been compacted
+ */
+final class BlockArchive {
+
+    private static final boolean enabled = Kpl.getBooleanProperty("kpl.enableBlockArchive");
+
+    private static final boolean compactDb = enabled && Kpl.getBooleanProperty("kpl.blockArchiveCompactDb");
+
+    /** Maximum segment size */
+    private static final int SEGMENT_SIZE = 512 * 1024 * 1024;
+
+    /** Block index entry size (block id, record offset) */
+    private static final int BLOCK_ENTRY_SIZE = 16;
+
+    /** Transaction index entry size (transaction id, block height) */
+    private static final int TRANSACTION_ENTRY_SIZE = 12;
+
+    /** Lock for the in-memory index and the segment files */
+    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Block height by block id */
+    private static final LongIntMap blockHeights = new LongIntMap();
+
+    /** Block height by transaction id */
+    private static final LongIntMap transactionHeights = new LongIntMap();
+
+    /** Archive segments */
+    private static final List<Segment> segments = new ArrayList<>();
+
+    /** Block id by height */
+    private static long[] blockIds = new long[1024];
+
+    /** Record offset by height, the segment number is in the high-order 32 bits */
+    private static long[] blockOffsets = new long[1024];
+
+    /** Transaction index position of the first transaction at each height */
+    private static long[] transactionPositions = new long[1024];
+
+    /** Number of archived blocks, the archive contains heights 0 to blockCount-1 */
+    private static volatile int blockCount;
+
+    /** Archive directory */
+    private static File archiveDir;
+
+    /** Index files */
+    private static FileChannel blockIndex;
+    private static FileChannel transactionIndex;
+    private static long transactionIndexSize;
+
+    /** The transaction table has been compacted below this height */
+    private static volatile int compactedHeight;
+
+    private static final Runnable archiveThread = () -> {
+        try {
+            try {
+                archiveBlocks();
+            } catch (Exception e) {
+                Logger.logMessage("Error archiving blocks", e);
+            }
+        } catch (Throwable t) {
+            Logger.logErrorMessage("CRITICAL ERROR. PLEASE REPORT TO THE DEVELOPERS.\n" + t.toString());
+            t.printStackTrace();
+            System.exit(1);
+        }
+    };
+
+    static {
+        archiveDir = new File(new File(Kpl.getDbDir(Kpl.getStringProperty(Db.PREFIX + "Dir"))).getParentFile(), "archive");
+        if (enabled) {
+            try {
+                open();
+                ThreadPool.scheduleThread("BlockArchive", archiveThread, 10);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to open the block archive: " + e.toString(), e);
+            }
+        } else if (new File(archiveDir, "compacted.idx").exists()) {
+            throw new RuntimeException("The transaction table has been compacted, kpl.enableBlockArchive must remain enabled");
+        }
+    }
+
+    static void init() {}
+
+    static void shutdown() {
+        if (enabled) {
+            synchronized (BlockArchive.class) {
+                try {
+                    blockIndex.close();
+                    transactionIndex.close();
+                    for (Segment segment : segments) {
+                        segment.channel.close();
+                    }
+                } catch (IOException e) {
+                    Logger.logErrorMessage("Unable to close the block archive", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find an archived block
+     *
+     * @param   blockId             Block identifier
+     * @return                      Block with its transactions or null if the block is not archived
+     */
+    static BlockImpl findBlock(long blockId) {
+        if (!enabled) {
+            return null;
+        }
+        ByteBuffer buffer;
+        lock.readLock().lock();
+        try {
+            int height = getHeight(blockId);
+            if (height < 0) {
+                return null;
+            }
+            buffer = readRecord(blockOffsets[height]);
+        } finally {
+            lock.readLock().unlock();
+        }
+        BlockImpl block = readBlock(buffer);
+        return block != null && block.getId() == blockId ? block : null;
+    }
+
+    /**
+     * Find a transaction in an archived block
+     *
+     * @param   transactionId       Transaction identifier
+     * @return                      Transaction or null if the transaction is not archived
+     */
+    static TransactionImpl findTransaction(long transactionId) {
+        if (!enabled) {
+            return null;
+        }
+        ByteBuffer buffer;
+        lock.readLock().lock();
+        try {
+            int height = transactionHeights.get(transactionId);
+            if (height < 0 || height >= blockCount) {
+                return null;
+            }
+            buffer = readRecord(blockOffsets[height]);
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            if (buffer == null) {
+                return null;
+            }
+            BlockHeader header = new BlockHeader(buffer);
+            for (int i = 0; i < header.transactionCount; i++) {
+                long senderId = buffer.getLong();
+                byte[] fullHash = getBytes(buffer);
+                if (Convert.fullHashToId(fullHash) == transactionId) {
+                    return readTransaction(buffer, header, i, senderId, fullHash);
+                }
+                int length = buffer.getInt();
+                buffer.position(buffer.position() + length);
+            }
+            return null;
+        } catch (kplException.ValidationException e) {
+            throw new RuntimeException("Archived transaction " + Long.toUnsignedString(transactionId) + " does not pass validation!", e);
+        }
+    }
+
+    /**
+     * Get the archived blocks following a block
+     *
+     * @param   blockId             Block identifier
+     * @param   limit               Maximum number of blocks to return
+     * @return                      Blocks in ascending height order, which may be fewer than requested if the
+     *                              end of the archive is reached, or null if the block is not archived
+     */
+    static List<BlockImpl> getBlocksAfter(long blockId, int limit) {
+        if (!enabled) {
+            return null;
+        }
+        List<ByteBuffer> records;
+        lock.readLock().lock();
+        try {
+            int height = getHeight(blockId);
+            if (height < 0) {
+                return null;
+            }
+            int count = Math.min(limit, blockCount - height - 1);
+            records = new ArrayList<>(Math.max(count, 0));
+            for (int i = height + 1; i <= height + count; i++) {
+                records.add(readRecord(blockOffsets[i]));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<BlockImpl> blocks = new ArrayList<>(records.size());
+        long previousBlockId = blockId;
+        for (ByteBuffer record : records) {
+            BlockImpl block = readBlock(record);
+            if (block == null || block.getPreviousBlockId() != previousBlockId) {
+                return null;
+            }
+            blocks.add(block);
+            previousBlockId = block.getId();
+        }
+        return blocks;
+    }
+
+    /**
+     * Remove archived blocks above the specified height
+     *
+     * @param   height              Last height to keep or -1 to remove all blocks
+     */
+    static synchronized void truncate(int height) {
+        if (!enabled || height >= blockCount - 1) {
+            return;
+        }
+        int count = Math.max(height + 1, 0);
+        lock.writeLock().lock();
+        try {
+            long transactionPosition = count > 0 ? transactionPositions[count] : 0;
+            int segmentNumber = 0;
+            long segmentPosition = 0;
+            if (count > 0) {
+                segmentNumber = (int)(blockOffsets[count] >>> 32);
+                segmentPosition = blockOffsets[count] & 0xffffffffL;
+            }
+            //
+            // The blocks have been deleted from the database, so the transaction table is no
+            // longer compacted above the new archive height
+            //
+            if (compactedHeight > count) {
+                setCompactedHeight(count);
+            }
+            //
+            // Remove the truncated blocks and transactions from the in-memory index
+            //
+            for (int i = count; i < blockCount; i++) {
+                blockHeights.remove(blockIds[i]);
+            }
+            removeTransactions(transactionPosition);
+            //
+            // Delete the segments following the new last block and shrink its segment
+            //
+            while (segments.size() > segmentNumber + 1) {
+                segments.remove(segments.size() - 1).delete();
+            }
+            if (!segments.isEmpty()) {
+                Segment segment = segments.get(segmentNumber);
+                segment.channel.truncate(segmentPosition);
+                segment.size = segmentPosition;
+            }
+            blockIndex.truncate((long)count * BLOCK_ENTRY_SIZE);
+            transactionIndex.truncate(transactionPosition);
+            transactionIndexSize = transactionPosition;
+            blockCount = count;
+            Logger.logDebugMessage("Block archive truncated to " + count + " blocks");
+        } catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Archive the blocks below the rollback horizon
+     */
+    private static void archiveBlocks() throws IOException {
+        BlockchainImpl blockchain = BlockchainImpl.getInstance();
+        int archived = 0;
+        while (true) {
+            blockchain.readLock();
+            try {
+                int height = blockCount;
+                if (height > blockchain.getHeight() - Constants.MAX_ROLLBACK) {
+                    break;
+                }
+                BlockImpl block = BlockDb.findBlockAtHeight(height);
+                if (height > 0 && block.getPreviousBlockId() != blockIds[height - 1]) {
+                    if (compactedHeight > 0) {
+                        throw new IllegalStateException("Block archive does not match the blockchain at height " + height
+                                + " and cannot be rebuilt since the transaction table has been compacted");
+                    }
+                    Logger.logMessage("Block archive does not match the blockchain at height " + height + ", rebuilding the archive");
+                    truncate(-1);
+                    continue;
+                }
+                append(block);
+                archived++;
+            } finally {
+                blockchain.readUnlock();
+            }
+        }
+        if (archived > 0) {
+            Logger.logDebugMessage("Archived " + archived + " blocks, archive height " + (blockCount - 1));
+        }
+        if (compactDb) {
+            blockchain.readLock();
+            try {
+                compact();
+            } finally {
+                blockchain.readUnlock();
+            }
+        }
+    }
+
+    /**
+     * Remove the attachment bytes of the archived transactions from the transaction table
+     */
+    private static synchronized void compact() throws IOException {
+        int fromHeight = compactedHeight;
+        int toHeight = blockCount;
+        if (fromHeight >= toHeight) {
+            return;
+        }
+        //
+        // Record the new height before updating the database so that the archive is used
+        // for any transaction which has been compacted if the node stops during the update
+        //
+        setCompactedHeight(toHeight);
+        Db.db.beginTransaction();
+        try (Connection con = Db.db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("UPDATE transaction SET attachment_bytes = NULL "
+                     + "WHERE height >= ? AND height < ? AND attachment_bytes IS NOT NULL")) {
+            pstmt.setInt(1, fromHeight);
+            pstmt.setInt(2, toHeight);
+            int count = pstmt.executeUpdate();
+            Db.db.commitTransaction();
+            Logger.logDebugMessage("Compacted " + count + " transactions below height " + toHeight);
+        } catch (SQLException e) {
+            Db.db.rollbackTransaction();
+            throw new RuntimeException(e.toString(), e);
+        } finally {
+            Db.db.endTransaction();
+        }
+    }
+
+    /**
+     * Check if the attachment bytes of a transaction may have been removed from the transaction table
+     *
+     * @param   height              Transaction height
+     * @return                      TRUE if the transaction must be loaded from the archive
+     */
+    static boolean isCompacted(int height) {
+        return height < compactedHeight;
+    }
+
+    private static void setCompactedHeight(int height) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(new File(archiveDir, "compacted.idx"), "rw")) {
+            file.setLength(0);
+            file.writeInt(height);
+            file.getChannel().force(true);
+        }
+        compactedHeight = height;
+    }
+
+    /**
+     * Append a block to the archive
+     *
+     * @param   block               Block at height blockCount
+     */
+    private static synchronized void append(BlockImpl block) throws IOException {
+        int height = block.getHeight();
+        if (height != blockCount) {
+            throw new IllegalStateException("Block height " + height + " does not follow archive height " + (blockCount - 1));
+        }
+        //
+        // Write the block record
+        //
+        List<TransactionImpl> transactions = block.getTransactions();
+        List<byte[]> transactionBytes = new ArrayList<>(transactions.size());
+        int length = 8 + 4 + 4 + 4 + 8 + 8 + 8 + 4 + 8 + 8 + 8 + 4
+                + getSize(block.getPayloadHash()) + getSize(block.getGenerationSignature())
+                + getSize(block.getBlockSignature()) + getSize(block.getPreviousBlockHash());
+        byte[] cumulativeDifficulty = block.getCumulativeDifficulty().toByteArray();
+        length += getSize(cumulativeDifficulty);
+        for (TransactionImpl transaction : transactions) {
+            byte[] bytes = transaction.bytes();
+            transactionBytes.add(bytes);
+            length += 8 + getSize(transaction.fullHash()) + getSize(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length);
+        buffer.putLong(block.getId());
+        buffer.putInt(height);
+        buffer.putInt(block.getVersion());
+        buffer.putInt(block.getTimestamp());
+        buffer.putLong(block.getPreviousBlockId());
+        buffer.putLong(block.getTotalAmountNQT());
+        buffer.putLong(block.getTotalFeeNQT());
+        buffer.putInt(block.getPayloadLength());
+        putBytes(buffer, block.getPayloadHash());
+        buffer.putLong(block.getGeneratorId());
+        putBytes(buffer, block.getGenerationSignature());
+        putBytes(buffer, block.getBlockSignature());
+        putBytes(buffer, block.getPreviousBlockHash());
+        putBytes(buffer, cumulativeDifficulty);
+        buffer.putLong(block.getBaseTarget());
+        buffer.putLong(block.getNextBlockId());
+        buffer.putInt(transactions.size());
+        for (int i = 0; i < transactions.size(); i++) {
+            TransactionImpl transaction = transactions.get(i);
+            buffer.putLong(transaction.getSenderId());
+            putBytes(buffer, transaction.fullHash());
+            putBytes(buffer, transactionBytes.get(i));
+        }
+        buffer.flip();
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || (segment.size > 0 && segment.size + buffer.limit() > SEGMENT_SIZE)) {
+            segment = new Segment(segments.size());
+            lock.writeLock().lock();
+            try {
+                segments.add(segment);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        long position = segment.size;
+        write(segment.channel, buffer, position);
+        long offset = ((long)segment.number << 32) | position;
+        //
+        // Write the transaction index entries and then the block index entry
+        //
+        long transactionPosition = transactionIndexSize;
+        if (!transactions.isEmpty()) {
+            ByteBuffer entries = ByteBuffer.allocate(transactions.size() * TRANSACTION_ENTRY_SIZE);
+            for (TransactionImpl transaction : transactions) {
+                entries.putLong(transaction.getId());
+                entries.putInt(height);
+            }
+            entries.flip();
+            write(transactionIndex, entries, transactionPosition);
+        }
+        ByteBuffer entry = ByteBuffer.allocate(BLOCK_ENTRY_SIZE);
+        entry.putLong(block.getId());
+        entry.putLong(offset);
+        entry.flip();
+        write(blockIndex, entry, (long)height * BLOCK_ENTRY_SIZE);
+        //
+        // Update the in-memory index
+        //
+        lock.writeLock().lock();
+        try {
+            segment.size = position + buffer.limit();
+            transactionIndexSize = transactionPosition + (long)transactions.size() * TRANSACTION_ENTRY_SIZE;
+            addBlock(block.getId(), offset, transactionPosition);
+            for (TransactionImpl transaction : transactions) {
+                transactionHeights.put(transaction.getId(), height);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Open the archive and load the index
+     */
+    private static void open() throws IOException {
+        if (!archiveDir.exists() && !archiveDir.mkdirs()) {
+            throw new IOException("Unable to create " + archiveDir.getPath());
+        }
+        blockIndex = new RandomAccessFile(new File(archiveDir, "blocks.idx"), "rw").getChannel();
+        transactionIndex = new RandomAccessFile(new File(archiveDir, "transactions.idx"), "rw").getChannel();
+        while (new File(archiveDir, Segment.getName(segments.size())).exists()) {
+            segments.add(new Segment(segments.size()));
+        }
+        //
+        // Load the block index.  A block is valid if its record is complete, a partial record
+        // is left behind if the node stopped while appending a block.
+        //
+        ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(blockIndex.size(), 1024 * BLOCK_ENTRY_SIZE));
+        long position = 0;
+        long validSize = blockIndex.size() - blockIndex.size() % BLOCK_ENTRY_SIZE;
+        loadBlocks:
+        while (position < validSize) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), validSize - position));
+            position += read(blockIndex, buffer, position);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                long blockId = buffer.getLong();
+                long offset = buffer.getLong();
+                int segmentNumber = (int)(offset >>> 32);
+                if (segmentNumber >= segments.size()) {
+                    break loadBlocks;
+                }
+                Segment segment = segments.get(segmentNumber);
+                long end = segment.getRecordEnd(offset & 0xffffffffL);
+                if (end < 0) {
+                    break loadBlocks;
+                }
+                segment.size = end;
+                addBlock(blockId, offset, 0);
+            }
+        }
+        blockIndex.truncate((long)blockCount * BLOCK_ENTRY_SIZE);
+        //
+        // Discard a partial record at the end of the last segment and delete unused segments
+        //
+        int lastSegment = blockCount > 0 ? (int)(blockOffsets[blockCount - 1] >>> 32) : -1;
+        while (segments.size() > lastSegment + 1) {
+            segments.remove(segments.size() - 1).delete();
+        }
+        if (lastSegment >= 0) {
+            Segment segment = segments.get(lastSegment);
+            segment.channel.truncate(segment.size);
+        }
+        //
+        // Load the transaction index and discard entries for blocks which are not in the archive
+        //
+        buffer = ByteBuffer.allocate(1024 * TRANSACTION_ENTRY_SIZE);
+        position = 0;
+        validSize = transactionIndex.size() - transactionIndex.size() % TRANSACTION_ENTRY_SIZE;
+        int nextHeight = 0;
+        loadTransactions:
+        while (position < validSize) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), validSize - position));
+            long bufferPosition = position;
+            position += read(transactionIndex, buffer, position);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                long transactionId = buffer.getLong();
+                int height = buffer.getInt();
+                if (height >= blockCount || height < nextHeight - 1) {
+                    position = bufferPosition;
+                    break loadTransactions;
+                }
+                while (nextHeight <= height) {
+                    transactionPositions[nextHeight++] = bufferPosition;
+                }
+                transactionHeights.put(transactionId, height);
+                bufferPosition += TRANSACTION_ENTRY_SIZE;
+            }
+        }
+        while (nextHeight < blockCount) {
+            transactionPositions[nextHeight++] = position;
+        }
+        transactionIndex.truncate(position);
+        transactionIndexSize = position;
+        //
+        // Load the compacted height.  The archive must contain every compacted block.
+        //
+        File compactedFile = new File(archiveDir, "compacted.idx");
+        if (compactedFile.exists()) {
+            try (RandomAccessFile file = new RandomAccessFile(compactedFile, "r")) {
+                compactedHeight = file.length() >= 4 ? file.readInt() : 0;
+            }
+            if (compactedHeight > blockCount) {
+                throw new IOException("The transaction table has been compacted below height " + compactedHeight
+                        + " but the archive contains only " + blockCount + " blocks");
+            }
+        }
+        Logger.logMessage("Block archive contains " + blockCount + " blocks and " + transactionHeights.size() + " transactions");
+    }
+
+    /**
+     * Add a block to the in-memory index
+     */
+    private static void addBlock(long blockId, long offset, long transactionPosition) {
+        if (blockCount == blockIds.length) {
+            int capacity = blockCount * 2;
+            blockIds = Arrays.copyOf(blockIds, capacity);
+            blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+            transactionPositions = Arrays.copyOf(transactionPositions, capacity);
+        }
+        blockIds[blockCount] = blockId;
+        blockOffsets[blockCount] = offset;
+        transactionPositions[blockCount] = transactionPosition;
+        blockHeights.put(blockId, blockCount);
+        blockCount++;
+    }
+
+    /**
+     * Get the archive height of a block, the read lock must be held
+     */
+    private static int getHeight(long blockId) {
+        int height = blockHeights.get(blockId);
+        return height >= 0 && height < blockCount && blockIds[height] == blockId ? height : -1;
+    }
+
+    /**
+     * Read a block record, the read lock must be held so that the segment is not truncated during the read
+     */
+    private static ByteBuffer readRecord(long offset) {
+        int segmentNumber = (int)(offset >>> 32);
+        long position = offset & 0xffffffffL;
+        if (segmentNumber >= segments.size()) {
+            return null;
+        }
+        Segment segment = segments.get(segmentNumber);
+        if (position + 4 > segment.size) {
+            return null;
+        }
+        try {
+            int length = segment.read(position, 4).getInt();
+            return segment.read(position + 4, length);
+        } catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    /**
+     * Remove the transactions following a transaction index position from the in-memory index
+     */
+    private static void removeTransactions(long transactionPosition) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * TRANSACTION_ENTRY_SIZE);
+        long position = transactionPosition;
+        while (position < transactionIndexSize) {
+            buffer.clear();
+            buffer.limit((int)Math.min(buffer.capacity(), transactionIndexSize - position));
+            position += read(transactionIndex, buffer, position);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                long transactionId = buffer.getLong();
+                buffer.getInt();
+                transactionHeights.remove(transactionId);
+            }
+        }
+    }
+
+    private static BlockImpl readBlock(ByteBuffer buffer) {
+        if (buffer == null) {
+            return null;
+        }
+        BlockHeader header = new BlockHeader(buffer);
+        List<TransactionImpl> transactions = new ArrayList<>(header.transactionCount);
+        try {
+            for (int i = 0; i < header.transactionCount; i++) {
+                long senderId = buffer.getLong();
+                byte[] fullHash = getBytes(buffer);
+                transactions.add(readTransaction(buffer, header, i, senderId, fullHash));
+            }
+        } catch (kplException.ValidationException e) {
+            throw new RuntimeException("Archived transaction for block " + Long.toUnsignedString(header.id)
+                    + " does not pass validation!", e);
+        }
+        return new BlockImpl(header.version, header.timestamp, header.previousBlockId, header.totalAmountNQT, header.totalFeeNQT,
+                header.payloadLength, header.payloadHash, header.generatorId, header.generationSignature, header.blockSignature,
+                header.previousBlockHash, header.cumulativeDifficulty, header.baseTarget, header.nextBlockId, header.height,
+                header.id, Collections.unmodifiableList(transactions));
+    }
+
+    private static TransactionImpl readTransaction(ByteBuffer buffer, BlockHeader header, int index, long senderId, byte[] fullHash)
+            throws kplException.NotValidException {
+        return TransactionImpl.newTransactionBuilder(getBytes(buffer))
+                .blockId(header.id)
+                .height(header.height)
+                .id(Convert.fullHashToId(fullHash))
+                .senderId(senderId)
+                .blockTimestamp(header.timestamp)
+                .fullHash(fullHash)
+                .index((short)index)
+                .build();
+    }
+
+    private static int getSize(byte[] bytes) {
+        return 4 + (bytes != null ? bytes.length : 0);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int count = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + count);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * Block record header
+     */
+    private static final class BlockHeader {
+
+        private final long id;
+        private final int height;
+        private final int version;
+        private final int timestamp;
+        private final long previousBlockId;
+        private final long totalAmountNQT;
+        private final long totalFeeNQT;
+        private final int payloadLength;
+        private final byte[] payloadHash;
+        private final long generatorId;
+        private final byte[] generationSignature;
+        private final byte[] blockSignature;
+        private final byte[] previousBlockHash;
+        private final BigInteger cumulativeDifficulty;
+        private final long baseTarget;
+        private final long nextBlockId;
+        private final int transactionCount;
+
+        private BlockHeader(ByteBuffer buffer) {
+            id = buffer.getLong();
+            height = buffer.getInt();
+            version = buffer.getInt();
+            timestamp = buffer.getInt();
+            previousBlockId = buffer.getLong();
+            totalAmountNQT = buffer.getLong();
+            totalFeeNQT = buffer.getLong();
+            payloadLength = buffer.getInt();
+            payloadHash = getBytes(buffer);
+            generatorId = buffer.getLong();
+            generationSignature = getBytes(buffer);
+            blockSignature = getBytes(buffer);
+            previousBlockHash = getBytes(buffer);
+            cumulativeDifficulty = new BigInteger(getBytes(buffer));
+            baseTarget = buffer.getLong();
+            nextBlockId = buffer.getLong();
+            transactionCount = buffer.getInt();
+        }
+
+    }
+
+    /**
+     * Archive segment file
+     */
+    private static final class Segment {
+
+        private final int number;
+        private final File file;
+        private final FileChannel channel;
+        private volatile long size;
+
+        private Segment(int number) throws IOException {
+            this.number = number;
+            this.file = new File(archiveDir, getName(number));
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        private static String getName(int number) {
+            return String.format("blocks.%04d.dat", number);
+        }
+
+        /**
+         * Get the end of a record or -1 if the record is incomplete
+         */
+        private long getRecordEnd(long position) throws IOException {
+            long fileSize = channel.size();
+            if (position + 4 > fileSize) {
+                return -1;
+            }
+            long end = position + 4 + read(position, 4).getInt();
+            return end <= fileSize ? end : -1;
+        }
+
+        /**
+         * Read from the segment file
+         */
+        private ByteBuffer read(long position, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            BlockArchive.read(channel, buffer, position);
+            buffer.flip();
+            return buffer;
+        }
+
+        /**
+         * Close and delete the segment file
+         */
+        private void delete() throws IOException {
+            channel.close();
+            if (!file.delete()) {
+                Logger.logErrorMessage("Unable to delete " + file.getPath());
+            }
+        }
+
+    }
+
+    /**
+     * Open-addressing map from a non-zero long key to a non-negative int value
+     */
+    private static final class LongIntMap {
+
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        private int size() {
+            return size;
+        }
+
+        private int get(long key) {
+            if (key == 0) {
+                return -1;
+            }
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+                if (keys[i] == 0) {
+                    return -1;
+                }
+            }
+        }
+
+        private void put(long key, int value) {
+            if (key == 0) {
+                return;
+            }
+            if (size * 2 >= keys.length) {
+                long[] oldKeys = keys;
+                int[] oldValues = values;
+                keys = new long[oldKeys.length * 2];
+                values = new int[oldValues.length * 2];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != 0) {
+                        put(oldKeys[i], oldValues[i]);
+                    }
+                }
+            }
+            int mask = keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                if (keys[i] == 0) {
+                    keys[i] = key;
+                    values[i] = value;
+                    size++;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Remove a key, moving back the following entries of its probe sequence
+         */
+        private void remove(long key) {
+            if (key == 0) {
+                return;
+            }
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (keys[i] != key) {
+                if (keys[i] == 0) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            for (int j = (i + 1) & mask; keys[j] != 0; j = (j + 1) & mask) {
+                int k = hash(keys[j]) & mask;
+                if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                    continue;
+                }
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+            keys[i] = 0;
+            values[i] = 0;
+            size--;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
+
+    }
+
+}
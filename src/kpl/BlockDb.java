@@ -76,6 +76,11 @@ final class BlockDb {
                 return block;
             }
         }
+        // Check the block archive
+        BlockImpl archivedBlock = BlockArchive.findBlock(blockId);
+        if (archivedBlock != null) {
+            return archivedBlock;
+        }
         // Search the database
         try (Connection con = Db.db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block WHERE id = ?")) {
@@ -305,6 +310,10 @@ final class BlockDb {
             }
             return lastBlock;
         }
+        BlockImpl block = findBlock(blockId);
+        if (block != null) {
+            BlockArchive.truncate(block.getHeight() - 1);
+        }
         try (Connection con = Db.db.getConnection();
              PreparedStatement pstmtSelect = con.prepareStatement("SELECT db_id FROM block WHERE timestamp >= "
                      + "IFNULL ((SELECT timestamp FROM block WHERE id = ?), " + Integer.MAX_VALUE + ") ORDER BY timestamp DESC");
@@ -353,6 +362,7 @@ final class BlockDb {
             return;
         }
         Logger.logMessage("Deleting blockchain...");
+        BlockArchive.truncate(-1);
         try (Connection con = Db.db.getConnection();
              Statement stmt = con.createStatement()) {
             try {
@@ -363,6 +373,7 @@ final class BlockDb {
                     if (table.isPersistent()) {
                         try {
                             stmt.executeUpdate("TRUNCATE TABLE " + table.toString());
+                            table.reset();
                         } catch (SQLException ignore) {}
                     }
                 });
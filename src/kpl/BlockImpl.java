@@ -18,6 +18,7 @@ package kpl;
 
 import kpl.AccountLedger.LedgerEvent;
 import kpl.crypto.Crypto;
+import kpl.crypto.SigningKey;
 import kpl.util.Convert;
 import kpl.util.Logger;
 import org.json.simple.JSONArray;
@@ -58,10 +59,10 @@ final class BlockImpl implements Block {
 
 
     BlockImpl(int version, int timestamp, long previousBlockId, long totalAmountNQT, long totalFeeNQT, int payloadLength, byte[] payloadHash,
-              byte[] generatorPublicKey, byte[] generationSignature, byte[] previousBlockHash, List<TransactionImpl> transactions, String secretPhrase) {
+              byte[] generatorPublicKey, byte[] generationSignature, byte[] previousBlockHash, List<TransactionImpl> transactions, SigningKey signingKey) {
         this(version, timestamp, previousBlockId, totalAmountNQT, totalFeeNQT, payloadLength, payloadHash,
                 generatorPublicKey, generationSignature, null, previousBlockHash, transactions);
-        blockSignature = Crypto.sign(bytes(), secretPhrase);
+        blockSignature = signingKey.sign(bytes());
         bytes = null;
     }
 
@@ -201,7 +202,7 @@ final class BlockImpl implements Block {
             if (blockSignature == null) {
                 throw new IllegalStateException("Block is not signed yet");
             }
-            byte[] hash = Crypto.sha256().digest(bytes());
+            byte[] hash = Crypto.sha256(bytes());
             //生成区块签名
             //blockSignature = Crypto.sign(bytes(), "dim suicide shown stream beyond awaken cousin ground whatever burst second stroke");
             //System.out.print("block_signature="+Arrays.toString(blockSignature)+"\n");
@@ -373,9 +374,9 @@ final class BlockImpl implements Block {
                 }
             }
 
-            BigInteger hit = new BigInteger(1, new byte[]{generationSignatureHash[7], generationSignatureHash[6], generationSignatureHash[5], generationSignatureHash[4], generationSignatureHash[3], generationSignatureHash[2], generationSignatureHash[1], generationSignatureHash[0]});
+            long hit = Generator.getHit(generationSignatureHash);
 
-            return Generator.verifyHit(hit, BigInteger.valueOf(effectiveBalance), previousBlock, timestamp)
+            return Generator.verifyHit(hit, effectiveBalance, previousBlock, timestamp)
                     || (this.height < Constants.TRANSPARENT_FORGING_BLOCK_5 && Arrays.binarySearch(badBlocks, this.getId()) >= 0);
 
         } catch (RuntimeException e) {
@@ -450,45 +451,11 @@ final class BlockImpl implements Block {
     }
 
     private void calculateBaseTarget(BlockImpl previousBlock) {
-        long prevBaseTarget = previousBlock.baseTarget;
-        if (previousBlock.getHeight() < Constants.SHUFFLING_BLOCK) {
-            baseTarget = BigInteger.valueOf(prevBaseTarget)
-                    .multiply(BigInteger.valueOf(this.timestamp - previousBlock.timestamp))
-                    .divide(BigInteger.valueOf(60)).longValue();
-            if (baseTarget < 0 || baseTarget > Constants.MAX_BASE_TARGET) {
-                baseTarget = Constants.MAX_BASE_TARGET;
-            }
-            if (baseTarget < prevBaseTarget / 2) {
-                baseTarget = prevBaseTarget / 2;
-            }
-            if (baseTarget == 0) {
-                baseTarget = 1;
-            }
-            long twofoldCurBaseTarget = prevBaseTarget * 2;
-            if (twofoldCurBaseTarget < 0) {
-                twofoldCurBaseTarget = Constants.MAX_BASE_TARGET;
-            }
-            if (baseTarget > twofoldCurBaseTarget) {
-                baseTarget = twofoldCurBaseTarget;
-            }
-        } else if (previousBlock.getHeight() % 2 == 0) {
-            BlockImpl block = BlockDb.findBlockAtHeight(previousBlock.getHeight() - 2);
-            int blocktimeAverage = (this.timestamp - block.timestamp) / 3;
-            if (blocktimeAverage > 60) {
-                baseTarget = (prevBaseTarget * Math.min(blocktimeAverage, Constants.MAX_BLOCKTIME_LIMIT)) / 60;
-            } else {
-                baseTarget = prevBaseTarget - prevBaseTarget * Constants.BASE_TARGET_GAMMA
-                        * (60 - Math.max(blocktimeAverage, Constants.MIN_BLOCKTIME_LIMIT)) / 6000;
-            }
-            if (baseTarget < 0 || baseTarget > Constants.MAX_BASE_TARGET_2) {
-                baseTarget = Constants.MAX_BASE_TARGET_2;
-            }
-            if (baseTarget < Constants.MIN_BASE_TARGET) {
-                baseTarget = Constants.MIN_BASE_TARGET;
-            }
-        } else {
-            baseTarget = prevBaseTarget;
-        }
+        int previousHeight = previousBlock.getHeight();
+        int earlierTimestamp = previousHeight >= Constants.SHUFFLING_BLOCK && previousHeight % 2 == 0 ?
+                BlockDb.findBlockAtHeight(previousHeight - 2).timestamp : 0;
+        baseTarget = Generator.getNextBaseTarget(previousHeight, previousBlock.baseTarget, previousBlock.timestamp,
+                earlierTimestamp, this.timestamp);
         cumulativeDifficulty = previousBlock.cumulativeDifficulty.add(Convert.two64.divide(BigInteger.valueOf(baseTarget)));
     }
 
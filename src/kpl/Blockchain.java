@@ -17,6 +17,7 @@
 package kpl;
 
 import kpl.db.DbIterator;
+import kpl.db.DbKeyset;
 import kpl.util.Filter;
 
 import java.sql.Connection;
@@ -25,10 +26,14 @@ import java.util.List;
 
 public interface Blockchain {
 
+    DbKeyset TRANSACTIONS_KEYSET = new DbKeyset("ORDER BY block_timestamp DESC, transaction_index DESC");
+
     void readLock();
 
     void readUnlock();
 
+    long getReadLockWaitTime();
+
     void updateLock();
 
     void updateUnlock();
@@ -86,6 +91,11 @@ public interface Blockchain {
                                                       int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
                                                       int from, int to, boolean includeExpiredPrunable, boolean executedOnly);
 
+    DbIterator<? extends Transaction> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
+                                                      int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
+                                                      String continuation, int from, int to, boolean includeExpiredPrunable,
+                                                      boolean executedOnly);
+
     DbIterator<? extends Transaction> getTransactions(Connection con, PreparedStatement pstmt);
 
     List<? extends Transaction> getExpectedTransactions(Filter<Transaction> filter);
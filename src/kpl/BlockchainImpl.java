@@ -57,6 +57,11 @@ final class BlockchainImpl implements Blockchain {
         lock.readLock().unlock();
     }
 
+    @Override
+    public long getReadLockWaitTime() {
+        return lock.getReadWaitTime();
+    }
+
     @Override
     public void updateLock() {
         lock.updateLock().lock();
@@ -77,6 +82,22 @@ final class BlockchainImpl implements Blockchain {
 
     @Override
     public BlockImpl getLastBlock() {
+        return getRequestLastBlock();
+    }
+
+    /**
+     * Return the last block seen by the current thread.  This is the last block copied to the replica
+     * database for API requests served from the replica.
+     *
+     * @return                      Last block
+     */
+    private BlockImpl getRequestLastBlock() {
+        if (Db.replica != null) {
+            Block block = Db.replica.getRequestLastBlock();
+            if (block != null) {
+                return (BlockImpl) block;
+            }
+        }
         return lastBlock.get();
     }
 
@@ -86,19 +107,19 @@ final class BlockchainImpl implements Blockchain {
 
     @Override
     public int getHeight() {
-        BlockImpl last = lastBlock.get();
+        BlockImpl last = getRequestLastBlock();
         return last == null ? 0 : last.getHeight();
     }
 
     @Override
     public int getLastBlockTimestamp() {
-        BlockImpl last = lastBlock.get();
+        BlockImpl last = getRequestLastBlock();
         return last == null ? 0 : last.getTimestamp();
     }
 
     @Override
     public BlockImpl getLastBlock(int timestamp) {
-        BlockImpl block = lastBlock.get();
+        BlockImpl block = getRequestLastBlock();
         if (timestamp >= block.getTimestamp()) {
             return block;
         }
@@ -107,7 +128,7 @@ final class BlockchainImpl implements Blockchain {
 
     @Override
     public BlockImpl getBlock(long blockId) {
-        BlockImpl block = lastBlock.get();
+        BlockImpl block = getRequestLastBlock();
         if (block.getId() == blockId) {
             return block;
         }
@@ -116,7 +137,7 @@ final class BlockchainImpl implements Blockchain {
 
     @Override
     public boolean hasBlock(long blockId) {
-        return lastBlock.get().getId() == blockId || BlockDb.hasBlock(blockId);
+        return getRequestLastBlock().getId() == blockId || BlockDb.hasBlock(blockId);
     }
 
     @Override
@@ -248,13 +269,22 @@ final class BlockchainImpl implements Blockchain {
                 return result;
             }
         }
+        // Check the block archive and continue with the database after the last archived block
+        List<BlockImpl> archivedBlocks = BlockArchive.getBlocksAfter(blockId, limit);
+        if (archivedBlocks != null && !archivedBlocks.isEmpty()) {
+            result.addAll(archivedBlocks);
+            if (result.size() >= limit) {
+                return result;
+            }
+            blockId = result.get(result.size() - 1).getId();
+        }
         // Search the database
         try (Connection con = Db.db.getConnection();
                 PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block "
                         + "WHERE db_id > IFNULL ((SELECT db_id FROM block WHERE id = ?), " + Long.MAX_VALUE + ") "
                         + "ORDER BY db_id ASC LIMIT ?")) {
             pstmt.setLong(1, blockId);
-            pstmt.setInt(2, limit);
+            pstmt.setInt(2, limit - result.size());
             try (ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
                     result.add(BlockDb.loadBlock(con, rs, true));
@@ -287,15 +317,29 @@ final class BlockchainImpl implements Blockchain {
                 return result;
             }
         }
+        // Check the block archive and continue with the database after the last archived block
+        List<BlockImpl> archivedBlocks = BlockArchive.getBlocksAfter(blockId, blockList.size());
+        if (archivedBlocks != null && !archivedBlocks.isEmpty()) {
+            for (BlockImpl archivedBlock : archivedBlocks) {
+                if (archivedBlock.getId() != blockList.get(result.size())) {
+                    return result;
+                }
+                result.add(archivedBlock);
+            }
+            if (result.size() >= blockList.size()) {
+                return result;
+            }
+            blockId = result.get(result.size() - 1).getId();
+        }
         // Search the database
         try (Connection con = Db.db.getConnection();
                 PreparedStatement pstmt = con.prepareStatement("SELECT * FROM block "
                         + "WHERE db_id > IFNULL ((SELECT db_id FROM block WHERE id = ?), " + Long.MAX_VALUE + ") "
                         + "ORDER BY db_id ASC LIMIT ?")) {
             pstmt.setLong(1, blockId);
-            pstmt.setInt(2, blockList.size());
+            pstmt.setInt(2, blockList.size() - result.size());
             try (ResultSet rs = pstmt.executeQuery()) {
-                int index = 0;
+                int index = result.size();
                 while (rs.next()) {
                     BlockImpl block = BlockDb.loadBlock(con, rs, true);
                     if (block.getId() != blockList.get(index++)) {
@@ -312,7 +356,7 @@ final class BlockchainImpl implements Blockchain {
 
     @Override
     public long getBlockIdAtHeight(int height) {
-        Block block = lastBlock.get();
+        Block block = getRequestLastBlock();
         if (height > block.getHeight()) {
             throw new IllegalArgumentException("Invalid height " + height + ", current blockchain is at " + block.getHeight());
         }
@@ -324,7 +368,7 @@ final class BlockchainImpl implements Blockchain {
 
     @Override
     public BlockImpl getBlockAtHeight(int height) {
-        BlockImpl block = lastBlock.get();
+        BlockImpl block = getRequestLastBlock();
         if (height > block.getHeight()) {
             throw new IllegalArgumentException("Invalid height " + height + ", current blockchain is at " + block.getHeight());
         }
@@ -388,9 +432,19 @@ final class BlockchainImpl implements Blockchain {
     public DbIterator<TransactionImpl> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
                                                        int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
                                                        int from, int to, boolean includeExpiredPrunable, boolean executedOnly) {
+        return getTransactions(accountId, numberOfConfirmations, type, subtype, blockTimestamp, withMessage, phasedOnly,
+                nonPhasedOnly, null, from, to, includeExpiredPrunable, executedOnly);
+    }
+
+    @Override
+    public DbIterator<TransactionImpl> getTransactions(long accountId, int numberOfConfirmations, byte type, byte subtype,
+                                                       int blockTimestamp, boolean withMessage, boolean phasedOnly, boolean nonPhasedOnly,
+                                                       String continuation, int from, int to, boolean includeExpiredPrunable,
+                                                       boolean executedOnly) {
         if (phasedOnly && nonPhasedOnly) {
             throw new IllegalArgumentException("At least one of phasedOnly or nonPhasedOnly must be false");
         }
+        long[] continuationValues = (continuation != null ? TRANSACTIONS_KEYSET.decode(continuation) : null);
         int height = numberOfConfirmations > 0 ? getHeight() - numberOfConfirmations : Integer.MAX_VALUE;
         if (height < 0) {
             throw new IllegalArgumentException("Number of confirmations required " + numberOfConfirmations
@@ -428,6 +482,9 @@ final class BlockchainImpl implements Blockchain {
             if (executedOnly && !nonPhasedOnly) {
                 buf.append("AND (phased = FALSE OR approved = TRUE) ");
             }
+            if (continuationValues != null) {
+                buf.append("AND").append(TRANSACTIONS_KEYSET.getClause("transaction"));
+            }
             buf.append("UNION ALL SELECT transaction.* FROM transaction ");
             if (executedOnly && !nonPhasedOnly) {
                 buf.append(" LEFT JOIN phasing_poll_result ON transaction.id = phasing_poll_result.id ");
@@ -457,8 +514,11 @@ final class BlockchainImpl implements Blockchain {
             if (executedOnly && !nonPhasedOnly) {
                 buf.append("AND (phased = FALSE OR approved = TRUE) ");
             }
+            if (continuationValues != null) {
+                buf.append("AND").append(TRANSACTIONS_KEYSET.getClause("transaction"));
+            }
 
-            buf.append("ORDER BY block_timestamp DESC, transaction_index DESC");
+            buf.append(TRANSACTIONS_KEYSET.getSort());
             buf.append(DbUtils.limitsClause(from, to));
             con = Db.db.getConnection();
             PreparedStatement pstmt;
@@ -484,6 +544,9 @@ final class BlockchainImpl implements Blockchain {
             if (withMessage) {
                 pstmt.setInt(++i, prunableExpiration);
             }
+            if (continuationValues != null) {
+                i = TRANSACTIONS_KEYSET.setClause(pstmt, i, continuationValues);
+            }
             pstmt.setLong(++i, accountId);
             if (blockTimestamp > 0) {
                 pstmt.setInt(++i, blockTimestamp);
@@ -500,8 +563,11 @@ final class BlockchainImpl implements Blockchain {
             if (withMessage) {
                 pstmt.setInt(++i, prunableExpiration);
             }
+            if (continuationValues != null) {
+                i = TRANSACTIONS_KEYSET.setClause(pstmt, i, continuationValues);
+            }
             DbUtils.setLimits(++i, pstmt, from, to);
-            return getTransactions(con, pstmt);
+            return getTransactions(con, pstmt).setKeyset(TRANSACTIONS_KEYSET);
         } catch (SQLException e) {
             DbUtils.close(con);
             throw new RuntimeException(e.toString(), e);
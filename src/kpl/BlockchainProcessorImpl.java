@@ -17,6 +17,7 @@
 package kpl;
 
 import kpl.crypto.Crypto;
+import kpl.crypto.SigningKey;
 import kpl.db.DbIterator;
 import kpl.db.DerivedDbTable;
 import kpl.db.FilteringIterator;
@@ -1450,7 +1451,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             throw new BlockNotAcceptedException("Block timestamp " + block.getTimestamp() + " is before previous block timestamp "
                     + previousLastBlock.getTimestamp(), block);
         }
-        if (block.getVersion() != 1 && !Arrays.equals(Crypto.sha256().digest(previousLastBlock.bytes()), block.getPreviousBlockHash())) {
+        if (block.getVersion() != 1 && !Arrays.equals(Crypto.sha256(previousLastBlock.bytes()), block.getPreviousBlockHash())) {
             throw new BlockNotAcceptedException("Previous block hash doesn't match", block);
         }
         if (block.getId() == 0L || BlockDb.hasBlock(block.getId(), previousLastBlock.getHeight())) {
@@ -1480,6 +1481,7 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         long calculatedTotalFee = 0;
         MessageDigest digest = Crypto.sha256();
         boolean hasPrunedTransactions = false;
+        TransactionImpl.checkSignatures(block.getTransactions());
         for (TransactionImpl transaction : block.getTransactions()) {
             if (transaction.getTimestamp() > curTime + Constants.MAX_TIMEDRIFT) {
                 throw new BlockOutOfOrderException("Invalid transaction timestamp: " + transaction.getTimestamp()
@@ -1824,6 +1826,15 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
             .thenComparingLong(UnconfirmedTransaction::getId);
     //区块定义
     void generateBlock(String secretPhrase, int blockTimestamp) throws BlockNotAcceptedException {
+        SigningKey signingKey = SigningKey.fromSecretPhrase(secretPhrase);
+        try {
+            generateBlock(signingKey, blockTimestamp);
+        } finally {
+            signingKey.destroy();
+        }
+    }
+
+    void generateBlock(SigningKey signingKey, int blockTimestamp) throws BlockNotAcceptedException {
 
         Map<TransactionType, Map<String, Integer>> duplicates = new HashMap<>();
         if (blockchain.getHeight() >= Constants.PHASING_BLOCK) {
@@ -1856,12 +1867,12 @@ final class BlockchainProcessorImpl implements BlockchainProcessor {
         }
         byte[] payloadHash = digest.digest();
         digest.update(previousBlock.getGenerationSignature());
-        final byte[] publicKey = Crypto.getPublicKey(secretPhrase);
+        final byte[] publicKey = signingKey.getPublicKey();
         byte[] generationSignature = digest.digest(publicKey);
-        byte[] previousBlockHash = Crypto.sha256().digest(previousBlock.bytes());
+        byte[] previousBlockHash = Crypto.sha256(previousBlock.bytes());
 
         BlockImpl block = new BlockImpl(getBlockVersion(previousBlock.getHeight()), blockTimestamp, previousBlock.getId(), totalAmountNQT, totalFeeNQT, payloadLength,
-                payloadHash, publicKey, generationSignature, previousBlockHash, blockTransactions, secretPhrase);
+                payloadHash, publicKey, generationSignature, previousBlockHash, blockTransactions, signingKey);
 
         try {
             pushBlock(block); //本机产生
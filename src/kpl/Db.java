@@ -7,11 +7,14 @@
 package kpl;
 
 import kpl.db.BasicDb;
+import kpl.db.ReplicaDb;
 import kpl.db.TransactionalDb;
 
 public final class Db {
 
     public static final String PREFIX = Constants.isTestnet ? "kpl.testDb" : "kpl.db";
+    private static final String replicaUrl = Kpl.getBooleanProperty("kpl.enableApiReplica")
+            && Kpl.getIntProperty("kpl.maxApiDbConnections") > 0 ? getReplicaUrl() : null;
     public static final TransactionalDb db = new TransactionalDb(new BasicDb.DbProperties()
             .maxCacheSize(Kpl.getIntProperty("kpl.dbCacheKB"))
             .dbUrl(Kpl.getStringProperty(PREFIX + "Url"))
@@ -21,19 +24,43 @@ public final class Db {
             .dbUsername(Kpl.getStringProperty(PREFIX + "Username"))
             .dbPassword(Kpl.getStringProperty(PREFIX + "Password", null, true))
             .maxConnections(Kpl.getIntProperty("kpl.maxDbConnections"))
+            .maxReadOnlyConnections(Kpl.getIntProperty("kpl.maxApiDbConnections"))
+            .readOnlyDbUrl(replicaUrl)
             .loginTimeout(Kpl.getIntProperty("kpl.dbLoginTimeout"))
             .defaultLockTimeout(Kpl.getIntProperty("kpl.dbDefaultLockTimeout") * 1000)
             .maxMemoryRows(Kpl.getIntProperty("kpl.dbMaxMemoryRows"))
+            .mvStoreAutoCompactFillRate(Kpl.getIntProperty("kpl.dbMvStoreAutoCompactFillRate"))
+            .mvStoreMaxCompactTime(Kpl.getIntProperty("kpl.dbMvStoreMaxCompactTime"))
+            .mvStoreRetentionTime(Kpl.getIntProperty("kpl.dbMvStoreRetentionTime"))
+            .mvStoreCompress(Kpl.getBooleanProperty("kpl.dbMvStoreCompress"))
     );
+    public static final ReplicaDb replica = replicaUrl == null ? null : new ReplicaDb(db, replicaUrl,
+            Kpl.getStringProperty(PREFIX + "Username"), Kpl.getStringProperty(PREFIX + "Password", null, true),
+            () -> BlockchainProcessorImpl.getInstance().getDerivedTables());
 
     static void init() {
         db.init(new kplDbVersion());
+        if (replica != null) {
+            replica.init();
+        }
     }
 
     static void shutdown() {
+        if (replica != null) {
+            replica.shutdown();
+        }
         db.shutdown();
     }
 
+    private static String getReplicaUrl() {
+        String url = Kpl.getStringProperty(PREFIX + "ReplicaUrl");
+        if (url == null) {
+            url = String.format("jdbc:%s:%s_replica;%s", Kpl.getStringProperty(PREFIX + "Type"),
+                    Kpl.getDbDir(Kpl.getStringProperty(PREFIX + "Dir")), Kpl.getStringProperty(PREFIX + "Params"));
+        }
+        return url;
+    }
+
     private Db() {} // never
 
 }
@@ -17,6 +17,7 @@
 package kpl;
 
 import kpl.crypto.Crypto;
+import kpl.crypto.SigningKey;
 import kpl.db.DbIterator;
 import kpl.util.Convert;
 import kpl.util.Filter;
@@ -98,8 +99,8 @@ public final class FundingMonitor {
     /** Fund account name */
     private final String accountName;
 
-    /** Fund account secret phrase */
-    private final String secretPhrase;
+    /** Fund account signing key */
+    private final SigningKey signingKey;
 
     /** Fund account public key */
     private final byte[] publicKey;
@@ -127,8 +128,8 @@ public final class FundingMonitor {
         this.interval = interval;
         this.accountId = accountId;
         this.accountName = Convert.rsAccount(accountId);
-        this.secretPhrase = secretPhrase;
-        this.publicKey = Crypto.getPublicKey(secretPhrase);
+        this.signingKey = SigningKey.fromSecretPhrase(secretPhrase);
+        this.publicKey = signingKey.getPublicKey();
     }
 
     /**
@@ -612,7 +613,7 @@ public final class FundingMonitor {
                     monitoredAccount.amount, 0, (short)1440, Attachment.ORDINARY_PAYMENT);
             builder.recipientId(monitoredAccount.accountId)
                    .timestamp(Kpl.getBlockchain().getLastBlockTimestamp());
-            Transaction transaction = builder.build(monitor.secretPhrase);
+            Transaction transaction = builder.build(monitor.signingKey);
             if (Math.addExact(monitoredAccount.amount, transaction.getFeeNQT()) > fundingAccount.getUnconfirmedBalanceNQT()) {
                 Logger.logWarningMessage(String.format("Funding account %s has insufficient funds; funding transaction discarded",
                         monitor.accountName));
@@ -649,7 +650,7 @@ public final class FundingMonitor {
                     0, 0, (short)1440, attachment);
             builder.recipientId(monitoredAccount.accountId)
                    .timestamp(Kpl.getBlockchain().getLastBlockTimestamp());
-            Transaction transaction = builder.build(monitor.secretPhrase);
+            Transaction transaction = builder.build(monitor.signingKey);
             if (transaction.getFeeNQT() > fundingAccount.getUnconfirmedBalanceNQT()) {
                 Logger.logWarningMessage(String.format("Funding account %s has insufficient funds; funding transaction discarded",
                         monitor.accountName));
@@ -686,7 +687,7 @@ public final class FundingMonitor {
                     0, 0, (short)1440, attachment);
             builder.recipientId(monitoredAccount.accountId)
                    .timestamp(Kpl.getBlockchain().getLastBlockTimestamp());
-            Transaction transaction = builder.build(monitor.secretPhrase);
+            Transaction transaction = builder.build(monitor.signingKey);
             if (transaction.getFeeNQT() > fundingAccount.getUnconfirmedBalanceNQT()) {
                 Logger.logWarningMessage(String.format("Funding account %s has insufficient funds; funding transaction discarded",
                         monitor.accountName));
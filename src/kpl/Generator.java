@@ -17,6 +17,7 @@
 package kpl;
 
 import kpl.crypto.Crypto;
+import kpl.crypto.SigningKey;
 import kpl.util.Convert;
 import kpl.util.Listener;
 import kpl.util.Listeners;
@@ -24,16 +25,22 @@ import kpl.util.Logger;
 import kpl.util.ThreadPool;
 
 import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 public final class Generator implements Comparable<Generator> {
 
@@ -53,7 +60,36 @@ public final class Generator implements Comparable<Generator> {
     private static long lastBlockId;
     private static int delayTime = Constants.FORGING_DELAY;
 
-    private static final Runnable generateBlocksThread = new Runnable() {
+    /** Generation signature hash buffer used to compute the hit */
+    private static final ThreadLocal<byte[]> hitBuffer = ThreadLocal.withInitial(() -> new byte[32]);
+
+    /** Recompute the hits in parallel when there are at least this many generators */
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    /** Hit computation threads, the hit computation reads the generator accounts from the database */
+    private static final ExecutorService hitService = Executors.newFixedThreadPool(
+            Math.min(Runtime.getRuntime().availableProcessors(), 4));
+
+    /** Time multiplier used to convert an epoch time interval to a wait time */
+    private static final int timeMultiplier = (Constants.isTestnet && Constants.isOffline) ?
+            Math.max(Kpl.getIntProperty("kpl.timeMultiplier"), 1) : 1;
+
+    /** Block generation thread wakeup */
+    private static final ReentrantLock generateBlocksLock = new ReentrantLock();
+    private static final Condition generateBlocksCondition = generateBlocksLock.newCondition();
+    private static boolean generateBlocksSignaled;
+    private static volatile Thread generateBlocksThread;
+    private static volatile boolean generateBlocksShutdown;
+
+    /**
+     * The block generation thread runs when a block is pushed or popped, when a generator is
+     * started and when the forging delay is changed.  Otherwise it sleeps until the hit time
+     * of the next forger is reached.
+     */
+    private static final Runnable generateBlocks = new Runnable() {
+
+        /** Forgers for the last block in hit time order */
+        private final PriorityQueue<Generator> forgingQueue = new PriorityQueue<>();
 
         private volatile boolean logged;
 
@@ -61,79 +97,193 @@ public final class Generator implements Comparable<Generator> {
         public void run() {
 
             try {
-                try {
-                    BlockchainImpl.getInstance().updateLock();
+                while (!generateBlocksShutdown) {
+                    int nextTime;
                     try {
-                        Block lastBlock = Kpl.getBlockchain().getLastBlock();
-                        if (lastBlock == null || lastBlock.getHeight() < Constants.LAST_KNOWN_BLOCK) {
-                            return;
-                        }
-                        if (lastBlock.getId() != lastBlockId || sortedForgers == null) {
-                            lastBlockId = lastBlock.getId();
-                            if (lastBlock.getTimestamp() > Kpl.getEpochTime() - 600) {
-                                Block previousBlock = Kpl.getBlockchain().getBlock(lastBlock.getPreviousBlockId());
-                                for (Generator generator : generators.values()) {
-                                    generator.setLastBlock(previousBlock);
-                                    if (generator.getHitTime() > 0 && generator.getHitTime() < lastBlock.getTimestamp() - 1) {
-                                        Logger.logDebugMessage("Pop off: " + generator.toString() + " will pop off last block " + lastBlock.getStringId());
-                                        List<BlockImpl> poppedOffBlock = BlockchainProcessorImpl.getInstance().popOffTo(previousBlock);
-                                        for (BlockImpl block : poppedOffBlock) {
-                                            TransactionProcessorImpl.getInstance().processLater(block.getTransactions());
-                                        }
-                                        lastBlock = previousBlock;
-                                        lastBlockId = previousBlock.getId();
-                                        break;
-                                    }
-                                }
+                        nextTime = generateBlock();
+                    } catch (Exception e) {
+                        Logger.logMessage("Error in block generation thread", e);
+                        nextTime = Kpl.getEpochTime() + 1;
+                    }
+                    waitForWakeup(nextTime);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                Logger.logErrorMessage("CRITICAL ERROR. PLEASE REPORT TO THE DEVELOPERS.\n" + t.toString());
+                t.printStackTrace();
+                System.exit(1);
+            }
+
+        }
+
+        /**
+         * Forge a block if the hit time of the next forger has been reached
+         *
+         * @return                      Epoch time when the next forger can forge a block or 0 to wait for an event
+         * @throws  BlockchainProcessor.BlockNotAcceptedException   Generated block was not accepted
+         */
+        private int generateBlock() throws BlockchainProcessor.BlockNotAcceptedException {
+            BlockchainImpl.getInstance().updateLock();
+            try {
+                Block lastBlock = Kpl.getBlockchain().getLastBlock();
+                if (lastBlock == null || lastBlock.getHeight() < Constants.LAST_KNOWN_BLOCK) {
+                    return 0;
+                }
+                if (lastBlock.getId() != lastBlockId || sortedForgers == null) {
+                    lastBlockId = lastBlock.getId();
+                    if (lastBlock.getTimestamp() > Kpl.getEpochTime() - 600) {
+                        Block previousBlock = Kpl.getBlockchain().getBlock(lastBlock.getPreviousBlockId());
+                        for (Generator generator : setHits(previousBlock, generators.values())) {
+                            if (generator.effectiveBalance > 0) {
+                                listeners.notify(generator, Event.GENERATION_DEADLINE);
                             }
-                            List<Generator> forgers = new ArrayList<>();
-                            for (Generator generator : generators.values()) {
-                                generator.setLastBlock(lastBlock);
-                                if (generator.effectiveBalance.signum() > 0) {
-                                    forgers.add(generator);
+                            if (generator.getHitTime() > 0 && generator.getHitTime() < lastBlock.getTimestamp() - 1) {
+                                Logger.logDebugMessage("Pop off: " + generator.toString() + " will pop off last block " + lastBlock.getStringId());
+                                List<BlockImpl> poppedOffBlock = BlockchainProcessorImpl.getInstance().popOffTo(previousBlock);
+                                for (BlockImpl block : poppedOffBlock) {
+                                    TransactionProcessorImpl.getInstance().processLater(block.getTransactions());
                                 }
+                                lastBlock = previousBlock;
+                                lastBlockId = previousBlock.getId();
+                                break;
                             }
-                            Collections.sort(forgers);
-                            sortedForgers = Collections.unmodifiableList(forgers);
-                            logged = false;
                         }
-                        int generationLimit = Kpl.getEpochTime() - delayTime;
-                        if (!logged) {
-                            for (Generator generator : sortedForgers) {
-                                if (generator.getHitTime() - generationLimit > 60) {
-                                    break;
-                                }
-                                Logger.logDebugMessage(generator.toString());
-                                logged = true;
-                            }
+                    }
+                    sortedForgers = setLastBlock(lastBlock, generators.values());
+                    forgingQueue.clear();
+                    forgingQueue.addAll(sortedForgers);
+                    logged = false;
+                }
+                int generationLimit = Kpl.getEpochTime() - delayTime;
+                if (!logged) {
+                    for (Generator generator : sortedForgers) {
+                        if (generator.getHitTime() - generationLimit > 60) {
+                            break;
                         }
-                        for (Generator generator : sortedForgers) {
-                            if (generator.getHitTime() > generationLimit || generator.forge(lastBlock, generationLimit)) {
-                                return;
-                            }
+                        Logger.logDebugMessage(generator.toString());
+                        logged = true;
+                    }
+                }
+                List<Generator> failedForgers = new ArrayList<>();
+                try {
+                    Generator generator;
+                    while ((generator = forgingQueue.peek()) != null && generator.getHitTime() <= generationLimit) {
+                        if (generator.forge(lastBlock, generationLimit)) {
+                            return 0;
                         }
-                    } finally {
-                        BlockchainImpl.getInstance().updateUnlock();
+                        failedForgers.add(forgingQueue.poll());
                     }
-                } catch (Exception e) {
-                    Logger.logMessage("Error in block generation thread", e);
+                } finally {
+                    forgingQueue.addAll(failedForgers);
                 }
-            } catch (Throwable t) {
-                Logger.logErrorMessage("CRITICAL ERROR. PLEASE REPORT TO THE DEVELOPERS.\n" + t.toString());
-                t.printStackTrace();
-                System.exit(1);
+                if (!failedForgers.isEmpty()) {
+                    return Kpl.getEpochTime() + 1;
+                }
+                Generator generator = forgingQueue.peek();
+                // the hit time of an account with a small effective balance can be beyond the int range
+                return generator == null ? 0 : (int)Math.min(generator.getHitTime() + delayTime, Integer.MAX_VALUE);
+            } finally {
+                BlockchainImpl.getInstance().updateUnlock();
             }
-
         }
 
     };
 
     static {
-        ThreadPool.scheduleThread("GenerateBlocks", generateBlocksThread, 500, TimeUnit.MILLISECONDS);
+        if (!Kpl.getBooleanProperty("kpl.disableGenerateBlocksThread")) {
+            ThreadPool.runAfterStart(() -> {
+                Kpl.getBlockchainProcessor().addListener(block -> wakeup(), BlockchainProcessor.Event.BLOCK_PUSHED);
+                Kpl.getBlockchainProcessor().addListener(block -> wakeup(), BlockchainProcessor.Event.BLOCK_POPPED);
+                Thread thread = new Thread(generateBlocks, "GenerateBlocks");
+                thread.setDaemon(true);
+                generateBlocksThread = thread;
+                thread.start();
+            });
+        } else {
+            Logger.logMessage("Will not run GenerateBlocks thread");
+        }
     }
 
     static void init() {}
 
+    static void shutdown() {
+        Thread thread = generateBlocksThread;
+        if (thread != null) {
+            generateBlocksShutdown = true;
+            wakeup();
+            try {
+                thread.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ThreadPool.shutdownExecutor("hitService", hitService, 5);
+    }
+
+    /**
+     * Wake up the block generation thread
+     */
+    private static void wakeup() {
+        generateBlocksLock.lock();
+        try {
+            generateBlocksSignaled = true;
+            generateBlocksCondition.signal();
+        } finally {
+            generateBlocksLock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the block generation thread is woken up or the next forging time is reached
+     *
+     * @param   nextTime                Epoch time of the next forging attempt or 0 to wait for a wakeup
+     * @throws  InterruptedException    Thread interrupted
+     */
+    private static void waitForWakeup(int nextTime) throws InterruptedException {
+        generateBlocksLock.lock();
+        try {
+            while (!generateBlocksSignaled) {
+                if (nextTime == 0) {
+                    generateBlocksCondition.await();
+                    continue;
+                }
+                long waitTime = getWaitTime(nextTime);
+                if (waitTime <= 0) {
+                    break;
+                }
+                generateBlocksCondition.await(waitTime, TimeUnit.MILLISECONDS);
+            }
+            generateBlocksSignaled = false;
+        } finally {
+            generateBlocksLock.unlock();
+        }
+    }
+
+    /**
+     * Return the number of milliseconds until an epoch time is reached
+     *
+     * The exact time is used when the epoch time is the system time.  Otherwise the wait
+     * time is calculated from the epoch time interval and the time multiplier.
+     *
+     * @param   time                    Epoch time
+     * @return                          Wait time in milliseconds
+     */
+    private static long getWaitTime(int time) {
+        int currentTime = Kpl.getEpochTime();
+        if (currentTime >= time) {
+            return 0;
+        }
+        long waitTime = Math.max((time - currentTime) * 1000L / timeMultiplier, 1);
+        if (timeMultiplier == 1) {
+            long systemWaitTime = Convert.fromEpochTime(time) - System.currentTimeMillis();
+            if (systemWaitTime > 0 && systemWaitTime < waitTime) {
+                waitTime = systemWaitTime;
+            }
+        }
+        return waitTime;
+    }
+
     public static boolean addListener(Listener<Generator> listener, Event eventType) {
         return listeners.addListener(listener, eventType);
     }
@@ -150,11 +300,13 @@ public final class Generator implements Comparable<Generator> {
         Generator generator = new Generator(secretPhrase);
         Generator old = generators.putIfAbsent(secretPhrase, generator);
         if (old != null) {
+            generator.signingKey.destroy();
             Logger.logDebugMessage(old + " is already forging");
             return old;
         }
         listeners.notify(generator, Event.START_FORGING);
         Logger.logDebugMessage(generator + " started");
+        wakeup();
         return generator;
     }
     //停止锻造
@@ -164,6 +316,7 @@ public final class Generator implements Comparable<Generator> {
             Kpl.getBlockchain().updateLock();
             try {
                 sortedForgers = null;
+                generator.signingKey.destroy();
             } finally {
                 Kpl.getBlockchain().updateUnlock();
             }
@@ -175,16 +328,19 @@ public final class Generator implements Comparable<Generator> {
 
     public static int stopForging() {
         int count = generators.size();
+        List<Generator> stopped = new ArrayList<>(count);
         Iterator<Generator> iter = generators.values().iterator();
         while (iter.hasNext()) {
             Generator generator = iter.next();
             iter.remove();
+            stopped.add(generator);
             Logger.logDebugMessage(generator + " stopped");
             listeners.notify(generator, Event.STOP_FORGING);
         }
         Kpl.getBlockchain().updateLock();
         try {
             sortedForgers = null;
+            stopped.forEach(generator -> generator.signingKey.destroy());
         } finally {
             Kpl.getBlockchain().updateUnlock();
         }
@@ -226,19 +382,18 @@ public final class Generator implements Comparable<Generator> {
 
     static void setDelay(int delay) {
         Generator.delayTime = delay;
+        wakeup();
     }
 
-    static boolean verifyHit(BigInteger hit, BigInteger effectiveBalance, Block previousBlock, int timestamp) {
+    static boolean verifyHit(long hit, long effectiveBalance, Block previousBlock, int timestamp) {
         int elapsedTime = timestamp - previousBlock.getTimestamp();
         if (elapsedTime <= 0) {
             return false;
         }
-        BigInteger effectiveBaseTarget = BigInteger.valueOf(previousBlock.getBaseTarget()).multiply(effectiveBalance);
-        BigInteger prevTarget = effectiveBaseTarget.multiply(BigInteger.valueOf(elapsedTime - 1));
-        BigInteger target = prevTarget.add(effectiveBaseTarget);
-        return hit.compareTo(target) < 0
+        long baseTarget = previousBlock.getBaseTarget();
+        return isHitBelowTarget(hit, baseTarget, effectiveBalance, elapsedTime)
                 && (previousBlock.getHeight() < Constants.TRANSPARENT_FORGING_BLOCK_8
-                || hit.compareTo(prevTarget) >= 0
+                || !isHitBelowTarget(hit, baseTarget, effectiveBalance, elapsedTime - 1)
                 || (Constants.isTestnet ? elapsedTime > 300 : elapsedTime > 3600)
                 || Constants.isOffline);
     }
@@ -248,45 +403,232 @@ public final class Generator implements Comparable<Generator> {
     }
 
     //得到hit值
-    static BigInteger getHit(byte[] publicKey, Block block) {
+    static long getHit(byte[] publicKey, Block block) {
         if (allowsFakeForging(publicKey)) {
-            return BigInteger.ZERO;
+            return 0;
         }
         if (block.getHeight() < Constants.TRANSPARENT_FORGING_BLOCK) {
             throw new IllegalArgumentException("Not supported below Transparent Forging Block");
         }
-        MessageDigest digest = Crypto.sha256();
-        digest.update(block.getGenerationSignature());
-        byte[] generationSignatureHash = digest.digest(publicKey);
-        return new BigInteger(1, new byte[] {
-                generationSignatureHash[7],
-                generationSignatureHash[6],
-                generationSignatureHash[5],
-                generationSignatureHash[4],
-                generationSignatureHash[3],
-                generationSignatureHash[2],
-                generationSignatureHash[1],
-                generationSignatureHash[0]}
-        );
+        byte[] generationSignatureHash = hitBuffer.get();
+        Crypto.sha256(block.getGenerationSignature(), publicKey, generationSignatureHash);
+        return getHit(generationSignatureHash);
+    }
+
+    static long getHitTime(long effectiveBalance, long hit, Block block) {
+        return block.getTimestamp() + getHitDelay(hit, block.getBaseTarget(), effectiveBalance);
     }
 
-    static long getHitTime(BigInteger effectiveBalance, BigInteger hit, Block block) {
-        return block.getTimestamp()
-                + hit.divide(BigInteger.valueOf(block.getBaseTarget()).multiply(effectiveBalance)).longValue();
+    /**
+     * Return the hit for a generation signature hash
+     *
+     * The hit is the first 8 bytes of the hash in little-endian order and is treated as an unsigned value
+     *
+     * @param   generationSignatureHash     Generation signature hash
+     * @return                              Unsigned hit
+     */
+    public static long getHit(byte[] generationSignatureHash) {
+        long hit = 0;
+        for (int i = 7; i >= 0; i--) {
+            hit = (hit << 8) | (generationSignatureHash[i] & 0xff);
+        }
+        return hit;
+    }
+
+    /**
+     * Return the number of seconds after the block timestamp when the hit is reached
+     *
+     * @param   hit                 Unsigned hit
+     * @param   baseTarget          Base target
+     * @param   effectiveBalance    Effective balance (must be positive)
+     * @return                      Hit delay (unsigned)
+     */
+    public static long getHitDelay(long hit, long baseTarget, long effectiveBalance) {
+        if (multiplyHigh(baseTarget, effectiveBalance) != 0) {
+            return 0;   // the effective base target is larger than any hit
+        }
+        return Long.divideUnsigned(hit, baseTarget * effectiveBalance);
+    }
+
+    /**
+     * Return the base target for the next block
+     *
+     * @param   previousHeight      Height of the previous block
+     * @param   previousBaseTarget  Base target of the previous block
+     * @param   previousTimestamp   Timestamp of the previous block
+     * @param   earlierTimestamp    Timestamp of the block at previousHeight - 2 (only used when
+     *                              previousHeight is even and not below SHUFFLING_BLOCK)
+     * @param   timestamp           Timestamp of the next block
+     * @return                      Base target
+     */
+    public static long getNextBaseTarget(int previousHeight, long previousBaseTarget, int previousTimestamp,
+                                         int earlierTimestamp, int timestamp) {
+        long baseTarget;
+        if (previousHeight < Constants.SHUFFLING_BLOCK) {
+            baseTarget = BigInteger.valueOf(previousBaseTarget)
+                    .multiply(BigInteger.valueOf(timestamp - previousTimestamp))
+                    .divide(BigInteger.valueOf(60)).longValue();
+            if (baseTarget < 0 || baseTarget > Constants.MAX_BASE_TARGET) {
+                baseTarget = Constants.MAX_BASE_TARGET;
+            }
+            if (baseTarget < previousBaseTarget / 2) {
+                baseTarget = previousBaseTarget / 2;
+            }
+            if (baseTarget == 0) {
+                baseTarget = 1;
+            }
+            long twofoldCurBaseTarget = previousBaseTarget * 2;
+            if (twofoldCurBaseTarget < 0) {
+                twofoldCurBaseTarget = Constants.MAX_BASE_TARGET;
+            }
+            if (baseTarget > twofoldCurBaseTarget) {
+                baseTarget = twofoldCurBaseTarget;
+            }
+        } else if (previousHeight % 2 == 0) {
+            int blocktimeAverage = (timestamp - earlierTimestamp) / 3;
+            if (blocktimeAverage > 60) {
+                baseTarget = (previousBaseTarget * Math.min(blocktimeAverage, Constants.MAX_BLOCKTIME_LIMIT)) / 60;
+            } else {
+                baseTarget = previousBaseTarget - previousBaseTarget * Constants.BASE_TARGET_GAMMA
+                        * (60 - Math.max(blocktimeAverage, Constants.MIN_BLOCKTIME_LIMIT)) / 6000;
+            }
+            if (baseTarget < 0 || baseTarget > Constants.MAX_BASE_TARGET_2) {
+                baseTarget = Constants.MAX_BASE_TARGET_2;
+            }
+            if (baseTarget < Constants.MIN_BASE_TARGET) {
+                baseTarget = Constants.MIN_BASE_TARGET;
+            }
+        } else {
+            baseTarget = previousBaseTarget;
+        }
+        return baseTarget;
+    }
+
+    /**
+     * Check if the hit is below the target for an elapsed time
+     *
+     * The target is baseTarget * effectiveBalance * elapsedTime and can exceed 64 bits, so
+     * hit / elapsedTime is compared to baseTarget * effectiveBalance instead
+     *
+     * @param   hit                 Unsigned hit
+     * @param   baseTarget          Base target
+     * @param   effectiveBalance    Effective balance
+     * @param   elapsedTime         Seconds since the previous block
+     * @return                      TRUE if the hit is below the target
+     */
+    static boolean isHitBelowTarget(long hit, long baseTarget, long effectiveBalance, int elapsedTime) {
+        if (elapsedTime <= 0) {
+            return false;
+        }
+        if (multiplyHigh(baseTarget, effectiveBalance) != 0) {
+            return true;
+        }
+        return Long.compareUnsigned(Long.divideUnsigned(hit, elapsedTime), baseTarget * effectiveBalance) < 0;
+    }
+
+    /**
+     * Compare the hit delays for two generators
+     *
+     * hit1 / effectiveBalance1 and hit2 / effectiveBalance2 are compared using the 128-bit
+     * products hit1 * effectiveBalance2 and hit2 * effectiveBalance1
+     *
+     * @param   hit1                Unsigned hit for the first generator
+     * @param   effectiveBalance1   Effective balance for the first generator
+     * @param   hit2                Unsigned hit for the second generator
+     * @param   effectiveBalance2   Effective balance for the second generator
+     * @return                      Negative, zero or positive
+     */
+    static int compareHits(long hit1, long effectiveBalance1, long hit2, long effectiveBalance2) {
+        int i = Long.compareUnsigned(multiplyHigh(hit1, effectiveBalance2), multiplyHigh(hit2, effectiveBalance1));
+        if (i != 0) {
+            return i;
+        }
+        return Long.compareUnsigned(hit1 * effectiveBalance2, hit2 * effectiveBalance1);
+    }
+
+    /**
+     * Return the high 64 bits of an unsigned 128-bit product
+     *
+     * @param   x                   Unsigned multiplicand
+     * @param   y                   Unsigned multiplier
+     * @return                      High 64 bits of the product
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x0 = x & 0xffffffffL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xffffffffL;
+        long y1 = y >>> 32;
+        long p01 = x0 * y1;
+        long p10 = x1 * y0;
+        long middle = ((x0 * y0) >>> 32) + (p01 & 0xffffffffL) + (p10 & 0xffffffffL);
+        return x1 * y1 + (p01 >>> 32) + (p10 >>> 32) + (middle >>> 32);
+    }
+
+    /**
+     * Recompute the hits for all generators and notify the GENERATION_DEADLINE listeners
+     *
+     * @param   lastBlock           Last block
+     * @param   generators          Generators
+     * @return                      Generators with a positive effective balance sorted by hit time
+     */
+    private static List<Generator> setLastBlock(Block lastBlock, Collection<Generator> generators) {
+        List<Generator> forgers = new ArrayList<>(generators.size());
+        for (Generator generator : setHits(lastBlock, generators)) {
+            if (generator.effectiveBalance > 0) {
+                forgers.add(generator);
+                listeners.notify(generator, Event.GENERATION_DEADLINE);
+            }
+        }
+        Collections.sort(forgers);
+        return Collections.unmodifiableList(forgers);
+    }
+
+    /**
+     * Recompute the hits for all generators
+     *
+     * The hits are computed in parallel on the hit service threads when there are many
+     * generators.  The listeners are not notified.
+     *
+     * @param   lastBlock           Last block
+     * @param   generators          Generators
+     * @return                      Generators
+     */
+    private static List<Generator> setHits(Block lastBlock, Collection<Generator> generators) {
+        List<Generator> list = new ArrayList<>(generators);
+        if (list.size() >= PARALLEL_THRESHOLD) {
+            List<Future<Boolean>> futures = new ArrayList<>(list.size());
+            for (Generator generator : list) {
+                futures.add(hitService.submit(() -> generator.setHit(lastBlock)));
+            }
+            try {
+                for (Future<Boolean> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                futures.forEach(future -> future.cancel(false));
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e.toString(), e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause().toString(), e.getCause());
+            }
+        } else {
+            list.forEach(generator -> generator.setHit(lastBlock));
+        }
+        return list;
     }
 
 
     private final long accountId;
-    private final String secretPhrase;
+    private final SigningKey signingKey;
     private final byte[] publicKey;
     private volatile long hitTime;
-    private volatile BigInteger hit;
-    private volatile BigInteger effectiveBalance;
+    private volatile long hit;
+    private volatile long effectiveBalance;
     private volatile long deadline;
 
     private Generator(String secretPhrase) {
-        this.secretPhrase = secretPhrase;
-        this.publicKey = Crypto.getPublicKey(secretPhrase);
+        this.signingKey = SigningKey.fromSecretPhrase(secretPhrase);
+        this.publicKey = signingKey.getPublicKey();
         this.accountId = Account.getId(publicKey);
         Kpl.getBlockchain().updateLock();
         try {
@@ -317,7 +659,7 @@ public final class Generator implements Comparable<Generator> {
 
     @Override
     public int compareTo(Generator g) {
-        int i = this.hit.multiply(g.effectiveBalance).compareTo(g.hit.multiply(this.effectiveBalance));
+        int i = compareHits(this.hit, this.effectiveBalance, g.hit, g.effectiveBalance);
         if (i != 0) {
             return i;
         }
@@ -330,22 +672,28 @@ public final class Generator implements Comparable<Generator> {
     }
 
     private void setLastBlock(Block lastBlock) {
+        if (setHit(lastBlock)) {
+            listeners.notify(this, Event.GENERATION_DEADLINE);
+        }
+    }
+
+    private boolean setHit(Block lastBlock) {
         int height = lastBlock.getHeight();
         Account account = Account.getAccount(accountId, height);
         if (account == null) {
-            effectiveBalance = BigInteger.ZERO;
+            effectiveBalance = 0;
         } else {
-            effectiveBalance = BigInteger.valueOf(Math.max(account.getEffectiveBalancekpl(height), 0));
+            effectiveBalance = Math.max(account.getEffectiveBalancekpl(height), 0);
         }
-        if (effectiveBalance.signum() == 0) {
+        if (effectiveBalance == 0) {
             hitTime = 0;
-            hit = BigInteger.ZERO;
-            return;
+            hit = 0;
+            return false;
         }
         hit = getHit(publicKey, lastBlock);
         hitTime = getHitTime(effectiveBalance, hit, lastBlock);
         deadline = Math.max(hitTime - lastBlock.getTimestamp(), 0);
-        listeners.notify(this, Event.GENERATION_DEADLINE);
+        return true;
     }
 
     //锻造
@@ -358,7 +706,7 @@ public final class Generator implements Comparable<Generator> {
         int start = Kpl.getEpochTime();
         while (true) {
             try {
-                BlockchainProcessorImpl.getInstance().generateBlock(secretPhrase, timestamp);
+                BlockchainProcessorImpl.getInstance().generateBlock(signingKey, timestamp);
                 setDelay(Constants.FORGING_DELAY);
                 return true;
             } catch (BlockchainProcessor.TransactionNotAcceptedException e) {
@@ -20,7 +20,6 @@ import kpl.db.DbIterator;
 import kpl.db.DbKey;
 import kpl.db.VersionedEntityDbTable;
 
-import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -91,7 +90,7 @@ public class Hub {
                                 currentHits.add(
                                         new Hit(hub,
                                                 Generator.getHitTime(
-                                                        BigInteger.valueOf(effectiveBalance),
+                                                        effectiveBalance,
                                                         Generator.getHit(
                                                                             Account.getPublicKey(hub.getAccountId()),
                                                                             block
@@ -313,8 +313,10 @@ public final class Kpl {
         API.shutdown();
         Users.shutdown();
         FundingMonitor.shutdown();
+        Generator.shutdown();
         ThreadPool.shutdown();
         Peers.shutdown();
+        BlockArchive.shutdown();
         Db.shutdown();
         Logger.logShutdownMessage("kpl server " + VERSION + " stopped.");
         Logger.shutdown();
@@ -338,6 +340,7 @@ public final class Kpl {
                 setServerStatus(ServerStatus.AFTER_DATABASE, null);
                 TransactionProcessorImpl.getInstance();
                 BlockchainProcessorImpl.getInstance();
+                BlockArchive.init();
                 Account.init();
                 AccountRestrictions.init();
                 AccountLedger.init();
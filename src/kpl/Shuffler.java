@@ -17,6 +17,7 @@
 package kpl;
 
 import kpl.crypto.Crypto;
+import kpl.crypto.SigningKey;
 import kpl.db.DbIterator;
 import kpl.util.Convert;
 import kpl.util.Logger;
@@ -292,6 +293,7 @@ public final class Shuffler {
 
     private final long accountId;
     private final String secretPhrase;
+    private final SigningKey signingKey;
     private final byte[] recipientPublicKey;
     private final byte[] shufflingFullHash;
     private volatile Transaction failedTransaction;
@@ -299,7 +301,8 @@ public final class Shuffler {
 
     private Shuffler(String secretPhrase, byte[] recipientPublicKey, byte[] shufflingFullHash) {
         this.secretPhrase = secretPhrase;
-        this.accountId = Account.getId(Crypto.getPublicKey(secretPhrase));
+        this.signingKey = SigningKey.fromSecretPhrase(secretPhrase);
+        this.accountId = Account.getId(signingKey.getPublicKey());
         this.recipientPublicKey = recipientPublicKey;
         this.shufflingFullHash = shufflingFullHash;
     }
@@ -445,10 +448,10 @@ public final class Shuffler {
             }
         }
         try {
-            Transaction.Builder builder = Kpl.newTransactionBuilder(Crypto.getPublicKey(secretPhrase), 0, 0,
+            Transaction.Builder builder = Kpl.newTransactionBuilder(signingKey.getPublicKey(), 0, 0,
                     (short) 1440, attachment);
             builder.timestamp(Kpl.getBlockchain().getLastBlockTimestamp());
-            Transaction transaction = builder.build(secretPhrase);
+            Transaction transaction = builder.build(signingKey);
             failedTransaction = null;
             failureCause = null;
             Account participantAccount = Account.getAccount(this.accountId);
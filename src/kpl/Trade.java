@@ -19,6 +19,7 @@ package kpl;
 import kpl.db.DbClause;
 import kpl.db.DbIterator;
 import kpl.db.DbKey;
+import kpl.db.DbKeyset;
 import kpl.db.DbUtils;
 import kpl.db.EntityDbTable;
 import kpl.util.Listener;
@@ -62,10 +63,16 @@ public final class Trade {
 
     };
 
+    public static final DbKeyset ALL_TRADES_KEYSET = new DbKeyset(" ORDER BY height DESC, db_id DESC ");
+
     public static DbIterator<Trade> getAllTrades(int from, int to) {
         return tradeTable.getAll(from, to);
     }
 
+    public static DbIterator<Trade> getAllTrades(String continuation, int limit) {
+        return tradeTable.getManyBy(DbClause.EMPTY_CLAUSE, ALL_TRADES_KEYSET, continuation, limit);
+    }
+
     public static int getCount() {
         return tradeTable.getCount();
     }
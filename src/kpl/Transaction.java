@@ -16,6 +16,7 @@
 
 package kpl;
 
+import kpl.crypto.SigningKey;
 import kpl.util.Filter;
 import org.json.simple.JSONObject;
 
@@ -53,6 +54,8 @@ public interface Transaction {
 
         Transaction build(String secretPhrase) throws kplException.NotValidException;
 
+        Transaction build(SigningKey signingKey) throws kplException.NotValidException;
+
     }
 
     long getId();
@@ -44,6 +44,11 @@ final class TransactionDb {
                 return transaction.getHeight() <= height ? transaction : null;
             }
         }
+        // Check the block archive
+        TransactionImpl archivedTransaction = BlockArchive.findTransaction(transactionId);
+        if (archivedTransaction != null) {
+            return archivedTransaction.getHeight() <= height ? archivedTransaction : null;
+        }
         // Search the database
         try (Connection con = Db.db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM transaction WHERE id = ?")) {
@@ -181,6 +186,13 @@ final class TransactionDb {
             long id = rs.getLong("id");
             long senderId = rs.getLong("sender_id");
             byte[] attachmentBytes = rs.getBytes("attachment_bytes");
+            if (attachmentBytes == null && BlockArchive.isCompacted(height)) {
+                TransactionImpl archivedTransaction = BlockArchive.findTransaction(id);
+                if (archivedTransaction == null) {
+                    throw new RuntimeException("Compacted transaction " + Long.toUnsignedString(id) + " is not in the block archive");
+                }
+                return archivedTransaction;
+            }
             int blockTimestamp = rs.getInt("block_timestamp");
             byte[] fullHash = rs.getBytes("full_hash");
             byte version = rs.getByte("version");
@@ -17,6 +17,7 @@
 package kpl;
 
 import kpl.crypto.Crypto;
+import kpl.crypto.SigningKey;
 import kpl.db.DbKey;
 import kpl.util.Convert;
 import kpl.util.Filter;
@@ -26,7 +27,6 @@ import org.json.simple.JSONObject;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -80,6 +80,23 @@ final class TransactionImpl implements Transaction {
 
         @Override
         public TransactionImpl build(String secretPhrase) throws kplException.NotValidException {
+            if (secretPhrase == null) {
+                return build(null, null);
+            }
+            SigningKey signingKey = SigningKey.fromSecretPhrase(secretPhrase);
+            try {
+                return build(secretPhrase, signingKey);
+            } finally {
+                signingKey.destroy();
+            }
+        }
+
+        @Override
+        public TransactionImpl build(SigningKey signingKey) throws kplException.NotValidException {
+            return build(null, signingKey);
+        }
+
+        private TransactionImpl build(String secretPhrase, SigningKey signingKey) throws kplException.NotValidException {
             if (timestamp == Integer.MAX_VALUE) {
                 timestamp = Kpl.getEpochTime();
             }
@@ -88,12 +105,12 @@ final class TransactionImpl implements Transaction {
                 this.ecBlockHeight = ecBlock.getHeight();
                 this.ecBlockId = ecBlock.getId();
             }
-            return new TransactionImpl(this, secretPhrase);
+            return new TransactionImpl(this, secretPhrase, signingKey);
         }
 
         @Override
         public TransactionImpl build() throws kplException.NotValidException {
-            return build(null);
+            return build(null, null);
         }
 
         public BuilderImpl recipientId(long recipientId) {
@@ -259,7 +276,7 @@ final class TransactionImpl implements Transaction {
 
 
     /*交易签名生成*/
-    private TransactionImpl(BuilderImpl builder, String secretPhrase) throws kplException.NotValidException {
+    private TransactionImpl(BuilderImpl builder, String secretPhrase, SigningKey signingKey) throws kplException.NotValidException {
 
         this.timestamp = builder.timestamp;
         this.deadline = builder.deadline;
@@ -323,15 +340,15 @@ final class TransactionImpl implements Transaction {
             feeNQT = builder.feeNQT;
         }
 
-        if (builder.signature != null && secretPhrase != null) {
+        if (builder.signature != null && signingKey != null) {
             throw new kplException.NotValidException("Transaction is already signed");
         } else if (builder.signature != null) {
             this.signature = builder.signature;
-        } else if (secretPhrase != null) {
-            if (getSenderPublicKey() != null && ! Arrays.equals(senderPublicKey, Crypto.getPublicKey(secretPhrase))) {
+        } else if (signingKey != null) {
+            if (getSenderPublicKey() != null && ! Arrays.equals(senderPublicKey, signingKey.getPublicKey())) {
                 throw new kplException.NotValidException("Secret phrase doesn't match transaction sender public key");
             }
-            signature = Crypto.sign(bytes(), secretPhrase); //签名生成
+            signature = signingKey.sign(bytes()); //签名生成
             bytes = null;
         } else {
             signature = null;
@@ -499,12 +516,12 @@ final class TransactionImpl implements Transaction {
             }
             if (useNQT()) {
                 byte[] data = zeroSignature(getBytes());
-                byte[] signatureHash = Crypto.sha256().digest(signature);
-                MessageDigest digest = Crypto.sha256();
-                digest.update(data);
-                fullHash = digest.digest(signatureHash);
+                byte[] signatureHash = Crypto.sha256(signature);
+                byte[] hash = new byte[32];
+                Crypto.sha256(data, signatureHash, hash);
+                fullHash = hash;
             } else {
-                fullHash = Crypto.sha256().digest(bytes());
+                fullHash = Crypto.sha256(bytes());
             }
             BigInteger bigInteger = new BigInteger(1, new byte[] {fullHash[7], fullHash[6], fullHash[5], fullHash[4], fullHash[3], fullHash[2], fullHash[1], fullHash[0]});
             id = bigInteger.longValue();
@@ -906,6 +923,46 @@ final class TransactionImpl implements Transaction {
         return hasValidSignature;
     }
 
+    /**
+     * Verify the signatures of a list of transactions as a batch
+     *
+     * Valid signatures are remembered, so a subsequent verifySignature() does not verify
+     * the signature again.  Invalid signatures and transactions without a sender public
+     * key are left for verifySignature() to report.  The transaction bytes and public
+     * keys are obtained on the calling thread.
+     *
+     * @param   transactions        Transactions
+     */
+    static void checkSignatures(List<TransactionImpl> transactions) {
+        List<TransactionImpl> unchecked = new ArrayList<>(transactions.size());
+        for (TransactionImpl transaction : transactions) {
+            if (!transaction.hasValidSignature && transaction.signature != null && transaction.getSenderPublicKey() != null) {
+                unchecked.add(transaction);
+            }
+        }
+        if (unchecked.size() < 2) {
+            return;
+        }
+        int count = unchecked.size();
+        byte[][] signatures = new byte[count][];
+        byte[][] messages = new byte[count][];
+        byte[][] publicKeys = new byte[count][];
+        boolean[] enforceCanonical = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            TransactionImpl transaction = unchecked.get(i);
+            signatures[i] = transaction.signature;
+            messages[i] = transaction.zeroSignature(transaction.getBytes());
+            publicKeys[i] = transaction.getSenderPublicKey();
+            enforceCanonical[i] = transaction.useNQT();
+        }
+        boolean[] results = Crypto.verifyBatch(signatures, messages, publicKeys, enforceCanonical);
+        for (int i = 0; i < count; i++) {
+            if (results[i]) {
+                unchecked.get(i).hasValidSignature = true;
+            }
+        }
+    }
+
     private int getSize() {
         return signatureOffset() + 64  + (version > 0 ? 4 + 4 + 8 : 0) + appendagesSize;
     }
@@ -620,6 +620,7 @@ final class TransactionProcessorImpl implements TransactionProcessor {
         List<TransactionImpl> sendToPeersTransactions = new ArrayList<>();
         List<TransactionImpl> addedUnconfirmedTransactions = new ArrayList<>();
         List<Exception> exceptions = new ArrayList<>();
+        List<TransactionImpl> newTransactions = new ArrayList<>();
         for (Object transactionData : transactionsData) {
             try {
                 TransactionImpl transaction = TransactionImpl.parseTransaction((JSONObject) transactionData);
@@ -627,6 +628,15 @@ final class TransactionProcessorImpl implements TransactionProcessor {
                 if (getUnconfirmedTransaction(transaction.getDbKey()) != null || TransactionDb.hasTransaction(transaction.getId())) {
                     continue;
                 }
+                newTransactions.add(transaction);
+            } catch (kplException.ValidationException|RuntimeException e) {
+                Logger.logDebugMessage(String.format("Invalid transaction from peer: %s", ((JSONObject) transactionData).toJSONString()), e);
+                exceptions.add(e);
+            }
+        }
+        TransactionImpl.checkSignatures(newTransactions);
+        for (TransactionImpl transaction : newTransactions) {
+            try {
                 transaction.validate();
                 UnconfirmedTransaction unconfirmedTransaction = new UnconfirmedTransaction(transaction, arrivalTimestamp);
                 processTransaction(unconfirmedTransaction);
@@ -640,7 +650,7 @@ final class TransactionProcessorImpl implements TransactionProcessor {
 
             } catch (kplException.NotCurrentlyValidException ignore) {
             } catch (kplException.ValidationException|RuntimeException e) {
-                Logger.logDebugMessage(String.format("Invalid transaction from peer: %s", ((JSONObject) transactionData).toJSONString()), e);
+                Logger.logDebugMessage(String.format("Invalid transaction from peer: %s", transaction.getJSONObject().toJSONString()), e);
                 exceptions.add(e);
             }
         }
@@ -30,10 +30,13 @@ import org.bouncycastle.crypto.params.ParametersWithIV;
 import org.bouncycastle.jcajce.provider.digest.Keccak;
 import org.bouncycastle.jcajce.provider.digest.RIPEMD160;
 
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public final class Crypto {
 
@@ -53,6 +56,28 @@ public final class Crypto {
         }
     };
 
+    /**
+     * Per-thread digests used by the one-shot digest methods.  A one-shot method
+     * completes the digest before returning, so the instance is never shared
+     * between two digest computations.
+     */
+    private static final ThreadLocal<MessageDigest> localSha256 = ThreadLocal.withInitial(Crypto::sha256);
+    private static final ThreadLocal<MessageDigest> localSha3 = ThreadLocal.withInitial(Crypto::sha3);
+    private static final ThreadLocal<MessageDigest> localRipemd160 = ThreadLocal.withInitial(Crypto::ripemd160);
+
+    /** Minimum number of signatures verified by each thread in a parallel batch */
+    private static final int VERIFY_BATCH_CHUNK_SIZE = 16;
+
+    /** Per-thread signature verification buffers */
+    private static final ThreadLocal<VerifyBuffers> localVerifyBuffers = ThreadLocal.withInitial(VerifyBuffers::new);
+
+    private static final class VerifyBuffers {
+        private final byte[] Y = new byte[32];
+        private final byte[] v = new byte[32];
+        private final byte[] h = new byte[32];
+        private final byte[] m = new byte[32];
+    }
+
     private Crypto() {} //never
 
     public static SecureRandom getSecureRandom() {
@@ -72,6 +97,91 @@ public final class Crypto {
         return getMessageDigest("SHA-256");
     }
 
+    /**
+     * Return the SHA-256 digest of the input
+     *
+     * @param   input               Input bytes
+     * @return                      Digest
+     */
+    public static byte[] sha256(byte[] input) {
+        byte[] output = new byte[32];
+        sha256(input, output);
+        return output;
+    }
+
+    /**
+     * Store the SHA-256 digest of the input in the output buffer without allocating a digest
+     *
+     * @param   input               Input bytes
+     * @param   output              Output buffer, at least 32 bytes
+     */
+    public static void sha256(byte[] input, byte[] output) {
+        MessageDigest digest = localSha256.get();
+        digest.reset();
+        digest.update(input);
+        complete(digest, output);
+    }
+
+    /**
+     * Store the SHA-256 digest of the concatenated inputs in the output buffer without allocating a digest
+     *
+     * @param   input1              First input bytes
+     * @param   input2              Second input bytes
+     * @param   output              Output buffer, at least 32 bytes
+     */
+    public static void sha256(byte[] input1, byte[] input2, byte[] output) {
+        MessageDigest digest = localSha256.get();
+        digest.reset();
+        digest.update(input1);
+        digest.update(input2);
+        complete(digest, output);
+    }
+
+    /**
+     * Return the SHA3 (Keccak-256) digest of the input
+     *
+     * @param   input               Input bytes
+     * @return                      Digest
+     */
+    public static byte[] sha3(byte[] input) {
+        MessageDigest digest = localSha3.get();
+        digest.reset();
+        return digest.digest(input);
+    }
+
+    /**
+     * Store the SHA3 (Keccak-256) digest of the input in the output buffer without allocating a digest
+     *
+     * @param   input               Input bytes
+     * @param   output              Output buffer, at least 32 bytes
+     */
+    public static void sha3(byte[] input, byte[] output) {
+        MessageDigest digest = localSha3.get();
+        digest.reset();
+        digest.update(input);
+        complete(digest, output);
+    }
+
+    /**
+     * Return the RIPEMD-160 digest of the input
+     *
+     * @param   input               Input bytes
+     * @return                      Digest
+     */
+    public static byte[] ripemd160(byte[] input) {
+        MessageDigest digest = localRipemd160.get();
+        digest.reset();
+        return digest.digest(input);
+    }
+
+    private static void complete(MessageDigest digest, byte[] output) {
+        try {
+            digest.digest(output, 0, 32);
+        } catch (DigestException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
     public static MessageDigest ripemd160() {
         return new RIPEMD160.Digest();
     }
@@ -97,7 +207,7 @@ public final class Crypto {
 
     public static byte[] getPublicKey(String secretPhrase) {
         byte[] publicKey = new byte[32];
-        Curve25519.keygen(publicKey, null, Crypto.sha256().digest(Convert.toBytes(secretPhrase)));
+        Curve25519.keygen(publicKey, null, sha256(Convert.toBytes(secretPhrase)));
         return publicKey;
     }
 
@@ -108,7 +218,7 @@ public final class Crypto {
     }
 
     public static byte[] getPrivateKey(String secretPhrase) {
-        byte[] s = Crypto.sha256().digest(Convert.toBytes(secretPhrase));
+        byte[] s = sha256(Convert.toBytes(secretPhrase));
         Curve25519.clamp(s);
         return s;
     }
@@ -120,30 +230,84 @@ public final class Crypto {
     public static byte[] sign(byte[] message, String secretPhrase) {
         byte[] P = new byte[32];
         byte[] s = new byte[32];
-        MessageDigest digest = Crypto.sha256();
-        Curve25519.keygen(P, s, digest.digest(Convert.toBytes(secretPhrase)));
+        Curve25519.keygen(P, s, sha256(Convert.toBytes(secretPhrase)));
+        try {
+            return sign(message, s);
+        } finally {
+            Arrays.fill(s, (byte)0);
+        }
+    }
 
-        byte[] m = digest.digest(message);
+    static byte[] sign(byte[] message, byte[] s) {
+        byte[] m = sha256(message);
+        byte[] x = new byte[32];
+        byte[] h = new byte[32];
+        try {
+            sha256(m, s, x);
 
-        digest.update(m);
-        byte[] x = digest.digest(s);
+            byte[] Y = new byte[32];
+            Curve25519.keygen(Y, null, x);
 
-        byte[] Y = new byte[32];
-        Curve25519.keygen(Y, null, x);
+            sha256(m, Y, h);
 
-        digest.update(m);
-        byte[] h = digest.digest(Y);
+            byte[] v = new byte[32];
+            Curve25519.sign(v, h, x, s);
+
+            byte[] signature = new byte[64];
+            System.arraycopy(v, 0, signature, 0, 32);
+            System.arraycopy(h, 0, signature, 32, 32);
+            return signature;
+        } finally {
+            // x is the per-signature secret, the private key can be computed from x and the signature
+            Arrays.fill(x, (byte)0);
+            Arrays.fill(h, (byte)0);
+        }
+    }
 
-        byte[] v = new byte[32];
-        Curve25519.sign(v, h, x, s);
+    public static boolean verify(byte[] signature, byte[] message, byte[] publicKey, boolean enforceCanonical) {
+        return verify(signature, message, publicKey, enforceCanonical, localVerifyBuffers.get());
+    }
 
-        byte[] signature = new byte[64];
-        System.arraycopy(v, 0, signature, 0, 32);
-        System.arraycopy(h, 0, signature, 32, 32);
-        return signature;
+    /**
+     * Verify a batch of signatures
+     *
+     * Each signature is verified as by verify(), and the batch is divided among the
+     * common fork-join pool threads when it has at least two chunks of work.  Each
+     * thread reuses its own verification buffers for all of its signatures.
+     *
+     * @param   signatures          Signatures
+     * @param   messages            Signed messages
+     * @param   publicKeys          Signer public keys
+     * @param   enforceCanonical    TRUE to reject a non-canonical signature or public key
+     * @return                      Verification result for each signature
+     */
+    public static boolean[] verifyBatch(byte[][] signatures, byte[][] messages, byte[][] publicKeys, boolean[] enforceCanonical) {
+        int count = signatures.length;
+        if (messages.length != count || publicKeys.length != count || enforceCanonical.length != count) {
+            throw new IllegalArgumentException("Signature batch arrays must have the same length");
+        }
+        boolean[] results = new boolean[count];
+        int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism(), count / VERIFY_BATCH_CHUNK_SIZE);
+        if (chunks < 2) {
+            verifyRange(signatures, messages, publicKeys, enforceCanonical, results, 0, count);
+        } else {
+            IntStream.range(0, chunks).parallel().forEach(chunk ->
+                    verifyRange(signatures, messages, publicKeys, enforceCanonical, results,
+                            (int)((long)count * chunk / chunks), (int)((long)count * (chunk + 1) / chunks)));
+        }
+        return results;
     }
 
-    public static boolean verify(byte[] signature, byte[] message, byte[] publicKey, boolean enforceCanonical) {
+    private static void verifyRange(byte[][] signatures, byte[][] messages, byte[][] publicKeys, boolean[] enforceCanonical,
+                                    boolean[] results, int start, int end) {
+        VerifyBuffers buffers = localVerifyBuffers.get();
+        for (int i = start; i < end; i++) {
+            results[i] = verify(signatures[i], messages[i], publicKeys[i], enforceCanonical[i], buffers);
+        }
+    }
+
+    private static boolean verify(byte[] signature, byte[] message, byte[] publicKey, boolean enforceCanonical,
+                                  VerifyBuffers buffers) {
         try {
             if (signature.length != 64) {
                 return false;
@@ -158,19 +322,18 @@ public final class Crypto {
                 return false;
             }
 
-            byte[] Y = new byte[32];
-            byte[] v = new byte[32];
+            byte[] Y = buffers.Y;
+            byte[] v = buffers.v;
             System.arraycopy(signature, 0, v, 0, 32);
-            byte[] h = new byte[32];
+            byte[] h = buffers.h;
             System.arraycopy(signature, 32, h, 0, 32);
             Curve25519.verify(Y, v, h, publicKey);
 
-            MessageDigest digest = Crypto.sha256();
-            byte[] m = digest.digest(message);
-            digest.update(m);
-            byte[] h2 = digest.digest(Y);
+            byte[] m = buffers.m;
+            sha256(message, m);
+            sha256(m, Y, m);
 
-            return Arrays.equals(h, h2);
+            return Arrays.equals(h, m);
         } catch (RuntimeException e) {
             Logger.logErrorMessage("Error verifying signature", e);
             return false;
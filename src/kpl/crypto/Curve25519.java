@@ -1,5 +1,7 @@
 package kpl.crypto;
 
+import java.util.Arrays;
+
 /* Ported from C to Java by Dmitry Skiba [sahn0], 23/02/08.
  * Original: http://cds.xs4all.nl:8081/ecdh/
  */
@@ -9,6 +11,11 @@ package kpl.crypto;
  *
  * Based on work by Daniel J Bernstein, http://cr.yp.to/ecdh.html
  */
+/* Field elements are held in long[] limbs taken from a per-thread workspace, so
+ * no objects are allocated after the first call on a thread, and the key
+ * agreement ladder uses a constant time conditional swap.  The arithmetic is
+ * otherwise unchanged from the port, so all results are identical.
+ */
 final class Curve25519 {
 
     /* key size */
@@ -124,17 +131,18 @@ final class Curve25519 {
      */
     public static boolean sign(byte[] v, byte[] h, byte[] x, byte[] s) {
         // v = (x - h) s  mod q
-        int w, i;
-        byte[] h1 = new byte[32], x1 = new byte[32];
-        byte[] tmp1 = new byte[64];
-        byte[] tmp2 = new byte[64];
+        Workspace w = workspace.get();
+        int i, z;
+        byte[] h1 = w.h1, x1 = w.x1b;
+        byte[] tmp1 = w.tmp1;
+        byte[] tmp2 = w.tmp2;
 
         // Don't clobber the arguments, be nice!
         cpy32(h1, h);
         cpy32(x1, x);
 
         // Reduce modulo group order
-        byte[] tmp3=new byte[32];
+        byte[] tmp3 = w.tmp3;
         divmod(tmp3, h1, 32, ORDER, 32);
         divmod(tmp3, x1, 32, ORDER, 32);
 
@@ -146,12 +154,14 @@ final class Curve25519 {
         mula_small(v, v , 0, ORDER, 32, 1);
 
         // tmp1 = (x-h)*s mod q
+        Arrays.fill(tmp1, (byte)0);
         mula32(tmp1, v, s, 32, 1);
         divmod(tmp2, tmp1, 64, ORDER, 32);
 
-        for (w = 0, i = 0; i < 32; i++)
-            w |= v[i] = tmp1[i];
-        return w != 0;
+        for (z = 0, i = 0; i < 32; i++)
+            z |= v[i] = tmp1[i];
+        w.clear();
+        return z != 0;
     }
 
     /* Signature verification primitive, calculates Y = vP + hG
@@ -162,14 +172,9 @@ final class Curve25519 {
      */
     public static void verify(byte[] Y, byte[] v, byte[] h, byte[] P) {
         /* Y = v abs(P) + h G  */
-        byte[] d=new byte[32];
-        long10[]
-                p=new long10[]{new long10(),new long10()},
-                s=new long10[]{new long10(),new long10()},
-                yx=new long10[]{new long10(),new long10(),new long10()},
-                yz=new long10[]{new long10(),new long10(),new long10()},
-                t1=new long10[]{new long10(),new long10(),new long10()},
-                t2=new long10[]{new long10(),new long10(),new long10()};
+        Workspace w = workspace.get();
+        byte[] d = w.d;
+        long[][] p = w.p, s = w.s, yx = w.yx, yz = w.yz, t1 = w.vt1, t2 = w.vt2;
 
         int vi = 0, hi = 0, di = 0, nvh=0, i, j, k;
 
@@ -184,22 +189,22 @@ final class Curve25519 {
         /* s[1] = (Py^2 + Gy^2 + 2 Py Gy)/(Px - Gx)^2 - Px - Gx - 486662  */
 
         x_to_y2(t1[0], t2[0], p[1]);	/* t2[0] = Py^2  */
-        sqrt(t1[0], t2[0]);	/* t1[0] = Py or -Py  */
+        sqrt(w, t1[0], t2[0]);	/* t1[0] = Py or -Py  */
         j = is_negative(t1[0]);		/*      ... check which  */
-        t2[0]._0 += 39420360;		/* t2[0] = Py^2 + Gy^2  */
+        t2[0][0] += 39420360;		/* t2[0] = Py^2 + Gy^2  */
         mul(t2[1], BASE_2Y, t1[0]);/* t2[1] = 2 Py Gy or -2 Py Gy  */
         sub(t1[j], t2[0], t2[1]);	/* t1[0] = Py^2 + Gy^2 - 2 Py Gy  */
         add(t1[1-j], t2[0], t2[1]);/* t1[1] = Py^2 + Gy^2 + 2 Py Gy  */
         cpy(t2[0], p[1]);		/* t2[0] = Px  */
-        t2[0]._0 -= 9;			/* t2[0] = Px - Gx  */
+        t2[0][0] -= 9;			/* t2[0] = Px - Gx  */
         sqr(t2[1], t2[0]);		/* t2[1] = (Px - Gx)^2  */
-        recip(t2[0], t2[1], 0);	/* t2[0] = 1/(Px - Gx)^2  */
+        recip(w, t2[0], t2[1], 0);	/* t2[0] = 1/(Px - Gx)^2  */
         mul(s[0], t1[0], t2[0]);	/* s[0] = t1[0]/(Px - Gx)^2  */
         sub(s[0], s[0], p[1]);	/* s[0] = t1[0]/(Px - Gx)^2 - Px  */
-        s[0]._0 -= 9 + 486662;		/* s[0] = X(P+G)  */
+        s[0][0] -= 9 + 486662;		/* s[0] = X(P+G)  */
         mul(s[1], t1[1], t2[0]);	/* s[1] = t1[1]/(Px - Gx)^2  */
         sub(s[1], s[1], p[1]);	/* s[1] = t1[1]/(Px - Gx)^2 - Px  */
-        s[1]._0 -= 9 + 486662;		/* s[1] = X(P-G)  */
+        s[1][0] -= 9 + 486662;		/* s[1] = X(P-G)  */
         mul_small(s[0], s[0], 1);	/* reduce s[0] */
         mul_small(s[1], s[1], 1);	/* reduce s[1] */
 
@@ -239,7 +244,8 @@ final class Curve25519 {
         vi = 0;
         hi = 0;
 
-        /* and go for it! */
+        /* and go for it!
+         * v and h are public, so the table lookups need not be constant time */
         for (i = 32; i--!=0; ) {
             vi = (vi << 8) | (v[i] & 0xFF);
             hi = (hi << 8) | (h[i] & 0xFF);
@@ -264,16 +270,17 @@ final class Curve25519 {
         }
 
         k = (vi & 1) + (hi & 1);
-        recip(t1[0], yz[k], 0);
+        recip(w, t1[0], yz[k], 0);
         mul(t1[1], yx[k], t1[0]);
 
         pack(t1[1], Y);
     }
 
     public static boolean isCanonicalSignature(byte[] v) {
-        byte[] vCopy = java.util.Arrays.copyOfRange(v, 0, 32);
-        byte[] tmp = new byte[32];
-        divmod(tmp, vCopy, 32, ORDER, 32);
+        Workspace w = workspace.get();
+        byte[] vCopy = w.h1;
+        cpy32(vCopy, v);
+        divmod(w.tmp3, vCopy, 32, ORDER, 32);
         for (int i = 0; i < 32; i++){
             if (v[i] != vCopy[i])
                 return false;
@@ -285,9 +292,10 @@ final class Curve25519 {
         if ( publicKey.length != 32 ) {
             return false;
         }
-        long10 publicKeyUnpacked = new long10();
+        Workspace w = workspace.get();
+        long[] publicKeyUnpacked = w.dx;
         unpack(publicKeyUnpacked, publicKey);
-        byte[] publicKeyCopy = new byte[32];
+        byte[] publicKeyCopy = w.h1;
         pack(publicKeyUnpacked, publicKeyCopy);
         for (int i = 0; i < 32; i++){
             if (publicKeyCopy[i] != publicKey[i]) {
@@ -300,20 +308,42 @@ final class Curve25519 {
 
     ///////////////////////////////////////////////////////////////////////////
 
-    /* sahn0:
-     * Using this class instead of long[10] to avoid bounds checks. */
-    private static final class long10 {
-        public long10() {}
-        public long10(
-                long _0, long _1, long _2, long _3, long _4,
-                long _5, long _6, long _7, long _8, long _9)
-        {
-            this._0=_0; this._1=_1; this._2=_2;
-            this._3=_3; this._4=_4; this._5=_5;
-            this._6=_6; this._7=_7; this._8=_8;
-            this._9=_9;
+    /* Field elements are long[10] arrays in radix 2^25.5, the same representation
+     * and the same operation sequence as the original long10 implementation, so the
+     * results are identical bit for bit.  All temporaries are held in a workspace
+     * which is allocated once per thread and reused by every call. */
+    private static final ThreadLocal<Workspace> workspace = ThreadLocal.withInitial(Workspace::new);
+
+    private static final class Workspace {
+        /* core */
+        private final long[] dx = new long[10], t1 = new long[10], t2 = new long[10],
+                t3 = new long[10], t4 = new long[10];
+        private final long[] x0 = new long[10], z0 = new long[10], x1 = new long[10], z1 = new long[10];
+        /* recip */
+        private final long[] r0 = new long[10], r1 = new long[10], r2 = new long[10],
+                r3 = new long[10], r4 = new long[10];
+        /* sqrt */
+        private final long[] sv = new long[10], s1 = new long[10], s2 = new long[10];
+        /* verify */
+        private final long[][] p = new long[2][10], s = new long[2][10], yx = new long[3][10],
+                yz = new long[3][10];
+        private final long[][] vt1 = new long[3][10], vt2 = new long[3][10];
+        private final byte[] d = new byte[32];
+        /* radix 2^8 math */
+        private final byte[] h1 = new byte[32], x1b = new byte[32], tmp3 = new byte[32], q = new byte[32];
+        private final byte[] tmp1 = new byte[64], tmp2 = new byte[64], e1 = new byte[64], e2 = new byte[64];
+
+        /* Clear the scalar temporaries, which hold private key material after sign() and keygen() */
+        private void clear() {
+            Arrays.fill(h1, (byte)0);
+            Arrays.fill(x1b, (byte)0);
+            Arrays.fill(tmp1, (byte)0);
+            Arrays.fill(tmp2, (byte)0);
+            Arrays.fill(tmp3, (byte)0);
+            Arrays.fill(q, (byte)0);
+            Arrays.fill(e1, (byte)0);
+            Arrays.fill(e2, (byte)0);
         }
-        public long _0,_1,_2,_3,_4,_5,_6,_7,_8,_9;
     }
 
     /********************* radix 2^8 math *********************/
@@ -391,8 +421,9 @@ final class Curve25519 {
      * Also, the returned buffer contains the inverse of a mod b,
      * as 32-byte signed.
      * x and y must have 64 bytes space for temporary use.
+     * temp receives the quotients and must be 32 bytes.
      * requires that a[-1] and b[-1] are valid memory locations  */
-    private static byte[] egcd32(byte[] x,byte[] y,byte[] a,byte[] b) {
+    private static byte[] egcd32(byte[] x,byte[] y,byte[] a,byte[] b,byte[] temp) {
         int an, bn = 32, qn, i;
         for (i = 0; i < 32; i++)
             x[i] = y[i] = 0;
@@ -400,7 +431,6 @@ final class Curve25519 {
         an = numsize(a, 32);
         if (an==0)
             return y;	/* division by zero */
-        byte[] temp=new byte[32];
         while (true) {
             qn = bn - an + 1;
             divmod(temp, b, bn, a, an);
@@ -424,36 +454,36 @@ final class Curve25519 {
     private static final int P26=67108863;	/* (1 << 26) - 1 */
 
     /* Convert to internal format from little-endian byte format */
-    private static void unpack(long10 x,byte[] m) {
-        x._0 = ((m[0] & 0xFF))         | ((m[1] & 0xFF))<<8 |
+    private static void unpack(long[] x,byte[] m) {
+        x[0] = ((m[0] & 0xFF))         | ((m[1] & 0xFF))<<8 |
                 (m[2] & 0xFF)<<16      | ((m[3] & 0xFF)& 3)<<24;
-        x._1 = ((m[3] & 0xFF)&~ 3)>>2  | (m[4] & 0xFF)<<6 |
+        x[1] = ((m[3] & 0xFF)&~ 3)>>2  | (m[4] & 0xFF)<<6 |
                 (m[5] & 0xFF)<<14 | ((m[6] & 0xFF)& 7)<<22;
-        x._2 = ((m[6] & 0xFF)&~ 7)>>3  | (m[7] & 0xFF)<<5 |
+        x[2] = ((m[6] & 0xFF)&~ 7)>>3  | (m[7] & 0xFF)<<5 |
                 (m[8] & 0xFF)<<13 | ((m[9] & 0xFF)&31)<<21;
-        x._3 = ((m[9] & 0xFF)&~31)>>5  | (m[10] & 0xFF)<<3 |
+        x[3] = ((m[9] & 0xFF)&~31)>>5  | (m[10] & 0xFF)<<3 |
                 (m[11] & 0xFF)<<11 | ((m[12] & 0xFF)&63)<<19;
-        x._4 = ((m[12] & 0xFF)&~63)>>6 | (m[13] & 0xFF)<<2 |
+        x[4] = ((m[12] & 0xFF)&~63)>>6 | (m[13] & 0xFF)<<2 |
                 (m[14] & 0xFF)<<10 |  (m[15] & 0xFF)    <<18;
-        x._5 =  (m[16] & 0xFF)         | (m[17] & 0xFF)<<8 |
+        x[5] =  (m[16] & 0xFF)         | (m[17] & 0xFF)<<8 |
                 (m[18] & 0xFF)<<16 | ((m[19] & 0xFF)& 1)<<24;
-        x._6 = ((m[19] & 0xFF)&~ 1)>>1 | (m[20] & 0xFF)<<7 |
+        x[6] = ((m[19] & 0xFF)&~ 1)>>1 | (m[20] & 0xFF)<<7 |
                 (m[21] & 0xFF)<<15 | ((m[22] & 0xFF)& 7)<<23;
-        x._7 = ((m[22] & 0xFF)&~ 7)>>3 | (m[23] & 0xFF)<<5 |
+        x[7] = ((m[22] & 0xFF)&~ 7)>>3 | (m[23] & 0xFF)<<5 |
                 (m[24] & 0xFF)<<13 | ((m[25] & 0xFF)&15)<<21;
-        x._8 = ((m[25] & 0xFF)&~15)>>4 | (m[26] & 0xFF)<<4 |
+        x[8] = ((m[25] & 0xFF)&~15)>>4 | (m[26] & 0xFF)<<4 |
                 (m[27] & 0xFF)<<12 | ((m[28] & 0xFF)&63)<<20;
-        x._9 = ((m[28] & 0xFF)&~63)>>6 | (m[29] & 0xFF)<<2 |
+        x[9] = ((m[28] & 0xFF)&~63)>>6 | (m[29] & 0xFF)<<2 |
                 (m[30] & 0xFF)<<10 |  (m[31] & 0xFF)    <<18;
     }
 
     /* Check if reduced-form input >= 2^255-19 */
-    private static boolean is_overflow(long10 x) {
+    private static boolean is_overflow(long[] x) {
         return (
-                ((x._0 > P26-19)) &&
-                        ((x._1 & x._3 & x._5 & x._7 & x._9) == P25) &&
-                        ((x._2 & x._4 & x._6 & x._8) == P26)
-        ) || (x._9 > P25);
+                ((x[0] > P26-19)) &&
+                        ((x[1] & x[3] & x[5] & x[7] & x[9]) == P25) &&
+                        ((x[2] & x[4] & x[6] & x[8]) == P26)
+        ) || (x[9] > P25);
     }
 
     /* Convert from internal format to little-endian byte format.  The
@@ -461,48 +491,48 @@ final class Curve25519 {
      *     unpack, mul, sqr
      *     set --  if input in range 0 .. P25
      * If you're unsure if the number is reduced, first multiply it by 1.  */
-    private static void pack(long10 x,byte[] m) {
+    private static void pack(long[] x,byte[] m) {
         int ld = 0, ud = 0;
         long t;
-        ld = (is_overflow(x)?1:0) - ((x._9 < 0)?1:0);
+        ld = (is_overflow(x)?1:0) - ((x[9] < 0)?1:0);
         ud = ld * -(P25+1);
         ld *= 19;
-        t = ld + x._0 + (x._1 << 26);
+        t = ld + x[0] + (x[1] << 26);
         m[ 0] = (byte)t;
         m[ 1] = (byte)(t >> 8);
         m[ 2] = (byte)(t >> 16);
         m[ 3] = (byte)(t >> 24);
-        t = (t >> 32) + (x._2 << 19);
+        t = (t >> 32) + (x[2] << 19);
         m[ 4] = (byte)t;
         m[ 5] = (byte)(t >> 8);
         m[ 6] = (byte)(t >> 16);
         m[ 7] = (byte)(t >> 24);
-        t = (t >> 32) + (x._3 << 13);
+        t = (t >> 32) + (x[3] << 13);
         m[ 8] = (byte)t;
         m[ 9] = (byte)(t >> 8);
         m[10] = (byte)(t >> 16);
         m[11] = (byte)(t >> 24);
-        t = (t >> 32) + (x._4 <<  6);
+        t = (t >> 32) + (x[4] <<  6);
         m[12] = (byte)t;
         m[13] = (byte)(t >> 8);
         m[14] = (byte)(t >> 16);
         m[15] = (byte)(t >> 24);
-        t = (t >> 32) + x._5 + (x._6 << 25);
+        t = (t >> 32) + x[5] + (x[6] << 25);
         m[16] = (byte)t;
         m[17] = (byte)(t >> 8);
         m[18] = (byte)(t >> 16);
         m[19] = (byte)(t >> 24);
-        t = (t >> 32) + (x._7 << 19);
+        t = (t >> 32) + (x[7] << 19);
         m[20] = (byte)t;
         m[21] = (byte)(t >> 8);
         m[22] = (byte)(t >> 16);
         m[23] = (byte)(t >> 24);
-        t = (t >> 32) + (x._8 << 12);
+        t = (t >> 32) + (x[8] << 12);
         m[24] = (byte)t;
         m[25] = (byte)(t >> 8);
         m[26] = (byte)(t >> 16);
         m[27] = (byte)(t >> 24);
-        t = (t >> 32) + ((x._9 + ud) << 6);
+        t = (t >> 32) + ((x[9] + ud) << 6);
         m[28] = (byte)t;
         m[29] = (byte)(t >> 8);
         m[30] = (byte)(t >> 16);
@@ -510,198 +540,193 @@ final class Curve25519 {
     }
 
     /* Copy a number */
-    private static void cpy(long10 out, long10 in) {
-        out._0=in._0;	out._1=in._1;
-        out._2=in._2;	out._3=in._3;
-        out._4=in._4;	out._5=in._5;
-        out._6=in._6;	out._7=in._7;
-        out._8=in._8;	out._9=in._9;
+    private static void cpy(long[] out, long[] in) {
+        out[0]=in[0];	out[1]=in[1];
+        out[2]=in[2];	out[3]=in[3];
+        out[4]=in[4];	out[5]=in[5];
+        out[6]=in[6];	out[7]=in[7];
+        out[8]=in[8];	out[9]=in[9];
     }
 
     /* Set a number to value, which must be in range -185861411 .. 185861411 */
-    private static void set(long10 out, int in) {
-        out._0=in;	out._1=0;
-        out._2=0;	out._3=0;
-        out._4=0;	out._5=0;
-        out._6=0;	out._7=0;
-        out._8=0;	out._9=0;
+    private static void set(long[] out, int in) {
+        out[0]=in;	out[1]=0;
+        out[2]=0;	out[3]=0;
+        out[4]=0;	out[5]=0;
+        out[6]=0;	out[7]=0;
+        out[8]=0;	out[9]=0;
     }
 
     /* Add/subtract two numbers.  The inputs must be in reduced form, and the
      * output isn't, so to do another addition or subtraction on the output,
      * first multiply it by one to reduce it. */
-    private static void add(long10 xy, long10 x, long10 y) {
-        xy._0 = x._0 + y._0;	xy._1 = x._1 + y._1;
-        xy._2 = x._2 + y._2;	xy._3 = x._3 + y._3;
-        xy._4 = x._4 + y._4;	xy._5 = x._5 + y._5;
-        xy._6 = x._6 + y._6;	xy._7 = x._7 + y._7;
-        xy._8 = x._8 + y._8;	xy._9 = x._9 + y._9;
+    private static void add(long[] xy, long[] x, long[] y) {
+        xy[0] = x[0] + y[0];	xy[1] = x[1] + y[1];
+        xy[2] = x[2] + y[2];	xy[3] = x[3] + y[3];
+        xy[4] = x[4] + y[4];	xy[5] = x[5] + y[5];
+        xy[6] = x[6] + y[6];	xy[7] = x[7] + y[7];
+        xy[8] = x[8] + y[8];	xy[9] = x[9] + y[9];
     }
-    private static void sub(long10 xy, long10 x, long10 y) {
-        xy._0 = x._0 - y._0;	xy._1 = x._1 - y._1;
-        xy._2 = x._2 - y._2;	xy._3 = x._3 - y._3;
-        xy._4 = x._4 - y._4;	xy._5 = x._5 - y._5;
-        xy._6 = x._6 - y._6;	xy._7 = x._7 - y._7;
-        xy._8 = x._8 - y._8;	xy._9 = x._9 - y._9;
+    private static void sub(long[] xy, long[] x, long[] y) {
+        xy[0] = x[0] - y[0];	xy[1] = x[1] - y[1];
+        xy[2] = x[2] - y[2];	xy[3] = x[3] - y[3];
+        xy[4] = x[4] - y[4];	xy[5] = x[5] - y[5];
+        xy[6] = x[6] - y[6];	xy[7] = x[7] - y[7];
+        xy[8] = x[8] - y[8];	xy[9] = x[9] - y[9];
     }
 
     /* Multiply a number by a small integer in range -185861411 .. 185861411.
      * The output is in reduced form, the input x need not be.  x and xy may point
      * to the same buffer. */
-    private static long10 mul_small(long10 xy, long10 x, long y) {
+    private static long[] mul_small(long[] xy, long[] x, long y) {
         long t;
-        t = (x._8*y);
-        xy._8 = (t & ((1 << 26) - 1));
-        t = (t >> 26) + (x._9*y);
-        xy._9 = (t & ((1 << 25) - 1));
-        t = 19 * (t >> 25) + (x._0*y);
-        xy._0 = (t & ((1 << 26) - 1));
-        t = (t >> 26) + (x._1*y);
-        xy._1 = (t & ((1 << 25) - 1));
-        t = (t >> 25) + (x._2*y);
-        xy._2 = (t & ((1 << 26) - 1));
-        t = (t >> 26) + (x._3*y);
-        xy._3 = (t & ((1 << 25) - 1));
-        t = (t >> 25) + (x._4*y);
-        xy._4 = (t & ((1 << 26) - 1));
-        t = (t >> 26) + (x._5*y);
-        xy._5 = (t & ((1 << 25) - 1));
-        t = (t >> 25) + (x._6*y);
-        xy._6 = (t & ((1 << 26) - 1));
-        t = (t >> 26) + (x._7*y);
-        xy._7 = (t & ((1 << 25) - 1));
-        t = (t >> 25) + xy._8;
-        xy._8 = (t & ((1 << 26) - 1));
-        xy._9 += (t >> 26);
+        t = (x[8]*y);
+        xy[8] = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x[9]*y);
+        xy[9] = (t & ((1 << 25) - 1));
+        t = 19 * (t >> 25) + (x[0]*y);
+        xy[0] = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x[1]*y);
+        xy[1] = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x[2]*y);
+        xy[2] = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x[3]*y);
+        xy[3] = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x[4]*y);
+        xy[4] = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x[5]*y);
+        xy[5] = (t & ((1 << 25) - 1));
+        t = (t >> 25) + (x[6]*y);
+        xy[6] = (t & ((1 << 26) - 1));
+        t = (t >> 26) + (x[7]*y);
+        xy[7] = (t & ((1 << 25) - 1));
+        t = (t >> 25) + xy[8];
+        xy[8] = (t & ((1 << 26) - 1));
+        xy[9] += (t >> 26);
         return xy;
     }
 
     /* Multiply two numbers.  The output is in reduced form, the inputs need not
      * be. */
-    private static long10 mul(long10 xy, long10 x, long10 y) {
+    private static long[] mul(long[] xy, long[] x, long[] y) {
         /* sahn0:
          * Using local variables to avoid class access.
          * This seem to improve performance a bit...
          */
         long
-                x_0=x._0,x_1=x._1,x_2=x._2,x_3=x._3,x_4=x._4,
-                x_5=x._5,x_6=x._6,x_7=x._7,x_8=x._8,x_9=x._9;
+                x_0=x[0],x_1=x[1],x_2=x[2],x_3=x[3],x_4=x[4],
+                x_5=x[5],x_6=x[6],x_7=x[7],x_8=x[8],x_9=x[9];
         long
-                y_0=y._0,y_1=y._1,y_2=y._2,y_3=y._3,y_4=y._4,
-                y_5=y._5,y_6=y._6,y_7=y._7,y_8=y._8,y_9=y._9;
+                y_0=y[0],y_1=y[1],y_2=y[2],y_3=y[3],y_4=y[4],
+                y_5=y[5],y_6=y[6],y_7=y[7],y_8=y[8],y_9=y[9];
         long t;
         t = (x_0*y_8) + (x_2*y_6) + (x_4*y_4) + (x_6*y_2) +
                 (x_8*y_0) + 2 * ((x_1*y_7) + (x_3*y_5) +
                 (x_5*y_3) + (x_7*y_1)) + 38 *
                 (x_9*y_9);
-        xy._8 = (t & ((1 << 26) - 1));
+        xy[8] = (t & ((1 << 26) - 1));
         t = (t >> 26) + (x_0*y_9) + (x_1*y_8) + (x_2*y_7) +
                 (x_3*y_6) + (x_4*y_5) + (x_5*y_4) +
                 (x_6*y_3) + (x_7*y_2) + (x_8*y_1) +
                 (x_9*y_0);
-        xy._9 = (t & ((1 << 25) - 1));
+        xy[9] = (t & ((1 << 25) - 1));
         t = (x_0*y_0) + 19 * ((t >> 25) + (x_2*y_8) + (x_4*y_6)
                 + (x_6*y_4) + (x_8*y_2)) + 38 *
                 ((x_1*y_9) + (x_3*y_7) + (x_5*y_5) +
                         (x_7*y_3) + (x_9*y_1));
-        xy._0 = (t & ((1 << 26) - 1));
+        xy[0] = (t & ((1 << 26) - 1));
         t = (t >> 26) + (x_0*y_1) + (x_1*y_0) + 19 * ((x_2*y_9)
                 + (x_3*y_8) + (x_4*y_7) + (x_5*y_6) +
                 (x_6*y_5) + (x_7*y_4) + (x_8*y_3) +
                 (x_9*y_2));
-        xy._1 = (t & ((1 << 25) - 1));
+        xy[1] = (t & ((1 << 25) - 1));
         t = (t >> 25) + (x_0*y_2) + (x_2*y_0) + 19 * ((x_4*y_8)
                 + (x_6*y_6) + (x_8*y_4)) + 2 * (x_1*y_1)
                 + 38 * ((x_3*y_9) + (x_5*y_7) +
                 (x_7*y_5) + (x_9*y_3));
-        xy._2 = (t & ((1 << 26) - 1));
+        xy[2] = (t & ((1 << 26) - 1));
         t = (t >> 26) + (x_0*y_3) + (x_1*y_2) + (x_2*y_1) +
                 (x_3*y_0) + 19 * ((x_4*y_9) + (x_5*y_8) +
                 (x_6*y_7) + (x_7*y_6) +
                 (x_8*y_5) + (x_9*y_4));
-        xy._3 = (t & ((1 << 25) - 1));
+        xy[3] = (t & ((1 << 25) - 1));
         t = (t >> 25) + (x_0*y_4) + (x_2*y_2) + (x_4*y_0) + 19 *
                 ((x_6*y_8) + (x_8*y_6)) + 2 * ((x_1*y_3) +
                 (x_3*y_1)) + 38 *
                 ((x_5*y_9) + (x_7*y_7) + (x_9*y_5));
-        xy._4 = (t & ((1 << 26) - 1));
+        xy[4] = (t & ((1 << 26) - 1));
         t = (t >> 26) + (x_0*y_5) + (x_1*y_4) + (x_2*y_3) +
                 (x_3*y_2) + (x_4*y_1) + (x_5*y_0) + 19 *
                 ((x_6*y_9) + (x_7*y_8) + (x_8*y_7) +
                         (x_9*y_6));
-        xy._5 = (t & ((1 << 25) - 1));
+        xy[5] = (t & ((1 << 25) - 1));
         t = (t >> 25) + (x_0*y_6) + (x_2*y_4) + (x_4*y_2) +
                 (x_6*y_0) + 19 * (x_8*y_8) + 2 * ((x_1*y_5) +
                 (x_3*y_3) + (x_5*y_1)) + 38 *
                 ((x_7*y_9) + (x_9*y_7));
-        xy._6 = (t & ((1 << 26) - 1));
+        xy[6] = (t & ((1 << 26) - 1));
         t = (t >> 26) + (x_0*y_7) + (x_1*y_6) + (x_2*y_5) +
                 (x_3*y_4) + (x_4*y_3) + (x_5*y_2) +
                 (x_6*y_1) + (x_7*y_0) + 19 * ((x_8*y_9) +
                 (x_9*y_8));
-        xy._7 = (t & ((1 << 25) - 1));
-        t = (t >> 25) + xy._8;
-        xy._8 = (t & ((1 << 26) - 1));
-        xy._9 += (t >> 26);
+        xy[7] = (t & ((1 << 25) - 1));
+        t = (t >> 25) + xy[8];
+        xy[8] = (t & ((1 << 26) - 1));
+        xy[9] += (t >> 26);
         return xy;
     }
 
     /* Square a number.  Optimization of  mul25519(x2, x, x)  */
-    private static long10 sqr(long10 x2, long10 x) {
+    private static long[] sqr(long[] x2, long[] x) {
         long
-                x_0=x._0,x_1=x._1,x_2=x._2,x_3=x._3,x_4=x._4,
-                x_5=x._5,x_6=x._6,x_7=x._7,x_8=x._8,x_9=x._9;
+                x_0=x[0],x_1=x[1],x_2=x[2],x_3=x[3],x_4=x[4],
+                x_5=x[5],x_6=x[6],x_7=x[7],x_8=x[8],x_9=x[9];
         long t;
         t = (x_4*x_4) + 2 * ((x_0*x_8) + (x_2*x_6)) + 38 *
                 (x_9*x_9) + 4 * ((x_1*x_7) + (x_3*x_5));
-        x2._8 = (t & ((1 << 26) - 1));
+        x2[8] = (t & ((1 << 26) - 1));
         t = (t >> 26) + 2 * ((x_0*x_9) + (x_1*x_8) + (x_2*x_7) +
                 (x_3*x_6) + (x_4*x_5));
-        x2._9 = (t & ((1 << 25) - 1));
+        x2[9] = (t & ((1 << 25) - 1));
         t = 19 * (t >> 25) + (x_0*x_0) + 38 * ((x_2*x_8) +
                 (x_4*x_6) + (x_5*x_5)) + 76 * ((x_1*x_9)
                 + (x_3*x_7));
-        x2._0 = (t & ((1 << 26) - 1));
+        x2[0] = (t & ((1 << 26) - 1));
         t = (t >> 26) + 2 * (x_0*x_1) + 38 * ((x_2*x_9) +
                 (x_3*x_8) + (x_4*x_7) + (x_5*x_6));
-        x2._1 = (t & ((1 << 25) - 1));
+        x2[1] = (t & ((1 << 25) - 1));
         t = (t >> 25) + 19 * (x_6*x_6) + 2 * ((x_0*x_2) +
                 (x_1*x_1)) + 38 * (x_4*x_8) + 76 *
                 ((x_3*x_9) + (x_5*x_7));
-        x2._2 = (t & ((1 << 26) - 1));
+        x2[2] = (t & ((1 << 26) - 1));
         t = (t >> 26) + 2 * ((x_0*x_3) + (x_1*x_2)) + 38 *
                 ((x_4*x_9) + (x_5*x_8) + (x_6*x_7));
-        x2._3 = (t & ((1 << 25) - 1));
+        x2[3] = (t & ((1 << 25) - 1));
         t = (t >> 25) + (x_2*x_2) + 2 * (x_0*x_4) + 38 *
                 ((x_6*x_8) + (x_7*x_7)) + 4 * (x_1*x_3) + 76 *
                 (x_5*x_9);
-        x2._4 = (t & ((1 << 26) - 1));
+        x2[4] = (t & ((1 << 26) - 1));
         t = (t >> 26) + 2 * ((x_0*x_5) + (x_1*x_4) + (x_2*x_3))
                 + 38 * ((x_6*x_9) + (x_7*x_8));
-        x2._5 = (t & ((1 << 25) - 1));
+        x2[5] = (t & ((1 << 25) - 1));
         t = (t >> 25) + 19 * (x_8*x_8) + 2 * ((x_0*x_6) +
                 (x_2*x_4) + (x_3*x_3)) + 4 * (x_1*x_5) +
                 76 * (x_7*x_9);
-        x2._6 = (t & ((1 << 26) - 1));
+        x2[6] = (t & ((1 << 26) - 1));
         t = (t >> 26) + 2 * ((x_0*x_7) + (x_1*x_6) + (x_2*x_5) +
                 (x_3*x_4)) + 38 * (x_8*x_9);
-        x2._7 = (t & ((1 << 25) - 1));
-        t = (t >> 25) + x2._8;
-        x2._8 = (t & ((1 << 26) - 1));
-        x2._9 += (t >> 26);
+        x2[7] = (t & ((1 << 25) - 1));
+        t = (t >> 25) + x2[8];
+        x2[8] = (t & ((1 << 26) - 1));
+        x2[9] += (t >> 26);
         return x2;
     }
 
     /* Calculates a reciprocal.  The output is in reduced form, the inputs need not
      * be.  Simply calculates  y = x^(p-2)  so it's not too fast. */
     /* When sqrtassist is true, it instead calculates y = x^((p-5)/8) */
-    private static void recip(long10 y, long10 x, int sqrtassist) {
-        long10
-                t0=new long10(),
-                t1=new long10(),
-                t2=new long10(),
-                t3=new long10(),
-                t4=new long10();
+    private static void recip(Workspace w, long[] y, long[] x, int sqrtassist) {
+        long[] t0 = w.r0, t1 = w.r1, t2 = w.r2, t3 = w.r3, t4 = w.r4;
         int i;
         /* the chain for x^(2^255-21) is straight from djb's implementation */
         sqr(t1, x);	/*  2 == 2 * 1	*/
@@ -769,18 +794,18 @@ final class Curve25519 {
     }
 
     /* checks if x is "negative", requires reduced input */
-    private static int is_negative(long10 x) {
-        return (int)(((is_overflow(x) || (x._9 < 0))?1:0) ^ (x._0 & 1));
+    private static int is_negative(long[] x) {
+        return (int)(((is_overflow(x) || (x[9] < 0))?1:0) ^ (x[0] & 1));
     }
 
     /* a square root */
-    private static void sqrt(long10 x, long10 u) {
-        long10 v=new long10(), t1=new long10(), t2=new long10();
+    private static void sqrt(Workspace w, long[] x, long[] u) {
+        long[] v = w.sv, t1 = w.s1, t2 = w.s2;
         add(t1, u, u);	/* t1 = 2u		*/
-        recip(v, t1, 1);	/* v = (2u)^((p-5)/8)	*/
+        recip(w, v, t1, 1);	/* v = (2u)^((p-5)/8)	*/
         sqr(x, v);		/* x = v^2		*/
         mul(t2, t1, x);	/* t2 = 2uv^2		*/
-        t2._0--;		/* t2 = 2uv^2-1		*/
+        t2[0]--;		/* t2 = 2uv^2-1		*/
         mul(t1, v, t2);	/* t1 = v(2uv^2-1)	*/
         mul(x, u, t1);	/* x = uv(2uv^2-1)	*/
     }
@@ -791,7 +816,7 @@ final class Curve25519 {
 
     /* t1 = ax + az
      * t2 = ax - az  */
-    private static void mont_prep(long10 t1, long10 t2, long10 ax, long10 az) {
+    private static void mont_prep(long[] t1, long[] t2, long[] ax, long[] az) {
         add(t1, ax, az);
         sub(t2, ax, az);
     }
@@ -802,7 +827,7 @@ final class Curve25519 {
      *  X(Q) = (t3+t4)/(t3-t4)
      *  X(P-Q) = dx
      * clobbers t1 and t2, preserves t3 and t4  */
-    private static void mont_add(long10 t1, long10 t2, long10 t3, long10 t4,long10 ax, long10 az, long10 dx) {
+    private static void mont_add(long[] t1, long[] t2, long[] t3, long[] t4,long[] ax, long[] az, long[] dx) {
         mul(ax, t2, t3);
         mul(az, t1, t4);
         add(t1, ax, az);
@@ -816,7 +841,7 @@ final class Curve25519 {
      *  X(B) = bx/bz
      *  X(Q) = (t3+t4)/(t3-t4)
      * clobbers t1 and t2, preserves t3 and t4  */
-    private static void mont_dbl(long10 t1, long10 t2, long10 t3, long10 t4,long10 bx, long10 bz) {
+    private static void mont_dbl(long[] t1, long[] t2, long[] t3, long[] t4,long[] bx, long[] bz) {
         sqr(t1, t3);
         sqr(t2, t4);
         mul(bx, t1, t2);
@@ -828,26 +853,30 @@ final class Curve25519 {
 
     /* Y^2 = X^3 + 486662 X^2 + X
      * t is a temporary  */
-    private static void x_to_y2(long10 t, long10 y2, long10 x) {
+    private static void x_to_y2(long[] t, long[] y2, long[] x) {
         sqr(t, x);
         mul_small(y2, x, 486662);
         add(t, t, y2);
-        t._0++;
+        t[0]++;
         mul(y2, t, x);
     }
 
+    /* Conditionally swap two numbers without branching, swap must be 0 or 1 */
+    private static void cswap(long[] a, long[] b, int swap) {
+        long mask = -swap;
+        for (int i = 0; i < 10; i++) {
+            long t = mask & (a[i] ^ b[i]);
+            a[i] ^= t;
+            b[i] ^= t;
+        }
+    }
+
     /* P = kG   and  s = sign(P)/k  */
     private static void core(byte[] Px, byte[] s, byte[] k, byte[] Gx) {
-        long10
-                dx=new long10(),
-                t1=new long10(),
-                t2=new long10(),
-                t3=new long10(),
-                t4=new long10();
-        long10[]
-                x=new long10[]{new long10(),new long10()},
-                z=new long10[]{new long10(),new long10()};
-        int i, j;
+        Workspace w = workspace.get();
+        long[] dx = w.dx, t1 = w.t1, t2 = w.t2, t3 = w.t3, t4 = w.t4;
+        long[] x0 = w.x0, z0 = w.z0, x1 = w.x1, z1 = w.z1;
+        int i, j, swap = 0;
 
         /* unpack the base */
         if (Gx!=null)
@@ -856,51 +885,52 @@ final class Curve25519 {
             set(dx, 9);
 
         /* 0G = point-at-infinity */
-        set(x[0], 1);
-        set(z[0], 0);
+        set(x0, 1);
+        set(z0, 0);
 
         /* 1G = G */
-        cpy(x[1], dx);
-        set(z[1], 1);
+        cpy(x1, dx);
+        set(z1, 1);
 
+        /* The ladder keeps a in (x0, z0) and b in (x1, z1), exchanging the two points
+         * with cswap whenever the key bit changes instead of selecting them by index,
+         * so neither the branches nor the memory access pattern depend on the key. */
         for (i = 32; i--!=0; ) {
-            if (i==0) {
-                i=0;
-            }
+            int ki = k[i] & 0xFF;
             for (j = 8; j--!=0; ) {
                 /* swap arguments depending on bit */
-                int bit1 = (k[i] & 0xFF) >> j & 1;
-                int bit0 = ~(k[i] & 0xFF) >> j & 1;
-                long10 ax = x[bit0];
-                long10 az = z[bit0];
-                long10 bx = x[bit1];
-                long10 bz = z[bit1];
+                int bit0 = ~ki >> j & 1;
+                cswap(x0, x1, swap ^ bit0);
+                cswap(z0, z1, swap ^ bit0);
+                swap = bit0;
 
                 /* a' = a + b	*/
                 /* b' = 2 b	*/
-                mont_prep(t1, t2, ax, az);
-                mont_prep(t3, t4, bx, bz);
-                mont_add(t1, t2, t3, t4, ax, az, dx);
-                mont_dbl(t1, t2, t3, t4, bx, bz);
+                mont_prep(t1, t2, x0, z0);
+                mont_prep(t3, t4, x1, z1);
+                mont_add(t1, t2, t3, t4, x0, z0, dx);
+                mont_dbl(t1, t2, t3, t4, x1, z1);
             }
         }
+        cswap(x0, x1, swap);
+        cswap(z0, z1, swap);
 
-        recip(t1, z[0], 0);
-        mul(dx, x[0], t1);
+        recip(w, t1, z0, 0);
+        mul(dx, x0, t1);
         pack(dx, Px);
 
         /* calculate s such that s abs(P) = G  .. assumes G is std base point */
         if (s!=null) {
             x_to_y2(t2, t1, dx);	/* t1 = Py^2  */
-            recip(t3, z[1], 0);	/* where Q=P+G ... */
-            mul(t2, x[1], t3);	/* t2 = Qx  */
+            recip(w, t3, z1, 0);	/* where Q=P+G ... */
+            mul(t2, x1, t3);	/* t2 = Qx  */
             add(t2, t2, dx);	/* t2 = Qx + Px  */
-            t2._0 += 9 + 486662;	/* t2 = Qx + Px + Gx + 486662  */
-            dx._0 -= 9;		/* dx = Px - Gx  */
+            t2[0] += 9 + 486662;	/* t2 = Qx + Px + Gx + 486662  */
+            dx[0] -= 9;		/* dx = Px - Gx  */
             sqr(t3, dx);	/* t3 = (Px - Gx)^2  */
             mul(dx, t2, t3);	/* dx = t2 (Px - Gx)^2  */
             sub(dx, dx, t1);	/* dx = t2 (Px - Gx)^2 - Py^2  */
-            dx._0 -= 39420360;	/* dx = t2 (Px - Gx)^2 - Py^2 - Gy^2  */
+            dx[0] -= 39420360;	/* dx = t2 (Px - Gx)^2 - Py^2 - Gy^2  */
             mul(t1, dx, BASE_R2Y);	/* t1 = -Py  */
             if (is_negative(t1)!=0)	/* sign is 1, so just copy  */
                 cpy32(s, k);
@@ -912,13 +942,16 @@ final class Curve25519 {
             //divmod((dstptr) t1, s, 32, order25519, 32);
 
             /* take reciprocal of s mod q */
-            byte[] temp1=new byte[32];
-            byte[] temp2=new byte[64];
-            byte[] temp3=new byte[64];
+            byte[] temp1 = w.x1b;
+            byte[] temp2 = w.e1;
+            byte[] temp3 = w.e2;
+            Arrays.fill(temp2, (byte)0);
+            Arrays.fill(temp3, (byte)0);
             cpy32(temp1, ORDER);
-            cpy32(s, egcd32(temp2, temp3, s, temp1));
+            cpy32(s, egcd32(temp2, temp3, s, temp1, w.q));
             if ((s[31] & 0x80)!=0)
                 mula_small(s, s, 0, ORDER, 32, 1);
+            w.clear();
         }
     }
 
@@ -935,12 +968,12 @@ final class Curve25519 {
     };
 
     /* constants 2Gy and 1/(2Gy) */
-    private static final long10 BASE_2Y = new long10(
+    private static final long[] BASE_2Y = new long[] {
             39999547, 18689728, 59995525, 1648697, 57546132,
             24010086, 19059592, 5425144, 63499247, 16420658
-    );
-    private static final long10 BASE_R2Y = new long10(
+    };
+    private static final long[] BASE_R2Y = new long[] {
             5744, 8160848, 4790893, 13779497, 35730846,
             12541209, 49101323, 30047407, 40071253, 6226132
-    );
+    };
 }
@@ -23,7 +23,11 @@ public enum HashFunction {
      */
     SHA256((byte)2) {
         public byte[] hash(byte[] input) {
-            return Crypto.sha256().digest(input);
+            return Crypto.sha256(input);
+        }
+
+        public void hash(byte[] input, byte[] output) {
+            Crypto.sha256(input, output);
         }
     },
     /**
@@ -31,7 +35,11 @@ public enum HashFunction {
      */
     SHA3((byte)3) {
         public byte[] hash(byte[] input) {
-            return Crypto.sha3().digest(input);
+            return Crypto.sha3(input);
+        }
+
+        public void hash(byte[] input, byte[] output) {
+            Crypto.sha3(input, output);
         }
     },
     /**
@@ -41,6 +49,10 @@ public enum HashFunction {
         public byte[] hash(byte[] input) {
             return threadLocalScrypt.get().hash(input);
         }
+
+        public void hash(byte[] input, byte[] output) {
+            threadLocalScrypt.get().hash(input, output);
+        }
     },
     /**
      * Use proprietary kpl implementation of Keccak with 25 rounds (code 25)
@@ -49,15 +61,19 @@ public enum HashFunction {
         public byte[] hash(byte[] input) {
             return KNV25.hash(input);
         }
+
+        public void hash(byte[] input, byte[] output) {
+            KNV25.hash(input, output);
+        }
     },
     RIPEMD160((byte)6) {
         public byte[] hash(byte[] input) {
-            return Crypto.ripemd160().digest(input);
+            return Crypto.ripemd160(input);
         }
     },
     RIPEMD160_SHA256((byte)62) {
         public byte[] hash(byte[] input) {
-            return Crypto.ripemd160().digest(Crypto.sha256().digest(input));
+            return Crypto.ripemd160(Crypto.sha256(input));
         }
     };
 
@@ -88,4 +104,18 @@ public enum HashFunction {
     }
 
     public abstract byte[] hash(byte[] input);
+
+    /**
+     * Store the hash of the input in the output buffer
+     *
+     * The minting hash functions override this method to avoid allocating a new hash
+     * for each input.
+     *
+     * @param   input               Input bytes
+     * @param   output              Output buffer, at least as long as the hash
+     */
+    public void hash(byte[] input, byte[] output) {
+        byte[] hash = hash(input);
+        System.arraycopy(hash, 0, output, 0, hash.length);
+    }
 }
@@ -16,47 +16,72 @@
 
 package kpl.crypto;
 
-import javax.crypto.Mac;
-import javax.crypto.ShortBufferException;
-import javax.crypto.spec.SecretKeySpec;
-import java.security.InvalidKeyException;
+import java.security.DigestException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
+/**
+ * Scrypt key derivation with N=1024, r=1, p=1 and a 32-byte result
+ *
+ * The first 40 bytes of the input are used as both the password and the salt.  The working
+ * buffers and the HMAC-SHA256 digest are allocated when the instance is created and reused for
+ * each hash, so an instance must not be shared between threads.
+ */
 @SuppressWarnings({"PointlessBitwiseExpression", "PointlessArithmeticExpression"})
 public class Scrypt {
 
-    private final Mac mac;
+    private final MessageDigest digest;
     {
         try {
-            mac = Mac.getInstance("HmacSHA256");
+            digest = MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException(e);
         }
     }
+    private final byte[] innerKey = new byte[64];
+    private final byte[] outerKey = new byte[64];
+    {
+        Arrays.fill(innerKey, (byte)0x36);
+        Arrays.fill(outerKey, (byte)0x5c);
+    }
     private final byte[] H = new byte[32];
     private final byte[] B = new byte[128 + 4];
     private final int[] X = new int[32];
     private final int[] V = new int[32 * 1024];
 
+    /**
+     * Return the hash of the input
+     *
+     * The returned array is overwritten by the next hash computed by this instance.
+     *
+     * @param   input               Input bytes
+     * @return                      Hash
+     */
     public byte[] hash(final byte input[]) {
+        hash(input, H);
+        return H;
+    }
+
+    /**
+     * Store the hash of the input in the output buffer
+     *
+     * @param   input               Input bytes
+     * @param   output              Output buffer, at least 32 bytes
+     */
+    public void hash(final byte[] input, final byte[] output) {
         int i, j, k;
         System.arraycopy(input, 0, B, 0, input.length);
-        try {
-            mac.init(new SecretKeySpec(B, 0, 40, "HmacSHA256"));
-        } catch (InvalidKeyException e) {
-            throw new IllegalStateException(e);
+        for (i = 0; i < 40; i++) {
+            innerKey[i] = (byte) (B[i] ^ 0x36);
+            outerKey[i] = (byte) (B[i] ^ 0x5c);
         }
         B[40] = 0;
         B[41] = 0;
         B[42] = 0;
         for (i = 0; i < 4; i++) {
             B[43] = (byte) (i + 1);
-            mac.update(B, 0, 44);
-            try {
-                mac.doFinal(H, 0);
-            } catch (ShortBufferException e) {
-                throw new IllegalStateException(e);
-            }
+            hmac(B, 44, H);
 
             for (j = 0; j < 8; j++) {
                 X[i * 8 + j] = (H[j * 4 + 0] & 0xff) << 0
@@ -87,14 +112,30 @@ public class Scrypt {
         }
 
         B[128 + 3] = 1;
-        mac.update(B, 0, 128 + 4);
+        hmac(B, 128 + 4, output);
+    }
+
+    /**
+     * Compute HMAC-SHA256 using the key set up by the current hash
+     *
+     * The key is shorter than the SHA-256 block size, so the padded inner and outer keys
+     * are used directly instead of initializing a Mac for each hash.
+     *
+     * @param   message             Message bytes
+     * @param   length              Message length
+     * @param   output              Output buffer, at least 32 bytes
+     */
+    private void hmac(byte[] message, int length, byte[] output) {
         try {
-            mac.doFinal(H, 0);
-        } catch (ShortBufferException e) {
+            digest.update(innerKey);
+            digest.update(message, 0, length);
+            digest.digest(output, 0, 32);
+            digest.update(outerKey);
+            digest.update(output, 0, 32);
+            digest.digest(output, 0, 32);
+        } catch (DigestException e) {
             throw new IllegalStateException(e);
         }
-
-        return H;
     }
 
     private void xorSalsa8(int di, int xi) {
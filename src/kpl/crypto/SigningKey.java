@@ -0,0 +1,101 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.crypto;
+
+import kpl.util.Convert;
+
+import javax.security.auth.Destroyable;
+import java.util.Arrays;
+
+/**
+ * Signing key derived from a secret phrase
+ *
+ * The public key and the Curve25519 signing key are derived once when the key is
+ * created, so each signature requires a single scalar multiplication instead of two.
+ * The private key material is held in a byte array which is cleared when the key
+ * is destroyed.  The secret phrase itself is not retained.
+ */
+public final class SigningKey implements Destroyable {
+
+    /** Public key */
+    private final byte[] publicKey = new byte[32];
+
+    /** Private key for signing */
+    private final byte[] privateKey = new byte[32];
+
+    /** Key has been destroyed */
+    private boolean destroyed;
+
+    /**
+     * Derive the signing key for a secret phrase
+     *
+     * @param   secretPhrase        Secret phrase
+     * @return                      Signing key
+     */
+    public static SigningKey fromSecretPhrase(String secretPhrase) {
+        return new SigningKey(Crypto.sha256(Convert.toBytes(secretPhrase)));
+    }
+
+    private SigningKey(byte[] keySeed) {
+        Curve25519.keygen(publicKey, privateKey, keySeed);
+        Arrays.fill(keySeed, (byte)0);
+    }
+
+    /**
+     * Return the public key
+     *
+     * @return                      Public key
+     */
+    public byte[] getPublicKey() {
+        return publicKey.clone();
+    }
+
+    /**
+     * Sign a message
+     *
+     * The signature is the same as the one returned by Crypto.sign() for the secret phrase
+     *
+     * @param   message             Message
+     * @return                      Signature
+     * @throws  IllegalStateException   The key has been destroyed
+     */
+    public synchronized byte[] sign(byte[] message) {
+        if (destroyed) {
+            throw new IllegalStateException("Signing key has been destroyed");
+        }
+        return Crypto.sign(message, privateKey);
+    }
+
+    /**
+     * Clear the private key
+     */
+    @Override
+    public synchronized void destroy() {
+        Arrays.fill(privateKey, (byte)0);
+        destroyed = true;
+    }
+
+    /**
+     * Check if the key has been destroyed
+     *
+     * @return                      TRUE if the key has been destroyed
+     */
+    @Override
+    public synchronized boolean isDestroyed() {
+        return destroyed;
+    }
+}
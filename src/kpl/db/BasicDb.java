@@ -20,6 +20,7 @@ import kpl.Kpl;
 import kpl.util.Logger;
 import org.h2.jdbcx.JdbcConnectionPool;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -36,9 +37,15 @@ public class BasicDb {
         private String dbUsername;
         private String dbPassword;
         private int maxConnections;
+        private int maxReadOnlyConnections;
+        private String readOnlyDbUrl;
         private int loginTimeout;
         private int defaultLockTimeout;
         private int maxMemoryRows;
+        private int mvStoreAutoCompactFillRate;
+        private int mvStoreMaxCompactTime;
+        private int mvStoreRetentionTime;
+        private boolean mvStoreCompress;
 
         public DbProperties maxCacheSize(int maxCacheSize) {
             this.maxCacheSize = maxCacheSize;
@@ -80,6 +87,16 @@ public class BasicDb {
             return this;
         }
 
+        public DbProperties maxReadOnlyConnections(int maxReadOnlyConnections) {
+            this.maxReadOnlyConnections = maxReadOnlyConnections;
+            return this;
+        }
+
+        public DbProperties readOnlyDbUrl(String readOnlyDbUrl) {
+            this.readOnlyDbUrl = readOnlyDbUrl;
+            return this;
+        }
+
         public DbProperties loginTimeout(int loginTimeout) {
             this.loginTimeout = loginTimeout;
             return this;
@@ -95,17 +112,117 @@ public class BasicDb {
             return this;
         }
 
+        public DbProperties mvStoreAutoCompactFillRate(int mvStoreAutoCompactFillRate) {
+            this.mvStoreAutoCompactFillRate = mvStoreAutoCompactFillRate;
+            return this;
+        }
+
+        public DbProperties mvStoreMaxCompactTime(int mvStoreMaxCompactTime) {
+            this.mvStoreMaxCompactTime = mvStoreMaxCompactTime;
+            return this;
+        }
+
+        public DbProperties mvStoreRetentionTime(int mvStoreRetentionTime) {
+            this.mvStoreRetentionTime = mvStoreRetentionTime;
+            return this;
+        }
+
+        public DbProperties mvStoreCompress(boolean mvStoreCompress) {
+            this.mvStoreCompress = mvStoreCompress;
+            return this;
+        }
+
+    }
+
+    /**
+     * Connection pool statistics
+     */
+    public static final class PoolStats {
+
+        private final String name;
+        private final int maxConnections;
+        private volatile JdbcConnectionPool cp;
+        private long connectionCount;
+        private long totalWaitTime;
+        private long maxWaitTime;
+        private long timeoutCount;
+
+        private PoolStats(String name, int maxConnections) {
+            this.name = name;
+            this.maxConnections = maxConnections;
+        }
+
+        private synchronized void connectionObtained(long waitTime) {
+            connectionCount += 1;
+            totalWaitTime += waitTime;
+            if (waitTime > maxWaitTime) {
+                maxWaitTime = waitTime;
+            }
+        }
+
+        private synchronized void connectionFailed(long waitTime) {
+            timeoutCount += 1;
+            totalWaitTime += waitTime;
+            if (waitTime > maxWaitTime) {
+                maxWaitTime = waitTime;
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public int getActiveConnections() {
+            JdbcConnectionPool cp = this.cp;
+            return cp != null ? cp.getActiveConnections() : 0;
+        }
+
+        public int getAvailableConnections() {
+            return Math.max(0, maxConnections - getActiveConnections());
+        }
+
+        public synchronized long getConnectionCount() {
+            return connectionCount;
+        }
+
+        public synchronized long getTimeoutCount() {
+            return timeoutCount;
+        }
+
+        public synchronized long getTotalWaitTime() {
+            return totalWaitTime;
+        }
+
+        public synchronized long getMaxWaitTime() {
+            return maxWaitTime;
+        }
+
+        public synchronized double getAverageWaitTime() {
+            long count = connectionCount + timeoutCount;
+            return count == 0 ? 0 : (double)totalWaitTime / (double)count;
+        }
     }
 
     private JdbcConnectionPool cp;
+    private JdbcConnectionPool readOnlyCp;
     private volatile int maxActiveConnections;
     private final String dbUrl;
     private final String dbUsername;
     private final String dbPassword;
     private final int maxConnections;
+    private final int maxReadOnlyConnections;
+    private final String readOnlyDbUrl;
     private final int loginTimeout;
     private final int defaultLockTimeout;
     private final int maxMemoryRows;
+    private final boolean mvStore;
+    private final int mvStoreRetentionTime;
+    private final PoolStats poolStats;
+    private final PoolStats readOnlyPoolStats;
     private volatile boolean initialized = false;
 
     public BasicDb(DbProperties dbProperties) {
@@ -124,25 +241,55 @@ public class BasicDb {
         if (!dbUrl.contains("CACHE_SIZE=")) {
             dbUrl += ";CACHE_SIZE=" + maxCacheSize;
         }
+        this.mvStore = dbUrl.toUpperCase().contains("MV_STORE=TRUE");
+        if (mvStore) {
+            if (dbProperties.mvStoreAutoCompactFillRate > 0 && !dbUrl.contains("AUTO_COMPACT_FILL_RATE=")) {
+                dbUrl += ";AUTO_COMPACT_FILL_RATE=" + dbProperties.mvStoreAutoCompactFillRate;
+            }
+            if (dbProperties.mvStoreMaxCompactTime > 0 && !dbUrl.contains("MAX_COMPACT_TIME=")) {
+                dbUrl += ";MAX_COMPACT_TIME=" + dbProperties.mvStoreMaxCompactTime;
+            }
+            if (dbProperties.mvStoreCompress && !dbUrl.contains("COMPRESS=")) {
+                dbUrl += ";COMPRESS=TRUE";
+            }
+        }
+        this.mvStoreRetentionTime = dbProperties.mvStoreRetentionTime;
         this.dbUrl = dbUrl;
         this.dbUsername = dbProperties.dbUsername;
         this.dbPassword = dbProperties.dbPassword;
         this.maxConnections = dbProperties.maxConnections;
+        this.maxReadOnlyConnections = dbProperties.maxReadOnlyConnections;
+        this.readOnlyDbUrl = dbProperties.readOnlyDbUrl != null ? dbProperties.readOnlyDbUrl : dbUrl;
         this.loginTimeout = dbProperties.loginTimeout;
         this.defaultLockTimeout = dbProperties.defaultLockTimeout;
         this.maxMemoryRows = dbProperties.maxMemoryRows;
+        this.poolStats = new PoolStats("main", maxConnections);
+        this.readOnlyPoolStats = maxReadOnlyConnections > 0 ? new PoolStats("readOnly", maxReadOnlyConnections) : null;
     }
 
     public void init(DbVersion dbVersion) {
         Logger.logDebugMessage("Database jdbc url set to %s username %s", dbUrl, dbUsername);
+        checkStorageEngine();
         FullTextTrigger.setActive(true);
         cp = JdbcConnectionPool.create(dbUrl, dbUsername, dbPassword);
         cp.setMaxConnections(maxConnections);
         cp.setLoginTimeout(loginTimeout);
+        poolStats.cp = cp;
+        if (readOnlyPoolStats != null) {
+            readOnlyCp = JdbcConnectionPool.create(readOnlyDbUrl, dbUsername, dbPassword);
+            readOnlyCp.setMaxConnections(maxReadOnlyConnections);
+            readOnlyCp.setLoginTimeout(loginTimeout);
+            readOnlyPoolStats.cp = readOnlyCp;
+            Logger.logDebugMessage("Using separate read-only connection pool with %d connections, jdbc url set to %s",
+                    maxReadOnlyConnections, readOnlyDbUrl);
+        }
         try (Connection con = cp.getConnection();
              Statement stmt = con.createStatement()) {
             stmt.executeUpdate("SET DEFAULT_LOCK_TIMEOUT " + defaultLockTimeout);
             stmt.executeUpdate("SET MAX_MEMORY_ROWS " + maxMemoryRows);
+            if (mvStore && mvStoreRetentionTime > 0) {
+                stmt.executeUpdate("SET RETENTION_TIME " + mvStoreRetentionTime);
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
@@ -180,8 +327,39 @@ public class BasicDb {
         return con;
     }
 
+    /**
+     * Get a connection from the read-only pool, falling back to the main pool if no read-only pool is configured.
+     * Read-only connections must not be used to update the database.
+     *
+     * @return                      Auto-commit connection
+     * @throws  SQLException        Unable to obtain a connection
+     */
+    public Connection getReadOnlyConnection() throws SQLException {
+        Connection con;
+        if (readOnlyCp == null) {
+            con = getPooledConnection();
+        } else {
+            con = getConnection(readOnlyCp, readOnlyPoolStats);
+            con.setReadOnly(true);
+        }
+        con.setAutoCommit(true);
+        return con;
+    }
+
+    public boolean hasReadOnlyPool() {
+        return readOnlyCp != null;
+    }
+
+    public PoolStats getPoolStats() {
+        return poolStats;
+    }
+
+    public PoolStats getReadOnlyPoolStats() {
+        return readOnlyPoolStats;
+    }
+
     protected Connection getPooledConnection() throws SQLException {
-        Connection con = cp.getConnection();
+        Connection con = getConnection(cp, poolStats);
         int activeConnections = cp.getActiveConnections();
         if (activeConnections > maxActiveConnections) {
             maxActiveConnections = activeConnections;
@@ -190,8 +368,73 @@ public class BasicDb {
         return con;
     }
 
+    private static Connection getConnection(JdbcConnectionPool pool, PoolStats stats) throws SQLException {
+        long start = System.currentTimeMillis();
+        try {
+            Connection con = pool.getConnection();
+            stats.connectionObtained(System.currentTimeMillis() - start);
+            return con;
+        } catch (SQLException e) {
+            long waitTime = System.currentTimeMillis() - start;
+            stats.connectionFailed(waitTime);
+            Logger.logDebugMessage(String.format("Unable to obtain %s database connection after %.3f seconds, %d active connections",
+                    stats.getName(), (double)waitTime/1000.0, stats.getActiveConnections()));
+            throw e;
+        }
+    }
+
     public String getUrl() {
         return dbUrl;
     }
 
+    public boolean isMvStore() {
+        return mvStore;
+    }
+
+    /**
+     * Verify that an existing database file matches the configured storage engine.  H2 would otherwise
+     * silently create a new empty database next to the existing one.  Use the CompactDatabase tool to
+     * convert the database after changing the MV_STORE setting.
+     */
+    private void checkStorageEngine() {
+        String dbPath = getDbFilePath(dbUrl);
+        if (dbPath == null) {
+            return;
+        }
+        File pageStoreFile = new File(dbPath + ".h2.db");
+        File mvStoreFile = new File(dbPath + ".mv.db");
+        if (mvStore && pageStoreFile.exists() && !mvStoreFile.exists()) {
+            throw new RuntimeException("Database " + pageStoreFile.getPath() + " uses the PageStore storage engine but MV_STORE=TRUE is configured, "
+                    + "run the compact script to convert the database to the MVStore storage engine");
+        }
+        if (!mvStore && mvStoreFile.exists() && !pageStoreFile.exists()) {
+            throw new RuntimeException("Database " + mvStoreFile.getPath() + " uses the MVStore storage engine but MV_STORE=FALSE is configured, "
+                    + "run the compact script to convert the database to the PageStore storage engine");
+        }
+    }
+
+    /**
+     * Get the file path of an embedded H2 database, without the storage engine file suffix
+     *
+     * @param   dbUrl               Database URL
+     * @return                      Database path or null if this is not an embedded file database
+     */
+    static String getDbFilePath(String dbUrl) {
+        if (!dbUrl.startsWith("jdbc:h2:")) {
+            return null;
+        }
+        String dbPath = dbUrl.substring(8);
+        int pos = dbPath.indexOf(';');
+        if (pos >= 0) {
+            dbPath = dbPath.substring(0, pos);
+        }
+        if (dbPath.startsWith("file:")) {
+            dbPath = dbPath.substring(5);
+        } else if (dbPath.startsWith("mem:") || dbPath.startsWith("tcp:") || dbPath.startsWith("ssl:")
+                || dbPath.startsWith("zip:") || dbPath.startsWith("nio")) {
+            return null;
+        }
+        return dbPath;
+    }
+
 }
@@ -36,6 +36,8 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
 
     private boolean hasNext;
     private boolean iterated;
+    private DbKeyset keyset;
+    private String continuation;
 
     public DbIterator(Connection con, PreparedStatement pstmt, ResultSetReader<T> rsReader) {
         this.con = con;
@@ -66,6 +68,9 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
         }
         try {
             T result = rsReader.get(con, rs);
+            if (keyset != null) {
+                continuation = keyset.getToken(rs);
+            }
             hasNext = rs.next();
             return result;
         } catch (Exception e) {
@@ -74,6 +79,26 @@ public final class DbIterator<T> implements Iterator<T>, Iterable<T>, AutoClosea
         }
     }
 
+    /**
+     * Record the continuation token of each row returned by the iterator
+     *
+     * @param   keyset              Keyset used to sort the rows
+     * @return                      This iterator
+     */
+    public DbIterator<T> setKeyset(DbKeyset keyset) {
+        this.keyset = keyset;
+        return this;
+    }
+
+    /**
+     * Return the continuation token of the last row returned by the iterator
+     *
+     * @return                      Continuation token or null if no keyset is set or no row has been returned
+     */
+    public String getContinuation() {
+        return continuation;
+    }
+
     @Override
     public void remove() {
         throw new UnsupportedOperationException("Removal not supported");
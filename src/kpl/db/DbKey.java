@@ -128,6 +128,10 @@ public interface DbKey {
             return new LinkKey(idA, idB);
         }
 
+        String getIdColumnA() {
+            return idColumnA;
+        }
+
     }
 
     final class LongKey implements DbKey {
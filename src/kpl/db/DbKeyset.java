@@ -0,0 +1,198 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.db;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Keyset pagination support
+ *
+ * A keyset is created from the sort clause of a query, with db_id added as the last sort
+ * column if it is not already included.  The continuation token for a page is made from the
+ * sort column values of the last row returned and the next page is selected by a clause which
+ * continues after that row.  Unlike LIMIT/OFFSET, the cost of reading a page does not depend on
+ * its position in the result set.  All of the sort columns must be numeric.
+ */
+public final class DbKeyset {
+
+    /** Sort columns */
+    private final String[] columns;
+
+    /** Descending sort columns */
+    private final boolean[] descending;
+
+    /** Sort clause */
+    private final String sort;
+
+    /**
+     * Create a keyset
+     *
+     * @param   sort                Sort clause in the form "ORDER BY column [ASC|DESC], ..."
+     */
+    public DbKeyset(String sort) {
+        String columnList = sort.trim();
+        if (!columnList.toUpperCase().startsWith("ORDER BY")) {
+            throw new IllegalArgumentException("Invalid sort clause: " + sort);
+        }
+        columnList = columnList.substring(8);
+        List<String> columnNames = new ArrayList<>();
+        List<Boolean> columnOrder = new ArrayList<>();
+        for (String column : columnList.split(",")) {
+            String[] parts = column.trim().split("\\s+");
+            if (parts.length == 0 || parts.length > 2 || parts[0].isEmpty()) {
+                throw new IllegalArgumentException("Invalid sort clause: " + sort);
+            }
+            columnNames.add(parts[0]);
+            columnOrder.add(parts.length == 2 && parts[1].equalsIgnoreCase("DESC"));
+        }
+        if (!columnNames.contains("db_id")) {
+            columnNames.add("db_id");
+            columnOrder.add(columnOrder.get(columnOrder.size() - 1));
+        }
+        this.columns = columnNames.toArray(new String[columnNames.size()]);
+        this.descending = new boolean[columns.length];
+        StringBuilder sb = new StringBuilder(" ORDER BY ");
+        for (int i = 0; i < columns.length; i++) {
+            descending[i] = columnOrder.get(i);
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(columns[i]).append(descending[i] ? " DESC" : "");
+        }
+        this.sort = sb.append(' ').toString();
+    }
+
+    /**
+     * Return the sort clause including db_id
+     *
+     * @return                      Sort clause
+     */
+    public String getSort() {
+        return sort;
+    }
+
+    /**
+     * Return the SQL condition selecting the rows following a continuation token.  The condition has
+     * two parameters for each sort column except the last, which has one.  When there is more than one
+     * sort column, the condition starts with a redundant bound on the first column so the database can
+     * use an index range scan instead of evaluating the OR condition for each row.  The bound adds one
+     * more parameter.
+     *
+     * @param   table               Table name used to qualify the column names or null
+     * @return                      SQL condition
+     */
+    public String getClause(String table) {
+        String prefix = (table != null ? table + "." : "");
+        StringBuilder sb = new StringBuilder();
+        if (columns.length > 1) {
+            sb.append(prefix).append(columns[0]).append(descending[0] ? " <= ?" : " >= ?").append(" AND ");
+        }
+        for (int i = 0; i < columns.length; i++) {
+            String operator = (descending[i] ? " < ?" : " > ?");
+            if (i < columns.length - 1) {
+                sb.append("(").append(prefix).append(columns[i]).append(operator)
+                        .append(" OR (").append(prefix).append(columns[i]).append(" = ? AND ");
+            } else {
+                sb.append(prefix).append(columns[i]).append(operator);
+            }
+        }
+        for (int i = 0; i < columns.length - 1; i++) {
+            sb.append("))");
+        }
+        return " " + sb.toString() + " ";
+    }
+
+    /**
+     * Set the parameters of the continuation condition
+     *
+     * @param   pstmt               Prepared statement
+     * @param   index               Index of the last parameter set
+     * @param   values              Decoded continuation token
+     * @return                      Index of the last parameter set
+     * @throws  SQLException        SQL error occurred
+     */
+    public int setClause(PreparedStatement pstmt, int index, long[] values) throws SQLException {
+        if (columns.length > 1) {
+            pstmt.setLong(++index, values[0]);
+        }
+        for (int i = 0; i < columns.length; i++) {
+            pstmt.setLong(++index, values[i]);
+            if (i < columns.length - 1) {
+                pstmt.setLong(++index, values[i]);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Return a clause selecting the rows following a continuation token
+     *
+     * @param   token               Continuation token
+     * @return                      Database clause
+     * @throws  IllegalArgumentException    Continuation token is not valid for this keyset
+     */
+    public DbClause after(String token) {
+        final long[] values = decode(token);
+        return new DbClause(getClause(null)) {
+            @Override
+            protected int set(PreparedStatement pstmt, int index) throws SQLException {
+                return setClause(pstmt, index - 1, values) + 1;
+            }
+        };
+    }
+
+    /**
+     * Return the continuation token for the current row of a result set
+     *
+     * @param   rs                  Result set
+     * @return                      Continuation token
+     * @throws  SQLException        SQL error occurred
+     */
+    public String getToken(ResultSet rs) throws SQLException {
+        ByteBuffer buffer = ByteBuffer.allocate(columns.length * 8);
+        for (String column : columns) {
+            buffer.putLong(rs.getLong(column));
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decode a continuation token
+     *
+     * @param   token               Continuation token
+     * @return                      Sort column values
+     * @throws  IllegalArgumentException    Continuation token is not valid for this keyset
+     */
+    public long[] decode(String token) {
+        byte[] bytes = Base64.getUrlDecoder().decode(token);
+        if (bytes.length != columns.length * 8) {
+            throw new IllegalArgumentException("Invalid continuation token");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long[] values = new long[columns.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getLong();
+        }
+        return values;
+    }
+}
@@ -64,6 +64,13 @@ public abstract class DerivedDbTable {
         //nothing to trim
     }
 
+    /**
+     * Discard any state kept outside of the database table after the table has been truncated directly
+     */
+    public void reset() {
+        //implemented in EntityDbTable only
+    }
+
     public void createSearchIndex(Connection con) throws SQLException {
         //implemented in EntityDbTable only
     }
@@ -72,6 +79,10 @@ public abstract class DerivedDbTable {
         return false;
     }
 
+    DbKey.Factory<?> getVersionedKeyFactory() {
+        return null;
+    }
+
     @Override
     public final String toString() {
         return table;
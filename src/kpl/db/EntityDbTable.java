@@ -23,13 +23,17 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.List;
 
 public abstract class EntityDbTable<T> extends DerivedDbTable {
 
+    private static final List<String> keyValueStoreTables = Kpl.getStringListProperty("kpl.keyValueStoreTables");
+
     private final boolean multiversion;
     protected final DbKey.Factory<T> dbKeyFactory;
     private final String defaultSort;
     private final String fullTextSearchColumns;
+    private final EntityStore<T> store;
 
     protected EntityDbTable(String table, DbKey.Factory<T> dbKeyFactory) {
         this(table, dbKeyFactory, false, null);
@@ -40,11 +44,23 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
     }
 
     EntityDbTable(String table, DbKey.Factory<T> dbKeyFactory, boolean multiversion, String fullTextSearchColumns) {
+        this(table, dbKeyFactory, multiversion, fullTextSearchColumns, null);
+    }
+
+    EntityDbTable(String table, DbKey.Factory<T> dbKeyFactory, boolean multiversion, String fullTextSearchColumns,
+                  EntityStore.Codec<T> codec) {
         super(table);
         this.dbKeyFactory = dbKeyFactory;
         this.multiversion = multiversion;
         this.defaultSort = " ORDER BY " + (multiversion ? dbKeyFactory.getPKColumns() : " height DESC, db_id DESC ");
         this.fullTextSearchColumns = fullTextSearchColumns;
+        JdbcEntityStore<T> jdbcStore = new JdbcEntityStore<>(db, this, table, dbKeyFactory, multiversion);
+        if (codec != null && multiversion && keyValueStoreTables.contains(table)) {
+            Logger.logMessage("Using key-value store for table " + table);
+            this.store = new MVStoreEntityStore<>(db, jdbcStore, table, dbKeyFactory, codec);
+        } else {
+            this.store = jdbcStore;
+        }
     }
 
     protected abstract T load(Connection con, ResultSet rs, DbKey dbKey) throws SQLException;
@@ -94,14 +110,11 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
                 return t;
             }
         }
-        try (Connection con = db.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + dbKeyFactory.getPKClause()
-             + (multiversion ? " AND latest = TRUE LIMIT 1" : ""))) {
-            dbKey.setPK(pstmt);
-            return get(con, pstmt, cache);
-        } catch (SQLException e) {
-            throw new RuntimeException(e.toString(), e);
+        T t = store.get(dbKey);
+        if (t != null && cache && db.isInTransaction()) {
+            db.getCache(table).put(dbKey, t);
         }
+        return t;
     }
 
     public final T get(DbKey dbKey, int height) {
@@ -109,20 +122,24 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
             return get(dbKey);
         }
         checkAvailable(height);
-        try (Connection con = db.getConnection();
-             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + dbKeyFactory.getPKClause()
-                     + " AND height <= ?" + (multiversion ? " AND (latest = TRUE OR EXISTS ("
-                     + "SELECT 1 FROM " + table + dbKeyFactory.getPKClause() + " AND height > ?)) ORDER BY height DESC LIMIT 1" : ""))) {
-            int i = dbKey.setPK(pstmt);
-            pstmt.setInt(i, height);
-            if (multiversion) {
-                i = dbKey.setPK(pstmt, ++i);
-                pstmt.setInt(i, height);
+        return store.get(dbKey, height);
+    }
+
+    public final List<T> getManyByKeyPrefix(long idA) {
+        List<T> result = store.getByKeyPrefix(idA);
+        if (db.isInTransaction()) {
+            for (int i = 0; i < result.size(); i++) {
+                T t = result.get(i);
+                DbKey dbKey = dbKeyFactory.newKey(t);
+                T cachedT = (T) db.getCache(table).get(dbKey);
+                if (cachedT != null) {
+                    result.set(i, cachedT);
+                } else {
+                    db.getCache(table).put(dbKey, t);
+                }
             }
-            return get(con, pstmt, false);
-        } catch (SQLException e) {
-            throw new RuntimeException(e.toString(), e);
         }
+        return result;
     }
 
     public final T getBy(DbClause dbClause) {
@@ -204,6 +221,13 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
         }
     }
 
+    public final DbIterator<T> getManyBy(DbClause dbClause, DbKeyset keyset, String continuation, int limit) {
+        if (continuation != null) {
+            dbClause = dbClause.and(keyset.after(continuation));
+        }
+        return getManyBy(dbClause, 0, limit - 1, keyset.getSort()).setKeyset(keyset);
+    }
+
     public final DbIterator<T> getManyBy(DbClause dbClause, int height, int from, int to) {
         return getManyBy(dbClause, height, from, to, defaultSort());
     }
@@ -414,36 +438,40 @@ public abstract class EntityDbTable<T> extends DerivedDbTable {
             throw new IllegalStateException("Different instance found in Db cache, perhaps trying to save an object "
                     + "that was read outside the current transaction");
         }
-        try (Connection con = db.getConnection()) {
-            if (multiversion) {
-                try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
-                        + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
-                    dbKey.setPK(pstmt);
-                    pstmt.executeUpdate();
-                }
-            }
-            save(con, t);
-        } catch (SQLException e) {
-            throw new RuntimeException(e.toString(), e);
-        }
+        store.put(dbKey, t);
+    }
+
+    final boolean delete(DbKey dbKey, T t) {
+        return store.delete(dbKey, t);
     }
 
     @Override
     public void rollback(int height) {
-        if (multiversion) {
-            VersionedEntityDbTable.rollback(db, table, height, dbKeyFactory);
-        } else {
-            super.rollback(height);
-        }
+        store.rollback(height);
+    }
+
+    final void reload(List<DbKey> dbKeys) {
+        store.reload(dbKeys);
     }
 
     @Override
     public void trim(int height) {
-        if (multiversion) {
-            VersionedEntityDbTable.trim(db, table, height, dbKeyFactory);
-        } else {
-            super.trim(height);
-        }
+        store.trim(height);
+    }
+
+    @Override
+    public void truncate() {
+        store.truncate();
+    }
+
+    @Override
+    public void reset() {
+        store.reset();
+    }
+
+    @Override
+    DbKey.Factory<?> getVersionedKeyFactory() {
+        return multiversion ? dbKeyFactory : null;
     }
 
     @Override
@@ -0,0 +1,116 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.db;
+
+import java.util.List;
+
+/**
+ * Storage backend for the rows of an entity table that are accessed by primary key.
+ *
+ * The JDBC store is the default.  Versioned tables providing a {@link Codec} can
+ * instead keep their latest rows in an embedded key-value store, so that lookups
+ * by key and range scans by key prefix do not need to go through SQL.  Queries by
+ * {@link DbClause} and full-text searches always use SQL.
+ */
+public interface EntityStore<T> {
+
+    /**
+     * Convert an entity to and from the value stored in a key-value store
+     */
+    interface Codec<T> {
+
+        byte[] encode(T t);
+
+        T decode(DbKey dbKey, byte[] bytes);
+
+    }
+
+    /**
+     * Get the latest version of an entity
+     *
+     * @param   dbKey               Entity key
+     * @return                      Entity or null if not found
+     */
+    T get(DbKey dbKey);
+
+    /**
+     * Get the version of an entity as of the specified height
+     *
+     * @param   dbKey               Entity key
+     * @param   height              Blockchain height
+     * @return                      Entity or null if not found
+     */
+    T get(DbKey dbKey, int height);
+
+    /**
+     * Get the latest versions of the entities whose link key starts with the specified identifier
+     *
+     * @param   idA                 First identifier of the link key
+     * @return                      Entities ordered by the second identifier of the link key
+     * @throws  UnsupportedOperationException   The table does not use link keys
+     */
+    List<T> getByKeyPrefix(long idA);
+
+    /**
+     * Store a new version of an entity at the current height, replacing the previous latest version
+     *
+     * @param   dbKey               Entity key
+     * @param   t                   Entity
+     */
+    void put(DbKey dbKey, T t);
+
+    /**
+     * Delete the latest version of an entity, keeping the history needed for a rollback
+     *
+     * @param   dbKey               Entity key
+     * @param   t                   Entity
+     * @return                      TRUE if the entity was deleted
+     */
+    boolean delete(DbKey dbKey, T t);
+
+    /**
+     * Remove all versions above the specified height
+     *
+     * @param   height              Blockchain height
+     */
+    void rollback(int height);
+
+    /**
+     * Reload the latest versions of entities whose rows were changed directly in the database table
+     *
+     * @param   dbKeys              Entity keys
+     */
+    void reload(List<DbKey> dbKeys);
+
+    /**
+     * Remove versions below the specified height which are no longer needed for a rollback
+     *
+     * @param   height              Blockchain height
+     */
+    void trim(int height);
+
+    /**
+     * Remove all rows
+     */
+    void truncate();
+
+    /**
+     * Discard any state kept outside of the database table
+     */
+    void reset();
+
+}
@@ -0,0 +1,214 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.db;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * FullTextIndex is the Lucene index partition for a single table.
+ *
+ * Searches use a near-real-time searcher obtained from a SearcherManager, so a search
+ * does not block index updates and an index commit does not block searches.  The
+ * searcher is refreshed when index updates are committed.
+ *
+ * Search results are cached by query until the searcher is refreshed.
+ */
+final class FullTextIndex implements Closeable {
+
+    /**
+     * Search hit
+     */
+    static final class Hit {
+
+        /** Row identification (schema.table;keyName;keyValue) */
+        private final String query;
+
+        /** Lucene score */
+        private final float score;
+
+        Hit(String query, float score) {
+            this.query = query;
+            this.score = score;
+        }
+
+        String getQuery() {
+            return query;
+        }
+
+        float getScore() {
+            return score;
+        }
+    }
+
+    /** Lucene directory */
+    private final Directory directory;
+
+    /** Index writer */
+    private final IndexWriter indexWriter;
+
+    /** Searcher manager */
+    private final SearcherManager searcherManager;
+
+    /** Query results cache */
+    private final Map<String, Hit[]> queryCache;
+
+    /** Searcher generation - incremented each time the searcher is refreshed */
+    private long generation;
+
+    /**
+     * Open the index partition
+     *
+     * @param   path                Index directory
+     * @param   analyzer            Lucene analyzer
+     * @param   queryCacheSize      Maximum number of cached query results
+     * @throws  IOException         Unable to open the index
+     */
+    FullTextIndex(Path path, Analyzer analyzer, int queryCacheSize) throws IOException {
+        directory = FSDirectory.open(path);
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        indexWriter = new IndexWriter(directory, config);
+        searcherManager = new SearcherManager(indexWriter, true, null);
+        queryCache = new LinkedHashMap<String, Hit[]>(queryCacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Hit[]> eldest) {
+                return size() > queryCacheSize;
+            }
+        };
+        searcherManager.addListener(new ReferenceManager.RefreshListener() {
+            @Override
+            public void beforeRefresh() {
+            }
+
+            @Override
+            public void afterRefresh(boolean didRefresh) {
+                if (didRefresh) {
+                    synchronized (queryCache) {
+                        queryCache.clear();
+                        generation++;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Add or replace a document
+     *
+     * @param   term                Document identification
+     * @param   document            Document
+     * @throws  IOException         Unable to update the index
+     */
+    void updateDocument(Term term, Document document) throws IOException {
+        indexWriter.updateDocument(term, document);
+    }
+
+    /**
+     * Delete a document
+     *
+     * @param   term                Document identification
+     * @throws  IOException         Unable to update the index
+     */
+    void deleteDocuments(Term term) throws IOException {
+        indexWriter.deleteDocuments(term);
+    }
+
+    /**
+     * Commit the index updates and refresh the searcher
+     *
+     * @throws  IOException         Unable to commit the index updates
+     */
+    void commit() throws IOException {
+        if (indexWriter.hasUncommittedChanges()) {
+            indexWriter.commit();
+            searcherManager.maybeRefreshBlocking();
+        }
+    }
+
+    /**
+     * Search the index
+     *
+     * @param   query               Lucene query
+     * @param   queryText           Query text used as the cache key
+     * @param   limit               Maximum number of hits
+     * @return                      Search hits in descending score order
+     * @throws  IOException         Unable to search the index
+     */
+    Hit[] search(Query query, String queryText, int limit) throws IOException {
+        String cacheKey = limit + ":" + queryText;
+        long searchGeneration;
+        synchronized (queryCache) {
+            Hit[] hits = queryCache.get(cacheKey);
+            if (hits != null) {
+                return hits;
+            }
+            searchGeneration = generation;
+        }
+        Hit[] hits;
+        IndexSearcher indexSearcher = searcherManager.acquire();
+        try {
+            TopDocs documents = indexSearcher.search(query, Math.max(limit, 1));
+            ScoreDoc[] scoreDocs = documents.scoreDocs;
+            hits = new Hit[scoreDocs.length];
+            for (int i = 0; i < scoreDocs.length; i++) {
+                Document document = indexSearcher.doc(scoreDocs[i].doc);
+                hits[i] = new Hit(document.get("_QUERY"), scoreDocs[i].score);
+            }
+        } finally {
+            searcherManager.release(indexSearcher);
+        }
+        synchronized (queryCache) {
+            if (generation == searchGeneration) {
+                queryCache.put(cacheKey, hits);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Close the index partition
+     *
+     * @throws  IOException         Unable to close the index
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            searcherManager.close();
+            indexWriter.close();
+        } finally {
+            directory.close();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package kpl.db;
 
 import kpl.Db;
+import kpl.Kpl;
 import kpl.util.Logger;
 import kpl.util.ReadWriteUpdateLock;
 import org.apache.lucene.analysis.Analyzer;
@@ -26,18 +27,10 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexWriter;
-import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
 import org.h2.api.Trigger;
 import org.h2.tools.SimpleResultSet;
 
@@ -52,10 +45,17 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Stream;
 
 /**
@@ -64,6 +64,15 @@ import java.util.stream.Stream;
  * inserted, updated or deleted.  The DB_ID column is used to identify each row
  * and will be returned as the COLUMNS and KEYS values in the search results.
  *
+ * Each table has a separate Lucene index partition (see FullTextIndex) stored in
+ * a subdirectory of the index directory.  Committing the updates for one table
+ * refreshes the searcher for just that table and does not block searches.
+ *
+ * Committed row changes are queued and applied to the Lucene index by a background
+ * indexer thread, so a database commit does not wait for Lucene.  The queue holds at
+ * most kpl.luceneIndexQueueSize committed transactions and a database commit will wait
+ * for space in the queue if the indexer falls behind.
+ *
  * Schema, table and column names are converted to uppercase to match the
  * way H2 stores the information.  Function aliases and triggers are created in
  * the default schema (PUBLIC).
@@ -106,23 +115,26 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     /** Default filesystem */
     private static final FileSystem fileSystem = FileSystems.getDefault();
 
-    /** Index lock */
+    /** Index lock - the write lock is held while opening, closing or deleting the index partitions */
     private static final ReadWriteUpdateLock indexLock = new ReadWriteUpdateLock();
 
     /** Lucene index path */
-    private static Path indexPath;
+    private static volatile Path indexPath;
+
+    /** Lucene index partitions (table name, index partition) */
+    private static final ConcurrentHashMap<String, FullTextIndex> indexPartitions = new ConcurrentHashMap<>();
 
-    /** Lucene directory */
-    private static Directory directory;
+    /** Indexer lock - held while the indexer applies updates or the index is rebuilt */
+    private static final ReentrantLock indexerLock = new ReentrantLock();
 
-    /** Lucene index reader (thread-safe) */
-    private static DirectoryReader indexReader;
+    /** Queued index updates */
+    private static volatile BlockingQueue<IndexUpdate> indexQueue;
 
-    /** Lucene index searcher (thread-safe) */
-    private static IndexSearcher indexSearcher;
+    /** Background indexer thread */
+    private static volatile Thread indexerThread;
 
-    /** Lucene index writer (thread-safe) */
-    private static IndexWriter indexWriter;
+    /** Queue time of the oldest update being applied by the indexer or 0 */
+    private static volatile long indexerTimestamp;
 
     /** Lucene analyzer (thread-safe) */
     private static final Analyzer analyzer = new StandardAnalyzer();
@@ -159,6 +171,11 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
      * @param   active              TRUE to enable database triggers
      */
     public static void setActive(boolean active) {
+        if (active) {
+            startIndexer();
+        } else {
+            stopIndexer();
+        }
         isActive = active;
         if (!active) {
             indexTriggers.values().forEach((trigger) -> trigger.isEnabled = false);
@@ -167,6 +184,115 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         }
     }
 
+    /**
+     * Return the index lag
+     *
+     * @return                      Time in milliseconds since the oldest queued index update was committed
+     */
+    public static long getIndexLag() {
+        long timestamp = indexerTimestamp;
+        if (timestamp == 0) {
+            BlockingQueue<IndexUpdate> queue = indexQueue;
+            IndexUpdate update = (queue != null ? queue.peek() : null);
+            timestamp = (update != null ? update.getTimestamp() : 0);
+        }
+        return (timestamp != 0 ? Math.max(System.currentTimeMillis() - timestamp, 0) : 0);
+    }
+
+    /**
+     * Return the number of queued index updates
+     *
+     * @return                      Number of committed transactions waiting to be indexed
+     */
+    public static int getIndexQueueSize() {
+        BlockingQueue<IndexUpdate> queue = indexQueue;
+        return (queue != null ? queue.size() : 0);
+    }
+
+    /**
+     * Start the background indexer
+     */
+    private static synchronized void startIndexer() {
+        if (indexerThread != null) {
+            return;
+        }
+        indexQueue = new ArrayBlockingQueue<>(Math.max(Kpl.getIntProperty("kpl.luceneIndexQueueSize"), 1));
+        indexerThread = new Thread(FullTextTrigger::runIndexer, "Lucene indexer");
+        indexerThread.setDaemon(true);
+        indexerThread.start();
+    }
+
+    /**
+     * Apply the queued updates and stop the background indexer
+     */
+    private static synchronized void stopIndexer() {
+        if (indexerThread == null) {
+            return;
+        }
+        try {
+            indexQueue.put(new IndexUpdate(null, Collections.emptyList()));
+            indexerThread.join();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+        indexerThread = null;
+        //
+        // Apply updates queued while the indexer was stopping
+        //
+        IndexUpdate update;
+        while ((update = indexQueue.poll()) != null) {
+            if (update.getTrigger() != null) {
+                update.getTrigger().queueUpdates(update.getUpdates());
+            }
+        }
+    }
+
+    /**
+     * Apply queued updates to the Lucene index.  Updates waiting in the queue are
+     * applied together and each affected index partition is committed once.
+     */
+    private static void runIndexer() {
+        BlockingQueue<IndexUpdate> queue = indexQueue;
+        boolean stop = false;
+        while (!stop) {
+            try {
+                IndexUpdate update = queue.take();
+                Set<FullTextTrigger> triggers = new HashSet<>();
+                indexerLock.lock();
+                try {
+                    indexerTimestamp = update.getTimestamp();
+                    while (update != null) {
+                        if (update.getTrigger() == null) {
+                            stop = true;
+                            break;
+                        }
+                        try {
+                            update.getTrigger().applyUpdates(update.getUpdates());
+                            triggers.add(update.getTrigger());
+                        } catch (SQLException exc) {
+                            Logger.logErrorMessage("Unable to update the Lucene index", exc);
+                        }
+                        update = queue.poll();
+                    }
+                    for (FullTextTrigger trigger : triggers) {
+                        try {
+                            trigger.commitIndex();
+                        } catch (SQLException exc) {
+                            Logger.logErrorMessage("Unable to update the Lucene index", exc);
+                        }
+                    }
+                } finally {
+                    indexerTimestamp = 0;
+                    indexerLock.unlock();
+                }
+            } catch (InterruptedException exc) {
+                stop = true;
+            } catch (RuntimeException exc) {
+                Logger.logErrorMessage("Lucene indexer error", exc);
+            }
+        }
+    }
+
     /**
      * Initialize the fulltext support for a new database
      *
@@ -260,6 +386,11 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
      */
     public static void reindex(Connection conn) throws SQLException {
         Logger.logInfoMessage("Rebuilding the Lucene search index");
+        //
+        // The indexer is suspended while the index is rebuilt.  Updates committed while
+        // the tables are being read are applied once the index has been rebuilt.
+        //
+        indexerLock.lock();
         try {
             //
             // Delete the current Lucene index
@@ -273,6 +404,8 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
             }
         } catch (SQLException exc) {
             throw new SQLException("Unable to rebuild the Lucene index", exc);
+        } finally {
+            indexerLock.unlock();
         }
         Logger.logInfoMessage("Lucene search index successfully rebuilt");
     }
@@ -315,12 +448,15 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         if (trigger == null) {
             Logger.logErrorMessage("KRS fulltext trigger for table " + tableName + " was not initialized");
         } else {
+            indexerLock.lock();
             try {
                 trigger.reindexTable(conn);
                 Logger.logInfoMessage("Lucene search index created for table " + tableName);
             } catch (SQLException exc) {
                 Logger.logErrorMessage("Unable to create Lucene search index for table " + tableName);
                 throw new SQLException("Unable to create Lucene search index for table " + tableName, exc);
+            } finally {
+                indexerLock.unlock();
             }
         }
     }
@@ -425,29 +561,29 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         // Perform the search
         //
         // The _QUERY field contains the table and row identification (schema.table;keyName;keyValue)
-        // The _TABLE field is used to limit the search results to the current table
         // The _DATA field contains the indexed row data (this is the default search field)
         // The _MODIFIED field contains the row modification time (YYYYMMDDhhmmss) in GMT
         //
+        // The search is limited to the current table since each table has its own index partition
+        //
         indexLock.readLock().lock();
         try {
             QueryParser parser = new QueryParser("_DATA", analyzer);
             parser.setDateResolution("_MODIFIED", DateTools.Resolution.SECOND);
             parser.setDefaultOperator(QueryParser.Operator.AND);
-            Query query = parser.parse("_TABLE:" + schema.toUpperCase() + "." + table.toUpperCase() + " AND (" + queryText + ")");
-            TopDocs documents = indexSearcher.search(query, limit);
-            ScoreDoc[] hits = documents.scoreDocs;
+            Query query = parser.parse(queryText);
+            FullTextIndex.Hit[] hits = getIndexPartition(schema.toUpperCase() + "." + table.toUpperCase())
+                    .search(query, queryText, limit);
             int resultCount = Math.min(hits.length, (limit == 0 ? hits.length : limit));
             int resultOffset = Math.min(offset, resultCount);
             for (int i=resultOffset; i<resultCount; i++) {
-                Document document = indexSearcher.doc(hits[i].doc);
-                String[] indexParts = document.get("_QUERY").split(";");
+                String[] indexParts = hits[i].getQuery().split(";");
                 String[] nameParts = indexParts[0].split("\\.");
                 result.addRow(nameParts[0],
                               nameParts[1],
                               new String[] {indexParts[1]},
                               new Long[] {Long.parseLong(indexParts[2])},
-                              hits[i].score);
+                              hits[i].getScore());
             }
         } catch (ParseException exc) {
             Logger.logDebugMessage("Lucene parse exception for query: " + queryText + "\n" + exc.getMessage());
@@ -596,15 +732,10 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
             return;
         }
         //
-        // Commit the change immediately if we are not in a transaction
+        // Queue the change immediately if we are not in a transaction
         //
         if (!Db.db.isInTransaction()) {
-            try {
-                commitRow(oldRow, newRow);
-                commitIndex();
-            } catch (SQLException exc) {
-                Logger.logErrorMessage("Unable to update the Lucene index", exc);
-            }
+            queueUpdates(Collections.singletonList(new TableUpdate(Thread.currentThread(), oldRow, newRow)));
             return;
         }
         //
@@ -626,32 +757,24 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     @Override
     public void commit() {
         Thread thread = Thread.currentThread();
-        try {
-            //
-            // Update the Lucene index.  Note that a database transaction is associated
-            // with a single thread.  So we will commit just those updates generated
-            // by the current thread.
-            //
-            boolean commit = false;
-            synchronized(tableUpdates) {
-                Iterator<TableUpdate> updateIt = tableUpdates.iterator();
-                while (updateIt.hasNext()) {
-                    TableUpdate update = updateIt.next();
-                    if (update.getThread() == thread) {
-                        commitRow(update.getOldRow(), update.getNewRow());
-                        updateIt.remove();
-                        commit = true;
-                    }
+        //
+        // Queue the Lucene index updates.  Note that a database transaction is associated
+        // with a single thread.  So we will queue just those updates generated
+        // by the current thread.
+        //
+        List<TableUpdate> updates = new ArrayList<>();
+        synchronized(tableUpdates) {
+            Iterator<TableUpdate> updateIt = tableUpdates.iterator();
+            while (updateIt.hasNext()) {
+                TableUpdate update = updateIt.next();
+                if (update.getThread() == thread) {
+                    updates.add(update);
+                    updateIt.remove();
                 }
             }
-            //
-            // Commit the index updates
-            //
-            if (commit) {
-                commitIndex();
-            }
-        } catch (SQLException exc) {
-            Logger.logErrorMessage("Unable to update the Lucene index", exc);
+        }
+        if (!updates.isEmpty()) {
+            queueUpdates(updates);
         }
     }
 
@@ -672,6 +795,45 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         }
     }
 
+    /**
+     * Queue committed table updates for the background indexer.  The updates are applied
+     * immediately if the indexer is not running.
+     *
+     * @param   updates             Committed table updates
+     */
+    private void queueUpdates(List<TableUpdate> updates) {
+        BlockingQueue<IndexUpdate> queue = indexQueue;
+        try {
+            if (queue != null && indexerThread != null) {
+                queue.put(new IndexUpdate(this, updates));
+                return;
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+        indexerLock.lock();
+        try {
+            applyUpdates(updates);
+            commitIndex();
+        } catch (SQLException exc) {
+            Logger.logErrorMessage("Unable to update the Lucene index", exc);
+        } finally {
+            indexerLock.unlock();
+        }
+    }
+
+    /**
+     * Apply committed table updates to the Lucene index
+     *
+     * @param   updates             Committed table updates
+     * @throws  SQLException        Unable to update the index
+     */
+    private void applyUpdates(List<TableUpdate> updates) throws SQLException {
+        for (TableUpdate update : updates) {
+            commitRow(update.getOldRow(), update.getNewRow());
+        }
+    }
+
     /**
      * Update the Lucene index for a committed row
      *
@@ -753,7 +915,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
                 sj.add(data);
             }
             document.add(new TextField("_DATA", sj.toString(), Field.Store.NO));
-            indexWriter.updateDocument(new Term("_QUERY", query), document);
+            getIndexPartition(tableName).updateDocument(new Term("_QUERY", query), document);
         } catch (IOException exc) {
             Logger.logErrorMessage("Unable to index row", exc);
             throw new SQLException("Unable to index row", exc);
@@ -772,7 +934,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         String query = tableName + ";" + columnNames.get(dbColumn) + ";" + (Long)row[dbColumn];
         indexLock.readLock().lock();
         try {
-            indexWriter.deleteDocuments(new Term("_QUERY", query));
+            getIndexPartition(tableName).deleteDocuments(new Term("_QUERY", query));
         } catch (IOException exc) {
             Logger.logErrorMessage("Unable to delete indexed row", exc);
             throw new SQLException("Unable to delete indexed row", exc);
@@ -782,28 +944,48 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     }
 
     /**
-     * Commit the index updates
+     * Commit the index updates for the table
      *
      * @throws  SQLException        Unable to commit index updates
      */
-    private static void commitIndex() throws SQLException {
-        indexLock.writeLock().lock();
+    private void commitIndex() throws SQLException {
+        indexLock.readLock().lock();
         try {
-            indexWriter.commit();
-            DirectoryReader newReader = DirectoryReader.openIfChanged(indexReader);
-            if (newReader != null) {
-                indexReader.close();
-                indexReader = newReader;
-                indexSearcher = new IndexSearcher(indexReader);
-            }
+            getIndexPartition(tableName).commit();
         } catch (IOException exc) {
             Logger.logErrorMessage("Unable to commit Lucene index updates", exc);
             throw new SQLException("Unable to commit Lucene index updates", exc);
         } finally {
-            indexLock.writeLock().unlock();
+            indexLock.readLock().unlock();
         }
     }
 
+    /**
+     * Get the Lucene index partition for a table.  The index partition is opened
+     * if it is not already open.  The caller must hold the index read or write lock.
+     *
+     * @param   tableName           Table name (schema.table)
+     * @return                      Index partition
+     * @throws  IOException         Unable to open the index partition
+     */
+    private static FullTextIndex getIndexPartition(String tableName) throws IOException {
+        FullTextIndex indexPartition = indexPartitions.get(tableName);
+        if (indexPartition == null) {
+            synchronized (indexPartitions) {
+                indexPartition = indexPartitions.get(tableName);
+                if (indexPartition == null) {
+                    Path partitionPath = indexPath.resolve(tableName);
+                    if (!Files.exists(partitionPath)) {
+                        Files.createDirectory(partitionPath);
+                    }
+                    indexPartition = new FullTextIndex(partitionPath, analyzer, Kpl.getIntProperty("kpl.luceneQueryCacheSize"));
+                    indexPartitions.put(tableName, indexPartition);
+                }
+            }
+        }
+        return indexPartition;
+    }
+
     /**
      * Get the Lucene index path
      *
@@ -841,42 +1023,15 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
         if (!isActive) {
             throw new SQLException("KRS is no longer active");
         }
-        boolean obtainedUpdateLock = false;
-        if (!indexLock.writeLock().hasLock()) {
-            indexLock.updateLock().lock();
-            obtainedUpdateLock = true;
-        }
-        try {
-            if (indexPath == null || indexWriter == null) {
-                indexLock.writeLock().lock();
-                try {
-                    if (indexPath == null) {
-                        getIndexPath(conn);
-                    }
-                    if (directory == null) {
-                        directory = FSDirectory.open(indexPath);
-                    }
-                    if (indexWriter == null) {
-                        IndexWriterConfig config = new IndexWriterConfig(analyzer);
-                        config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-                        indexWriter = new IndexWriter(directory, config);
-                        Document document = new Document();
-                        document.add(new StringField("_QUERY", "_CONTROL_DOCUMENT_", Field.Store.YES));
-                        indexWriter.updateDocument(new Term("_QUERY", "_CONTROL_DOCUMENT_"), document);
-                        indexWriter.commit();
-                        indexReader = DirectoryReader.open(directory);
-                        indexSearcher = new IndexSearcher(indexReader);
-                    }
-                } finally {
-                    indexLock.writeLock().unlock();
-                }
-            }
-        } catch (IOException | SQLException exc) {
-            Logger.logErrorMessage("Unable to access the Lucene index", exc);
-            throw new SQLException("Unable to access the Lucene index", exc);
-        } finally {
-            if (obtainedUpdateLock) {
-                indexLock.updateLock().unlock();
+        //
+        // The index partitions are opened when they are first used
+        //
+        if (indexPath == null) {
+            try {
+                getIndexPath(conn);
+            } catch (SQLException exc) {
+                Logger.logErrorMessage("Unable to access the Lucene index", exc);
+                throw new SQLException("Unable to access the Lucene index", exc);
             }
         }
     }
@@ -887,19 +1042,14 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
     private static void removeIndexAccess() {
         indexLock.writeLock().lock();
         try {
-            if (indexSearcher != null) {
-                indexSearcher = null;
-            }
-            if (indexReader != null) {
-                indexReader.close();
-                indexReader = null;
-            }
-            if (indexWriter != null) {
-                indexWriter.close();
-                indexWriter = null;
+            for (FullTextIndex indexPartition : indexPartitions.values()) {
+                try {
+                    indexPartition.close();
+                } catch (IOException exc) {
+                    Logger.logErrorMessage("Unable to remove Lucene index access", exc);
+                }
             }
-        } catch (IOException exc) {
-            Logger.logErrorMessage("Unable to remove Lucene index access", exc);
+            indexPartitions.clear();
         } finally {
             indexLock.writeLock().unlock();
         }
@@ -912,6 +1062,7 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
      * @throws  SQLException        I/O error occurred
      */
     private static void removeIndexFiles(Connection conn) throws SQLException {
+        indexerLock.lock();
         indexLock.writeLock().lock();
         try {
             //
@@ -919,11 +1070,12 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
             //
             removeIndexAccess();
             //
-            // Delete the index files
+            // Delete the index files and the index partition directories
             //
             getIndexPath(conn);
-            try (Stream<Path> stream = Files.list(indexPath)) {
-                Path[] paths = stream.toArray(Path[]::new);
+            try (Stream<Path> stream = Files.walk(indexPath)) {
+                Path[] paths = stream.filter(path -> !path.equals(indexPath))
+                        .sorted(Comparator.reverseOrder()).toArray(Path[]::new);
                 for (Path path : paths) {
                     Files.delete(path);
                 }
@@ -938,6 +1090,60 @@ public class FullTextTrigger implements Trigger, TransactionalDb.TransactionCall
             throw new SQLException("Unable to remove Lucene index files", exc);
         } finally {
             indexLock.writeLock().unlock();
+            indexerLock.unlock();
+        }
+    }
+
+    /**
+     * Committed table updates waiting to be indexed
+     */
+    private static class IndexUpdate {
+
+        /** Index trigger or null to stop the indexer */
+        private final FullTextTrigger trigger;
+
+        /** Table updates */
+        private final List<TableUpdate> updates;
+
+        /** Queue time */
+        private final long timestamp = System.currentTimeMillis();
+
+        /**
+         * Create the index update
+         *
+         * @param   trigger         Index trigger or null to stop the indexer
+         * @param   updates         Table updates
+         */
+        public IndexUpdate(FullTextTrigger trigger, List<TableUpdate> updates) {
+            this.trigger = trigger;
+            this.updates = updates;
+        }
+
+        /**
+         * Return the index trigger
+         *
+         * @return                  Index trigger or null to stop the indexer
+         */
+        public FullTextTrigger getTrigger() {
+            return trigger;
+        }
+
+        /**
+         * Return the table updates
+         *
+         * @return                  Table updates
+         */
+        public List<TableUpdate> getUpdates() {
+            return updates;
+        }
+
+        /**
+         * Return the queue time
+         *
+         * @return                  Queue time in milliseconds
+         */
+        public long getTimestamp() {
+            return timestamp;
         }
     }
 
@@ -0,0 +1,208 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.db;
+
+import kpl.Kpl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+final class JdbcEntityStore<T> implements EntityStore<T> {
+
+    private final TransactionalDb db;
+    private final EntityDbTable<T> entityTable;
+    private final String table;
+    private final DbKey.Factory<T> dbKeyFactory;
+    private final boolean multiversion;
+
+    JdbcEntityStore(TransactionalDb db, EntityDbTable<T> entityTable, String table, DbKey.Factory<T> dbKeyFactory, boolean multiversion) {
+        this.db = db;
+        this.entityTable = entityTable;
+        this.table = table;
+        this.dbKeyFactory = dbKeyFactory;
+        this.multiversion = multiversion;
+    }
+
+    @Override
+    public T get(DbKey dbKey) {
+        try (Connection con = db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + dbKeyFactory.getPKClause()
+             + (multiversion ? " AND latest = TRUE LIMIT 1" : ""))) {
+            dbKey.setPK(pstmt);
+            return get(con, pstmt, dbKey);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    @Override
+    public T get(DbKey dbKey, int height) {
+        try (Connection con = db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + dbKeyFactory.getPKClause()
+                     + " AND height <= ?" + (multiversion ? " AND (latest = TRUE OR EXISTS ("
+                     + "SELECT 1 FROM " + table + dbKeyFactory.getPKClause() + " AND height > ?)) ORDER BY height DESC LIMIT 1" : ""))) {
+            int i = dbKey.setPK(pstmt);
+            pstmt.setInt(i, height);
+            if (multiversion) {
+                i = dbKey.setPK(pstmt, ++i);
+                pstmt.setInt(i, height);
+            }
+            return get(con, pstmt, dbKey);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    @Override
+    public List<T> getByKeyPrefix(long idA) {
+        if (!(dbKeyFactory instanceof DbKey.LinkKeyFactory)) {
+            throw new UnsupportedOperationException("Key prefix scan is only supported for link keys");
+        }
+        List<T> result = new ArrayList<>();
+        try (Connection con = db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + " WHERE "
+                     + ((DbKey.LinkKeyFactory<T>)dbKeyFactory).getIdColumnA() + " = ?"
+                     + (multiversion ? " AND latest = TRUE" : "") + " ORDER BY " + dbKeyFactory.getPKColumns())) {
+            pstmt.setLong(1, idA);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    result.add(entityTable.load(con, rs, dbKeyFactory.newKey(rs)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        return result;
+    }
+
+    private T get(Connection con, PreparedStatement pstmt, DbKey dbKey) throws SQLException {
+        try (ResultSet rs = pstmt.executeQuery()) {
+            if (!rs.next()) {
+                return null;
+            }
+            T t = entityTable.load(con, rs, dbKey);
+            if (rs.next()) {
+                throw new RuntimeException("Multiple records found");
+            }
+            return t;
+        }
+    }
+
+    T load(Connection con, ResultSet rs, DbKey dbKey) throws SQLException {
+        return entityTable.load(con, rs, dbKey);
+    }
+
+    @Override
+    public void put(DbKey dbKey, T t) {
+        try (Connection con = db.getConnection()) {
+            if (multiversion) {
+                try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
+                        + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
+                    dbKey.setPK(pstmt);
+                    pstmt.executeUpdate();
+                }
+            }
+            entityTable.save(con, t);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    @Override
+    public boolean delete(DbKey dbKey, T t) {
+        if (!multiversion) {
+            throw new UnsupportedOperationException("Delete is only supported for versioned tables");
+        }
+        try (Connection con = db.getConnection();
+             PreparedStatement pstmtCount = con.prepareStatement("SELECT 1 FROM " + table
+                     + dbKeyFactory.getPKClause() + " AND height < ? LIMIT 1")) {
+            int i = dbKey.setPK(pstmtCount);
+            pstmtCount.setInt(i, Kpl.getBlockchain().getHeight());
+            try (ResultSet rs = pstmtCount.executeQuery()) {
+                if (rs.next()) {
+                    try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
+                            + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
+                        dbKey.setPK(pstmt);
+                        pstmt.executeUpdate();
+                        entityTable.save(con, t);
+                        pstmt.executeUpdate(); // delete after the save
+                    }
+                    return true;
+                } else {
+                    try (PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + dbKeyFactory.getPKClause())) {
+                        dbKey.setPK(pstmtDelete);
+                        return pstmtDelete.executeUpdate() > 0;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    @Override
+    public void rollback(int height) {
+        if (multiversion) {
+            VersionedEntityDbTable.rollback(db, table, height, dbKeyFactory);
+            return;
+        }
+        if (!db.isInTransaction()) {
+            throw new IllegalStateException("Not in transaction");
+        }
+        try (Connection con = db.getConnection();
+             PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + " WHERE height > ?")) {
+            pstmtDelete.setInt(1, height);
+            pstmtDelete.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    @Override
+    public void reload(List<DbKey> dbKeys) {
+    }
+
+    @Override
+    public void trim(int height) {
+        if (multiversion) {
+            VersionedEntityDbTable.trim(db, table, height, dbKeyFactory);
+        }
+    }
+
+    @Override
+    public void truncate() {
+        if (!db.isInTransaction()) {
+            throw new IllegalStateException("Not in transaction");
+        }
+        try (Connection con = db.getConnection();
+             Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("TRUNCATE TABLE " + table);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    @Override
+    public void reset() {
+    }
+
+}
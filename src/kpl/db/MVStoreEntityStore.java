@@ -0,0 +1,320 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.db;
+
+import kpl.Db;
+import kpl.Kpl;
+import kpl.util.Logger;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Cache the latest committed version of each entity in an MVStore map in front of the
+ * JDBC store.  The database table is the source of truth: updates are written to the
+ * table and to a per-transaction change set, which is applied to the map when the
+ * database transaction commits and discarded when it rolls back.  Rows changed directly
+ * in the table, such as by a rollback, are reloaded from the table.  The map holds all
+ * latest rows of the table, so lookups by key, including lookups of entities which do
+ * not exist, are answered without SQL.  A link key is stored as a UUID, which the map
+ * orders by the first and then the second identifier, so the entities sharing the first
+ * identifier of a link key are read with a single range scan.
+ *
+ * The map reflects the main database.  Requests routed to the read-only replica read the
+ * replica tables instead, so they see the same height as the rest of the replica.  The
+ * maps are kept in a file next to the database and only the MVStore page cache, limited
+ * by kpl.keyValueStoreCacheSize, is kept in memory.  The file is recreated when the
+ * server is started since the maps are loaded from the database on first use.
+ */
+final class MVStoreEntityStore<T> implements EntityStore<T> {
+
+    private static final MVStore mvStore = openStore();
+
+    private final TransactionalDb db;
+    private final JdbcEntityStore<T> jdbcStore;
+    private final String table;
+    private final DbKey.Factory<T> dbKeyFactory;
+    private final Codec<T> codec;
+    private final MVMap<Object, byte[]> map;
+    private final ThreadLocal<Changes> localChanges = new ThreadLocal<>();
+    private volatile boolean loaded;
+
+    MVStoreEntityStore(TransactionalDb db, JdbcEntityStore<T> jdbcStore, String table, DbKey.Factory<T> dbKeyFactory, Codec<T> codec) {
+        this.db = db;
+        this.jdbcStore = jdbcStore;
+        this.table = table;
+        this.dbKeyFactory = dbKeyFactory;
+        this.codec = codec;
+        this.map = mvStore.openMap(table);
+    }
+
+    @Override
+    public T get(DbKey dbKey) {
+        if (isReplicaRequest()) {
+            return jdbcStore.get(dbKey);
+        }
+        Object key = toKey(dbKey);
+        byte[] bytes;
+        Changes changes = db.isInTransaction() ? localChanges.get() : null;
+        if (changes != null && (changes.truncated || changes.updates.containsKey(key))) {
+            bytes = changes.updates.get(key);
+        } else {
+            load();
+            bytes = map.get(key);
+        }
+        return bytes != null ? codec.decode(dbKey, bytes) : null;
+    }
+
+    @Override
+    public T get(DbKey dbKey, int height) {
+        return jdbcStore.get(dbKey, height);
+    }
+
+    @Override
+    public List<T> getByKeyPrefix(long idA) {
+        if (!(dbKeyFactory instanceof DbKey.LinkKeyFactory)) {
+            throw new UnsupportedOperationException("Key prefix scan is only supported for link keys");
+        }
+        if (isReplicaRequest()) {
+            return jdbcStore.getByKeyPrefix(idA);
+        }
+        DbKey.LinkKeyFactory<T> linkKeyFactory = (DbKey.LinkKeyFactory<T>)dbKeyFactory;
+        TreeMap<Object, byte[]> entries = new TreeMap<>();
+        Changes changes = db.isInTransaction() ? localChanges.get() : null;
+        if (changes == null || !changes.truncated) {
+            load();
+            UUID to = new UUID(idA, Long.MAX_VALUE);
+            Cursor<Object, byte[]> cursor = map.cursor(new UUID(idA, Long.MIN_VALUE));
+            while (cursor.hasNext()) {
+                Object key = cursor.next();
+                if (((UUID)key).compareTo(to) > 0) {
+                    break;
+                }
+                entries.put(key, cursor.getValue());
+            }
+        }
+        if (changes != null) {
+            changes.updates.forEach((key, bytes) -> {
+                if (((UUID)key).getMostSignificantBits() == idA) {
+                    if (bytes != null) {
+                        entries.put(key, bytes);
+                    } else {
+                        entries.remove(key);
+                    }
+                }
+            });
+        }
+        List<T> result = new ArrayList<>(entries.size());
+        entries.forEach((key, bytes) -> {
+            UUID uuid = (UUID)key;
+            result.add(codec.decode(linkKeyFactory.newKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits()), bytes));
+        });
+        return result;
+    }
+
+    @Override
+    public void put(DbKey dbKey, T t) {
+        jdbcStore.put(dbKey, t);
+        getChanges().updates.put(toKey(dbKey), codec.encode(t));
+    }
+
+    @Override
+    public boolean delete(DbKey dbKey, T t) {
+        boolean deleted = jdbcStore.delete(dbKey, t);
+        getChanges().updates.put(toKey(dbKey), null);
+        return deleted;
+    }
+
+    @Override
+    public void rollback(int height) {
+        List<DbKey> dbKeys = new ArrayList<>();
+        try (Connection con = db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("SELECT DISTINCT " + dbKeyFactory.getPKColumns()
+                     + " FROM " + table + " WHERE height > ?")) {
+            pstmt.setInt(1, height);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    dbKeys.add(dbKeyFactory.newKey(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        jdbcStore.rollback(height);
+        reload(dbKeys);
+    }
+
+    @Override
+    public void reload(List<DbKey> dbKeys) {
+        Changes changes = getChanges();
+        for (DbKey dbKey : dbKeys) {
+            T t = jdbcStore.get(dbKey);
+            changes.updates.put(toKey(dbKey), t != null ? codec.encode(t) : null);
+        }
+    }
+
+    @Override
+    public void trim(int height) {
+        jdbcStore.trim(height);
+    }
+
+    @Override
+    public void truncate() {
+        jdbcStore.truncate();
+        Changes changes = getChanges();
+        changes.truncated = true;
+        changes.updates.clear();
+    }
+
+    @Override
+    public synchronized void reset() {
+        map.clear();
+        loaded = false;
+        localChanges.remove();
+    }
+
+    /**
+     * Check if the current request reads from the replica
+     *
+     * @return                      TRUE if the replica tables must be used
+     */
+    private boolean isReplicaRequest() {
+        return !db.isInTransaction() && db.isReadOnlyRequest();
+    }
+
+    private Changes getChanges() {
+        Changes changes = localChanges.get();
+        if (changes == null) {
+            changes = new Changes();
+            localChanges.set(changes);
+            db.registerCallback(changes);
+        }
+        return changes;
+    }
+
+    /**
+     * Load the latest rows of the table from the database the first time the map is used.
+     * Change sets committed while the map is being loaded are applied after the load
+     * completes, and change sets committed before the load started are already
+     * included in the rows read from the database.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            map.clear();
+            try (Connection con = db.getPooledConnection()) {
+                con.setAutoCommit(true);
+                try (PreparedStatement pstmt = con.prepareStatement("SELECT * FROM " + table + " WHERE latest = TRUE");
+                     ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        DbKey dbKey = dbKeyFactory.newKey(rs);
+                        map.put(toKey(dbKey), codec.encode(jdbcStore.load(con, rs, dbKey)));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+            loaded = true;
+            Logger.logDebugMessage("Loaded " + map.size() + " rows from " + table + " into the key-value store in "
+                    + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    private synchronized void apply(Changes changes) {
+        if (!loaded) {
+            return;
+        }
+        if (changes.truncated) {
+            map.clear();
+        }
+        changes.updates.forEach((key, bytes) -> {
+            if (bytes != null) {
+                map.put(key, bytes);
+            } else {
+                map.remove(key);
+            }
+        });
+        mvStore.commit();
+    }
+
+    private static MVStore openStore() {
+        String fileName = Kpl.getDbDir(Kpl.getStringProperty(Db.PREFIX + "Dir")) + "_kv.mv.db";
+        try {
+            Files.deleteIfExists(Paths.get(fileName));
+        } catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        return new MVStore.Builder()
+                .fileName(fileName)
+                .cacheSize(Math.max(Kpl.getIntProperty("kpl.keyValueStoreCacheSize", 64), 1))
+                .open();
+    }
+
+    private static Object toKey(DbKey dbKey) {
+        if (dbKey instanceof DbKey.LongKey) {
+            return ((DbKey.LongKey)dbKey).getId();
+        }
+        if (dbKey instanceof DbKey.LinkKey) {
+            // a link key is stored as a pair of longs, which the MVStore data type supports natively as a UUID
+            long[] id = ((DbKey.LinkKey)dbKey).getId();
+            return new UUID(id[0], id[1]);
+        }
+        return ((DbKey.StringKey)dbKey).getId();
+    }
+
+    /**
+     * Changes made by the current database transaction, a null value is a deleted entity
+     */
+    private final class Changes implements TransactionalDb.TransactionCallback {
+
+        private final Map<Object, byte[]> updates = new HashMap<>();
+        private boolean truncated;
+
+        @Override
+        public void commit() {
+            localChanges.remove();
+            apply(this);
+        }
+
+        @Override
+        public void rollback() {
+            localChanges.remove();
+        }
+
+    }
+
+}
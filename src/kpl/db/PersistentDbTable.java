@@ -30,6 +30,11 @@ public abstract class PersistentDbTable<T> extends EntityDbTable<T> {
         super(table, dbKeyFactory, multiversion, fullTextSearchColumns);
     }
 
+    PersistentDbTable(String table, DbKey.Factory<T> dbKeyFactory, boolean multiversion, String fullTextSearchColumns,
+                      EntityStore.Codec<T> codec) {
+        super(table, dbKeyFactory, multiversion, fullTextSearchColumns, codec);
+    }
+
     @Override
     public void rollback(int height) {
     }
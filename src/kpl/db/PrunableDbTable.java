@@ -38,6 +38,11 @@ public abstract class PrunableDbTable<T> extends PersistentDbTable<T> {
         super(table, dbKeyFactory, multiversion, fullTextSearchColumns);
     }
 
+    PrunableDbTable(String table, DbKey.Factory<T> dbKeyFactory, boolean multiversion, String fullTextSearchColumns,
+                    EntityStore.Codec<T> codec) {
+        super(table, dbKeyFactory, multiversion, fullTextSearchColumns, codec);
+    }
+
     @Override
     public final void trim(int height) {
         prune();
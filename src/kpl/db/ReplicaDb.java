@@ -0,0 +1,610 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.db;
+
+import kpl.Block;
+import kpl.BlockchainProcessor;
+import kpl.Constants;
+import kpl.Kpl;
+import kpl.util.Logger;
+import kpl.util.ThreadPool;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Read-only follower copy of the blockchain database, used to serve API requests
+ * without contending with block processing.
+ * <p>
+ * Every table with a height column is copied from the writer database one batch of blocks at a time.
+ * The rows at the last replicated height and above form the change feed: they are replaced on each
+ * synchronization, the latest flags of versioned tables are updated for the keys they contain, and a
+ * block id mismatch at the replicated height rolls the copy back to the common block.  The blockchain
+ * lock is not held while the tables are copied, and a copy is discarded if blocks were popped off before
+ * it is committed.  Tables without a height column and tables which are changed below the last block are
+ * linked to the writer database.
+ */
+public final class ReplicaDb {
+
+    private static final String WRITER_PREFIX = "WRITER_";
+    private static final int SYNC_BATCH_SIZE = 1440;
+    private static final int INSERT_BATCH_SIZE = 500;
+    /**
+     * Tables with a height column which are linked to the writer database instead of being copied.  Besides
+     * the tables which are not part of the blockchain state, these are the tables which are changed at
+     * heights below the last block (tag counts of restored tagged data, votes and phasing polls deleted when
+     * trimmed and the trimmed account ledger).  A copy by height would keep serving the old rows.  Prunable
+     * tables are linked for the same reason, since pruned data is restored at its original height.
+     */
+    private static final Set<String> linkedTables = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "UNCONFIRMED_TRANSACTION", "SCAN", "VERSION", "DATA_TAG", "VOTE", "PHASING_POLL", "PHASING_POLL_VOTER",
+            "PHASING_VOTE", "PHASING_POLL_LINKED_TRANSACTION", "ACCOUNT_LEDGER")));
+
+    private static final class ReplicatedTable {
+
+        private final String name;
+        private final DbKey.Factory<?> dbKeyFactory;
+        private String insertSql;
+
+        private ReplicatedTable(String name, DerivedDbTable derivedTable) {
+            this.name = name;
+            this.dbKeyFactory = derivedTable != null ? derivedTable.getVersionedKeyFactory() : null;
+        }
+    }
+
+    private final TransactionalDb writer;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final Supplier<List<DerivedDbTable>> derivedTables;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicInteger poppedBlockCount = new AtomicInteger();
+    private final boolean trimDerivedTables = Kpl.getBooleanProperty("kpl.trimDerivedTables");
+    private final int trimFrequency = Kpl.getIntProperty("kpl.trimFrequency");
+    private Connection con;
+    private List<ReplicatedTable> tables;
+    private int writerVersion;
+    private volatile boolean available;
+    private volatile boolean rebuild;
+    private volatile int height = -1;
+    private volatile long lastBlockId;
+    private volatile Block lastBlock;
+    private final ThreadLocal<Block> requestLastBlock = new ThreadLocal<>();
+
+    public ReplicaDb(TransactionalDb writer, String url, String username, String password,
+                     Supplier<List<DerivedDbTable>> derivedTables) {
+        this.writer = writer;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.derivedTables = derivedTables;
+    }
+
+    public void init() {
+        Logger.logDebugMessage("API replica database jdbc url set to %s", url);
+        ThreadPool.runBeforeStart(() -> {
+            Kpl.getBlockchainProcessor().addListener(block -> rebuild = true, BlockchainProcessor.Event.RESCAN_BEGIN);
+            Kpl.getBlockchainProcessor().addListener(block -> poppedBlockCount.incrementAndGet(),
+                    BlockchainProcessor.Event.BLOCK_POPPED);
+        }, false);
+        ThreadPool.scheduleThread("ReplicaSync", this::synchronize, 1);
+    }
+
+    public void shutdown() {
+        lock.writeLock().lock();
+        try {
+            available = false;
+            if (con != null) {
+                DbUtils.close(con);
+                con = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Check if the replica has caught up with the writer database and can serve requests
+     *
+     * @return                      TRUE if the replica is available
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Return the last block copied to the replica if the current thread holds the replica read lock
+     *
+     * The blockchain returns this block as the last block to API requests served from the replica,
+     * so the blockchain height matches the replicated tables.
+     *
+     * @return                      Last replicated block or null
+     */
+    public Block getRequestLastBlock() {
+        return requestLastBlock.get();
+    }
+
+    /**
+     * Obtain the replica read lock.  The replica contents do not change while the read lock is held,
+     * and the blockchain last block seen by the current thread is the last replicated block.
+     */
+    public void readLock() {
+        lock.readLock().lock();
+        requestLastBlock.set(lastBlock);
+    }
+
+    public void readUnlock() {
+        lock.readLock().unlock();
+        if (lock.getReadHoldCount() == 0) {
+            requestLastBlock.remove();
+        }
+    }
+
+    private void synchronize() {
+        try {
+            try {
+                if (con == null) {
+                    con = DriverManager.getConnection(url, username, password);
+                    con.setAutoCommit(false);
+                    open();
+                }
+                if (rebuild) {
+                    rebuild();
+                }
+                while (synchronizeBatch()) {
+                    if (rebuild) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                Logger.logMessage("Error synchronizing API replica database", e);
+                if (con != null) {
+                    try {
+                        con.rollback();
+                    } catch (SQLException ignore) {}
+                }
+            }
+        } catch (Throwable t) {
+            Logger.logErrorMessage("CRITICAL ERROR. PLEASE REPORT TO THE DEVELOPERS.\n" + t.toString());
+            t.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    private void open() throws SQLException {
+        rebuild = true;
+        try (Connection writerCon = writer.getConnection()) {
+            writerVersion = getWriterVersion(writerCon);
+        }
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES "
+                     + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'REPLICA_STATUS'")) {
+            rs.next();
+            if (rs.getInt(1) == 0) {
+                return;
+            }
+        }
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT height, block_id, db_version FROM replica_status")) {
+            if (!rs.next() || rs.getInt("db_version") != writerVersion) {
+                return;
+            }
+            height = rs.getInt("height");
+            lastBlockId = rs.getLong("block_id");
+        }
+        try (Connection writerCon = writer.getConnection()) {
+            tables = getReplicatedTables(writerCon);
+            if (!isLayoutCurrent(writerCon)) {
+                return;
+            }
+        }
+        rebuild = false;
+        Logger.logMessage("API replica database resumed at height " + height);
+    }
+
+    private void rebuild() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            available = false;
+            rebuild = true;
+            height = -1;
+            lastBlockId = 0;
+            lastBlock = null;
+            Logger.logMessage("Rebuilding API replica database");
+            try (Connection writerCon = writer.getConnection();
+                 Statement stmt = con.createStatement()) {
+                writerVersion = getWriterVersion(writerCon);
+                stmt.executeUpdate("DROP ALL OBJECTS");
+                tables = getReplicatedTables(writerCon);
+                Set<String> replicated = new HashSet<>();
+                for (ReplicatedTable table : tables) {
+                    replicated.add(table.name);
+                    stmt.executeUpdate(linkedTableSql(WRITER_PREFIX + table.name, table.name));
+                    stmt.executeUpdate("CREATE TABLE " + table.name + " AS SELECT * FROM " + WRITER_PREFIX + table.name + " WHERE FALSE");
+                    stmt.executeUpdate("DROP TABLE " + WRITER_PREFIX + table.name);
+                    createIndexes(writerCon, stmt, table.name);
+                }
+                for (String tableName : getWriterTables(writerCon)) {
+                    if (!replicated.contains(tableName)) {
+                        stmt.executeUpdate(linkedTableSql(tableName, tableName));
+                    }
+                }
+                stmt.executeUpdate("CREATE TABLE replica_status (height INT NOT NULL, block_id BIGINT NOT NULL, db_version INT NOT NULL)");
+            }
+            con.commit();
+            rebuild = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copy the next batch of blocks from the writer database
+     *
+     * @return                      TRUE if more blocks remain to be copied
+     */
+    private boolean synchronizeBatch() throws SQLException {
+        int replicaHeight = height;
+        int commonHeight = replicaHeight;
+        int fromHeight;
+        int toHeight;
+        int writerHeight;
+        long toBlockId;
+        int blocksPopped;
+        //
+        // The blockchain read lock is held only while the blocks to copy are selected, so block
+        // processing is not blocked while the tables are copied
+        //
+        Kpl.getBlockchain().readLock();
+        try {
+            blocksPopped = poppedBlockCount.get();
+            writerHeight = Kpl.getBlockchain().getHeight();
+            if (replicaHeight >= 0) {
+                commonHeight = getCommonHeight(replicaHeight, writerHeight);
+                if (commonHeight < 0) {
+                    rebuild = true;
+                    return false;
+                }
+                if (commonHeight == replicaHeight && replicaHeight == writerHeight) {
+                    if (!available) {
+                        lastBlock = Kpl.getBlockchain().getBlockAtHeight(replicaHeight);
+                        Logger.logMessage("API replica database is available at height " + replicaHeight);
+                        available = true;
+                    }
+                    return false;
+                }
+            }
+            fromHeight = Math.max(commonHeight, 0);
+            toHeight = Math.min(writerHeight, fromHeight + SYNC_BATCH_SIZE);
+            toBlockId = Kpl.getBlockchain().getBlockIdAtHeight(toHeight);
+        } finally {
+            Kpl.getBlockchain().readUnlock();
+        }
+        if (commonHeight < replicaHeight) {
+            Logger.logDebugMessage("Rolling back API replica database from height " + replicaHeight + " to " + commonHeight);
+            rollback(commonHeight);
+        }
+        try (Connection writerCon = writer.getConnection()) {
+            for (ReplicatedTable table : tables) {
+                copy(writerCon, table, fromHeight, toHeight);
+            }
+        }
+        if (trimDerivedTables && toHeight / trimFrequency > fromHeight / trimFrequency) {
+            trim(Math.max(toHeight - Constants.MAX_ROLLBACK, 0));
+        }
+        try (PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM replica_status");
+             PreparedStatement pstmtInsert = con.prepareStatement("INSERT INTO replica_status (height, block_id, db_version) VALUES (?, ?, ?)")) {
+            pstmtDelete.executeUpdate();
+            pstmtInsert.setInt(1, toHeight);
+            pstmtInsert.setLong(2, toBlockId);
+            pstmtInsert.setInt(3, writerVersion);
+            pstmtInsert.executeUpdate();
+        }
+        //
+        // Discard the copy if blocks were popped off while the tables were being copied.  The
+        // replica is rolled back to the common block by the next synchronization.
+        //
+        Block toBlock;
+        Kpl.getBlockchain().readLock();
+        try {
+            toBlock = Kpl.getBlockchain().getHeight() >= toHeight ? Kpl.getBlockchain().getBlockAtHeight(toHeight) : null;
+            if (poppedBlockCount.get() != blocksPopped || toBlock == null || toBlock.getId() != toBlockId) {
+                Logger.logDebugMessage("Blockchain changed while copying blocks " + fromHeight + " to " + toHeight
+                        + " to the API replica database");
+                con.rollback();
+                return true;
+            }
+        } finally {
+            Kpl.getBlockchain().readUnlock();
+        }
+        lock.writeLock().lock();
+        try {
+            con.commit();
+            height = toHeight;
+            lastBlockId = toBlockId;
+            lastBlock = toBlock;
+            if (!available && toHeight == writerHeight) {
+                Logger.logMessage("API replica database is available at height " + toHeight);
+                available = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return toHeight < writerHeight;
+    }
+
+    private int getCommonHeight(int replicaHeight, int writerHeight) throws SQLException {
+        int commonHeight = Math.min(replicaHeight, writerHeight);
+        try (PreparedStatement pstmt = con.prepareStatement("SELECT id FROM block WHERE height = ?")) {
+            while (commonHeight >= 0 && replicaHeight - commonHeight <= Constants.MAX_ROLLBACK) {
+                long replicaBlockId;
+                if (commonHeight == replicaHeight) {
+                    replicaBlockId = lastBlockId;
+                } else {
+                    pstmt.setInt(1, commonHeight);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        replicaBlockId = rs.next() ? rs.getLong("id") : 0;
+                    }
+                }
+                if (replicaBlockId == Kpl.getBlockchain().getBlockIdAtHeight(commonHeight)) {
+                    return commonHeight;
+                }
+                commonHeight -= 1;
+            }
+        }
+        return -1;
+    }
+
+    private void rollback(int height) throws SQLException {
+        for (ReplicatedTable table : tables) {
+            if (table.dbKeyFactory != null) {
+                VersionedEntityDbTable.rollback(con, table.name, height, table.dbKeyFactory);
+            } else {
+                try (PreparedStatement pstmt = con.prepareStatement("DELETE FROM " + table.name + " WHERE height > ?")) {
+                    pstmt.setInt(1, height);
+                    pstmt.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private void copy(Connection writerCon, ReplicatedTable table, int fromHeight, int toHeight) throws SQLException {
+        try (PreparedStatement pstmt = con.prepareStatement("DELETE FROM " + table.name + " WHERE height >= ?")) {
+            pstmt.setInt(1, fromHeight);
+            pstmt.executeUpdate();
+        }
+        try (PreparedStatement pstmtSelect = writerCon.prepareStatement("SELECT * FROM " + table.name
+                + " WHERE height >= ? AND height <= ?")) {
+            pstmtSelect.setInt(1, fromHeight);
+            pstmtSelect.setInt(2, toHeight);
+            try (ResultSet rs = pstmtSelect.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                if (table.insertSql == null) {
+                    StringBuilder columns = new StringBuilder();
+                    StringBuilder values = new StringBuilder();
+                    for (int i = 1; i <= columnCount; i++) {
+                        if (i > 1) {
+                            columns.append(", ");
+                            values.append(", ");
+                        }
+                        columns.append(metaData.getColumnName(i));
+                        values.append('?');
+                    }
+                    table.insertSql = "INSERT INTO " + table.name + " (" + columns + ") VALUES (" + values + ")";
+                }
+                try (PreparedStatement pstmtInsert = con.prepareStatement(table.insertSql)) {
+                    int count = 0;
+                    while (rs.next()) {
+                        for (int i = 1; i <= columnCount; i++) {
+                            pstmtInsert.setObject(i, rs.getObject(i));
+                        }
+                        pstmtInsert.addBatch();
+                        if (++count % INSERT_BATCH_SIZE == 0) {
+                            pstmtInsert.executeBatch();
+                        }
+                    }
+                    if (count % INSERT_BATCH_SIZE != 0) {
+                        pstmtInsert.executeBatch();
+                    }
+                }
+            }
+        }
+        if (table.dbKeyFactory != null) {
+            String pkColumns = table.dbKeyFactory.getPKColumns();
+            try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table.name + " SET latest = FALSE "
+                    + "WHERE height < ? AND latest = TRUE AND (" + pkColumns + ") IN (SELECT (" + pkColumns + ") FROM "
+                    + table.name + " WHERE height >= ?)")) {
+                pstmt.setInt(1, fromHeight);
+                pstmt.setInt(2, fromHeight);
+                pstmt.executeUpdate();
+            }
+            restoreLatest(writerCon, table, fromHeight, toHeight);
+        }
+    }
+
+    /**
+     * Set the latest flag of copied rows whose newer version is above the copied blocks
+     *
+     * The writer clears the latest flag of a row when a newer version is added.  The tables are
+     * copied without holding the blockchain lock, and a catch-up batch ends below the writer height,
+     * so a copied row can have its flag cleared by a version which is not part of the copy.  The flag
+     * is restored the same way as it is by a rollback of the writer database to the copied height.
+     */
+    private void restoreLatest(Connection writerCon, ReplicatedTable table, int fromHeight, int toHeight) throws SQLException {
+        DbKey.Factory<?> dbKeyFactory = table.dbKeyFactory;
+        List<DbKey> dbKeys = new ArrayList<>();
+        try (PreparedStatement pstmt = con.prepareStatement("SELECT " + dbKeyFactory.getPKColumns() + " FROM " + table.name
+                + " AS a WHERE a.height >= ? AND a.latest = FALSE AND NOT EXISTS (SELECT 1 FROM " + table.name + " AS b WHERE"
+                + dbKeyFactory.getSelfJoinClause() + "AND b.height > a.height)")) {
+            pstmt.setInt(1, fromHeight);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    dbKeys.add(dbKeyFactory.newKey(rs));
+                }
+            }
+        }
+        if (dbKeys.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmtNewer = writerCon.prepareStatement("SELECT 1 FROM " + table.name
+                + dbKeyFactory.getPKClause() + " AND height > ? LIMIT 1");
+             PreparedStatement pstmtSetLatest = con.prepareStatement("UPDATE " + table.name
+                     + " SET latest = TRUE " + dbKeyFactory.getPKClause() + " AND height ="
+                     + " (SELECT MAX(height) FROM " + table.name + dbKeyFactory.getPKClause() + ")")) {
+            for (DbKey dbKey : dbKeys) {
+                int i = dbKey.setPK(pstmtNewer, 1);
+                pstmtNewer.setInt(i, toHeight);
+                try (ResultSet rs = pstmtNewer.executeQuery()) {
+                    if (!rs.next()) {
+                        continue;
+                    }
+                }
+                i = dbKey.setPK(pstmtSetLatest, 1);
+                dbKey.setPK(pstmtSetLatest, i);
+                pstmtSetLatest.executeUpdate();
+            }
+        }
+    }
+
+    private void trim(int height) throws SQLException {
+        if (height <= 0) {
+            return;
+        }
+        for (ReplicatedTable table : tables) {
+            if (table.dbKeyFactory != null) {
+                VersionedEntityDbTable.trim(con, table.name, height, table.dbKeyFactory);
+            }
+        }
+    }
+
+    private List<ReplicatedTable> getReplicatedTables(Connection writerCon) throws SQLException {
+        Map<String, DerivedDbTable> derivedTableMap = new HashMap<>();
+        for (DerivedDbTable derivedTable : derivedTables.get()) {
+            derivedTableMap.put(derivedTable.toString().toUpperCase(), derivedTable);
+        }
+        List<ReplicatedTable> replicatedTables = new ArrayList<>();
+        DatabaseMetaData metaData = writerCon.getMetaData();
+        for (String tableName : getWriterTables(writerCon)) {
+            DerivedDbTable derivedTable = derivedTableMap.get(tableName);
+            if (linkedTables.contains(tableName) || derivedTable instanceof PrunableDbTable) {
+                continue;
+            }
+            try (ResultSet rs = metaData.getColumns(null, "PUBLIC", tableName, "HEIGHT")) {
+                if (rs.next()) {
+                    replicatedTables.add(new ReplicatedTable(tableName, derivedTable));
+                }
+            }
+        }
+        return replicatedTables;
+    }
+
+    /**
+     * Check if the replica tables are copied or linked as required by the current table list
+     *
+     * @return                      TRUE if the replica does not need to be rebuilt
+     */
+    private boolean isLayoutCurrent(Connection writerCon) throws SQLException {
+        Map<String, String> tableTypes = new HashMap<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT TABLE_NAME, TABLE_TYPE FROM INFORMATION_SCHEMA.TABLES "
+                     + "WHERE TABLE_SCHEMA = 'PUBLIC'")) {
+            while (rs.next()) {
+                tableTypes.put(rs.getString("TABLE_NAME"), rs.getString("TABLE_TYPE"));
+            }
+        }
+        Set<String> replicated = new HashSet<>();
+        for (ReplicatedTable table : tables) {
+            replicated.add(table.name);
+        }
+        for (String tableName : getWriterTables(writerCon)) {
+            String expectedType = replicated.contains(tableName) ? "TABLE" : "TABLE LINK";
+            if (!expectedType.equals(tableTypes.get(tableName))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> getWriterTables(Connection writerCon) throws SQLException {
+        List<String> tableNames = new ArrayList<>();
+        try (ResultSet rs = writerCon.getMetaData().getTables(null, "PUBLIC", "%", new String[] {"TABLE"})) {
+            while (rs.next()) {
+                tableNames.add(rs.getString("TABLE_NAME"));
+            }
+        }
+        return tableNames;
+    }
+
+    private static int getWriterVersion(Connection writerCon) throws SQLException {
+        try (Statement stmt = writerCon.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT next_update FROM version")) {
+            return rs.next() ? rs.getInt("next_update") : 0;
+        }
+    }
+
+    private static void createIndexes(Connection writerCon, Statement stmt, String tableName) throws SQLException {
+        Map<String, List<String>> indexColumns = new LinkedHashMap<>();
+        Set<String> uniqueIndexes = new HashSet<>();
+        try (ResultSet rs = writerCon.getMetaData().getIndexInfo(null, "PUBLIC", tableName, false, false)) {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                String columnName = rs.getString("COLUMN_NAME");
+                if (indexName == null || columnName == null) {
+                    continue;
+                }
+                List<String> columns = indexColumns.computeIfAbsent(indexName, name -> new ArrayList<>());
+                columns.add("D".equals(rs.getString("ASC_OR_DESC")) ? columnName + " DESC" : columnName);
+                if (!rs.getBoolean("NON_UNIQUE")) {
+                    uniqueIndexes.add(indexName);
+                }
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : indexColumns.entrySet()) {
+            stmt.executeUpdate("CREATE " + (uniqueIndexes.contains(entry.getKey()) ? "UNIQUE " : "") + "INDEX "
+                    + entry.getKey() + " ON " + tableName + " (" + String.join(", ", entry.getValue()) + ")");
+        }
+    }
+
+    private String linkedTableSql(String name, String writerTable) {
+        return "CREATE LINKED TABLE " + name + "('org.h2.Driver', '" + quote(writer.getUrl()) + "', '"
+                + quote(username) + "', '" + quote(password) + "', 'PUBLIC', '" + writerTable + "') READONLY";
+    }
+
+    private static String quote(String s) {
+        return s == null ? "" : s.replace("'", "''");
+    }
+
+}
@@ -45,6 +45,7 @@ public class TransactionalDb extends BasicDb {
     private final ThreadLocal<DbConnection> localConnection = new ThreadLocal<>();
     private final ThreadLocal<Map<String,Map<DbKey,Object>>> transactionCaches = new ThreadLocal<>();
     private final ThreadLocal<Set<TransactionCallback>> transactionCallback = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> readOnlyRequest = new ThreadLocal<>();
     private volatile long txTimes = 0;
     private volatile long txCount = 0;
     private volatile long statsTime = 0;
@@ -59,9 +60,37 @@ public class TransactionalDb extends BasicDb {
         if (con != null) {
             return con;
         }
+        if (readOnlyRequest.get() != null) {
+            return new DbConnection(super.getReadOnlyConnection());
+        }
         return new DbConnection(super.getConnection());
     }
 
+    /**
+     * Route connections obtained by the current thread outside of a database transaction
+     * to the read-only connection pool.  Connections used within a transaction always come
+     * from the main pool.
+     *
+     * @param   readOnly            TRUE to use the read-only pool
+     */
+    public void setReadOnlyRequest(boolean readOnly) {
+        if (readOnly && hasReadOnlyPool()) {
+            readOnlyRequest.set(Boolean.TRUE);
+        } else {
+            readOnlyRequest.remove();
+        }
+    }
+
+    /**
+     * Check if connections obtained by the current thread outside of a database transaction
+     * are routed to the read-only connection pool
+     *
+     * @return                      TRUE if the read-only pool is used
+     */
+    public boolean isReadOnlyRequest() {
+        return readOnlyRequest.get() != null;
+    }
+
     public boolean isInTransaction() {
         return localConnection.get() != null;
     }
@@ -125,4 +125,9 @@ public abstract class ValuesDbTable<T,V> extends DerivedDbTable {
         }
     }
 
+    @Override
+    DbKey.Factory<?> getVersionedKeyFactory() {
+        return multiversion ? dbKeyFactory : null;
+    }
+
 }
@@ -17,8 +17,6 @@
 package kpl.db;
 
 
-import kpl.Kpl;
-
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -36,6 +34,10 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
         super(table, dbKeyFactory, true, fullTextSearchColumns);
     }
 
+    protected VersionedEntityDbTable(String table, DbKey.Factory<T> dbKeyFactory, EntityStore.Codec<T> codec) {
+        super(table, dbKeyFactory, true, null, codec);
+    }
+
     public final boolean delete(T t) {
         return delete(t, false);
     }
@@ -48,30 +50,8 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
             throw new IllegalStateException("Not in transaction");
         }
         DbKey dbKey = dbKeyFactory.newKey(t);
-        try (Connection con = db.getConnection();
-             PreparedStatement pstmtCount = con.prepareStatement("SELECT 1 FROM " + table
-                     + dbKeyFactory.getPKClause() + " AND height < ? LIMIT 1")) {
-            int i = dbKey.setPK(pstmtCount);
-            pstmtCount.setInt(i, Kpl.getBlockchain().getHeight());
-            try (ResultSet rs = pstmtCount.executeQuery()) {
-                if (rs.next()) {
-                    try (PreparedStatement pstmt = con.prepareStatement("UPDATE " + table
-                            + " SET latest = FALSE " + dbKeyFactory.getPKClause() + " AND latest = TRUE LIMIT 1")) {
-                        dbKey.setPK(pstmt);
-                        pstmt.executeUpdate();
-                        save(con, t);
-                        pstmt.executeUpdate(); // delete after the save
-                    }
-                    return true;
-                } else {
-                    try (PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + dbKeyFactory.getPKClause())) {
-                        dbKey.setPK(pstmtDelete);
-                        return pstmtDelete.executeUpdate() > 0;
-                    }
-                }
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e.toString(), e);
+        try {
+            return delete(dbKey, t);
         } finally {
             if (!keepInCache) {
                 db.getCache(table).remove(dbKey);
@@ -83,8 +63,15 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
         if (!db.isInTransaction()) {
             throw new IllegalStateException("Not in transaction");
         }
-        try (Connection con = db.getConnection();
-             PreparedStatement pstmtSelectToDelete = con.prepareStatement("SELECT DISTINCT " + dbKeyFactory.getPKColumns()
+        try (Connection con = db.getConnection()) {
+            rollback(con, table, height, dbKeyFactory);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    static void rollback(final Connection con, final String table, final int height, final DbKey.Factory dbKeyFactory) throws SQLException {
+        try (PreparedStatement pstmtSelectToDelete = con.prepareStatement("SELECT DISTINCT " + dbKeyFactory.getPKColumns()
                      + " FROM " + table + " WHERE height > ?");
              PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table
                      + " WHERE height > ?");
@@ -117,8 +104,6 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
                 pstmtSetLatest.executeUpdate();
                 //Db.getCache(table).remove(dbKey);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e.toString(), e);
         }
     }
 
@@ -126,8 +111,15 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
         if (!db.isInTransaction()) {
             throw new IllegalStateException("Not in transaction");
         }
-        try (Connection con = db.getConnection();
-             PreparedStatement pstmtSelect = con.prepareStatement("SELECT " + dbKeyFactory.getPKColumns() + ", MAX(height) AS max_height"
+        try (Connection con = db.getConnection()) {
+            trim(con, table, height, dbKeyFactory);
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+    }
+
+    static void trim(final Connection con, final String table, final int height, final DbKey.Factory dbKeyFactory) throws SQLException {
+        try (PreparedStatement pstmtSelect = con.prepareStatement("SELECT " + dbKeyFactory.getPKColumns() + ", MAX(height) AS max_height"
                      + " FROM " + table + " WHERE height < ? GROUP BY " + dbKeyFactory.getPKColumns() + " HAVING COUNT(DISTINCT height) > 1");
              PreparedStatement pstmtDelete = con.prepareStatement("DELETE FROM " + table + dbKeyFactory.getPKClause()
                      + " AND height < ? AND height >= 0");
@@ -148,8 +140,6 @@ public abstract class VersionedEntityDbTable<T> extends EntityDbTable<T> {
                 pstmtDeleteDeleted.setInt(2, height);
                 pstmtDeleteDeleted.executeUpdate();
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e.toString(), e);
         }
     }
 
@@ -26,6 +26,10 @@ public abstract class VersionedPersistentDbTable<T> extends VersionedPrunableDbT
         super(table, dbKeyFactory, fullTextSearchColumns);
     }
 
+    protected VersionedPersistentDbTable(String table, DbKey.Factory<T> dbKeyFactory, EntityStore.Codec<T> codec) {
+        super(table, dbKeyFactory, codec);
+    }
+
     @Override
     protected final void prune() {}
 
@@ -18,7 +18,10 @@ package kpl.db;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public abstract class VersionedPrunableDbTable<T> extends PrunableDbTable<T> {
 
@@ -30,6 +33,10 @@ public abstract class VersionedPrunableDbTable<T> extends PrunableDbTable<T> {
         super(table, dbKeyFactory, true, fullTextSearchColumns);
     }
 
+    protected VersionedPrunableDbTable(String table, DbKey.Factory<T> dbKeyFactory, EntityStore.Codec<T> codec) {
+        super(table, dbKeyFactory, true, null, codec);
+    }
+
     public final boolean delete(T t) {
         throw new UnsupportedOperationException("Versioned prunable tables cannot support delete");
     }
@@ -39,14 +46,25 @@ public abstract class VersionedPrunableDbTable<T> extends PrunableDbTable<T> {
         if (!db.isInTransaction()) {
             throw new IllegalStateException("Not in transaction");
         }
+        List<DbKey> dbKeys = new ArrayList<>();
+        String latestClause = " WHERE a.latest = FALSE AND a.height = "
+                + " (SELECT MAX(height) FROM " + table + " AS b WHERE " + dbKeyFactory.getSelfJoinClause() + ")";
         try (Connection con = db.getConnection();
+             PreparedStatement pstmtSelect = con.prepareStatement("SELECT " + dbKeyFactory.getPKColumns()
+                     + " FROM " + table + " AS a" + latestClause);
              PreparedStatement pstmtSetLatest = con.prepareStatement("UPDATE " + table
-                     + " AS a SET a.latest = TRUE WHERE a.latest = FALSE AND a.height = "
-                     + " (SELECT MAX(height) FROM " + table + " AS b WHERE " + dbKeyFactory.getSelfJoinClause() + ")")) {
+                     + " AS a SET a.latest = TRUE" + latestClause)) {
+            try (ResultSet rs = pstmtSelect.executeQuery()) {
+                while (rs.next()) {
+                    dbKeys.add(dbKeyFactory.newKey(rs));
+                }
+            }
             pstmtSetLatest.executeUpdate();
         } catch (SQLException e) {
             throw new RuntimeException(e.toString(), e);
         }
+        // the latest rows are changed in the table, so the entity store must reload them
+        reload(dbKeys);
     }
 
 }
@@ -214,12 +214,15 @@ public final class API {
             }
 
             ServletHolder servletHolder = apiHandler.addServlet(APIServlet.class, "/kpl");
+            servletHolder.setAsyncSupported(true);
             servletHolder.getRegistration().setMultipartConfig(new MultipartConfigElement(
                     null, Math.max(Kpl.getIntProperty("kpl.maxUploadFileSize"), Constants.MAX_TAGGED_DATA_DATA_LENGTH), -1L, 0));
 
             GzipHandler gzipHandler = new GzipHandler();
             if (!Kpl.getBooleanProperty("kpl.enableAPIServerGZIPFilter")) {
-                gzipHandler.setExcludedPaths("/kpl");
+                gzipHandler.setExcludedPaths("/kpl", "/events");
+            } else {
+                gzipHandler.setExcludedPaths("/events");
             }
             gzipHandler.setIncludedMethods("GET", "POST");
             gzipHandler.setMinGzipSize(kpl.peer.Peers.MIN_COMPRESS_SIZE);
@@ -229,6 +232,13 @@ public final class API {
 
             apiHandler.addServlet(DbShellServlet.class, "/dbshell");
 
+            apiHandler.addServlet(APIMetricsServlet.class, "/metrics");
+
+            apiHandler.addServlet(AccountLedgerExportServlet.class, "/ledger");
+
+            ServletHolder eventStreamHolder = apiHandler.addServlet(EventStreamServlet.class, "/events");
+            eventStreamHolder.setAsyncSupported(true);
+
             if (Kpl.getBooleanProperty("kpl.apiServerCORS")) {
                 FilterHolder filterHolder = apiHandler.addFilter(CrossOriginFilter.class, "/*", null);
                 filterHolder.setInitParameter("allowedHeaders", "*");
@@ -285,7 +295,9 @@ public final class API {
     public static void shutdown() {
         if (apiServer != null) {
             try {
+                EventStream.shutdown();
                 apiServer.stop();
+                APIRequestClass.shutdown();
                 if (enableAPIUPnP) {
                     Connector[] apiConnectors = apiServer.getConnectors();
                     for (Connector apiConnector : apiConnectors) {
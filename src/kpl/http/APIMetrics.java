@@ -0,0 +1,309 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.Kpl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * API request metrics
+ *
+ * Request counts, errors, requests in progress, a latency histogram and the time spent waiting
+ * for the blockchain read lock and for a database transaction are recorded for each request type.
+ * Requests processed on a request class executor also record the time spent in the executor queue
+ * in a separate histogram.  The request latency includes the queue wait.
+ */
+final class APIMetrics {
+
+    /** Latency histogram bucket upper bounds (nanoseconds) */
+    static final long[] bucketBounds = {
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L,
+            250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+
+    /** Request type metrics */
+    private static final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private APIMetrics() {}
+
+    /**
+     * Start recording a request
+     *
+     * @param   requestType             Request type
+     * @return                          Request metrics
+     */
+    static Request startRequest(String requestType) {
+        return new Request(endpoints.computeIfAbsent(requestType, Endpoint::new));
+    }
+
+    /**
+     * Return the metrics for all request types that have been used
+     *
+     * @return                          Request type metrics sorted by request type
+     */
+    static SortedMap<String, Endpoint> getEndpoints() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(endpoints));
+    }
+
+    /**
+     * Metrics for a single request
+     */
+    static final class Request {
+
+        /** Request type metrics */
+        private final Endpoint endpoint;
+
+        /** Request start time */
+        private final long startTime = System.nanoTime();
+
+        /** Read lock wait time for the processing thread when the request started */
+        private long startReadLockWaitTime = Kpl.getBlockchain().getReadLockWaitTime();
+
+        /** Executor queue wait time or -1 if the request was not queued */
+        private long queueWaitTime = -1;
+
+        /** Database transaction wait time */
+        private long dbWaitTime;
+
+        /** Request failed */
+        private boolean error;
+
+        private Request(Endpoint endpoint) {
+            this.endpoint = endpoint;
+            endpoint.inFlight.incrementAndGet();
+        }
+
+        /**
+         * Record the end of the executor queue wait.  This must be called by the executor thread
+         * before it starts processing the request.
+         */
+        void endQueueWait() {
+            queueWaitTime = System.nanoTime() - startTime;
+            startReadLockWaitTime = Kpl.getBlockchain().getReadLockWaitTime();
+        }
+
+        /**
+         * Add the time spent waiting to start a database transaction
+         *
+         * @param   time                Wait time in nanoseconds
+         */
+        void addDbWaitTime(long time) {
+            dbWaitTime += time;
+        }
+
+        /**
+         * Mark the request as failed
+         */
+        void setError() {
+            error = true;
+        }
+
+        /**
+         * Record the completed request
+         */
+        void finish() {
+            endpoint.inFlight.decrementAndGet();
+            endpoint.record(System.nanoTime() - startTime, error,
+                    Kpl.getBlockchain().getReadLockWaitTime() - startReadLockWaitTime, dbWaitTime, queueWaitTime);
+        }
+    }
+
+    /**
+     * Metrics for a request type
+     */
+    static final class Endpoint {
+
+        /** Request type */
+        private final String requestType;
+
+        /** Completed requests */
+        private final LongAdder requests = new LongAdder();
+
+        /** Failed requests */
+        private final LongAdder errors = new LongAdder();
+
+        /** Requests in progress */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /** Total request time (nanoseconds) */
+        private final LongAdder totalTime = new LongAdder();
+
+        /** Maximum request time (nanoseconds) */
+        private final LongAccumulator maxTime = new LongAccumulator(Long::max, 0);
+
+        /** Request counts for each histogram bucket, the last bucket has no upper bound */
+        private final AtomicLongArray buckets = new AtomicLongArray(bucketBounds.length + 1);
+
+        /** Total blockchain read lock wait time (nanoseconds) */
+        private final LongAdder readLockWaitTime = new LongAdder();
+
+        /** Total database transaction wait time (nanoseconds) */
+        private final LongAdder dbWaitTime = new LongAdder();
+
+        /** Total executor queue wait time (nanoseconds) */
+        private final LongAdder queueWaitTime = new LongAdder();
+
+        /** Maximum executor queue wait time (nanoseconds) */
+        private final LongAccumulator maxQueueWaitTime = new LongAccumulator(Long::max, 0);
+
+        /** Queued request counts for each queue wait histogram bucket, the last bucket has no upper bound */
+        private final AtomicLongArray queueBuckets = new AtomicLongArray(bucketBounds.length + 1);
+
+        private Endpoint(String requestType) {
+            this.requestType = requestType;
+        }
+
+        private void record(long time, boolean error, long readLockWait, long dbWait, long queueWait) {
+            requests.increment();
+            if (error) {
+                errors.increment();
+            }
+            totalTime.add(time);
+            maxTime.accumulate(time);
+            buckets.incrementAndGet(getBucket(time));
+            readLockWaitTime.add(readLockWait);
+            dbWaitTime.add(dbWait);
+            if (queueWait >= 0) {
+                queueWaitTime.add(queueWait);
+                maxQueueWaitTime.accumulate(queueWait);
+                queueBuckets.incrementAndGet(getBucket(queueWait));
+            }
+        }
+
+        String getRequestType() {
+            return requestType;
+        }
+
+        long getRequests() {
+            return requests.sum();
+        }
+
+        long getErrors() {
+            return errors.sum();
+        }
+
+        int getInFlight() {
+            return inFlight.get();
+        }
+
+        long getTotalTime() {
+            return totalTime.sum();
+        }
+
+        long getMaxTime() {
+            return maxTime.get();
+        }
+
+        long getReadLockWaitTime() {
+            return readLockWaitTime.sum();
+        }
+
+        long getDbWaitTime() {
+            return dbWaitTime.sum();
+        }
+
+        long getQueueWaitTime() {
+            return queueWaitTime.sum();
+        }
+
+        long getMaxQueueWaitTime() {
+            return maxQueueWaitTime.get();
+        }
+
+        /**
+         * Return the request counts for each histogram bucket
+         *
+         * @return                      Bucket counts, the last bucket has no upper bound
+         */
+        long[] getBuckets() {
+            return getCounts(buckets);
+        }
+
+        /**
+         * Return the queued request counts for each queue wait histogram bucket
+         *
+         * @return                      Bucket counts, the last bucket has no upper bound
+         */
+        long[] getQueueBuckets() {
+            return getCounts(queueBuckets);
+        }
+
+        /**
+         * Return an estimate of a request time percentile based on the histogram
+         *
+         * @param   percentile          Percentile (0 - 100)
+         * @return                      Upper bound of the histogram bucket containing the percentile (nanoseconds)
+         */
+        long getPercentile(int percentile) {
+            return getPercentile(getBuckets(), percentile, getMaxTime());
+        }
+
+        /**
+         * Return an estimate of a queue wait time percentile based on the queue wait histogram
+         *
+         * @param   percentile          Percentile (0 - 100)
+         * @return                      Upper bound of the histogram bucket containing the percentile (nanoseconds)
+         */
+        long getQueueWaitPercentile(int percentile) {
+            return getPercentile(getQueueBuckets(), percentile, getMaxQueueWaitTime());
+        }
+
+        private static int getBucket(long time) {
+            int bucket = 0;
+            while (bucket < bucketBounds.length && time > bucketBounds[bucket]) {
+                bucket++;
+            }
+            return bucket;
+        }
+
+        private static long[] getCounts(AtomicLongArray buckets) {
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return counts;
+        }
+
+        private static long getPercentile(long[] counts, int percentile, long maxTime) {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long target = (total * percentile + 99) / 100;
+            long cumulative = 0;
+            for (int i = 0; i < bucketBounds.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= target) {
+                    return bucketBounds[i];
+                }
+            }
+            return maxTime;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.db.FullTextTrigger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.SortedMap;
+
+/**
+ * Return the API request metrics in the Prometheus text exposition format.
+ *
+ * The administrator password must be supplied using the adminPassword request
+ * parameter unless the password protection is disabled.
+ */
+public final class APIMetricsServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setHeader("Cache-Control", "no-cache, no-store, must-revalidate, private");
+        resp.setHeader("Pragma", "no-cache");
+        resp.setDateHeader("Expires", 0);
+        if (!API.isAllowed(req.getRemoteHost()) || !API.checkPassword(req)) {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        resp.setContentType("text/plain; version=0.0.4; charset=UTF-8");
+        SortedMap<String, APIMetrics.Endpoint> endpoints = APIMetrics.getEndpoints();
+        try (PrintWriter out = resp.getWriter()) {
+            out.print("# HELP kpl_api_requests_total Completed API requests\n");
+            out.print("# TYPE kpl_api_requests_total counter\n");
+            endpoints.values().forEach(endpoint ->
+                    out.print(sample("kpl_api_requests_total", endpoint, endpoint.getRequests())));
+            out.print("# HELP kpl_api_errors_total Failed API requests\n");
+            out.print("# TYPE kpl_api_errors_total counter\n");
+            endpoints.values().forEach(endpoint ->
+                    out.print(sample("kpl_api_errors_total", endpoint, endpoint.getErrors())));
+            out.print("# HELP kpl_api_in_flight API requests in progress\n");
+            out.print("# TYPE kpl_api_in_flight gauge\n");
+            endpoints.values().forEach(endpoint ->
+                    out.print(sample("kpl_api_in_flight", endpoint, endpoint.getInFlight())));
+            out.print("# HELP kpl_api_request_duration_seconds API request processing time\n");
+            out.print("# TYPE kpl_api_request_duration_seconds histogram\n");
+            endpoints.values().forEach(endpoint -> out.print(histogram("kpl_api_request_duration_seconds", endpoint,
+                    endpoint.getBuckets(), endpoint.getTotalTime())));
+            out.print("# HELP kpl_api_queue_wait_seconds Time spent waiting in the request class executor queue\n");
+            out.print("# TYPE kpl_api_queue_wait_seconds histogram\n");
+            endpoints.values().forEach(endpoint -> out.print(histogram("kpl_api_queue_wait_seconds", endpoint,
+                    endpoint.getQueueBuckets(), endpoint.getQueueWaitTime())));
+            out.print("# HELP kpl_api_read_lock_wait_seconds_total Time spent waiting for the blockchain read lock\n");
+            out.print("# TYPE kpl_api_read_lock_wait_seconds_total counter\n");
+            endpoints.values().forEach(endpoint ->
+                    out.print(sample("kpl_api_read_lock_wait_seconds_total", endpoint, seconds(endpoint.getReadLockWaitTime()))));
+            out.print("# HELP kpl_api_db_transaction_wait_seconds_total Time spent waiting to start a database transaction\n");
+            out.print("# TYPE kpl_api_db_transaction_wait_seconds_total counter\n");
+            endpoints.values().forEach(endpoint ->
+                    out.print(sample("kpl_api_db_transaction_wait_seconds_total", endpoint, seconds(endpoint.getDbWaitTime()))));
+            out.print("# HELP kpl_lucene_index_lag_seconds Age of the oldest committed update waiting to be indexed\n");
+            out.print("# TYPE kpl_lucene_index_lag_seconds gauge\n");
+            out.print("kpl_lucene_index_lag_seconds " + (double)FullTextTrigger.getIndexLag() / 1000 + "\n");
+            out.print("# HELP kpl_lucene_index_queue_size Committed transactions waiting to be indexed\n");
+            out.print("# TYPE kpl_lucene_index_queue_size gauge\n");
+            out.print("kpl_lucene_index_queue_size " + FullTextTrigger.getIndexQueueSize() + "\n");
+        }
+    }
+
+    private static String sample(String name, APIMetrics.Endpoint endpoint, Object value) {
+        return name + "{request=\"" + endpoint.getRequestType() + "\"} " + value + "\n";
+    }
+
+    private static String histogram(String name, APIMetrics.Endpoint endpoint, long[] buckets, long sum) {
+        long count = 0;
+        StringBuilder sb = new StringBuilder(1024);
+        for (int i = 0; i < buckets.length; i++) {
+            count += buckets[i];
+            String bound = (i < APIMetrics.bucketBounds.length ? seconds(APIMetrics.bucketBounds[i]) : "+Inf");
+            sb.append(name).append("_bucket{request=\"").append(endpoint.getRequestType())
+                    .append("\",le=\"").append(bound).append("\"} ").append(count).append('\n');
+        }
+        sb.append(name).append("_sum{request=\"").append(endpoint.getRequestType())
+                .append("\"} ").append(seconds(sum)).append('\n');
+        sb.append(name).append("_count{request=\"").append(endpoint.getRequestType())
+                .append("\"} ").append(count).append('\n');
+        return sb.toString();
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString((double)nanos / 1000000000);
+    }
+}
@@ -0,0 +1,92 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.Kpl;
+import kpl.util.ThreadPool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * API request classes
+ *
+ * Each request class can have a dedicated executor with a bounded queue.  Requests in a class with
+ * an executor are processed using a servlet asynchronous context, so a slow request does not hold
+ * an API server thread while it is running.  A request is rejected with HTTP status 503 when the
+ * executor queue is full.  Requests in a class without an executor are processed by the API server thread.
+ */
+public enum APIRequestClass {
+
+    /** Inexpensive read-only requests */
+    READ_LIGHT("ReadLight", 0, 100),
+
+    /** Read-only requests which can run for a long time or return large responses */
+    READ_HEAVY("ReadHeavy", 4, 100),
+
+    /** Requests which create or broadcast transactions or change the server state */
+    WRITE("Write", 4, 100);
+
+    /** Request executor or null if requests are processed by the API server thread */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Create the request class
+     *
+     * @param   name                    Name used for the configuration properties and thread names
+     * @param   defaultThreads          Default number of threads
+     * @param   defaultQueueSize        Default queue size
+     */
+    APIRequestClass(String name, int defaultThreads, int defaultQueueSize) {
+        int threads = Kpl.getIntProperty("kpl.api" + name + "Threads", defaultThreads);
+        int queueSize = Math.max(Kpl.getIntProperty("kpl.api" + name + "QueueSize", defaultQueueSize), 1);
+        if (threads > 0) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueSize), runnable -> {
+                        Thread thread = new Thread(runnable, "API" + name + "-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            executor.allowCoreThreadTimeOut(true);
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Return the request executor
+     *
+     * @return                          Request executor or null if requests are processed by the API server thread
+     */
+    ThreadPoolExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Stop the request executors
+     */
+    static void shutdown() {
+        for (APIRequestClass requestClass : values()) {
+            if (requestClass.executor != null) {
+                ThreadPool.shutdownExecutor("API " + requestClass.name() + " executor", requestClass.executor, 5);
+            }
+        }
+    }
+}
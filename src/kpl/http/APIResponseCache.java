@@ -0,0 +1,232 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.BlockchainProcessor;
+import kpl.Kpl;
+import kpl.util.Convert;
+import kpl.util.JSON;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of API responses which do not change until the next block is pushed.
+ *
+ * A request handler opts in by returning a non-zero cache timeout.  The cache key consists of the
+ * request type, the request parameters declared by the handler and the identifier of the last block,
+ * so a cached response is never returned once the blockchain has changed.  The cache is cleared each
+ * time a block is pushed or popped.  Cached responses are stored as JSON text and the request processing
+ * time is added when the response is written.
+ *
+ * The requireBlock and requireLastBlock parameters are checked before the cache is used and are not part
+ * of the cache key.  A response is cached before the lastBlock field is added for a requireBlock request,
+ * and the field is added again when a cached response is returned for such a request.
+ *
+ * The last block is updated before the block is committed and the cache is cleared after the commit, so
+ * a request can see the new last block identifier while still reading the previous database state.  Each
+ * clear starts a new cache generation and a response is discarded if it was produced in an earlier generation.
+ */
+final class APIResponseCache {
+
+    /** Maximum number of cached responses, zero if the cache is disabled */
+    static final int maxSize = Kpl.getIntProperty("kpl.apiResponseCacheSize");
+
+    /** Cached responses in least-recently-used order */
+    private static final Map<String, CachedResponse> cache = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    /** Cache generation, incremented each time the cache is cleared */
+    private static int generation;
+
+    static {
+        if (maxSize > 0) {
+            BlockchainProcessor blockchainProcessor = Kpl.getBlockchainProcessor();
+            blockchainProcessor.addListener(block -> clear(), BlockchainProcessor.Event.BLOCK_PUSHED);
+            blockchainProcessor.addListener(block -> clear(), BlockchainProcessor.Event.BLOCK_POPPED);
+            blockchainProcessor.addListener(block -> clear(), BlockchainProcessor.Event.RESCAN_END);
+        }
+    }
+
+    private APIResponseCache() {}
+
+    /**
+     * Check if the response to a request can be cached
+     *
+     * @param   apiRequestHandler           Request handler
+     * @param   req                         Request
+     * @return                              TRUE if the response can be cached
+     */
+    static boolean isCacheable(APIServlet.APIRequestHandler apiRequestHandler, HttpServletRequest req) {
+        return maxSize > 0 && apiRequestHandler.getCacheTimeout() > 0 && !apiRequestHandler.requirePost()
+                && !apiRequestHandler.requirePassword() && req.getParameter("adminPassword") == null;
+    }
+
+    /**
+     * Return the cache key for a request
+     *
+     * @param   requestType                 Request type
+     * @param   apiRequestHandler           Request handler
+     * @param   req                         Request
+     * @param   lastBlockId                 Last block identifier
+     * @return                              Cache key
+     */
+    static String getKey(String requestType, APIServlet.APIRequestHandler apiRequestHandler, HttpServletRequest req,
+                         long lastBlockId) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(requestType).append('\u0000').append(Long.toUnsignedString(lastBlockId));
+        List<String> parameters = apiRequestHandler.getParameters();
+        for (String parameter : parameters) {
+            if (parameter.equals("requireBlock") || parameter.equals("requireLastBlock")) {
+                continue;
+            }
+            String[] values = req.getParameterValues(parameter);
+            if (values == null) {
+                continue;
+            }
+            boolean first = true;
+            for (String value : values) {
+                value = Convert.emptyToNull(value);
+                if (value == null) {
+                    continue;
+                }
+                if (first) {
+                    sb.append('\u0000').append(parameter).append('=');
+                    first = false;
+                } else {
+                    sb.append('\u0001');
+                }
+                sb.append(value);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return a cached response
+     *
+     * @param   key                         Cache key
+     * @param   startTime                   Request start time
+     * @param   lastBlockId                 Last block identifier to return in the lastBlock field or zero
+     * @return                              Cached response or null if there is no valid cached response
+     */
+    static JSONStreamAware get(String key, long startTime, long lastBlockId) {
+        CachedResponse cachedResponse;
+        synchronized (cache) {
+            cachedResponse = cache.get(key);
+            if (cachedResponse != null && cachedResponse.expiration < System.currentTimeMillis()) {
+                cache.remove(key);
+                cachedResponse = null;
+            }
+        }
+        return cachedResponse != null ? cachedResponse.getResponse(startTime, lastBlockId) : null;
+    }
+
+    /**
+     * Return the current cache generation
+     *
+     * The generation must be obtained before the last block identifier used for the cache key
+     *
+     * @return                              Cache generation
+     */
+    static int getGeneration() {
+        synchronized (cache) {
+            return generation;
+        }
+    }
+
+    /**
+     * Cache a response
+     *
+     * The response is not cached if the cache has been cleared since the generation was obtained
+     *
+     * @param   key                         Cache key
+     * @param   timeout                     Cache timeout in seconds
+     * @param   response                    Response without the lastBlock field
+     * @param   responseGeneration          Cache generation obtained before the request was processed
+     */
+    static void put(String key, int timeout, JSONObject response, int responseGeneration) {
+        CachedResponse cachedResponse = new CachedResponse(JSON.toJSONString(response),
+                System.currentTimeMillis() + timeout * 1000L);
+        synchronized (cache) {
+            if (responseGeneration == generation) {
+                cache.put(key, cachedResponse);
+            }
+        }
+    }
+
+    /**
+     * Remove all cached responses
+     */
+    static void clear() {
+        synchronized (cache) {
+            generation++;
+            cache.clear();
+        }
+    }
+
+    /**
+     * Cached response
+     */
+    private static final class CachedResponse {
+
+        /** Response text without the closing brace */
+        private final char[] jsonChars;
+
+        /** Response is an empty object */
+        private final boolean isEmpty;
+
+        /** Expiration time */
+        private final long expiration;
+
+        private CachedResponse(String jsonString, long expiration) {
+            this.jsonChars = jsonString.substring(0, jsonString.length() - 1).toCharArray();
+            this.isEmpty = jsonString.length() == 2;
+            this.expiration = expiration;
+        }
+
+        private JSONStreamAware getResponse(long startTime, long lastBlockId) {
+            return new JSONStreamAware() {
+                @Override
+                public void writeJSONString(Writer out) throws IOException {
+                    out.write(jsonChars);
+                    if (!isEmpty) {
+                        out.write(',');
+                    }
+                    if (lastBlockId != 0) {
+                        out.write("\"lastBlock\":\"");
+                        out.write(Long.toUnsignedString(lastBlockId));
+                        out.write("\",");
+                    }
+                    out.write("\"requestProcessingTime\":");
+                    out.write(Long.toString(System.currentTimeMillis() - startTime));
+                    out.write('}');
+                }
+            };
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package kpl.http;
 
+import kpl.Block;
 import kpl.Db;
 import kpl.Kpl;
 import kpl.kplException;
@@ -25,10 +26,12 @@ import kpl.util.Logger;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.CharArrayWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.lang.*;
@@ -41,7 +44,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import static kpl.http.JSONResponses.ERROR_BUSY;
 import static kpl.http.JSONResponses.ERROR_DISABLED;
 import static kpl.http.JSONResponses.ERROR_INCORRECT_REQUEST;
 import static kpl.http.JSONResponses.ERROR_NOT_ALLOWED;
@@ -114,6 +120,21 @@ public final class APIServlet extends HttpServlet {
             return true;
         }
 
+        protected boolean useReadOnlyDbConnection() {
+            return !requirePost() && !startDbTransaction();
+        }
+
+        protected int getCacheTimeout() {
+            return 0;
+        }
+
+        protected APIRequestClass getRequestClass() {
+            if (requirePost()) {
+                return APIRequestClass.WRITE;
+            }
+            return apiTags.contains(APITag.SEARCH) ? APIRequestClass.READ_HEAVY : APIRequestClass.READ_LIGHT;
+        }
+
     }
 
     private static final boolean enforcePost = Kpl.getBooleanProperty("kpl.apiServerEnforcePOST");
@@ -127,6 +148,7 @@ public final class APIServlet extends HttpServlet {
 
         map.put("appLanguage", AppLanguage.instance); //by xiaoc
         map.put("approveTransaction", ApproveTransaction.instance);
+        map.put("batch", Batch.instance);
         map.put("broadcastTransaction", BroadcastTransaction.instance);
         map.put("calculateFullHash", CalculateFullHash.instance);
         map.put("cancelAskOrder", CancelAskOrder.instance);
@@ -325,6 +347,7 @@ public final class APIServlet extends HttpServlet {
         map.put("startForging", StartForging.instance);
         map.put("stopForging", StopForging.instance);
         map.put("getForging", GetForging.instance);
+        map.put("getForgingSimulation", GetForgingSimulation.instance);
         map.put("transferAsset", TransferAsset.instance);
         map.put("transferCurrency", TransferCurrency.instance);
         map.put("canDeleteCurrency", CanDeleteCurrency.instance);
@@ -361,6 +384,7 @@ public final class APIServlet extends HttpServlet {
         map.put("blacklistPeer", BlacklistPeer.instance);
         map.put("dumpPeers", DumpPeers.instance);
         map.put("getLog", GetLog.instance);
+        map.put("getAPIMetrics", GetAPIMetrics.instance);
         map.put("getStackTraces", GetStackTraces.instance);
         map.put("retrievePrunedData", RetrievePrunedData.instance);
         map.put("retrievePrunedTransaction", RetrievePrunedTransaction.instance);
@@ -434,7 +458,7 @@ public final class APIServlet extends HttpServlet {
         resp.setDateHeader("Expires", 0);
         resp.setContentType("text/plain; charset=UTF-8");
 
-        JSONStreamAware response = JSON.emptyJSON;
+        JSONStreamAware response = null;
 
         try {
 
@@ -466,6 +490,71 @@ public final class APIServlet extends HttpServlet {
                 return;
             }
 
+            // Process the request on the executor for its request class.  The request start time
+            // and the request metrics include the time spent waiting in the executor queue.
+            APIMetrics.Request requestMetrics = APIMetrics.startRequest(requestType);
+            boolean processing = false;
+            try {
+                APIRequestClass requestClass = apiRequestHandler.getRequestClass();
+                ThreadPoolExecutor executor = (requestClass != null ? requestClass.getExecutor() : null);
+                if (executor != null && req.isAsyncSupported()) {
+                    AsyncContext context = req.startAsync();
+                    context.setTimeout(0);
+                    try {
+                        executor.execute(() -> {
+                            try {
+                                requestMetrics.endQueueWait();
+                                processRequest(req, resp, requestType, apiRequestHandler, requestMetrics, startTime);
+                            } catch (Exception e) {
+                                Logger.logDebugMessage("Error processing API request", e);
+                            } finally {
+                                context.complete();
+                            }
+                        });
+                        processing = true;
+                    } catch (RejectedExecutionException e) {
+                        Logger.logDebugMessage(requestClass.name() + " API request queue is full, rejecting " + requestType);
+                        resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                        try (Writer writer = resp.getWriter()) {
+                            JSON.writeJSONString(ERROR_BUSY, writer);
+                        } finally {
+                            context.complete();
+                        }
+                    }
+                    return;
+                }
+                processing = true;
+                processRequest(req, resp, requestType, apiRequestHandler, requestMetrics, startTime);
+            } finally {
+                // A request which was rejected or could not be handed off is recorded as an error
+                if (!processing) {
+                    requestMetrics.setError();
+                    requestMetrics.finish();
+                }
+            }
+
+        } catch (RuntimeException e) {
+            Logger.logErrorMessage("Error processing request", e);
+            response = ERROR_INCORRECT_REQUEST;
+        } finally {
+            // The response will be null if the request was processed or handed to the executor
+            if (response != null) {
+                try (Writer writer = resp.getWriter()) {
+                    JSON.writeJSONString(response, writer);
+                }
+            }
+        }
+    }
+
+    private void processRequest(HttpServletRequest req, HttpServletResponse resp, String requestType,
+                                APIRequestHandler apiRequestHandler, APIMetrics.Request requestMetrics,
+                                long startTime) throws IOException {
+
+        JSONStreamAware response = JSON.emptyJSON;
+        boolean streaming = false;
+
+        try {
+
             try {
                 if (apiRequestHandler.requirePassword()) {
                     API.verifyPassword(req);
@@ -474,15 +563,25 @@ public final class APIServlet extends HttpServlet {
                         ParameterParser.getUnsignedLong(req, "requireBlock", false) : 0;
                 final long requireLastBlockId = apiRequestHandler.allowRequiredBlockParameters() ?
                         ParameterParser.getUnsignedLong(req, "requireLastBlock", false) : 0;
-                if (requireBlockId != 0 || requireLastBlockId != 0) {
+                final boolean useReadOnlyDb = useReadOnlyDb(apiRequestHandler);
+                final boolean useReplica = useReadOnlyDb && Db.replica != null;
+                final boolean useBlockchainLock = !useReplica && (requireBlockId != 0 || requireLastBlockId != 0);
+                CharArrayWriter bufferedResponse = null;
+                if (useReplica) {
+                    Db.replica.readLock();
+                } else if (useBlockchainLock) {
                     Kpl.getBlockchain().readLock();
                 }
                 try {
                     try {
                         if (apiRequestHandler.startDbTransaction()) {
+                            long waitStart = System.nanoTime();
                             Db.db.beginTransaction();
+                            requestMetrics.addDbWaitTime(System.nanoTime() - waitStart);
+                        } else if (useReadOnlyDb) {
+                            Db.db.setReadOnlyRequest(true);
                         }
-                        if (requireBlockId != 0 && !Kpl.getBlockchain().hasBlock(requireBlockId)) {
+                        if (requireBlockId != 0 && !hasBlock(requireBlockId, useReplica)) {
                             response = REQUIRED_BLOCK_NOT_FOUND;
                             return;
                         }
@@ -490,28 +589,81 @@ public final class APIServlet extends HttpServlet {
                             response = REQUIRED_LAST_BLOCK_NOT_FOUND;
                             return;
                         }
+                        String cacheKey = null;
+                        long cacheBlockId = 0;
+                        int cacheGeneration = 0;
+                        JSONStreamAware cachedResponse = null;
+                        if (APIResponseCache.isCacheable(apiRequestHandler, req)) {
+                            cacheGeneration = APIResponseCache.getGeneration();
+                            cacheBlockId = Kpl.getBlockchain().getLastBlock().getId();
+                            cacheKey = APIResponseCache.getKey(requestType, apiRequestHandler, req, cacheBlockId);
+                            cachedResponse = APIResponseCache.get(cacheKey, startTime,
+                                    requireLastBlockId == 0 && requireBlockId != 0 ? cacheBlockId : 0);
+                        }
+                        if (cachedResponse != null) {
+                            response = cachedResponse;
+                            return;
+                        }
                         response = apiRequestHandler.processRequest(req, resp);
-                        if (requireLastBlockId == 0 && requireBlockId != 0 && response instanceof JSONObject) {
-                            ((JSONObject) response).put("lastBlock", Kpl.getBlockchain().getLastBlock().getStringId());
+                        // Cache the response before the lastBlock field is added, it is added again when a
+                        // cached response is returned.  Do not cache the response if a block was pushed while
+                        // the request was being processed.
+                        if (cacheKey != null && response instanceof JSONObject && cacheBlockId == Kpl.getBlockchain().getLastBlock().getId()) {
+                            APIResponseCache.put(cacheKey, apiRequestHandler.getCacheTimeout(), (JSONObject) response,
+                                    cacheGeneration);
+                        }
+                        if (requireLastBlockId == 0 && requireBlockId != 0) {
+                            if (response instanceof JSONObject) {
+                                ((JSONObject) response).put("lastBlock", Long.toUnsignedString(Kpl.getBlockchain().getLastBlock().getId()));
+                            } else if (response instanceof StreamingResponse) {
+                                ((StreamingResponse) response).put("lastBlock", Long.toUnsignedString(Kpl.getBlockchain().getLastBlock().getId()));
+                            }
+                        }
+                        if (response instanceof StreamingResponse) {
+                            // Write the response while the database context of the request is still in effect.
+                            // A slow client must not hold the replica or blockchain read lock, so the response
+                            // is written to a buffer and sent once the lock has been released.
+                            streaming = true;
+                            if (useReplica || useBlockchainLock) {
+                                bufferedResponse = new CharArrayWriter(8192);
+                                ((StreamingResponse) response).writeJSONString(bufferedResponse, startTime);
+                            } else {
+                                Writer writer = resp.getWriter();
+                                ((StreamingResponse) response).writeJSONString(writer, startTime);
+                                writer.close();
+                            }
+                            response = null;
                         }
                     } finally {
                         if (apiRequestHandler.startDbTransaction()) {
                             Db.db.endTransaction();
+                        } else if (useReadOnlyDb) {
+                            Db.db.setReadOnlyRequest(false);
                         }
                     }
                 } finally {
-                    if (requireBlockId != 0 || requireLastBlockId != 0) {
+                    if (useReplica) {
+                        Db.replica.readUnlock();
+                    } else if (useBlockchainLock) {
                         Kpl.getBlockchain().readUnlock();
                     }
                 }
+                if (bufferedResponse != null) {
+                    try (Writer writer = resp.getWriter()) {
+                        bufferedResponse.writeTo(writer);
+                    }
+                }
             } catch (ParameterException e) {
+                requestMetrics.setError();
                 response = e.getErrorResponse();
             } catch (kplException |RuntimeException e) {
+                requestMetrics.setError();
                 Logger.logDebugMessage("Error processing API request", e);
                 JSONObject json = new JSONObject();
                 JSONData.putException(json, e);
                 response = JSON.prepare(json);
             } catch (ExceptionInInitializerError err) {
+                requestMetrics.setError();
                 Logger.logErrorMessage("Initialization Error", err.getCause());
                 response = ERROR_INCORRECT_REQUEST;
             }
@@ -519,17 +671,50 @@ public final class APIServlet extends HttpServlet {
                 ((JSONObject)response).put("requestProcessingTime", System.currentTimeMillis() - startTime);
             }
         } catch (Exception e) {
+            requestMetrics.setError();
             Logger.logErrorMessage("Error processing request", e);
             response = ERROR_INCORRECT_REQUEST;
         } finally {
-            // The response will be null if we created an asynchronous context
-            if (response != null) {
-                try (Writer writer = resp.getWriter()) {
-                    JSON.writeJSONString(response, writer);
+            try {
+                // The response will be null if we created an asynchronous context or streamed the response
+                if (response != null) {
+                    if (streaming && resp.isCommitted()) {
+                        // Part of a streaming response has already been sent, so the error response is discarded
+                        Logger.logDebugMessage("Unable to complete streaming response for " + req.getParameter("requestType"));
+                    } else {
+                        if (streaming) {
+                            resp.resetBuffer();
+                        }
+                        try (Writer writer = resp.getWriter()) {
+                            JSON.writeJSONString(response, writer);
+                        }
+                    }
                 }
+            } finally {
+                requestMetrics.finish();
             }
         }
 
     }
 
+    private static boolean useReadOnlyDb(APIRequestHandler apiRequestHandler) {
+        if (apiRequestHandler.startDbTransaction() || !apiRequestHandler.useReadOnlyDbConnection()) {
+            return false;
+        }
+        if (Db.replica == null) {
+            return true;
+        }
+        // full text search indexes are not replicated
+        return Db.replica.isAvailable() && !apiRequestHandler.getAPITags().contains(APITag.SEARCH);
+    }
+
+    private static boolean hasBlock(long blockId, boolean useReplica) {
+        if (!useReplica) {
+            return Kpl.getBlockchain().hasBlock(blockId);
+        }
+        Block block = Kpl.getBlockchain().getBlock(blockId);
+        // blocks above the replicated height can still be found in the block cache
+        return block != null && block.getHeight() <= Kpl.getBlockchain().getHeight();
+    }
+
 }
@@ -0,0 +1,163 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.AccountLedger;
+import kpl.AccountLedger.LedgerEntry;
+import kpl.Db;
+import kpl.Kpl;
+import kpl.db.DbIterator;
+import kpl.util.Convert;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Export the account ledger entries for an account as CSV or newline-delimited JSON.
+ *
+ * Request parameters:
+ *   account        - Account identifier or Reed-Solomon identifier (required)
+ *   firstTimestamp - First entry timestamp, inclusive (default is 0)
+ *   lastTimestamp  - Last entry timestamp, inclusive (default is no limit)
+ *   format         - 'csv' or 'ndjson' (default is 'ndjson')
+ *   adminPassword  - Administrator password unless password protection is disabled
+ *
+ * The entries are returned in ascending timestamp order.  The ledger is read one page at a time
+ * and the database connection is released before each page is written, so a slow client does
+ * not hold a database connection or the blockchain lock.  The export is limited to the entries
+ * at or below the blockchain height when the export starts.
+ */
+public final class AccountLedgerExportServlet extends HttpServlet {
+
+    /** Number of entries read from the database at a time */
+    private static final int PAGE_SIZE = 1000;
+
+    /** CSV column names */
+    private static final String CSV_HEADER =
+            "ledgerId,account,accountRS,timestamp,height,block,eventType,event,holdingType,holding,change,balance\n";
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setHeader("Cache-Control", "no-cache, no-store, must-revalidate, private");
+        resp.setHeader("Pragma", "no-cache");
+        resp.setDateHeader("Expires", 0);
+        if (!API.isAllowed(req.getRemoteHost()) || !API.checkPassword(req)) {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        long accountId;
+        int firstTimestamp;
+        int lastTimestamp;
+        boolean csv;
+        try {
+            accountId = ParameterParser.getAccountId(req, "account", true);
+            firstTimestamp = ParameterParser.getInt(req, "firstTimestamp", 0, Integer.MAX_VALUE, false);
+            lastTimestamp = ParameterParser.getInt(req, "lastTimestamp", 0, Integer.MAX_VALUE, false);
+            if (req.getParameter("lastTimestamp") == null) {
+                lastTimestamp = Integer.MAX_VALUE;
+            }
+            String format = Convert.nullToEmpty(req.getParameter("format"));
+            if (format.isEmpty() || format.equals("ndjson")) {
+                csv = false;
+            } else if (format.equals("csv")) {
+                csv = true;
+            } else {
+                throw new ParameterException(JSONResponses.incorrect("format", "format must be csv or ndjson"));
+            }
+        } catch (ParameterException e) {
+            sendError(resp, e.getErrorResponse());
+            return;
+        }
+        String fileName = "ledger-" + Convert.rsAccount(accountId) + (csv ? ".csv" : ".ndjson");
+        resp.setContentType(csv ? "text/csv; charset=UTF-8" : "application/x-ndjson; charset=UTF-8");
+        resp.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        try (Writer writer = resp.getWriter()) {
+            if (csv) {
+                writer.write(CSV_HEADER);
+            }
+            if (!AccountLedger.isEnabled()) {
+                return;
+            }
+            int height = Kpl.getBlockchain().getHeight();
+            String continuation = null;
+            List<LedgerEntry> entries = new ArrayList<>(PAGE_SIZE);
+            do {
+                entries.clear();
+                Db.db.setReadOnlyRequest(true);
+                try (DbIterator<LedgerEntry> iterator = AccountLedger.getExportIterator(accountId, firstTimestamp,
+                        lastTimestamp, height, continuation, PAGE_SIZE)) {
+                    while (iterator.hasNext()) {
+                        entries.add(iterator.next());
+                    }
+                    continuation = iterator.getContinuation();
+                } finally {
+                    Db.db.setReadOnlyRequest(false);
+                }
+                for (LedgerEntry entry : entries) {
+                    if (csv) {
+                        writeCSV(writer, entry);
+                    } else {
+                        JSONObject json = new JSONObject();
+                        JSONData.ledgerEntry(json, entry, false, false);
+                        json.writeJSONString(writer);
+                        writer.write('\n');
+                    }
+                }
+                writer.flush();
+            } while (entries.size() == PAGE_SIZE);
+        }
+    }
+
+    private static void writeCSV(Writer writer, LedgerEntry entry) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(Long.toUnsignedString(entry.getLedgerId())).append(',')
+                .append(Long.toUnsignedString(entry.getAccountId())).append(',')
+                .append(Convert.rsAccount(entry.getAccountId())).append(',')
+                .append(entry.getTimestamp()).append(',')
+                .append(entry.getHeight()).append(',')
+                .append(Long.toUnsignedString(entry.getBlockId())).append(',')
+                .append(entry.getEvent().name()).append(',')
+                .append(Long.toUnsignedString(entry.getEventId())).append(',');
+        if (entry.getHolding() != null) {
+            sb.append(entry.getHolding().name());
+        }
+        sb.append(',');
+        if (entry.getHoldingId() != null) {
+            sb.append(Long.toUnsignedString(entry.getHoldingId()));
+        }
+        sb.append(',')
+                .append(entry.getChange()).append(',')
+                .append(entry.getBalance()).append('\n');
+        writer.write(sb.toString());
+    }
+
+    private static void sendError(HttpServletResponse resp, JSONStreamAware response) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        resp.setContentType("text/plain; charset=UTF-8");
+        try (Writer writer = resp.getWriter()) {
+            response.writeJSONString(writer);
+        }
+    }
+}
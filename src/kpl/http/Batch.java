@@ -0,0 +1,259 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.Block;
+import kpl.Db;
+import kpl.Kpl;
+import kpl.kplException;
+import kpl.util.Convert;
+import kpl.util.JSON;
+import kpl.util.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>The Batch API processes a list of read-only API requests within a single
+ * database transaction.  The blockchain is not changed while the requests are
+ * being processed, so all of the responses are for the same block.</p>
+ *
+ * <p>Request parameters:</p>
+ * <ul>
+ * <li>requests - JSON array of request objects.  Each request object contains the
+ * requestType and the request parameters.  A parameter with multiple values is
+ * specified as an array.</li>
+ * </ul>
+ *
+ * <p>Response parameters:</p>
+ * <ul>
+ * <li>responses - An array of responses in the same order as the requests</li>
+ * <li>lastBlock - Identifier of the last block when the requests were processed</li>
+ * <li>height - Height of the last block</li>
+ * </ul>
+ *
+ * <p>Only inexpensive read-only requests can be included in a batch.  Requests which
+ * require POST and long-running requests such as getBlocks or getAccountLedger are
+ * rejected.  The batch itself is processed as a long-running request.  The requireBlock
+ * and requireLastBlock parameters of a request in the batch are checked against the
+ * block used for the batch.</p>
+ */
+public final class Batch extends APIServlet.APIRequestHandler {
+
+    /** Maximum number of requests in a batch */
+    private static final int maxBatchRequests = Kpl.getIntProperty("kpl.apiMaxBatchRequests", 50);
+
+    /** Batch instance */
+    static final Batch instance = new Batch();
+
+    /**
+     * Create the Batch instance
+     */
+    private Batch() {
+        super(new APITag[] {APITag.UTILS}, "requests");
+    }
+
+    /**
+     * Process the Batch API request
+     *
+     * @param   req                 API request
+     * @return                      API response
+     * @throws  kplException        Invalid request
+     */
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws kplException {
+        String requestsValue = Convert.emptyToNull(req.getParameter("requests"));
+        if (requestsValue == null) {
+            return JSONResponses.missing("requests");
+        }
+        List<?> requests;
+        try {
+            Object value = JSONValue.parseWithException(requestsValue);
+            if (!(value instanceof List)) {
+                return JSONResponses.incorrect("requests");
+            }
+            requests = (List<?>)value;
+        } catch (ParseException e) {
+            return JSONResponses.incorrect("requests");
+        }
+        if (requests.size() > maxBatchRequests) {
+            return JSONResponses.incorrect("requests", "(maximum of " + maxBatchRequests + " requests)");
+        }
+        //
+        // Process the requests.  The blockchain read lock is held so that all of the
+        // responses are for the same block.  The responses are serialized before the
+        // lock is released since a response may read from the database while it is written.
+        //
+        JSONArray responses = new JSONArray();
+        Block lastBlock;
+        Kpl.getBlockchain().readLock();
+        try {
+            Db.db.beginTransaction();
+            try {
+                lastBlock = Kpl.getBlockchain().getLastBlock();
+                for (Object request : requests) {
+                    String responseString = JSON.toString(processSubRequest(req, request, lastBlock));
+                    responses.add((JSONStreamAware)out -> out.write(responseString));
+                }
+            } finally {
+                Db.db.endTransaction();
+            }
+        } finally {
+            Kpl.getBlockchain().readUnlock();
+        }
+        JSONObject response = new JSONObject();
+        response.put("responses", responses);
+        response.put("lastBlock", lastBlock.getStringId());
+        response.put("height", lastBlock.getHeight());
+        return response;
+    }
+
+    /**
+     * Process a single request in the batch
+     *
+     * @param   req                 Batch request
+     * @param   request             Request object
+     * @param   lastBlock           Last block when the batch is processed
+     * @return                      Response
+     */
+    private static JSONStreamAware processSubRequest(HttpServletRequest req, Object request, Block lastBlock) {
+        if (!(request instanceof Map)) {
+            return JSONResponses.incorrect("requests");
+        }
+        Map<String, String[]> parameters = new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>)request).entrySet()) {
+            Object value = entry.getValue();
+            String[] values;
+            if (value instanceof List) {
+                List<?> list = (List<?>)value;
+                values = new String[list.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = String.valueOf(list.get(i));
+                }
+            } else {
+                values = new String[] {value != null ? value.toString() : null};
+            }
+            parameters.put(entry.getKey().toString(), values);
+        }
+        String[] requestType = parameters.get("requestType");
+        if (requestType == null || requestType.length != 1 || requestType[0] == null) {
+            return JSONResponses.missing("requestType");
+        }
+        APIServlet.APIRequestHandler apiRequestHandler = APIServlet.apiRequestHandlers.get(requestType[0]);
+        if (apiRequestHandler == null) {
+            return APIServlet.disabledRequestHandlers.containsKey(requestType[0]) ?
+                    JSONResponses.ERROR_DISABLED : JSONResponses.ERROR_INCORRECT_REQUEST;
+        }
+        if (apiRequestHandler == instance || apiRequestHandler.getRequestClass() != APIRequestClass.READ_LIGHT) {
+            return JSONResponses.incorrect("requestType", "(" + requestType[0] + " cannot be used in a batch)");
+        }
+        try {
+            HttpServletRequest subRequest = new SubRequest(req, parameters);
+            if (apiRequestHandler.requirePassword()) {
+                API.verifyPassword(subRequest);
+            }
+            if (apiRequestHandler.allowRequiredBlockParameters()) {
+                long requireBlockId = ParameterParser.getUnsignedLong(subRequest, "requireBlock", false);
+                if (requireBlockId != 0 && !Kpl.getBlockchain().hasBlock(requireBlockId)) {
+                    return JSONResponses.REQUIRED_BLOCK_NOT_FOUND;
+                }
+                long requireLastBlockId = ParameterParser.getUnsignedLong(subRequest, "requireLastBlock", false);
+                if (requireLastBlockId != 0 && requireLastBlockId != lastBlock.getId()) {
+                    return JSONResponses.REQUIRED_LAST_BLOCK_NOT_FOUND;
+                }
+            }
+            JSONStreamAware response = apiRequestHandler.processRequest(subRequest);
+            return response != null ? response : JSON.emptyJSON;
+        } catch (ParameterException e) {
+            return e.getErrorResponse();
+        } catch (kplException | RuntimeException e) {
+            Logger.logDebugMessage("Error processing batch API request", e);
+            JSONObject json = new JSONObject();
+            JSONData.putException(json, e);
+            return json;
+        }
+    }
+
+    /**
+     * A batch holds the blockchain read lock while processing up to the maximum number of requests
+     *
+     * @return                      Request class
+     */
+    @Override
+    protected APIRequestClass getRequestClass() {
+        return APIRequestClass.READ_HEAVY;
+    }
+
+    /**
+     * Batch requests are processed in their own database transaction
+     *
+     * @return                      FALSE to use the main database
+     */
+    @Override
+    protected boolean useReadOnlyDbConnection() {
+        return false;
+    }
+
+    /**
+     * Request within a batch.  The request parameters are the parameters of the request object
+     * except for the administrator password, which can also be specified for the batch.
+     */
+    private static final class SubRequest extends HttpServletRequestWrapper {
+
+        /** Request parameters */
+        private final Map<String, String[]> parameters;
+
+        private SubRequest(HttpServletRequest req, Map<String, String[]> parameters) {
+            super(req);
+            this.parameters = parameters;
+            if (!parameters.containsKey("adminPassword") && req.getParameter("adminPassword") != null) {
+                parameters.put("adminPassword", new String[] {req.getParameter("adminPassword")});
+            }
+        }
+
+        @Override
+        public String getParameter(String name) {
+            String[] values = parameters.get(name);
+            return values != null && values.length > 0 ? values[0] : null;
+        }
+
+        @Override
+        public String[] getParameterValues(String name) {
+            return parameters.get(name);
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return Collections.unmodifiableMap(parameters);
+        }
+
+        @Override
+        public Enumeration<String> getParameterNames() {
+            return Collections.enumeration(parameters.keySet());
+        }
+    }
+}
@@ -52,6 +52,8 @@ import java.util.List;
  *
  * <p>An application cannot register events if the maximum number of event users
  * specified by kpl.apiMaxEventUsers has been reached.</p>
+ * <p>The same events are also available as server-sent events by connecting to
+ * the /events endpoint with the 'event' parameters described below.  See EventStreamServlet.</p>
  *
  * <p>Request parameters:</p>
  * <ul>
@@ -150,9 +152,10 @@ public class EventRegister extends APIServlet.APIRequestHandler {
      *
      * @param   req                 API request
      * @return                      API response
+     * @throws  ParameterException  Incorrect or unknown event name
      */
     @Override
-    protected JSONStreamAware processRequest(HttpServletRequest req) {
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
         JSONObject response;
         //
         // Get 'add' and 'remove' parameters
@@ -164,8 +167,52 @@ public class EventRegister extends APIServlet.APIRequestHandler {
         //
         // Build the event list from the 'event' parameters
         //
+        List<EventRegistration> events = getEventRegistrations(req.getParameterValues("event"));
+        //
+        // Register the event listener
+        //
+        try {
+            if (addEvents || removeEvents) {
+                EventListener listener = EventListener.eventListeners.get(req.getRemoteAddr());
+                if (listener != null) {
+                    if (addEvents)
+                        listener.addEvents(events);
+                    else
+                        listener.removeEvents(events);
+                    response = eventsRegistered;
+                } else {
+                    response = noEventsRegistered;
+                }
+            } else {
+                EventListener listener = new EventListener(req.getRemoteAddr());
+                listener.activateListener(events);
+                response = eventsRegistered;
+            }
+        } catch (EventListenerException exc) {
+            response = new JSONObject();
+            response.put("errorCode", 7);
+            response.put("errorDescription", "Unable to register events: "+exc.getMessage());
+        }
+        //
+        // Return the response
+        //
+        return response;
+    }
+
+    @Override
+    protected final boolean requirePost() {
+        return true;
+    }
+
+    /**
+     * Build the event registration list from the 'event' parameter values
+     *
+     * @param   params              Event names or null to register all events
+     * @return                      Event registrations
+     * @throws  ParameterException  Incorrect or unknown event name
+     */
+    static List<EventRegistration> getEventRegistrations(String[] params) throws ParameterException {
         List<EventRegistration> events = new ArrayList<>();
-        String[] params = req.getParameterValues("event");
         if (params == null) {
             //
             // Add all events if no events are supplied
@@ -186,13 +233,13 @@ public class EventRegister extends APIServlet.APIRequestHandler {
                         try {
                             accountId = Convert.parseAccountId(parts[2]);
                         } catch (RuntimeException e) {
-                            return incorrectEvent;
+                            throw new ParameterException(incorrectEvent);
                         }
                     } else if (parts.length != 2) {
-                        return incorrectEvent;
+                        throw new ParameterException(incorrectEvent);
                     }
                 } else if (parts.length != 2) {
-                    return incorrectEvent;
+                    throw new ParameterException(incorrectEvent);
                 }
                 //
                 // Add the event
@@ -212,7 +259,7 @@ public class EventRegister extends APIServlet.APIRequestHandler {
                         eventList = EventListener.ledgerEvents;
                         break;
                     default:
-                        return unknownEvent;
+                        throw new ParameterException(unknownEvent);
                 }
                 boolean eventAdded = false;
                 for (Enum<? extends Enum> event : eventList) {
@@ -223,43 +270,10 @@ public class EventRegister extends APIServlet.APIRequestHandler {
                     }
                 }
                 if (!eventAdded)
-                    return unknownEvent;
-            }
-        }
-        //
-        // Register the event listener
-        //
-        try {
-            if (addEvents || removeEvents) {
-                EventListener listener = EventListener.eventListeners.get(req.getRemoteAddr());
-                if (listener != null) {
-                    if (addEvents)
-                        listener.addEvents(events);
-                    else
-                        listener.removeEvents(events);
-                    response = eventsRegistered;
-                } else {
-                    response = noEventsRegistered;
-                }
-            } else {
-                EventListener listener = new EventListener(req.getRemoteAddr());
-                listener.activateListener(events);
-                response = eventsRegistered;
+                    throw new ParameterException(unknownEvent);
             }
-        } catch (EventListenerException exc) {
-            response = new JSONObject();
-            response.put("errorCode", 7);
-            response.put("errorDescription", "Unable to register events: "+exc.getMessage());
         }
-        //
-        // Return the response
-        //
-        return response;
-    }
-
-    @Override
-    protected final boolean requirePost() {
-        return true;
+        return events;
     }
 
     /**
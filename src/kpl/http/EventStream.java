@@ -0,0 +1,407 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.AccountLedger;
+import kpl.Db;
+import kpl.Kpl;
+import kpl.db.TransactionalDb;
+import kpl.http.EventListener.EventRegistration;
+import kpl.http.EventListener.PendingEvent;
+import kpl.peer.Peers;
+import kpl.util.Convert;
+import kpl.util.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EventStream pushes peer, block, transaction and account ledger events to
+ * subscribers connected to the /events server-sent events endpoint.
+ *
+ * A single set of kpl listeners is registered for all subscribers.  Each event is
+ * serialized once on the event stream thread and the resulting frame is queued for
+ * every subscriber registered for the event.  Subscriber output is written using
+ * non-blocking servlet I/O, so a subscriber does not occupy a thread while it is idle.
+ * A subscriber is disconnected if more than kpl.apiEventStreamQueueSize frames are
+ * waiting to be written.
+ *
+ * Events raised within a database transaction are not sent until the transaction
+ * is committed and are discarded if the transaction is rolled back.
+ *
+ * The maximum number of subscribers is specified by kpl.apiMaxEventStreams.
+ */
+final class EventStream implements TransactionalDb.TransactionCallback {
+
+    /** Maximum number of subscribers */
+    static final int maxEventStreams = Kpl.getIntProperty("kpl.apiMaxEventStreams");
+
+    /** Maximum number of frames waiting to be written to a subscriber */
+    static final int maxQueueSize = Kpl.getIntProperty("kpl.apiEventStreamQueueSize");
+
+    /** Keep-alive interval (seconds) */
+    private static final int KEEP_ALIVE_INTERVAL = 30;
+
+    /** Keep-alive frame */
+    private static final byte[] keepAliveFrame = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Transaction callback */
+    private static final EventStream instance = new EventStream();
+
+    /** Active subscribers */
+    private static final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /** Events waiting for the current database transaction to complete */
+    private static final ThreadLocal<List<StreamEvent>> dbEvents = new ThreadLocal<>();
+
+    /** Event stream thread */
+    private static final ScheduledExecutorService eventService = Executors.newSingleThreadScheduledExecutor();
+
+    /** kpl listeners have been registered */
+    private static boolean started;
+
+    private EventStream() {
+    }
+
+    /**
+     * Add a subscriber
+     *
+     * The kpl listeners are registered when the first subscriber is added
+     *
+     * @param   context                 Asynchronous context for the subscriber response
+     * @param   eventRegistrations      Subscribed events
+     * @return                          TRUE if the subscriber was added
+     * @throws  IOException             Unable to start writing the subscriber response
+     */
+    static boolean subscribe(AsyncContext context, List<EventRegistration> eventRegistrations) throws IOException {
+        synchronized (subscribers) {
+            if (subscribers.size() >= maxEventStreams) {
+                return false;
+            }
+            start();
+            Subscriber subscriber = new Subscriber(context, eventRegistrations);
+            subscribers.add(subscriber);
+            subscriber.open();
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of active subscribers
+     *
+     * @return                          Number of subscribers
+     */
+    static int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Disconnect all subscribers and stop the event stream thread
+     */
+    static void shutdown() {
+        synchronized (subscribers) {
+            new ArrayList<>(subscribers).forEach(Subscriber::close);
+        }
+        eventService.shutdownNow();
+    }
+
+    /**
+     * Register the kpl listeners and start the keep-alive timer
+     */
+    private static void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        EventListener.peerEvents.forEach(event -> Peers.addListener(peer ->
+                publish(new StreamEvent(event, 0, new PendingEvent("Peer." + event.name(), peer.getHost())), false), event));
+        EventListener.blockEvents.forEach(event -> Kpl.getBlockchainProcessor().addListener(block ->
+                publish(new StreamEvent(event, 0, new PendingEvent("Block." + event.name(), block.getStringId())), true), event));
+        EventListener.txEvents.forEach(event -> Kpl.getTransactionProcessor().addListener(txList -> {
+            List<String> idList = new ArrayList<>(txList.size());
+            txList.forEach(tx -> idList.add(tx.getStringId()));
+            publish(new StreamEvent(event, 0, new PendingEvent("Transaction." + event.name(), idList)), true);
+        }, event));
+        EventListener.ledgerEvents.forEach(event -> AccountLedger.addListener(entry ->
+                publish(new StreamEvent(event, entry.getAccountId(), new PendingEvent(String.format("Ledger.%s.%s",
+                        event.name(), Convert.rsAccount(entry.getAccountId())),
+                        Long.toUnsignedString(entry.getLedgerId()))), true), event));
+        eventService.scheduleWithFixedDelay(() -> subscribers.forEach(subscriber -> subscriber.send(keepAliveFrame)),
+                KEEP_ALIVE_INTERVAL, KEEP_ALIVE_INTERVAL, TimeUnit.SECONDS);
+        Logger.logDebugMessage("Event stream started");
+    }
+
+    /**
+     * Publish an event
+     *
+     * @param   event                   Event
+     * @param   waitTransaction         TRUE to hold the event until the current database transaction is committed
+     */
+    private static void publish(StreamEvent event, boolean waitTransaction) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        if (waitTransaction && Db.db.isInTransaction()) {
+            List<StreamEvent> events = dbEvents.get();
+            if (events == null) {
+                events = new ArrayList<>();
+                dbEvents.set(events);
+            }
+            events.add(event);
+            Db.db.registerCallback(instance);
+        } else {
+            eventService.execute(() -> send(event));
+        }
+    }
+
+    /**
+     * Send an event to the subscribers registered for the event
+     *
+     * @param   event                   Event
+     */
+    private static void send(StreamEvent event) {
+        byte[] frame = null;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.isRegistered(event)) {
+                if (frame == null) {
+                    frame = event.getFrame();
+                }
+                subscriber.send(frame);
+            }
+        }
+    }
+
+    /**
+     * Send the events held for the committed transaction
+     */
+    @Override
+    public void commit() {
+        List<StreamEvent> events = dbEvents.get();
+        if (events != null) {
+            dbEvents.remove();
+            eventService.execute(() -> events.forEach(EventStream::send));
+        }
+    }
+
+    /**
+     * Discard the events held for the rolled back transaction
+     */
+    @Override
+    public void rollback() {
+        dbEvents.remove();
+    }
+
+    /**
+     * Event published to the subscribers
+     */
+    private static final class StreamEvent {
+
+        /** kpl event */
+        private final Enum<? extends Enum> event;
+
+        /** Account identifier or 0 if the event is not for an account */
+        private final long accountId;
+
+        /** Event details */
+        private final PendingEvent pendingEvent;
+
+        StreamEvent(Enum<? extends Enum> event, long accountId, PendingEvent pendingEvent) {
+            this.event = event;
+            this.accountId = accountId;
+            this.pendingEvent = pendingEvent;
+        }
+
+        /**
+         * Return the server-sent event frame
+         *
+         * @return                      Frame bytes
+         */
+        byte[] getFrame() {
+            return ("event: " + pendingEvent.getName() + "\ndata: " + EventWait.formatEvent(pendingEvent).toJSONString() + "\n\n")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Event stream subscriber
+     */
+    private static final class Subscriber implements WriteListener, AsyncListener {
+
+        /** Asynchronous context */
+        private final AsyncContext context;
+
+        /** Subscriber address */
+        private final String address;
+
+        /** Subscribed events */
+        private final List<EventRegistration> eventRegistrations;
+
+        /** Response output stream */
+        private final ServletOutputStream out;
+
+        /** Frames waiting to be written */
+        private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+
+        /** Output stream has been opened */
+        private boolean opened;
+
+        /** Written data needs to be flushed */
+        private boolean flushNeeded;
+
+        /** Subscriber has been closed */
+        private boolean closed;
+
+        Subscriber(AsyncContext context, List<EventRegistration> eventRegistrations) throws IOException {
+            this.context = context;
+            this.address = context.getRequest().getRemoteAddr();
+            this.eventRegistrations = eventRegistrations;
+            this.out = context.getResponse().getOutputStream();
+        }
+
+        /**
+         * Start writing the response using non-blocking I/O
+         */
+        void open() {
+            context.addListener(this);
+            queue.add(keepAliveFrame);
+            out.setWriteListener(this);
+        }
+
+        /**
+         * Check if the subscriber is registered for an event
+         *
+         * @param   streamEvent         Event
+         * @return                      TRUE if the subscriber is registered for the event
+         */
+        boolean isRegistered(StreamEvent streamEvent) {
+            for (EventRegistration registration : eventRegistrations) {
+                if (registration.getEvent() == streamEvent.event &&
+                        (registration.getAccountId() == 0 || registration.getAccountId() == streamEvent.accountId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Queue a frame for the subscriber
+         *
+         * @param   frame               Frame bytes
+         */
+        synchronized void send(byte[] frame) {
+            if (closed) {
+                return;
+            }
+            if (queue.size() >= maxQueueSize) {
+                Logger.logDebugMessage("Event stream queue full, disconnecting " + address);
+                close();
+                return;
+            }
+            queue.add(frame);
+            if (opened) {
+                write();
+            }
+        }
+
+        /**
+         * Write queued frames until the output stream is not ready
+         */
+        private void write() {
+            try {
+                while (out.isReady()) {
+                    byte[] frame = queue.poll();
+                    if (frame == null) {
+                        if (!flushNeeded) {
+                            break;
+                        }
+                        flushNeeded = false;
+                        out.flush();
+                    } else {
+                        out.write(frame);
+                        flushNeeded = true;
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                Logger.logDebugMessage("Unable to write event stream to " + address +
+                        ": " + e.toString());
+                close();
+            }
+        }
+
+        /**
+         * Disconnect the subscriber
+         */
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            subscribers.remove(this);
+            try {
+                context.complete();
+            } catch (IllegalStateException e) {
+                // Response has already been completed
+            }
+        }
+
+        @Override
+        public synchronized void onWritePossible() {
+            if (!closed) {
+                opened = true;
+                write();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
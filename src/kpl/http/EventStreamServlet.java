@@ -0,0 +1,79 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.http.EventListener.EventRegistration;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Push server events to the client using server-sent events.
+ *
+ * The 'event' request parameter selects the events and can be repeated.  The event
+ * names are the same as for the EventRegister API and all events are sent if no event
+ * is specified.  Each event is sent as a server-sent event with the event name as the
+ * event type and the EventWait event object as the data:
+ *
+ *   event: Block.BLOCK_PUSHED
+ *   data: {"name":"Block.BLOCK_PUSHED","ids":["1234567890"]}
+ *
+ * The connection remains open until it is closed by the client.  A comment line is sent
+ * every 30 seconds to keep the connection alive.
+ */
+public final class EventStreamServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setHeader("Cache-Control", "no-cache, no-store, must-revalidate, private");
+        resp.setHeader("Pragma", "no-cache");
+        resp.setDateHeader("Expires", 0);
+        if (!API.isAllowed(req.getRemoteHost())) {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        List<EventRegistration> eventRegistrations;
+        try {
+            eventRegistrations = EventRegister.getEventRegistrations(req.getParameterValues("event"));
+        } catch (ParameterException e) {
+            sendError(resp, HttpServletResponse.SC_BAD_REQUEST, e.getErrorResponse());
+            return;
+        }
+        resp.setContentType("text/event-stream; charset=UTF-8");
+        AsyncContext context = req.startAsync();
+        context.setTimeout(0);
+        if (!EventStream.subscribe(context, eventRegistrations)) {
+            sendError(resp, HttpServletResponse.SC_SERVICE_UNAVAILABLE, JSONResponses.ERROR_BUSY);
+            context.complete();
+        }
+    }
+
+    private static void sendError(HttpServletResponse resp, int status, JSONStreamAware response) throws IOException {
+        resp.setStatus(status);
+        resp.setContentType("text/plain; charset=UTF-8");
+        try (Writer writer = resp.getWriter()) {
+            response.writeJSONString(writer);
+        }
+    }
+}
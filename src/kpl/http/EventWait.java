@@ -172,6 +172,16 @@ public class EventWait extends APIServlet.APIRequestHandler {
         return true;
     }
 
+    /**
+     * Process the request on the API server thread since it starts its own asynchronous context
+     *
+     * @return                      NULL to process the request on the API server thread
+     */
+    @Override
+    protected APIRequestClass getRequestClass() {
+        return null;
+    }
+
     /**
      * No required block parameters
      *
@@ -190,19 +200,27 @@ public class EventWait extends APIServlet.APIRequestHandler {
      */
     static JSONObject formatResponse(List<PendingEvent> events) {
         JSONArray eventsJSON = new JSONArray();
-        events.forEach(event -> {
-            JSONArray idsJSON = new JSONArray();
-            if (event.isList())
-                idsJSON.addAll(event.getIdList());
-            else
-                idsJSON.add(event.getId());
-            JSONObject eventJSON = new JSONObject();
-            eventJSON.put("name", event.getName());
-            eventJSON.put("ids", idsJSON);
-            eventsJSON.add(eventJSON);
-        });
+        events.forEach(event -> eventsJSON.add(formatEvent(event)));
         JSONObject response = new JSONObject();
         response.put("events", eventsJSON);
         return response;
     }
+
+    /**
+     * Format an event
+     *
+     * @param   event               Pending event
+     * @return                      JSON event object
+     */
+    static JSONObject formatEvent(PendingEvent event) {
+        JSONArray idsJSON = new JSONArray();
+        if (event.isList())
+            idsJSON.addAll(event.getIdList());
+        else
+            idsJSON.add(event.getId());
+        JSONObject eventJSON = new JSONObject();
+        eventJSON.put("name", event.getName());
+        eventJSON.put("ids", idsJSON);
+        return eventJSON;
+    }
 }
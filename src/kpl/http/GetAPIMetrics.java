@@ -0,0 +1,91 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * <p>The GetAPIMetrics API will return the request metrics for each API
+ * request type that has been used since the server was started.  The same
+ * metrics are available in Prometheus text format at /metrics.</p>
+ *
+ * <p>Request parameters:</p>
+ * <ul>
+ * <li>metricsRequestType - Return the metrics for this request type (optional)</li>
+ * </ul>
+ *
+ * <p>Response parameters:</p>
+ * <ul>
+ * <li>metrics - An array of request type metrics.  Times are in milliseconds.</li>
+ * </ul>
+ */
+public final class GetAPIMetrics extends APIServlet.APIRequestHandler {
+
+    /** GetAPIMetrics instance */
+    static final GetAPIMetrics instance = new GetAPIMetrics();
+
+    /**
+     * Create the GetAPIMetrics instance
+     */
+    private GetAPIMetrics() {
+        super(new APITag[] {APITag.DEBUG}, "metricsRequestType");
+    }
+
+    /**
+     * Process the GetAPIMetrics API request
+     *
+     * @param   req                 API request
+     * @return                      API response
+     */
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) {
+        String requestType = req.getParameter("metricsRequestType");
+        JSONArray metricsJSON = new JSONArray();
+        APIMetrics.getEndpoints().forEach((name, endpoint) -> {
+            if (requestType == null || requestType.isEmpty() || requestType.equals(name)) {
+                metricsJSON.add(JSONData.apiMetrics(endpoint));
+            }
+        });
+        JSONObject response = new JSONObject();
+        response.put("metrics", metricsJSON);
+        return response;
+    }
+
+    /**
+     * Require the administrator password
+     *
+     * @return                      TRUE if the admin password is required
+     */
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+    @Override
+    protected boolean requireBlockchain() {
+        return false;
+    }
+}
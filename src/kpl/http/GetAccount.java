@@ -93,26 +93,23 @@ public final class GetAccount extends APIServlet.APIRequestHandler {
         }
 
         if (includeAssets) {
-            try (DbIterator<Account.AccountAsset> accountAssets = account.getAssets(0, -1)) {
-                JSONArray assetBalances = new JSONArray();
-                JSONArray unconfirmedAssetBalances = new JSONArray();
-                while (accountAssets.hasNext()) {
-                    Account.AccountAsset accountAsset = accountAssets.next();
-                    JSONObject assetBalance = new JSONObject();
-                    assetBalance.put("asset", Long.toUnsignedString(accountAsset.getAssetId()));
-                    assetBalance.put("balanceQNT", String.valueOf(accountAsset.getQuantityQNT()));
-                    assetBalances.add(assetBalance);
-                    JSONObject unconfirmedAssetBalance = new JSONObject();
-                    unconfirmedAssetBalance.put("asset", Long.toUnsignedString(accountAsset.getAssetId()));
-                    unconfirmedAssetBalance.put("unconfirmedBalanceQNT", String.valueOf(accountAsset.getUnconfirmedQuantityQNT()));
-                    unconfirmedAssetBalances.add(unconfirmedAssetBalance);
-                }
-                if (assetBalances.size() > 0) {
-                    response.put("assetBalances", assetBalances);
-                }
-                if (unconfirmedAssetBalances.size() > 0) {
-                    response.put("unconfirmedAssetBalances", unconfirmedAssetBalances);
-                }
+            JSONArray assetBalances = new JSONArray();
+            JSONArray unconfirmedAssetBalances = new JSONArray();
+            for (Account.AccountAsset accountAsset : account.getAssets()) {
+                JSONObject assetBalance = new JSONObject();
+                assetBalance.put("asset", Long.toUnsignedString(accountAsset.getAssetId()));
+                assetBalance.put("balanceQNT", String.valueOf(accountAsset.getQuantityQNT()));
+                assetBalances.add(assetBalance);
+                JSONObject unconfirmedAssetBalance = new JSONObject();
+                unconfirmedAssetBalance.put("asset", Long.toUnsignedString(accountAsset.getAssetId()));
+                unconfirmedAssetBalance.put("unconfirmedBalanceQNT", String.valueOf(accountAsset.getUnconfirmedQuantityQNT()));
+                unconfirmedAssetBalances.add(unconfirmedAssetBalance);
+            }
+            if (assetBalances.size() > 0) {
+                response.put("assetBalances", assetBalances);
+            }
+            if (unconfirmedAssetBalances.size() > 0) {
+                response.put("unconfirmedAssetBalances", unconfirmedAssetBalances);
             }
         }
 
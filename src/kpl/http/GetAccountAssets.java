@@ -18,7 +18,6 @@ package kpl.http;
 
 import kpl.Account;
 import kpl.kplException;
-import kpl.db.DbIterator;
 import kpl.util.JSON;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -44,14 +43,12 @@ public final class GetAccountAssets extends APIServlet.APIRequestHandler {
 
         if (assetId == 0) {
             JSONObject response = new JSONObject();
-            try (DbIterator<Account.AccountAsset> accountAssets = Account.getAccountAssets(accountId, height, 0, -1)) {
-                JSONArray assetJSON = new JSONArray();
-                while (accountAssets.hasNext()) {
-                    assetJSON.add(JSONData.accountAsset(accountAssets.next(), false, includeAssetInfo));
-                }
-                response.put("accountAssets", assetJSON);
-                return response;
+            JSONArray assetJSON = new JSONArray();
+            for (Account.AccountAsset accountAsset : Account.getAccountAssets(accountId, height)) {
+                assetJSON.add(JSONData.accountAsset(accountAsset, false, includeAssetInfo));
             }
+            response.put("accountAssets", assetJSON);
+            return response;
         } else {
             Account.AccountAsset accountAsset = Account.getAccountAsset(accountId, assetId, height);
             if (accountAsset != null) {
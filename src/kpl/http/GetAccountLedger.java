@@ -21,13 +21,12 @@ import kpl.AccountLedger.LedgerEntry;
 import kpl.AccountLedger.LedgerEvent;
 import kpl.AccountLedger.LedgerHolding;
 import kpl.kplException;
+import kpl.db.DbIterator;
 import kpl.util.Convert;
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.List;
 
 /**
  * <p>
@@ -57,6 +56,14 @@ import java.util.List;
  *       </td>
  *     </tr>
  *     <tr>
+ *       <td>continuation</td>
+ *       <td>Continuation token returned by a previous request.
+ *           This is an optional parameter and returns the entries following the last entry of the previous
+ *           page.  Only the page size (lastIndex - firstIndex + 1) is used when a continuation token is specified.
+ *           The response includes a continuation token if there may be more entries to return.
+ *       </td>
+ *     </tr>
+ *     <tr>
  *       <td>event</td>
  *       <td>Event identifier.
  *           The event identifier is ignored unless 'eventType' is also specified.
@@ -228,7 +235,7 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
      * Create the GetAccountLedger instance
      */
     private GetAccountLedger() {
-        super(new APITag[] {APITag.ACCOUNTS}, "account", "firstIndex", "lastIndex",
+        super(new APITag[] {APITag.ACCOUNTS}, "account", "firstIndex", "lastIndex", "continuation",
                 "eventType", "event", "holdingType", "holding", "includeTransactions", "includeHoldingInfo");
     }
 
@@ -247,6 +254,11 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
         long accountId = ParameterParser.getAccountId(req, "account", false);
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
+        String continuation = ParameterParser.getContinuation(req, AccountLedger.LEDGER_KEYSET);
+        if (continuation != null) {
+            lastIndex = (int)Math.min((long)lastIndex - firstIndex, Integer.MAX_VALUE - 1);
+            firstIndex = 0;
+        }
         String eventType = Convert.emptyToNull(req.getParameter("eventType"));
         LedgerEvent event = null;
         long eventId = 0;
@@ -273,21 +285,46 @@ public class GetAccountLedger extends APIServlet.APIRequestHandler {
         boolean includeHoldingInfo = "true".equalsIgnoreCase(req.getParameter("includeHoldingInfo"));
 
         //
-        // Get the ledger entries
+        // Return the response.  The ledger entries are written as they are read from the database.
         //
-        List<LedgerEntry> ledgerEntries = AccountLedger.getEntries(accountId, event, eventId,
-                                                                   holding, holdingId, firstIndex, lastIndex);
-        //
-        // Return the response
-        //
-        JSONArray responseEntries = new JSONArray();
-        ledgerEntries.forEach((entry) -> {
-            JSONObject responseEntry = new JSONObject();
-            JSONData.ledgerEntry(responseEntry, entry, includeTransactions, includeHoldingInfo);
-            responseEntries.add(responseEntry);
+        final LedgerEvent ledgerEvent = event;
+        final long ledgerEventId = eventId;
+        final LedgerHolding ledgerHolding = holding;
+        final long ledgerHoldingId = holdingId;
+        final int from = firstIndex;
+        final int to = lastIndex;
+        return new StreamingResponse(writer -> {
+            writer.name("entries").beginArray();
+            String nextContinuation = null;
+            if (AccountLedger.isEnabled()) {
+                try (DbIterator<LedgerEntry> entries = AccountLedger.getEntryIterator(accountId, ledgerEvent, ledgerEventId,
+                                                            ledgerHolding, ledgerHoldingId, continuation, from, to)) {
+                    int count = 0;
+                    while (entries.hasNext()) {
+                        JSONObject responseEntry = new JSONObject();
+                        JSONData.ledgerEntry(responseEntry, entries.next(), includeTransactions, includeHoldingInfo);
+                        writer.value(responseEntry);
+                        count++;
+                    }
+                    if (count > 0 && count == to - from + 1) {
+                        nextContinuation = entries.getContinuation();
+                    }
+                }
+            }
+            writer.endArray();
+            if (nextContinuation != null) {
+                writer.field("continuation", nextContinuation);
+            }
         });
-        JSONObject response = new JSONObject();
-        response.put("entries", responseEntries);
-        return response;
+    }
+
+    /**
+     * Ledger requests can return a large number of entries
+     *
+     * @return                      Request class
+     */
+    @Override
+    protected APIRequestClass getRequestClass() {
+        return APIRequestClass.READ_HEAVY;
     }
 }
@@ -25,12 +25,27 @@ import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
 
+/**
+ * Get the asset trades in descending height order.
+ *
+ * Request parameters:
+ *   timestamp        - Earliest trade timestamp to return (default is 0)
+ *   firstIndex       - First trade to return
+ *   lastIndex        - Last trade to return
+ *   continuation     - Continuation token returned by the previous request
+ *   includeAssetInfo - TRUE to include the asset name and decimals
+ *
+ * The trades are selected by firstIndex and lastIndex unless a continuation token is specified.
+ * The next page is then returned starting after the last trade of the previous page and only the
+ * page size (lastIndex - firstIndex + 1) is used.  The response includes a continuation token if
+ * a full page was returned.
+ */
 public final class GetAllTrades extends APIServlet.APIRequestHandler {
 
     static final GetAllTrades instance = new GetAllTrades();
 
     private GetAllTrades() {
-        super(new APITag[] {APITag.AE}, "timestamp", "firstIndex", "lastIndex", "includeAssetInfo");
+        super(new APITag[] {APITag.AE}, "timestamp", "firstIndex", "lastIndex", "continuation", "includeAssetInfo");
     }
     
     @Override
@@ -38,21 +53,36 @@ public final class GetAllTrades extends APIServlet.APIRequestHandler {
         final int timestamp = ParameterParser.getTimestamp(req);
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
+        String continuation = ParameterParser.getContinuation(req, Trade.ALL_TRADES_KEYSET);
         boolean includeAssetInfo = "true".equalsIgnoreCase(req.getParameter("includeAssetInfo"));
+        int limit = (int)Math.min((long)lastIndex - firstIndex + 1, Integer.MAX_VALUE);
 
         JSONObject response = new JSONObject();
         JSONArray trades = new JSONArray();
-        try (DbIterator<Trade> tradeIterator = Trade.getAllTrades(firstIndex, lastIndex)) {
+        String nextContinuation = null;
+        try (DbIterator<Trade> tradeIterator = continuation != null ? Trade.getAllTrades(continuation, limit)
+                : Trade.getAllTrades(firstIndex, lastIndex).setKeyset(Trade.ALL_TRADES_KEYSET)) {
             while (tradeIterator.hasNext()) {
                 Trade trade = tradeIterator.next();
                 if (trade.getTimestamp() < timestamp) {
                     break;
                 }
                 trades.add(JSONData.trade(trade, includeAssetInfo));
+                if (trades.size() == limit) {
+                    nextContinuation = tradeIterator.getContinuation();
+                }
             }
         }
         response.put("trades", trades);
+        if (nextContinuation != null) {
+            response.put("continuation", nextContinuation);
+        }
         return response;
     }
 
+    @Override
+    protected APIRequestClass getRequestClass() {
+        return APIRequestClass.READ_HEAVY;
+    }
+
 }
@@ -25,12 +25,27 @@ import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
 
+/**
+ * Get the accounts holding an asset in descending quantity order.
+ *
+ * Request parameters:
+ *   asset            - Asset identifier (required)
+ *   height           - Blockchain height (default is the current height)
+ *   firstIndex       - First account to return
+ *   lastIndex        - Last account to return
+ *   continuation     - Continuation token returned by the previous request
+ *
+ * The accounts are selected by firstIndex and lastIndex unless a continuation token is specified.
+ * The next page is then returned starting after the last account of the previous page and only
+ * the page size (lastIndex - firstIndex + 1) is used.  The response includes a continuation token
+ * if a full page was returned.  A continuation token cannot be used with a height.
+ */
 public final class GetAssetAccounts extends APIServlet.APIRequestHandler {
 
     static final GetAssetAccounts instance = new GetAssetAccounts();
 
     private GetAssetAccounts() {
-        super(new APITag[] {APITag.AE}, "asset", "height", "firstIndex", "lastIndex");
+        super(new APITag[] {APITag.AE}, "asset", "height", "firstIndex", "lastIndex", "continuation");
     }
 
     @Override
@@ -40,17 +55,31 @@ public final class GetAssetAccounts extends APIServlet.APIRequestHandler {
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
         int height = ParameterParser.getHeight(req);
+        String continuation = ParameterParser.getContinuation(req, Account.ASSET_ACCOUNTS_KEYSET);
+        if (continuation != null && height >= 0) {
+            return JSONResponses.incorrect("continuation", "continuation cannot be used with height");
+        }
+        int limit = (int)Math.min((long)lastIndex - firstIndex + 1, Integer.MAX_VALUE);
 
         JSONArray accountAssets = new JSONArray();
-        try (DbIterator<Account.AccountAsset> iterator = Account.getAssetAccounts(assetId, height, firstIndex, lastIndex)) {
+        String nextContinuation = null;
+        try (DbIterator<Account.AccountAsset> iterator = continuation != null ? Account.getAssetAccounts(assetId, continuation, limit)
+                : height < 0 ? Account.getAssetAccounts(assetId, firstIndex, lastIndex).setKeyset(Account.ASSET_ACCOUNTS_KEYSET)
+                : Account.getAssetAccounts(assetId, height, firstIndex, lastIndex)) {
             while (iterator.hasNext()) {
                 Account.AccountAsset accountAsset = iterator.next();
                 accountAssets.add(JSONData.accountAsset(accountAsset, true, false));
             }
+            if (height < 0 && accountAssets.size() == limit) {
+                nextContinuation = iterator.getContinuation();
+            }
         }
 
         JSONObject response = new JSONObject();
         response.put("accountAssets", accountAssets);
+        if (nextContinuation != null) {
+            response.put("continuation", nextContinuation);
+        }
         return response;
 
     }
@@ -84,4 +84,9 @@ public final class GetBlock extends APIServlet.APIRequestHandler {
 
     }
 
+    @Override
+    protected int getCacheTimeout() {
+        return 60;
+    }
+
 }
\ No newline at end of file
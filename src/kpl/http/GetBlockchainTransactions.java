@@ -16,12 +16,11 @@
 
 package kpl.http;
 
+import kpl.Blockchain;
 import kpl.Kpl;
 import kpl.kplException;
 import kpl.Transaction;
 import kpl.db.DbIterator;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
@@ -32,7 +31,7 @@ public final class GetBlockchainTransactions extends APIServlet.APIRequestHandle
 
     private GetBlockchainTransactions() {
         super(new APITag[] {APITag.ACCOUNTS, APITag.TRANSACTIONS}, "account", "timestamp", "type", "subtype",
-                "firstIndex", "lastIndex", "numberOfConfirmations", "withMessage", "phasedOnly", "nonPhasedOnly",
+                "firstIndex", "lastIndex", "continuation", "numberOfConfirmations", "withMessage", "phasedOnly", "nonPhasedOnly",
                 "includeExpiredPrunable", "includePhasingResult", "executedOnly");
     }
 
@@ -64,21 +63,43 @@ public final class GetBlockchainTransactions extends APIServlet.APIRequestHandle
 
         int firstIndex = ParameterParser.getFirstIndex(req);
         int lastIndex = ParameterParser.getLastIndex(req);
+        String continuation = ParameterParser.getContinuation(req, Blockchain.TRANSACTIONS_KEYSET);
+        if (continuation != null) {
+            lastIndex = (int)Math.min((long)lastIndex - firstIndex, Integer.MAX_VALUE - 1);
+            firstIndex = 0;
+        }
 
-        JSONArray transactions = new JSONArray();
-        try (DbIterator<? extends Transaction> iterator = Kpl.getBlockchain().getTransactions(accountId, numberOfConfirmations,
-                type, subtype, timestamp, withMessage, phasedOnly, nonPhasedOnly, firstIndex, lastIndex,
-                includeExpiredPrunable, executedOnly)) {
-            while (iterator.hasNext()) {
-                Transaction transaction = iterator.next();
-                transactions.add(JSONData.transaction(transaction, includePhasingResult));
+        final int from = firstIndex;
+        final int to = lastIndex;
+        final byte transactionType = type;
+        final byte transactionSubtype = subtype;
+        return new StreamingResponse(writer -> {
+            writer.name("transactions").beginArray();
+            String nextContinuation = null;
+            try (DbIterator<? extends Transaction> iterator = Kpl.getBlockchain().getTransactions(accountId, numberOfConfirmations,
+                    transactionType, transactionSubtype, timestamp, withMessage, phasedOnly, nonPhasedOnly, continuation,
+                    from, to, includeExpiredPrunable, executedOnly)) {
+                int count = 0;
+                while (iterator.hasNext()) {
+                    Transaction transaction = iterator.next();
+                    writer.value(JSONData.transaction(transaction, includePhasingResult));
+                    count++;
+                }
+                if (count > 0 && count == to - from + 1) {
+                    nextContinuation = iterator.getContinuation();
+                }
             }
-        }
+            writer.endArray();
+            if (nextContinuation != null) {
+                writer.field("continuation", nextContinuation);
+            }
+        });
 
-        JSONObject response = new JSONObject();
-        response.put("transactions", transactions);
-        return response;
+    }
 
+    @Override
+    protected APIRequestClass getRequestClass() {
+        return APIRequestClass.READ_HEAVY;
     }
 
 }
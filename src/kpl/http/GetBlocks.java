@@ -20,8 +20,6 @@ import kpl.Block;
 import kpl.Kpl;
 import kpl.kplException;
 import kpl.db.DbIterator;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import javax.servlet.http.HttpServletRequest;
@@ -43,21 +41,24 @@ public final class GetBlocks extends APIServlet.APIRequestHandler {
         boolean includeTransactions = "true".equalsIgnoreCase(req.getParameter("includeTransactions"));
         boolean includeExecutedPhased = "true".equalsIgnoreCase(req.getParameter("includeExecutedPhased"));
 
-        JSONArray blocks = new JSONArray();
-        try (DbIterator<? extends Block> iterator = Kpl.getBlockchain().getBlocks(firstIndex, lastIndex)) {
-            while (iterator.hasNext()) {
-                Block block = iterator.next();
-                if (block.getTimestamp() < timestamp) {
-                    break;
+        return new StreamingResponse(writer -> {
+            writer.name("blocks").beginArray();
+            try (DbIterator<? extends Block> iterator = Kpl.getBlockchain().getBlocks(firstIndex, lastIndex)) {
+                while (iterator.hasNext()) {
+                    Block block = iterator.next();
+                    if (block.getTimestamp() < timestamp) {
+                        break;
+                    }
+                    writer.value(JSONData.block(block, includeTransactions, includeExecutedPhased));
                 }
-                blocks.add(JSONData.block(block, includeTransactions, includeExecutedPhased));
             }
-        }
-
-        JSONObject response = new JSONObject();
-        response.put("blocks", blocks);
+            writer.endArray();
+        });
+    }
 
-        return response;
+    @Override
+    protected APIRequestClass getRequestClass() {
+        return APIRequestClass.READ_HEAVY;
     }
 
 }
@@ -0,0 +1,124 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.Block;
+import kpl.Kpl;
+import kpl.tools.ForgingSimulator;
+import kpl.tools.ForgingSimulator.Forger;
+import kpl.tools.ForgingSimulator.ForgerHit;
+import kpl.tools.ForgingSimulator.SimulatedBlock;
+import kpl.util.Convert;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+
+import static kpl.http.JSONResponses.HEIGHT_NOT_AVAILABLE;
+
+/**
+ * Predict the next block generators.
+ *
+ * Request parameters:
+ *   height         - Blockchain height (default is the current height)
+ *   numberOfBlocks - Number of blocks to simulate (default is 0, maximum is 1440)
+ *   firstIndex     - First forging account to return
+ *   lastIndex      - Last forging account to return
+ *
+ * The forging accounts are returned in hit time order for the block following the block
+ * at the requested height.  The simulated blocks assume every account with an effective
+ * balance is forging.
+ */
+public final class GetForgingSimulation extends APIServlet.APIRequestHandler {
+
+    static final GetForgingSimulation instance = new GetForgingSimulation();
+
+    private GetForgingSimulation() {
+        super(new APITag[] {APITag.FORGING}, "height", "numberOfBlocks", "firstIndex", "lastIndex");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(HttpServletRequest req) throws ParameterException {
+        int height = ParameterParser.getHeight(req);
+        int numberOfBlocks = ParameterParser.getInt(req, "numberOfBlocks", 0, 1440, false);
+        int firstIndex = ParameterParser.getFirstIndex(req);
+        int lastIndex = ParameterParser.getLastIndex(req);
+        Block block;
+        List<Forger> forgers;
+        Kpl.getBlockchain().readLock();
+        try {
+            if (height < 0) {
+                height = Kpl.getBlockchain().getHeight();
+            }
+            block = Kpl.getBlockchain().getBlockAtHeight(height);
+            forgers = ForgingSimulator.getForgers(height);
+        } catch (IllegalArgumentException e) {
+            return HEIGHT_NOT_AVAILABLE;
+        } finally {
+            Kpl.getBlockchain().readUnlock();
+        }
+        List<ForgerHit> hits = ForgingSimulator.getHits(block, forgers);
+        JSONObject response = new JSONObject();
+        response.put("height", block.getHeight());
+        response.put("block", block.getStringId());
+        response.put("timestamp", block.getTimestamp());
+        response.put("numberOfForgers", forgers.size());
+        JSONArray forgersJSON = new JSONArray();
+        for (int i = firstIndex; i < hits.size() && i <= lastIndex; i++) {
+            ForgerHit hit = hits.get(i);
+            JSONObject json = new JSONObject();
+            JSONData.putAccount(json, "account", hit.getForger().getAccountId());
+            json.put("effectiveBalancekpl", hit.getForger().getEffectiveBalance());
+            json.put("hitTime", hit.getHitTime());
+            json.put("deadline", hit.getDeadline());
+            forgersJSON.add(json);
+        }
+        response.put("forgers", forgersJSON);
+        if (numberOfBlocks > 0) {
+            JSONArray blocksJSON = new JSONArray();
+            for (SimulatedBlock simulatedBlock : ForgingSimulator.simulate(block, forgers, numberOfBlocks)) {
+                JSONObject json = new JSONObject();
+                json.put("height", simulatedBlock.getHeight());
+                json.put("timestamp", simulatedBlock.getTimestamp());
+                json.put("baseTarget", Long.toUnsignedString(simulatedBlock.getBaseTarget()));
+                json.put("generationSignature", Convert.toHexString(simulatedBlock.getGenerationSignature()));
+                JSONData.putAccount(json, "generator", simulatedBlock.getGeneratorId());
+                blocksJSON.add(json);
+            }
+            response.put("blocks", blocksJSON);
+        }
+        return response;
+    }
+
+    @Override
+    protected APIRequestClass getRequestClass() {
+        return APIRequestClass.READ_HEAVY;
+    }
+
+    @Override
+    protected boolean requirePassword() {
+        return true;
+    }
+
+    @Override
+    protected boolean allowRequiredBlockParameters() {
+        return false;
+    }
+
+}
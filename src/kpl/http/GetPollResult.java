@@ -58,4 +58,9 @@ public class GetPollResult extends APIServlet.APIRequestHandler {
         }
         return JSONData.pollResults(poll, pollResults, voteWeighting);
     }
+
+    @Override
+    protected int getCacheTimeout() {
+        return 60;
+    }
 }
@@ -23,6 +23,7 @@ import kpl.Asset;
 import kpl.AssetTransfer;
 import kpl.Constants;
 import kpl.Currency;
+import kpl.Db;
 import kpl.CurrencyBuyOffer;
 import kpl.CurrencyTransfer;
 import kpl.DigitalGoodsStore;
@@ -37,6 +38,7 @@ import kpl.Shuffling;
 import kpl.TaggedData;
 import kpl.Trade;
 import kpl.Vote;
+import kpl.db.FullTextTrigger;
 import kpl.peer.Peers;
 import kpl.util.UPnP;
 import org.json.simple.JSONObject;
@@ -88,7 +90,13 @@ public final class GetState extends APIServlet.APIRequestHandler {
             response.put("numberOfShufflings", Shuffling.getCount());
             response.put("numberOfActiveShufflings", Shuffling.getActiveCount());
             response.put("numberOfPhasingOnlyAccounts", AccountRestrictions.PhasingOnly.getCount());
+            response.put("dbConnectionPool", JSONData.dbPoolStats(Db.db.getPoolStats()));
+            if (Db.db.getReadOnlyPoolStats() != null) {
+                response.put("dbReadOnlyConnectionPool", JSONData.dbPoolStats(Db.db.getReadOnlyPoolStats()));
+            }
         }
+        response.put("luceneIndexLag", FullTextTrigger.getIndexLag());
+        response.put("luceneIndexQueueSize", FullTextTrigger.getIndexQueueSize());
         response.put("numberOfPeers", Peers.getAllPeers().size());
         response.put("numberOfActivePeers", Peers.getActivePeers().size());
         response.put("numberOfUnlockedAccounts", Generator.getAllGenerators().size());
@@ -20,6 +20,7 @@ import kpl.*;
 import kpl.AccountLedger.LedgerEntry;
 import kpl.crypto.Crypto;
 import kpl.crypto.EncryptedData;
+import kpl.db.BasicDb;
 import kpl.db.DbIterator;
 import kpl.peer.Hallmark;
 import kpl.peer.Peer;
@@ -915,7 +916,7 @@ public final class JSONData {
         byte[] signature = Convert.emptyToNull(transaction.getSignature());
         if (signature != null) {
             json.put("signature", Convert.toHexString(signature));
-            json.put("signatureHash", Convert.toHexString(Crypto.sha256().digest(signature)));
+            json.put("signatureHash", Convert.toHexString(Crypto.sha256(signature)));
             json.put("fullHash", transaction.getFullHash());
             json.put("transaction", transaction.getStringId());
         }
@@ -1092,6 +1093,39 @@ public final class JSONData {
         return json;
     }
 
+    static JSONObject dbPoolStats(BasicDb.PoolStats poolStats) {
+        JSONObject json = new JSONObject();
+        json.put("maxConnections", poolStats.getMaxConnections());
+        json.put("activeConnections", poolStats.getActiveConnections());
+        json.put("availableConnections", poolStats.getAvailableConnections());
+        json.put("connectionCount", poolStats.getConnectionCount());
+        json.put("timeoutCount", poolStats.getTimeoutCount());
+        json.put("totalWaitTime", poolStats.getTotalWaitTime());
+        json.put("maxWaitTime", poolStats.getMaxWaitTime());
+        json.put("averageWaitTime", poolStats.getAverageWaitTime());
+        return json;
+    }
+
+    static JSONObject apiMetrics(APIMetrics.Endpoint endpoint) {
+        JSONObject json = new JSONObject();
+        json.put("requestType", endpoint.getRequestType());
+        json.put("requests", endpoint.getRequests());
+        json.put("errors", endpoint.getErrors());
+        json.put("inFlight", endpoint.getInFlight());
+        long requests = endpoint.getRequests();
+        json.put("averageTime", requests != 0 ? endpoint.getTotalTime() / requests / 1000000 : 0);
+        json.put("maxTime", endpoint.getMaxTime() / 1000000);
+        json.put("p50Time", endpoint.getPercentile(50) / 1000000);
+        json.put("p90Time", endpoint.getPercentile(90) / 1000000);
+        json.put("p99Time", endpoint.getPercentile(99) / 1000000);
+        json.put("readLockWaitTime", endpoint.getReadLockWaitTime() / 1000000);
+        json.put("dbTransactionWaitTime", endpoint.getDbWaitTime() / 1000000);
+        json.put("queueWaitTime", endpoint.getQueueWaitTime() / 1000000);
+        json.put("maxQueueWaitTime", endpoint.getMaxQueueWaitTime() / 1000000);
+        json.put("p99QueueWaitTime", endpoint.getQueueWaitPercentile(99) / 1000000);
+        return json;
+    }
+
     static void putPrunableAttachment(JSONObject json, Transaction transaction) {
         JSONObject prunableAttachment = transaction.getPrunableAttachmentJSON();
         if (prunableAttachment != null) {
@@ -199,6 +199,14 @@ public final class JSONResponses {
         ERROR_DISABLED = JSON.prepare(response);
     }
 
+    public static final JSONStreamAware ERROR_BUSY;
+    static {
+        JSONObject response  = new JSONObject();
+        response.put("errorCode", 17);
+        response.put("errorDescription", "Too many pending requests, try again later");
+        ERROR_BUSY = JSON.prepare(response);
+    }
+
     public static final JSONStreamAware ERROR_INCORRECT_REQUEST;
     static {
         JSONObject response  = new JSONObject();
@@ -34,6 +34,7 @@ import kpl.Shuffling;
 import kpl.Transaction;
 import kpl.crypto.Crypto;
 import kpl.crypto.EncryptedData;
+import kpl.db.DbKeyset;
 import kpl.util.Convert;
 import kpl.util.Logger;
 import kpl.util.Search;
@@ -508,6 +509,18 @@ public final class ParameterParser {
         return lastIndex;
     }
 
+    public static String getContinuation(HttpServletRequest req, DbKeyset keyset) throws ParameterException {
+        String continuation = Convert.emptyToNull(req.getParameter("continuation"));
+        if (continuation != null) {
+            try {
+                keyset.decode(continuation);
+            } catch (IllegalArgumentException e) {
+                throw new ParameterException(incorrect("continuation"));
+            }
+        }
+        return continuation;
+    }
+
     public static int getNumberOfConfirmations(HttpServletRequest req) throws ParameterException {
         return getInt(req, "numberOfConfirmations", 0, Kpl.getBlockchain().getHeight(), false);
     }
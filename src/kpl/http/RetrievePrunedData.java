@@ -65,4 +65,9 @@ public class RetrievePrunedData extends APIServlet.APIRequestHandler {
         return false;
     }
 
+    @Override
+    protected APIRequestClass getRequestClass() {
+        return APIRequestClass.READ_HEAVY;
+    }
+
 }
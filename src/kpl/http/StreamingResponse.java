@@ -0,0 +1,106 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.http;
+
+import kpl.util.JSONWriter;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * API response which is written to the response stream while it is being generated.
+ *
+ * The response body is produced by a callback which writes the object members, typically
+ * one element at a time while iterating through a database result set.  APIServlet writes
+ * a streaming response before it leaves the database context of the request, so the callback
+ * sees the same database state as the request handler.  If the request holds the replica or
+ * blockchain read lock, the response is written to a buffer and sent to the client after the
+ * lock has been released.
+ */
+final class StreamingResponse implements JSONStreamAware {
+
+    /**
+     * Response body writer
+     */
+    @FunctionalInterface
+    interface Body {
+
+        /**
+         * Write the response members
+         *
+         * @param   writer                  JSON writer positioned inside the response object
+         * @throws  IOException             I/O error occurred
+         */
+        void write(JSONWriter writer) throws IOException;
+    }
+
+    /** Response body writer */
+    private final Body body;
+
+    /** Members written after the response body */
+    private final JSONObject trailer = new JSONObject();
+
+    /**
+     * Create a streaming response
+     *
+     * @param   body                        Response body writer
+     */
+    StreamingResponse(Body body) {
+        this.body = body;
+    }
+
+    /**
+     * Add a member which will be written following the response body
+     *
+     * @param   name                        Member name
+     * @param   value                       Member value
+     */
+    @SuppressWarnings("unchecked")
+    void put(String name, Object value) {
+        trailer.put(name, value);
+    }
+
+    @Override
+    public void writeJSONString(Writer out) throws IOException {
+        writeJSONString(out, 0);
+    }
+
+    /**
+     * Write the response
+     *
+     * @param   out                         Writer
+     * @param   startTime                   Request start time or zero to omit the request processing time
+     * @throws  IOException                 I/O error occurred
+     */
+    void writeJSONString(Writer out, long startTime) throws IOException {
+        JSONWriter writer = new JSONWriter(out);
+        writer.beginObject();
+        body.write(writer);
+        for (Object entry : trailer.entrySet()) {
+            Map.Entry<?, ?> member = (Map.Entry<?, ?>)entry;
+            writer.field(member.getKey().toString(), member.getValue());
+        }
+        if (startTime != 0) {
+            writer.field("requestProcessingTime", System.currentTimeMillis() - startTime);
+        }
+        writer.endObject();
+        writer.flush();
+    }
+}
@@ -1188,6 +1188,28 @@ class kplDbVersion extends DbVersion {
             case 489:
                 apply("CREATE INDEX IF NOT EXISTS asset_dividend_height_idx ON asset_dividend (height)");
             case 490:
+                try (Connection con = db.getConnection()) {
+                    kpl.db.FullTextTrigger.reindex(con);
+                } catch (SQLException e) {
+                    throw new RuntimeException(e.toString(), e);
+                }
+                apply(null);
+            case 491:
+                apply("DROP INDEX IF EXISTS account_ledger_id_idx");
+            case 492:
+                apply("CREATE INDEX IF NOT EXISTS account_ledger_id_idx ON account_ledger (account_id, db_id DESC)");
+            case 493:
+                apply("CREATE INDEX IF NOT EXISTS account_ledger_account_event_idx ON account_ledger "
+                        + "(account_id, event_type, event_id, db_id DESC)");
+            case 494:
+                apply("CREATE INDEX IF NOT EXISTS account_ledger_account_holding_idx ON account_ledger "
+                        + "(account_id, holding_type, holding_id, db_id DESC)");
+            case 495:
+                apply("CREATE INDEX IF NOT EXISTS account_ledger_event_idx ON account_ledger (event_type, event_id, db_id DESC)");
+            case 496:
+                apply("CREATE INDEX IF NOT EXISTS account_ledger_account_timestamp_idx ON account_ledger "
+                        + "(account_id, timestamp, db_id)");
+            case 497:
                 return;
             default:
                 throw new RuntimeException("Blockchain database inconsistent with code, at update " + nextUpdate
@@ -38,6 +38,8 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
@@ -59,6 +61,7 @@ import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MintWorker {
 
@@ -136,17 +139,21 @@ public class MintWorker {
     private JSONObject mintImpl(String secretPhrase, long accountId, long units, long currencyId, byte algorithm,
                                 long counter, byte[] target, long initialNonce, int threadPoolSize, ExecutorService executorService, BigInteger difficulty, boolean isSubmitted) {
         long startTime = System.currentTimeMillis();
-        List<Callable<Long>> workersList = new ArrayList<>();
+        NonceRange nonceRange = new NonceRange(initialNonce);
+        List<HashSolver> solvers = new ArrayList<>();
         for (int i=0; i < threadPoolSize; i++) {
-            HashSolver hashSolver = new HashSolver(algorithm, currencyId, accountId, counter, units, initialNonce + i, target, threadPoolSize);
-            workersList.add(hashSolver);
+            HashSolver hashSolver = new HashSolver(algorithm, currencyId, accountId, counter, units, target, nonceRange);
+            solvers.add(hashSolver);
         }
-        long solution = solve(executorService, workersList);
+        long solution = solve(executorService, solvers);
         long computationTime = System.currentTimeMillis() - startTime;
         if (computationTime == 0) {
             computationTime = 1;
         }
-        long hashes = solution - initialNonce;
+        long hashes = 0;
+        for (HashSolver hashSolver : solvers) {
+            hashes += hashSolver.getHashCount();
+        }
         float hashesPerDifficulty = BigInteger.valueOf(-1).equals(difficulty) ? 0 : (float) hashes / difficulty.floatValue();
         Logger.logInfoMessage("solution nonce %d unitsNQT %d counter %d computed hashes %d time [sec] %.2f hash rate [KH/Sec] %d actual time vs. expected %.2f is submitted %b",
                 solution, units, counter, hashes, (float) computationTime / 1000, hashes / computationTime, hashesPerDifficulty, isSubmitted);
@@ -160,7 +167,7 @@ public class MintWorker {
         return response;
     }
 
-    private long solve(Executor executor, Collection<Callable<Long>> solvers) {
+    private long solve(Executor executor, Collection<? extends Callable<Long>> solvers) {
         CompletionService<Long> ecs = new ExecutorCompletionService<>(executor);
         List<Future<Long>> futures = new ArrayList<>(solvers.size());
         solvers.forEach(solver -> futures.add(ecs.submit(solver)));
@@ -297,47 +304,128 @@ public class MintWorker {
         return rc;
     }
 
-    private static class HashSolver implements Callable<Long> {
+    /**
+     * Nonce ranges shared by the hash solvers
+     *
+     * Each solver claims the next range when it has finished its current range, so a
+     * slow thread does not hold back the search and no nonce is tried twice.
+     */
+    static final class NonceRange {
+
+        /** Number of nonces claimed at a time */
+        static final int RANGE_SIZE = 4096;
+
+        private final AtomicLong nextNonce;
+
+        NonceRange(long initialNonce) {
+            this.nextNonce = new AtomicLong(initialNonce);
+        }
+
+        /**
+         * Claim the next nonce range
+         *
+         * @return                      First nonce in the range
+         */
+        long next() {
+            return nextNonce.getAndAdd(RANGE_SIZE);
+        }
+    }
+
+    /**
+     * Search for a nonce which meets the minting target
+     *
+     * The hash input and output buffers are allocated once for each solver and the nonce
+     * is updated in place, so no objects are created while hashing.
+     */
+    static final class HashSolver implements Callable<Long> {
+
+        /** Log the progress every 2^20 hashes */
+        private static final long LOG_MASK = (1L << 20) - 1;
 
         private final HashFunction hashFunction;
         private final long currencyId;
         private final long accountId;
         private final long counter;
         private final long units;
-        private final long nonce;
         private final byte[] target;
-        private final int poolSize;
+        private final NonceRange nonceRange;
+        private final byte[] input = new byte[8 + 8 + 8 + 8 + 8];
+        private final byte[] hash = new byte[32];
+        private volatile long hashCount;
 
-        private HashSolver(byte algorithm, long currencyId, long accountId, long counter, long units, long nonce,
-                           byte[] target, int poolSize) {
+        HashSolver(byte algorithm, long currencyId, long accountId, long counter, long units,
+                   byte[] target, NonceRange nonceRange) {
             this.hashFunction = HashFunction.getHashFunction(algorithm);
             this.currencyId = currencyId;
             this.accountId = accountId;
             this.counter = counter;
             this.units = units;
-            this.nonce = nonce;
             this.target = target;
-            this.poolSize = poolSize;
+            this.nonceRange = nonceRange;
+            ByteBuffer buffer = ByteBuffer.wrap(input);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(0);
+            buffer.putLong(currencyId);
+            buffer.putLong(units);
+            buffer.putLong(counter);
+            buffer.putLong(accountId);
+        }
+
+        /**
+         * Return the number of hashes computed by this solver
+         *
+         * @return                      Hash count
+         */
+        long getHashCount() {
+            return hashCount;
         }
 
         @Override
         public Long call() {
-            long n = nonce;
-            while (!Thread.currentThread().isInterrupted()) {
-                byte[] hash = CurrencyMinting.getHash(hashFunction, n, currencyId, units, counter, accountId);
-                if (CurrencyMinting.meetsTarget(hash, target)) {
-                    Logger.logDebugMessage("%s found solution hash %s nonce %d currencyId %d units %d counter %d accountId %d" +
-                            " hash %s meets target %s",
-                            Thread.currentThread().getName(), hashFunction, n, currencyId, units, counter, accountId,
-                            Arrays.toString(hash), Arrays.toString(target));
-                    return n;
-                }
-                n+=poolSize;
-                if (((n - nonce) % (poolSize * 1000000)) == 0) {
-                    Logger.logInfoMessage("%s computed %d [MH]", Thread.currentThread().getName(), (n - nonce) / poolSize / 1000000);
+            long count = 0;
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    long start = nonceRange.next();
+                    long end = start + NonceRange.RANGE_SIZE;
+                    for (long n = start; n != end; n++) {
+                        if (hash(n)) {
+                            count += n - start + 1;
+                            Logger.logDebugMessage("%s found solution hash %s nonce %d currencyId %d units %d counter %d accountId %d" +
+                                    " hash %s meets target %s",
+                                    Thread.currentThread().getName(), hashFunction, n, currencyId, units, counter, accountId,
+                                    Arrays.toString(hash), Arrays.toString(target));
+                            return n;
+                        }
+                    }
+                    count += NonceRange.RANGE_SIZE;
+                    hashCount = count;
+                    if ((count & LOG_MASK) == 0) {
+                        Logger.logInfoMessage("%s computed %d [MH]", Thread.currentThread().getName(), count >>> 20);
+                    }
                 }
+                return null;
+            } finally {
+                hashCount = count;
             }
-            return null;
+        }
+
+        /**
+         * Hash the minting input for a nonce
+         *
+         * @param   nonce               Nonce
+         * @return                      TRUE if the hash meets the target
+         */
+        boolean hash(long nonce) {
+            input[0] = (byte)nonce;
+            input[1] = (byte)(nonce >> 8);
+            input[2] = (byte)(nonce >> 16);
+            input[3] = (byte)(nonce >> 24);
+            input[4] = (byte)(nonce >> 32);
+            input[5] = (byte)(nonce >> 40);
+            input[6] = (byte)(nonce >> 48);
+            input[7] = (byte)(nonce >> 56);
+            hashFunction.hash(input, hash);
+            return CurrencyMinting.meetsTarget(hash, target);
         }
     }
 }
\ No newline at end of file
@@ -30,6 +30,10 @@ import java.sql.Statement;
  * Compact and reorganize the KRS database.  The KRS application must not be
  * running.
  *
+ * The new database is created using the storage engine selected by the MV_STORE
+ * setting in the database parameters, so this tool is also used to convert an
+ * existing database between the PageStore and MVStore storage engines.
+ *
  * To run the database compact tool on Linux or Mac:
  *
  *   java -cp "classes:lib/*:conf" CompactDatabase
@@ -145,6 +149,17 @@ public class CompactDatabase {
                 return 1;
             }
         }
+        //
+        // The existing database is read using its own storage engine, which may differ
+        // from the configured storage engine when converting the database
+        //
+        boolean mvStore = dbUrl.toUpperCase().contains("MV_STORE=TRUE");
+        boolean sourceMvStore = dbFile.getName().endsWith(".mv.db");
+        String sourceUrl = dbUrl.replaceAll("(?i)MV_STORE=(TRUE|FALSE)", "MV_STORE=" + (sourceMvStore ? "TRUE" : "FALSE"));
+        if (mvStore != sourceMvStore) {
+            Logger.logInfoMessage("Converting the database from the " + (sourceMvStore ? "MVStore" : "PageStore") +
+                    " storage engine to the " + (mvStore ? "MVStore" : "PageStore") + " storage engine");
+        }
         File oldFile = new File(dbFile.getPath() + ".bak");
         try {
             //
@@ -156,7 +171,7 @@ public class CompactDatabase {
                     throw new IOException(String.format("Unable to delete '%s'", sqlFile.getPath()));
                 }
             }
-            try (Connection conn = DriverManager.getConnection(dbUrl, dbUsername, dbPassword);
+            try (Connection conn = DriverManager.getConnection(sourceUrl, dbUsername, dbPassword);
                     Statement s = conn.createStatement()) {
                 s.execute("SCRIPT TO '" + sqlFile.getPath() + "' COMPRESSION GZIP CHARSET 'UTF-8'");
             }
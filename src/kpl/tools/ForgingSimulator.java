@@ -0,0 +1,388 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.tools;
+
+import kpl.Block;
+import kpl.Constants;
+import kpl.Db;
+import kpl.Generator;
+import kpl.Genesis;
+import kpl.Kpl;
+import kpl.crypto.Crypto;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * ForgingSimulator predicts the next block generators without querying the
+ * effective balance of each account.
+ *
+ * The effective balances of all accounts as of a height are loaded into memory using a
+ * small number of database queries and follow the same rules as Account.getEffectiveBalancekpl().
+ * The hits are then computed in parallel using the Generator hit calculations.
+ *
+ * The simulation replays block generation from a block, assuming every account with an
+ * effective balance is forging and the effective balances do not change.  Each simulated
+ * block is generated by the account with the earliest hit time and the base target
+ * evolves as it would for the generated blocks.
+ */
+public final class ForgingSimulator {
+
+    /**
+     * Forging account
+     */
+    public static final class Forger {
+
+        private final long accountId;
+        private final byte[] publicKey;
+        private final long effectiveBalance;
+
+        private Forger(long accountId, byte[] publicKey, long effectiveBalance) {
+            this.accountId = accountId;
+            this.publicKey = publicKey;
+            this.effectiveBalance = effectiveBalance;
+        }
+
+        public long getAccountId() {
+            return accountId;
+        }
+
+        public byte[] getPublicKey() {
+            return publicKey;
+        }
+
+        public long getEffectiveBalance() {
+            return effectiveBalance;
+        }
+    }
+
+    /**
+     * Hit time for a forging account
+     */
+    public static final class ForgerHit {
+
+        private final Forger forger;
+        private final long hitTime;
+        private final long deadline;
+
+        private ForgerHit(Forger forger, long hitTime, long deadline) {
+            this.forger = forger;
+            this.hitTime = hitTime;
+            this.deadline = deadline;
+        }
+
+        public Forger getForger() {
+            return forger;
+        }
+
+        public long getHitTime() {
+            return hitTime;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+
+    /**
+     * Simulated block
+     */
+    public static final class SimulatedBlock {
+
+        private final int height;
+        private final int timestamp;
+        private final long baseTarget;
+        private final byte[] generationSignature;
+        private final long generatorId;
+
+        private SimulatedBlock(int height, int timestamp, long baseTarget, byte[] generationSignature, long generatorId) {
+            this.height = height;
+            this.timestamp = timestamp;
+            this.baseTarget = baseTarget;
+            this.generationSignature = generationSignature;
+            this.generatorId = generatorId;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getTimestamp() {
+            return timestamp;
+        }
+
+        public long getBaseTarget() {
+            return baseTarget;
+        }
+
+        public byte[] getGenerationSignature() {
+            return generationSignature;
+        }
+
+        public long getGeneratorId() {
+            return generatorId;
+        }
+    }
+
+    /** Hit time order, then account order */
+    private static final Comparator<ForgerHit> hitComparator =
+            Comparator.comparingLong(ForgerHit::getHitTime).thenComparingLong(hit -> hit.getForger().getAccountId());
+
+    /** Generation signature hash buffer */
+    private static final ThreadLocal<byte[]> hashBuffer = ThreadLocal.withInitial(() -> new byte[32]);
+
+    /**
+     * Load the accounts with a positive effective balance as of a height
+     *
+     * @param   height                      Blockchain height
+     * @return                              Forging accounts
+     * @throws  IllegalArgumentException    The height is not available
+     */
+    public static List<Forger> getForgers(int height) {
+        Kpl.getBlockchain().readLock();
+        try {
+            int blockchainHeight = Kpl.getBlockchain().getHeight();
+            if (height > blockchainHeight) {
+                throw new IllegalArgumentException("Height " + height + " exceeds blockchain height " + blockchainHeight);
+            }
+            if (height < blockchainHeight && height < Kpl.getBlockchainProcessor().getMinRollbackHeight()) {
+                throw new IllegalArgumentException("Historical data as of height " + height + " not available");
+            }
+            try (Connection con = Db.db.getConnection()) {
+                Map<Long, Long> balances = new HashMap<>();
+                Map<Long, Long> lessees = new HashMap<>();
+                try (PreparedStatement pstmt = con.prepareStatement("SELECT id, balance, active_lessee_id FROM account AS a WHERE "
+                        + asOf("account", "id", height == blockchainHeight))) {
+                    setHeight(pstmt, height, height == blockchainHeight);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            long accountId = rs.getLong("id");
+                            balances.put(accountId, rs.getLong("balance"));
+                            long lesseeId = rs.getLong("active_lessee_id");
+                            if (lesseeId != 0) {
+                                lessees.put(accountId, lesseeId);
+                            }
+                        }
+                    }
+                }
+                Map<Long, byte[]> publicKeys = new HashMap<>();
+                Map<Long, Integer> publicKeyHeights = new HashMap<>();
+                try (PreparedStatement pstmt = con.prepareStatement("SELECT account_id, public_key, height FROM public_key "
+                        + "WHERE latest = TRUE AND public_key IS NOT NULL")) {
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            long accountId = rs.getLong("account_id");
+                            publicKeys.put(accountId, rs.getBytes("public_key"));
+                            publicKeyHeights.put(accountId, rs.getInt("height"));
+                        }
+                    }
+                }
+                Map<Long, Long> effectiveBalances;
+                if (height < Constants.TRANSPARENT_FORGING_BLOCK_3) {
+                    effectiveBalances = getEarlyEffectiveBalances(con, height, balances);
+                } else {
+                    effectiveBalances = getEffectiveBalances(con, height, balances, lessees);
+                }
+                List<Forger> forgers = new ArrayList<>();
+                effectiveBalances.forEach((accountId, effectiveBalance) -> {
+                    byte[] publicKey = publicKeys.get(accountId);
+                    if (effectiveBalance <= 0 || publicKey == null) {
+                        return;
+                    }
+                    if (height >= Constants.TRANSPARENT_FORGING_BLOCK_6) {
+                        int publicKeyHeight = publicKeyHeights.get(accountId);
+                        if (publicKeyHeight == 0 || height - publicKeyHeight <= 1440) {
+                            return;
+                        }
+                    }
+                    forgers.add(new Forger(accountId, publicKey, effectiveBalance));
+                });
+                forgers.sort(Comparator.comparingLong(Forger::getAccountId));
+                return forgers;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        } finally {
+            Kpl.getBlockchain().readUnlock();
+        }
+    }
+
+    /**
+     * Compute the hit times of the forging accounts for the block following a block
+     *
+     * @param   block               Block
+     * @param   forgers             Forging accounts
+     * @return                      Forging account hits in hit time order
+     */
+    public static List<ForgerHit> getHits(Block block, Collection<Forger> forgers) {
+        return getHits(block.getGenerationSignature(), block.getBaseTarget(), block.getTimestamp(), forgers);
+    }
+
+    /**
+     * Simulate block generation
+     *
+     * @param   block               Starting block
+     * @param   forgers             Forging accounts
+     * @param   count               Number of blocks to generate
+     * @return                      Generated blocks
+     */
+    public static List<SimulatedBlock> simulate(Block block, Collection<Forger> forgers, int count) {
+        List<SimulatedBlock> blocks = new ArrayList<>(count);
+        if (forgers.isEmpty()) {
+            return blocks;
+        }
+        int height = block.getHeight();
+        int[] timestamps = new int[3];
+        timestamps[2] = block.getTimestamp();
+        timestamps[1] = height >= 1 ? Kpl.getBlockchain().getBlockAtHeight(height - 1).getTimestamp() : 0;
+        timestamps[0] = height >= 2 ? Kpl.getBlockchain().getBlockAtHeight(height - 2).getTimestamp() : 0;
+        byte[] generationSignature = block.getGenerationSignature();
+        long baseTarget = block.getBaseTarget();
+        for (int i = 0; i < count; i++) {
+            ForgerHit winner = getWinner(generationSignature, baseTarget, timestamps[2], forgers);
+            int timestamp = (int)winner.getHitTime() + 1;
+            baseTarget = Generator.getNextBaseTarget(height, baseTarget, timestamps[2], timestamps[0], timestamp);
+            byte[] nextGenerationSignature = new byte[32];
+            Crypto.sha256(generationSignature, winner.getForger().getPublicKey(), nextGenerationSignature);
+            generationSignature = nextGenerationSignature;
+            height += 1;
+            timestamps[0] = timestamps[1];
+            timestamps[1] = timestamps[2];
+            timestamps[2] = timestamp;
+            blocks.add(new SimulatedBlock(height, timestamp, baseTarget, generationSignature,
+                    winner.getForger().getAccountId()));
+        }
+        return blocks;
+    }
+
+    private static List<ForgerHit> getHits(byte[] generationSignature, long baseTarget, int timestamp,
+                                           Collection<Forger> forgers) {
+        return forgers.parallelStream()
+                .map(forger -> getHit(generationSignature, baseTarget, timestamp, forger))
+                .sorted(hitComparator)
+                .collect(Collectors.toList());
+    }
+
+    private static ForgerHit getWinner(byte[] generationSignature, long baseTarget, int timestamp,
+                                       Collection<Forger> forgers) {
+        return forgers.parallelStream()
+                .map(forger -> getHit(generationSignature, baseTarget, timestamp, forger))
+                .min(hitComparator)
+                .get();
+    }
+
+    private static ForgerHit getHit(byte[] generationSignature, long baseTarget, int timestamp, Forger forger) {
+        byte[] hash = hashBuffer.get();
+        Crypto.sha256(generationSignature, forger.getPublicKey(), hash);
+        long deadline = Generator.getHitDelay(Generator.getHit(hash), baseTarget, forger.getEffectiveBalance());
+        return new ForgerHit(forger, timestamp + deadline, deadline);
+    }
+
+    /**
+     * Return the effective balances using the guaranteed balances of the accounts and their lessors
+     */
+    private static Map<Long, Long> getEffectiveBalances(Connection con, int height, Map<Long, Long> balances,
+                                                        Map<Long, Long> lessees) throws SQLException {
+        Map<Long, Long> additions = new HashMap<>();
+        try (PreparedStatement pstmt = con.prepareStatement("SELECT account_id, SUM (additions) AS additions "
+                + "FROM account_guaranteed_balance WHERE height > ? AND height <= ? GROUP BY account_id")) {
+            pstmt.setInt(1, height - Constants.GUARANTEED_BALANCE_CONFIRMATIONS);
+            pstmt.setInt(2, height);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    additions.put(rs.getLong("account_id"), rs.getLong("additions"));
+                }
+            }
+        }
+        Map<Long, Long> effectiveBalances = new HashMap<>();
+        balances.forEach((accountId, balance) -> {
+            long guaranteedBalance = Math.max(Math.subtractExact(balance, additions.getOrDefault(accountId, 0L)), 0);
+            Long lesseeId = lessees.get(accountId);
+            if (lesseeId == null) {
+                effectiveBalances.merge(accountId, guaranteedBalance, Long::sum);
+            } else {
+                effectiveBalances.putIfAbsent(accountId, 0L);
+                if (balances.containsKey(lesseeId)) {
+                    effectiveBalances.merge(lesseeId, guaranteedBalance, Long::sum);
+                }
+            }
+        });
+        effectiveBalances.replaceAll((accountId, effectiveBalance) ->
+                (height > Constants.SHUFFLING_BLOCK && effectiveBalance < Constants.MIN_FORGING_BALANCE_NQT) ?
+                        0 : effectiveBalance / Constants.ONE_kpl);
+        return effectiveBalances;
+    }
+
+    /**
+     * Return the effective balances used before TRANSPARENT_FORGING_BLOCK_3
+     */
+    private static Map<Long, Long> getEarlyEffectiveBalances(Connection con, int height, Map<Long, Long> balances)
+            throws SQLException {
+        Map<Long, Long> received = new HashMap<>();
+        try (PreparedStatement pstmt = con.prepareStatement("SELECT recipient_id, SUM (amount) AS amount "
+                + "FROM transaction WHERE height = ? GROUP BY recipient_id")) {
+            pstmt.setInt(1, height);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    received.put(rs.getLong("recipient_id"), rs.getLong("amount"));
+                }
+            }
+        }
+        Map<Long, Long> effectiveBalances = new HashMap<>();
+        balances.forEach((accountId, balance) -> {
+            if (Arrays.binarySearch(Genesis.GENESIS_RECIPIENTS, accountId) >= 0) {
+                effectiveBalances.put(accountId, balance / Constants.ONE_kpl);
+            } else {
+                effectiveBalances.put(accountId, (balance - received.getOrDefault(accountId, 0L)) / Constants.ONE_kpl);
+            }
+        });
+        return effectiveBalances;
+    }
+
+    /**
+     * Return the clause selecting the table rows as of a height
+     */
+    private static String asOf(String table, String key, boolean latest) {
+        if (latest) {
+            return "a.latest = TRUE";
+        }
+        return "a.height <= ? AND (a.latest = TRUE OR (a.latest = FALSE "
+                + "AND EXISTS (SELECT 1 FROM " + table + " AS b WHERE b." + key + " = a." + key + " AND b.height > ?) "
+                + "AND NOT EXISTS (SELECT 1 FROM " + table + " AS b WHERE b." + key + " = a." + key
+                + " AND b.height <= ? AND b.height > a.height)))";
+    }
+
+    private static void setHeight(PreparedStatement pstmt, int height, boolean latest) throws SQLException {
+        if (!latest) {
+            pstmt.setInt(1, height);
+            pstmt.setInt(2, height);
+            pstmt.setInt(3, height);
+        }
+    }
+
+    private ForgingSimulator() {}
+}
@@ -88,6 +88,8 @@ public final class JSON {
     /**
      * Write a formatted JSON string
      *
+     * Lists and maps are written incrementally, so the complete JSON string is never built in memory
+     *
      * @param   json                            JSON list or map
      * @param   writer                          Writer
      * @throws  IOException                     I/O error occurred
@@ -97,16 +99,10 @@ public final class JSON {
             writer.write("null");
             return;
         }
-        if (json instanceof Map) {
-            StringBuilder sb = new StringBuilder(1024);
-            encodeObject((Map)json, sb);
-            writer.write(sb.toString());
-            return;
-        }
-        if (json instanceof List) {
-            StringBuilder sb = new StringBuilder(1024);
-            encodeArray((List)json, sb);
-            writer.write(sb.toString());
+        if (json instanceof Map || json instanceof List) {
+            JSONWriter jsonWriter = new JSONWriter(writer);
+            jsonWriter.value(json);
+            jsonWriter.flush();
             return;
         }
         json.writeJSONString(writer);
@@ -193,6 +189,8 @@ public final class JSON {
             encodeObject((Map<Object, Object>)value, sb);
         } else if (value instanceof List) {
             encodeArray((List<Object>)value, sb);
+        } else if (value instanceof JSONStreamAware) {
+            sb.append(JSON.toString((JSONStreamAware)value));
         } else {
             sb.append('\"');
             escapeString(value.toString(), sb);
@@ -206,7 +204,7 @@ public final class JSON {
      * @param   string                      String to be written
      * @param   sb                          String builder
      */
-    private static void escapeString(String string, StringBuilder sb) {
+    static void escapeString(String string, StringBuilder sb) {
         if (string.length() == 0)
             return;
         //
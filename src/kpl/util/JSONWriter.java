@@ -0,0 +1,261 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.util;
+
+import org.json.simple.JSONStreamAware;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Incremental JSON writer
+ *
+ * The JSON text is built in a small buffer which is written to the underlying writer
+ * each time it fills up.  Maps and lists are encoded one element at a time, so the
+ * memory needed to write a response does not depend on the size of the response.
+ */
+public final class JSONWriter {
+
+    /** Buffer flush threshold */
+    private static final int FLUSH_SIZE = 8192;
+
+    /** Underlying writer */
+    private final Writer writer;
+
+    /** Output buffer */
+    private final StringBuilder sb = new StringBuilder(FLUSH_SIZE + 1024);
+
+    /** Character buffer used to copy the output buffer to the writer */
+    private char[] chars = new char[FLUSH_SIZE + 1024];
+
+    /** First element flag for each open object or array */
+    private boolean[] firstElement = new boolean[8];
+
+    /** Number of open objects and arrays */
+    private int depth;
+
+    /** Object member name has been written and the member value is next */
+    private boolean valuePending;
+
+    /**
+     * Create a JSON writer
+     *
+     * @param   writer                      Underlying writer
+     */
+    public JSONWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Start a JSON object
+     *
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    public JSONWriter beginObject() throws IOException {
+        return begin('{');
+    }
+
+    /**
+     * End the current JSON object
+     *
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    public JSONWriter endObject() throws IOException {
+        return end('}');
+    }
+
+    /**
+     * Start a JSON array
+     *
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    public JSONWriter beginArray() throws IOException {
+        return begin('[');
+    }
+
+    /**
+     * End the current JSON array
+     *
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    public JSONWriter endArray() throws IOException {
+        return end(']');
+    }
+
+    /**
+     * Write an object member name.  The member value must be written next.
+     *
+     * @param   name                        Member name
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    public JSONWriter name(String name) throws IOException {
+        separator();
+        sb.append('\"');
+        JSON.escapeString(name, sb);
+        sb.append("\":");
+        valuePending = true;
+        return this;
+    }
+
+    /**
+     * Write a JSON value.  Maps and lists are written one element at a time and a
+     * JSONStreamAware value writes itself to the underlying writer.
+     *
+     * @param   value                       JSON value
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    public JSONWriter value(Object value) throws IOException {
+        if (value instanceof Map) {
+            beginObject();
+            Set<Map.Entry<Object, Object>> entries = ((Map)value).entrySet();
+            Iterator<Map.Entry<Object, Object>> it = entries.iterator();
+            while (it.hasNext()) {
+                Map.Entry<Object, Object> entry = it.next();
+                if (entry.getKey() == null)
+                    continue;
+                separator();
+                sb.append('\"').append(entry.getKey().toString()).append("\":");
+                valuePending = true;
+                value(entry.getValue());
+            }
+            return endObject();
+        }
+        if (value instanceof List) {
+            beginArray();
+            for (Object obj : (List<?>)value) {
+                value(obj);
+            }
+            return endArray();
+        }
+        separator();
+        if (value instanceof JSONStreamAware) {
+            writeBuffer();
+            ((JSONStreamAware)value).writeJSONString(writer);
+            return this;
+        }
+        JSON.encodeValue(value, sb);
+        return checkFlush();
+    }
+
+    /**
+     * Write an object member
+     *
+     * @param   name                        Member name
+     * @param   value                       Member value
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    public JSONWriter field(String name, Object value) throws IOException {
+        name(name);
+        return value(value);
+    }
+
+    /**
+     * Write any buffered output to the underlying writer.  The underlying writer is not flushed.
+     *
+     * @throws  IOException                 I/O error occurred
+     */
+    public void flush() throws IOException {
+        writeBuffer();
+    }
+
+    /**
+     * Start an object or array
+     *
+     * @param   c                           Start character
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    private JSONWriter begin(char c) throws IOException {
+        separator();
+        sb.append(c);
+        if (depth == firstElement.length)
+            firstElement = Arrays.copyOf(firstElement, depth * 2);
+        firstElement[depth++] = true;
+        return this;
+    }
+
+    /**
+     * End an object or array
+     *
+     * @param   c                           End character
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    private JSONWriter end(char c) throws IOException {
+        if (depth == 0 || valuePending)
+            throw new IllegalStateException("No open JSON object or array");
+        depth--;
+        sb.append(c);
+        return checkFlush();
+    }
+
+    /**
+     * Write the element separator if this is not the first element
+     */
+    private void separator() {
+        if (valuePending) {
+            valuePending = false;
+            return;
+        }
+        if (depth > 0) {
+            if (firstElement[depth - 1])
+                firstElement[depth - 1] = false;
+            else
+                sb.append(',');
+        }
+    }
+
+    /**
+     * Write the output buffer to the underlying writer once it is full
+     *
+     * @return                              This writer
+     * @throws  IOException                 I/O error occurred
+     */
+    private JSONWriter checkFlush() throws IOException {
+        if (sb.length() >= FLUSH_SIZE)
+            writeBuffer();
+        return this;
+    }
+
+    /**
+     * Write the output buffer to the underlying writer
+     *
+     * @throws  IOException                 I/O error occurred
+     */
+    private void writeBuffer() throws IOException {
+        int length = sb.length();
+        if (length == 0)
+            return;
+        if (length > chars.length)
+            chars = new char[length];
+        sb.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+        sb.setLength(0);
+    }
+}
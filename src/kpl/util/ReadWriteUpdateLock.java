@@ -86,6 +86,15 @@ public class ReadWriteUpdateLock {
         return writeLock;
     }
 
+    /**
+     * Return the total time the current thread has waited to obtain the read lock
+     *
+     * @return                      Wait time in nanoseconds
+     */
+    public long getReadWaitTime() {
+        return lockCount.get().readWaitTime;
+    }
+
     /**
      * Lock interface
      */
@@ -119,8 +128,11 @@ public class ReadWriteUpdateLock {
          */
         @Override
         public void lock() {
+            LockCount count = lockCount.get();
+            long start = System.nanoTime();
             sharedLock.readLock().lock();
-            lockCount.get().readCount++;
+            count.readWaitTime += System.nanoTime() - start;
+            count.readCount++;
         }
 
         /**
@@ -254,5 +266,8 @@ public class ReadWriteUpdateLock {
 
         /** Write lock count */
         private int writeCount;
+
+        /** Read lock wait time (nanoseconds) */
+        private long readWaitTime;
     }
 }
@@ -16,11 +16,15 @@
 
 package kpl;
 
+import kpl.crypto.Crypto;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
 
 public class GeneratorTest extends BlockchainTest {
 
@@ -32,9 +36,9 @@ public class GeneratorTest extends BlockchainTest {
     public void forge() {
         byte[] publicKey = ALICE.getPublicKey();
         BlockImpl lastBlock = blockchain.getLastBlock();
-        BigInteger hit = Generator.getHit(publicKey, lastBlock);
+        long hit = Generator.getHit(publicKey, lastBlock);
         Account account = Account.getAccount(publicKey);
-        BigInteger effectiveBalance = BigInteger.valueOf(account == null || account.getEffectiveBalancekpl() <= 0 ? 0 : account.getEffectiveBalancekpl());
+        long effectiveBalance = account == null || account.getEffectiveBalancekpl() <= 0 ? 0 : account.getEffectiveBalancekpl();
         long hitTime = Generator.getHitTime(effectiveBalance, hit, lastBlock);
         long deadline = hitTime - lastBlock.getTimestamp();
         Generator generator = Generator.startForging(ALICE.getSecretPhrase());
@@ -60,4 +64,72 @@ public class GeneratorTest extends BlockchainTest {
         }
     }
 
+    /**
+     * Verify the unsigned hit calculations against the BigInteger calculations
+     */
+    @Test
+    public void hitCalculations() {
+        Random random = new Random(45);
+        byte[] hash = new byte[32];
+        for (int i = 0; i < 1000000; i++) {
+            random.nextBytes(hash);
+            if (i % 10 == 1) {
+                Arrays.fill(hash, 0, 8, (byte)0xff);
+            } else if (i % 10 == 2) {
+                Arrays.fill(hash, 0, 8, (byte)0);
+            } else if (i % 10 == 3) {
+                Arrays.fill(hash, 1, 8, (byte)0);
+            }
+            long baseTarget = randomLong(random, i % 2 == 0 ? Constants.MAX_BASE_TARGET : Constants.INITIAL_BASE_TARGET * 50);
+            long effectiveBalance = randomLong(random, i % 3 == 0 ? Constants.MAX_BALANCE_kpl : 1000);
+            int elapsedTime = (int)randomLong(random, i % 4 == 0 ? 7200 : 120);
+            long hit = Generator.getHit(hash);
+            BigInteger bigHit = getBigHit(hash);
+            Assert.assertEquals(bigHit.longValue(), hit);
+            BigInteger effectiveBaseTarget = BigInteger.valueOf(baseTarget).multiply(BigInteger.valueOf(effectiveBalance));
+            Assert.assertEquals(bigHit.divide(effectiveBaseTarget).longValue(),
+                    Generator.getHitDelay(hit, baseTarget, effectiveBalance));
+            Assert.assertEquals(bigHit.compareTo(effectiveBaseTarget.multiply(BigInteger.valueOf(elapsedTime))) < 0,
+                    Generator.isHitBelowTarget(hit, baseTarget, effectiveBalance, elapsedTime));
+            Assert.assertEquals(bigHit.compareTo(effectiveBaseTarget.multiply(BigInteger.valueOf(elapsedTime - 1))) < 0,
+                    Generator.isHitBelowTarget(hit, baseTarget, effectiveBalance, elapsedTime - 1));
+            random.nextBytes(hash);
+            long hit2 = Generator.getHit(hash);
+            long effectiveBalance2 = i % 5 == 0 ? effectiveBalance : randomLong(random, Constants.MAX_BALANCE_kpl);
+            Assert.assertEquals(
+                    Integer.signum(bigHit.multiply(BigInteger.valueOf(effectiveBalance2))
+                            .compareTo(getBigHit(hash).multiply(BigInteger.valueOf(effectiveBalance)))),
+                    Integer.signum(Generator.compareHits(hit, effectiveBalance, hit2, effectiveBalance2)));
+            Assert.assertEquals(0, Generator.compareHits(hit, effectiveBalance, hit, effectiveBalance));
+        }
+    }
+
+    /**
+     * Verify the hit for the last block against the BigInteger calculations
+     */
+    @Test
+    public void hitForBlock() {
+        BlockImpl lastBlock = blockchain.getLastBlock();
+        for (Tester tester : new Tester[] {ALICE, BOB, CHUCK, DAVE}) {
+            byte[] publicKey = tester.getPublicKey();
+            MessageDigest digest = Crypto.sha256();
+            digest.update(lastBlock.getGenerationSignature());
+            BigInteger bigHit = getBigHit(digest.digest(publicKey));
+            long hit = Generator.getHit(publicKey, lastBlock);
+            Assert.assertEquals(bigHit.longValue(), hit);
+            long effectiveBalance = 1 + Math.abs(tester.getId() % Constants.MAX_BALANCE_kpl);
+            Assert.assertEquals(lastBlock.getTimestamp() + bigHit.divide(BigInteger.valueOf(lastBlock.getBaseTarget())
+                            .multiply(BigInteger.valueOf(effectiveBalance))).longValue(),
+                    Generator.getHitTime(effectiveBalance, hit, lastBlock));
+        }
+    }
+
+    private static BigInteger getBigHit(byte[] hash) {
+        return new BigInteger(1, new byte[] {hash[7], hash[6], hash[5], hash[4], hash[3], hash[2], hash[1], hash[0]});
+    }
+
+    private static long randomLong(Random random, long max) {
+        return (random.nextLong() >>> 1) % max + 1;
+    }
+
 }
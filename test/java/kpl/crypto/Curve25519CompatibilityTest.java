@@ -0,0 +1,179 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.crypto;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compare Curve25519 with the original implementation over a randomized corpus
+ */
+public class Curve25519CompatibilityTest {
+
+    private static final int ITERATIONS = 2000;
+
+    /** Edge case inputs */
+    private static final byte[][] edgeCases = {
+            Curve25519.ZERO,
+            Curve25519.PRIME,
+            Curve25519.ORDER,
+            filled((byte)0xFF),
+            filled((byte)0x80),
+            filled((byte)0x01)
+    };
+
+    @Test
+    public void testKeygen() {
+        Random random = new Random(1);
+        for (int i = 0; i < ITERATIONS + edgeCases.length; i++) {
+            byte[] k = i < edgeCases.length ? edgeCases[i].clone() : randomBytes(random);
+            byte[] k1 = k.clone(), P1 = new byte[32], s1 = new byte[32];
+            byte[] k2 = k.clone(), P2 = new byte[32], s2 = new byte[32];
+            Curve25519.keygen(P1, s1, k1);
+            Curve25519Reference.keygen(P2, s2, k2);
+            assertArrayEquals(P2, P1);
+            assertArrayEquals(s2, s1);
+            assertArrayEquals(k2, k1);
+            byte[] P3 = new byte[32];
+            Curve25519.keygen(P3, null, k.clone());
+            assertArrayEquals(P2, P3);
+        }
+    }
+
+    @Test
+    public void testCurve() {
+        Random random = new Random(2);
+        for (int i = 0; i < ITERATIONS + edgeCases.length; i++) {
+            byte[] k = randomBytes(random);
+            Curve25519.clamp(k);
+            byte[] P = i < edgeCases.length ? edgeCases[i].clone() : randomBytes(random);
+            byte[] Z1 = new byte[32], Z2 = new byte[32];
+            Curve25519.curve(Z1, k, P);
+            Curve25519Reference.curve(Z2, k, P);
+            assertArrayEquals(Z2, Z1);
+        }
+    }
+
+    @Test
+    public void testSign() {
+        Random random = new Random(3);
+        for (int i = 0; i < ITERATIONS + edgeCases.length; i++) {
+            byte[] h = randomBytes(random);
+            byte[] x = i < edgeCases.length ? edgeCases[i].clone() : randomBytes(random);
+            byte[] s = randomBytes(random);
+            byte[] v1 = new byte[32], v2 = new byte[32];
+            boolean result1 = Curve25519.sign(v1, h, x, s);
+            boolean result2 = Curve25519Reference.sign(v2, h, x, s);
+            assertEquals(result2, result1);
+            assertArrayEquals(v2, v1);
+        }
+    }
+
+    @Test
+    public void testVerify() {
+        Random random = new Random(4);
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] h = randomBytes(random);
+            byte[] v;
+            byte[] P;
+            if (i % 2 == 0) {
+                byte[] k = randomBytes(random);
+                byte[] s = new byte[32];
+                P = new byte[32];
+                Curve25519Reference.keygen(P, s, k);
+                byte[] x = randomBytes(random);
+                v = new byte[32];
+                Curve25519Reference.sign(v, h, x, s);
+            } else {
+                v = randomBytes(random);
+                P = randomBytes(random);
+            }
+            byte[] Y1 = new byte[32], Y2 = new byte[32];
+            Curve25519.verify(Y1, v, h, P);
+            Curve25519Reference.verify(Y2, v, h, P);
+            assertArrayEquals(Y2, Y1);
+        }
+    }
+
+    @Test
+    public void testCanonical() {
+        Random random = new Random(5);
+        for (int i = 0; i < ITERATIONS + edgeCases.length; i++) {
+            byte[] value = i < edgeCases.length ? edgeCases[i].clone() : randomBytes(random);
+            if (i >= edgeCases.length && i % 2 == 0) {
+                value[31] &= 0x0F;
+            }
+            assertEquals(Curve25519Reference.isCanonicalSignature(value), Curve25519.isCanonicalSignature(value));
+            assertEquals(Curve25519Reference.isCanonicalPublicKey(value), Curve25519.isCanonicalPublicKey(value));
+        }
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = 10 + t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < ITERATIONS / 4; i++) {
+                        byte[] P1 = new byte[32], s1 = new byte[32];
+                        byte[] P2 = new byte[32], s2 = new byte[32];
+                        byte[] k = randomBytes(random);
+                        Curve25519.keygen(P1, s1, k.clone());
+                        Curve25519Reference.keygen(P2, s2, k.clone());
+                        assertArrayEquals(P2, P1);
+                        assertArrayEquals(s2, s1);
+                        byte[] h = randomBytes(random);
+                        byte[] Y1 = new byte[32], Y2 = new byte[32];
+                        Curve25519.verify(Y1, s1, h, P1);
+                        Curve25519Reference.verify(Y2, s2, h, P2);
+                        assertArrayEquals(Y2, Y1);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static byte[] randomBytes(Random random) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] filled(byte value) {
+        byte[] bytes = new byte[32];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+}
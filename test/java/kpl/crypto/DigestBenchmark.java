@@ -0,0 +1,73 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.crypto;
+
+import java.lang.management.ManagementFactory;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * Compare the SHA-256 digest methods
+ *
+ * Usage: DigestBenchmark [inputLength [iterations]]
+ *
+ * Each method is run for the given number of iterations after a warm-up pass.  The time
+ * and the number of bytes allocated by the benchmark thread are reported per digest.
+ */
+public class DigestBenchmark {
+
+    private interface DigestMethod {
+        void digest(byte[] input, byte[] output) throws Exception;
+    }
+
+    private static volatile byte result;
+
+    public static void main(String[] args) throws Exception {
+        int inputLength = args.length > 0 ? Integer.parseInt(args[0]) : 176;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+        byte[] input = new byte[inputLength];
+        new Random(1).nextBytes(input);
+        for (int pass = 0; pass < 2; pass++) {
+            boolean report = (pass == 1);
+            run("MessageDigest.getInstance", input, iterations, report,
+                    (in, out) -> System.arraycopy(MessageDigest.getInstance("SHA-256").digest(in), 0, out, 0, 32));
+            run("Crypto.sha256(in)", input, iterations, report,
+                    (in, out) -> System.arraycopy(Crypto.sha256(in), 0, out, 0, 32));
+            run("Crypto.sha256(in, out)", input, iterations, report, Crypto::sha256);
+        }
+    }
+
+    private static void run(String name, byte[] input, int iterations, boolean report, DigestMethod method)
+            throws Exception {
+        byte[] output = new byte[32];
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            input[0] = (byte)i;
+            method.digest(input, output);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+        result ^= output[0];
+        if (report) {
+            System.out.printf("%-28s %8.1f ns/op %8.1f bytes/op%n", name,
+                    (double)elapsed / iterations, (double)allocated / iterations);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.crypto;
+
+import kpl.util.Convert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Verify KNV25 against known answers and a reference Keccak implementation
+ */
+public class KNV25Test {
+
+    /** Input lengths and hashes, input byte i is (i * 7 + length) */
+    private static final Object[][] vectors = {
+            {0, "4751a56bcc33e8ae90a303b39e536a2bacead655a8a28c9ac653d3a9a6714547"},
+            {8, "9b650e0c63ec818d20a4426ff80726661adabf15b6f200c6f0a8d6a2eeae44b1"},
+            {40, "366f7be39b0b826d5f51ed370c4da6d1f3d70e23c3b58b007cc9bf7724fca382"},
+            {128, "6e39aeacf6a4c4663356ce95c351d2f2c27c540cf28c29fad93cbb292075c286"},
+            {136, "b40e6b0385d3280c211f2c65a7f51bf65d775ca0fc06ae7ab6cbd25ac80a1c50"},
+            {144, "707f0022f0500bf3eff43efca4983b9e4fcf2913e3199161ae7ca77fe34602de"},
+            {272, "f8b7105629ead1f72851d667a4b804542167d4cf492de8488aaaea73bd156c4b"},
+            {512, "b71ea5f6984c775c8c1fdd9e224c799363f53cc3e23e00520b43ef2a203dd8ca"}
+    };
+
+    @Test
+    public void testVectors() {
+        Random random = new Random(50);
+        KNV25 digest = new KNV25();
+        byte[] output = new byte[32];
+        for (Object[] vector : vectors) {
+            byte[] input = getInput((Integer)vector[0]);
+            byte[] expected = Convert.parseHexString((String)vector[1]);
+            assertArrayEquals(expected, KNV25.hash(input));
+            KNV25.hash(input, output);
+            assertArrayEquals(expected, output);
+            assertArrayEquals(expected, HashFunction.Keccak25.hash(input));
+            for (int i = 0; i < 10; i++) {
+                int offset = 0;
+                while (offset < input.length) {
+                    int length = Math.min(random.nextInt(150), input.length - offset);
+                    digest.update(input, offset, length);
+                    offset += length;
+                }
+                assertArrayEquals(expected, digest.digest());
+            }
+        }
+    }
+
+    @Test
+    public void testReference() {
+        assertArrayEquals(Convert.parseHexString("c5d2460186f7233c927e7db2dcc703c0e500b653ca82273b7bfad8045d85a470"),
+                keccak(new byte[0], 24));
+        assertArrayEquals(Convert.parseHexString("4e03657aea45a94fc7d47ba826c8d667c0d1e6e33a64a036ec44f58fa12d6c45"),
+                keccak("abc".getBytes(StandardCharsets.UTF_8), 24));
+        Random random = new Random(50);
+        for (int i = 0; i < 1000; i++) {
+            byte[] input = new byte[random.nextInt(50) * 8];
+            random.nextBytes(input);
+            assertArrayEquals(keccak(input, 25), KNV25.hash(input));
+        }
+    }
+
+    @Test
+    public void testInputLength() {
+        try {
+            KNV25.hash(new byte[7]);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        KNV25 digest = new KNV25();
+        digest.update(new byte[3]);
+        digest.update(new byte[4]);
+        try {
+            digest.digest();
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        byte[] input = getInput(40);
+        digest.update(input);
+        assertArrayEquals(KNV25.hash(input), digest.digest());
+    }
+
+    private static byte[] getInput(int length) {
+        byte[] input = new byte[length];
+        for (int i = 0; i < length; i++) {
+            input[i] = (byte)(i * 7 + length);
+        }
+        return input;
+    }
+
+    /**
+     * Reference Keccak with a 136-byte rate and a 32-byte result
+     *
+     * The round constants are generated by the Keccak LFSR except for the 25th round
+     * constant, which KNV25 defines as 1.
+     */
+    private static byte[] keccak(byte[] input, int rounds) {
+        byte[] message = new byte[(input.length / 136 + 1) * 136];
+        System.arraycopy(input, 0, message, 0, input.length);
+        message[input.length] ^= 0x01;
+        message[message.length - 1] ^= (byte)0x80;
+        long[] A = new long[25];
+        for (int block = 0; block < message.length; block += 136) {
+            for (int i = 0; i < 17; i++) {
+                for (int j = 0; j < 8; j++) {
+                    A[i] ^= (long)(message[block + i * 8 + j] & 0xff) << (8 * j);
+                }
+            }
+            keccakF(A, rounds);
+        }
+        byte[] output = new byte[32];
+        for (int i = 0; i < 32; i++) {
+            output[i] = (byte)(A[i / 8] >>> (8 * (i % 8)));
+        }
+        return output;
+    }
+
+    private static final int[] rhoOffsets = {
+            0, 1, 62, 28, 27,
+            36, 44, 6, 55, 20,
+            3, 10, 43, 25, 39,
+            41, 45, 15, 21, 8,
+            18, 2, 61, 56, 14
+    };
+
+    private static void keccakF(long[] A, int rounds) {
+        long[] C = new long[5];
+        long[] B = new long[25];
+        for (int round = 0; round < rounds; round++) {
+            for (int x = 0; x < 5; x++) {
+                C[x] = A[x] ^ A[x + 5] ^ A[x + 10] ^ A[x + 15] ^ A[x + 20];
+            }
+            for (int x = 0; x < 5; x++) {
+                long D = C[(x + 4) % 5] ^ Long.rotateLeft(C[(x + 1) % 5], 1);
+                for (int y = 0; y < 5; y++) {
+                    A[x + 5 * y] ^= D;
+                }
+            }
+            for (int x = 0; x < 5; x++) {
+                for (int y = 0; y < 5; y++) {
+                    B[y + 5 * ((2 * x + 3 * y) % 5)] = Long.rotateLeft(A[x + 5 * y], rhoOffsets[x + 5 * y]);
+                }
+            }
+            for (int x = 0; x < 5; x++) {
+                for (int y = 0; y < 5; y++) {
+                    A[x + 5 * y] = B[x + 5 * y] ^ (~B[(x + 1) % 5 + 5 * y] & B[(x + 2) % 5 + 5 * y]);
+                }
+            }
+            A[0] ^= round == 24 ? 1 : roundConstant(round);
+        }
+    }
+
+    private static long roundConstant(int round) {
+        long constant = 0;
+        int lfsr = 1;
+        for (int t = 0; t < 7 * round; t++) {
+            lfsr = nextLfsr(lfsr);
+        }
+        for (int j = 0; j < 7; j++) {
+            if ((lfsr & 1) != 0) {
+                constant |= 1L << ((1 << j) - 1);
+            }
+            lfsr = nextLfsr(lfsr);
+        }
+        return constant;
+    }
+
+    private static int nextLfsr(int lfsr) {
+        lfsr <<= 1;
+        if ((lfsr & 0x100) != 0) {
+            lfsr ^= 0x171;
+        }
+        return lfsr;
+    }
+}
@@ -0,0 +1,175 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.crypto;
+
+import kpl.util.Convert;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Verify Scrypt against known vectors and a reference implementation of RFC 7914
+ */
+public class ScryptTest {
+
+    /** Minting inputs and their hashes (password = salt = input, N=1024, r=1, p=1) */
+    private static final String[][] vectors = {
+            {"00000000000000000000000000000000000000000000000000000000000000000000000000000000",
+                    "413cd8c7202bba7ebce0c5aab6c0928eb5894052e0a494c8671e482583ecdea2"},
+            {"000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f2021222324252627",
+                    "d02173ee5d9345f4c5a692af5071ab4891269959082d2bd00477b2bdf57f94ad"},
+            {"ffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffffff",
+                    "efa5dc7bc9fd0fdc370746a791feb13784364952347784eb0ec215890fbd3088"},
+            {"c5acdfaf865ffffb8d5b33d9b08f8106590fbb546221bd92c7b1be363b7fc8e60000000000000000",
+                    "fdbafb68f60039d39b629b671baa36432ec0db4c485819dc742ad7c6698c3e39"}
+    };
+
+    @Test
+    public void testVectors() {
+        Scrypt scrypt = new Scrypt();
+        byte[] output = new byte[32];
+        for (String[] vector : vectors) {
+            byte[] input = Convert.parseHexString(vector[0]);
+            byte[] expected = Convert.parseHexString(vector[1]);
+            assertArrayEquals(expected, scrypt.hash(input));
+            scrypt.hash(input, output);
+            assertArrayEquals(expected, output);
+            assertArrayEquals(expected, HashFunction.SCRYPT.hash(input));
+        }
+    }
+
+    @Test
+    public void testReference() throws Exception {
+        assertArrayEquals(Convert.parseHexString(
+                "77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442" +
+                "fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906"),
+                scrypt(new byte[0], new byte[0], 16, 1, 1, 64));
+        assertArrayEquals(Convert.parseHexString(
+                "fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b373162" +
+                "2eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640"),
+                scrypt("password".getBytes(StandardCharsets.UTF_8), "NaCl".getBytes(StandardCharsets.UTF_8), 1024, 8, 16, 64));
+        Scrypt scrypt = new Scrypt();
+        Random random = new Random(49);
+        byte[] input = new byte[40];
+        for (int i = 0; i < 200; i++) {
+            random.nextBytes(input);
+            assertArrayEquals(scrypt(input, input, 1024, 1, 1, 32), scrypt.hash(input));
+        }
+    }
+
+    /**
+     * Reference scrypt implementation following RFC 7914
+     */
+    private static byte[] scrypt(byte[] password, byte[] salt, int N, int r, int p, int dkLen) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        // an empty key is padded with zeros, so it is the same as a single zero byte
+        mac.init(new SecretKeySpec(password.length == 0 ? new byte[1] : password, "HmacSHA256"));
+        byte[] B = pbkdf2(mac, salt, p * 128 * r);
+        for (int i = 0; i < p; i++) {
+            byte[] block = Arrays.copyOfRange(B, i * 128 * r, (i + 1) * 128 * r);
+            roMix(block, r, N);
+            System.arraycopy(block, 0, B, i * 128 * r, 128 * r);
+        }
+        return pbkdf2(mac, B, dkLen);
+    }
+
+    private static byte[] pbkdf2(Mac mac, byte[] salt, int dkLen) {
+        byte[] result = new byte[dkLen];
+        for (int i = 1; (i - 1) * 32 < dkLen; i++) {
+            mac.update(salt);
+            mac.update(new byte[] {(byte)(i >>> 24), (byte)(i >>> 16), (byte)(i >>> 8), (byte)i});
+            byte[] u = mac.doFinal();
+            System.arraycopy(u, 0, result, (i - 1) * 32, Math.min(32, dkLen - (i - 1) * 32));
+        }
+        return result;
+    }
+
+    private static void roMix(byte[] B, int r, int N) {
+        int[] X = toInts(B);
+        int[][] V = new int[N][];
+        for (int i = 0; i < N; i++) {
+            V[i] = X.clone();
+            X = blockMix(X, r);
+        }
+        for (int i = 0; i < N; i++) {
+            int j = X[(2 * r - 1) * 16] & (N - 1);
+            for (int k = 0; k < X.length; k++) {
+                X[k] ^= V[j][k];
+            }
+            X = blockMix(X, r);
+        }
+        for (int i = 0; i < X.length; i++) {
+            for (int k = 0; k < 4; k++) {
+                B[i * 4 + k] = (byte)(X[i] >>> (k * 8));
+            }
+        }
+    }
+
+    private static int[] blockMix(int[] B, int r) {
+        int[] X = Arrays.copyOfRange(B, (2 * r - 1) * 16, 2 * r * 16);
+        int[] Y = new int[B.length];
+        for (int i = 0; i < 2 * r; i++) {
+            for (int k = 0; k < 16; k++) {
+                X[k] ^= B[i * 16 + k];
+            }
+            X = salsa8(X);
+            int offset = (i % 2 == 0 ? i / 2 : r + i / 2) * 16;
+            System.arraycopy(X, 0, Y, offset, 16);
+        }
+        return Y;
+    }
+
+    private static int[] salsa8(int[] B) {
+        int[] x = B.clone();
+        for (int i = 0; i < 8; i += 2) {
+            quarterRound(x, 4, 0, 8, 12);
+            quarterRound(x, 9, 5, 13, 1);
+            quarterRound(x, 14, 10, 2, 6);
+            quarterRound(x, 3, 15, 7, 11);
+            quarterRound(x, 1, 0, 2, 3);
+            quarterRound(x, 6, 5, 7, 4);
+            quarterRound(x, 11, 10, 8, 9);
+            quarterRound(x, 12, 15, 13, 14);
+        }
+        int[] result = new int[16];
+        for (int i = 0; i < 16; i++) {
+            result[i] = x[i] + B[i];
+        }
+        return result;
+    }
+
+    private static void quarterRound(int[] x, int a, int b, int c, int d) {
+        x[a] ^= Integer.rotateLeft(x[b] + x[d], 7);
+        x[c] ^= Integer.rotateLeft(x[a] + x[b], 9);
+        x[d] ^= Integer.rotateLeft(x[c] + x[a], 13);
+        x[b] ^= Integer.rotateLeft(x[d] + x[c], 18);
+    }
+
+    private static int[] toInts(byte[] B) {
+        int[] X = new int[B.length / 4];
+        for (int i = 0; i < X.length; i++) {
+            X[i] = (B[i * 4] & 0xff) | (B[i * 4 + 1] & 0xff) << 8 | (B[i * 4 + 2] & 0xff) << 16 | (B[i * 4 + 3] & 0xff) << 24;
+        }
+        return X;
+    }
+}
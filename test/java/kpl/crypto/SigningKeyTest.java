@@ -0,0 +1,83 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.crypto;
+
+import kpl.util.Convert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Verify SigningKey and Crypto.sign against known answers
+ */
+public class SigningKeyTest {
+
+    private static final String SECRET_PHRASE = "signing key test secret phrase";
+
+    private static final String PUBLIC_KEY = "3c035be8743aa3b7c60a0721f523d3411ef6f8afae80467bead3fbaab6f69821";
+
+    /** Messages and signatures */
+    private static final Object[][] vectors = {
+            {new byte[0], "5d8b566cc64b1d31d952c1d8bdc7235673bab5af9c63eda2bf87bf8e8eee4600"
+                    + "fa600611d335a740c0640b80b4a29b2db52ce9e23ec0eaa6e56506c8c6863617"},
+            {"Hello, World".getBytes(StandardCharsets.UTF_8), "29cb5d2db39ececfc461346fba33393714bbba5104912ba88eca031fd9a35005"
+                    + "42bb85fac5ea462060ee1bd9a2186be86508818370f6ca131256aa2b5ef5f780"},
+            {getSequence(100), "1325b69bde178c273f5a729117c33dca96eaa8b8cc61604511694f7a1630390e"
+                    + "802cc649eca8aa468aaafab39ffdeec7fc961063fddfbef9c2b3ac339b6198dc"}
+    };
+
+    @Test
+    public void testSignature() {
+        byte[] publicKey = Convert.parseHexString(PUBLIC_KEY);
+        assertArrayEquals(publicKey, Crypto.getPublicKey(SECRET_PHRASE));
+        SigningKey signingKey = SigningKey.fromSecretPhrase(SECRET_PHRASE);
+        assertArrayEquals(publicKey, signingKey.getPublicKey());
+        for (Object[] vector : vectors) {
+            byte[] message = (byte[])vector[0];
+            byte[] expected = Convert.parseHexString((String)vector[1]);
+            assertArrayEquals(expected, signingKey.sign(message));
+            assertArrayEquals(expected, Crypto.sign(message, SECRET_PHRASE));
+            assertTrue(Crypto.verify(expected, message, publicKey, true));
+        }
+    }
+
+    @Test
+    public void testDestroy() {
+        SigningKey signingKey = SigningKey.fromSecretPhrase(SECRET_PHRASE);
+        assertFalse(signingKey.isDestroyed());
+        signingKey.destroy();
+        assertTrue(signingKey.isDestroyed());
+        try {
+            signingKey.sign(new byte[32]);
+            fail("Destroyed key should not sign");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    private static byte[] getSequence(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte)i;
+        }
+        return bytes;
+    }
+}
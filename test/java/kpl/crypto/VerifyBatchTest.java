@@ -0,0 +1,81 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.crypto;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VerifyBatchTest {
+
+    @Test
+    public void testBatch() {
+        for (int count : new int[] {0, 1, 15, 100, 500}) {
+            checkBatch(count);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLengthMismatch() {
+        Crypto.verifyBatch(new byte[2][], new byte[2][], new byte[1][], new boolean[2]);
+    }
+
+    private static void checkBatch(int count) {
+        Random random = new Random(count);
+        SigningKey[] keys = {SigningKey.fromSecretPhrase("batch key 1"), SigningKey.fromSecretPhrase("batch key 2")};
+        byte[][] signatures = new byte[count][];
+        byte[][] messages = new byte[count][];
+        byte[][] publicKeys = new byte[count][];
+        boolean[] enforceCanonical = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            SigningKey key = keys[i % 2];
+            messages[i] = new byte[50 + random.nextInt(200)];
+            random.nextBytes(messages[i]);
+            signatures[i] = key.sign(messages[i]);
+            publicKeys[i] = key.getPublicKey();
+            enforceCanonical[i] = true;
+            switch (i % 7) {
+                case 3:
+                    signatures[i][random.nextInt(64)] ^= 1;
+                    break;
+                case 5:
+                    messages[i][random.nextInt(messages[i].length)] ^= 1;
+                    break;
+                case 6:
+                    publicKeys[i] = keys[(i + 1) % 2].getPublicKey();
+                    break;
+                default:
+                    break;
+            }
+        }
+        boolean[] results = Crypto.verifyBatch(signatures, messages, publicKeys, enforceCanonical);
+        assertEquals(count, results.length);
+        for (int i = 0; i < count; i++) {
+            boolean expected = Crypto.verify(signatures[i], messages[i], publicKeys[i], enforceCanonical[i]);
+            assertEquals(expected, results[i]);
+            if (i % 7 == 3 || i % 7 == 5 || i % 7 == 6) {
+                assertFalse(results[i]);
+            } else {
+                assertTrue(results[i]);
+            }
+        }
+    }
+}
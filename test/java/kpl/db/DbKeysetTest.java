@@ -0,0 +1,92 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+public class DbKeysetTest {
+
+    @Test
+    public void sortIncludesDbId() {
+        DbKeyset keyset = new DbKeyset(" ORDER BY height DESC ");
+        Assert.assertEquals(" ORDER BY height DESC, db_id DESC ", keyset.getSort());
+        keyset = new DbKeyset(" ORDER BY quantity DESC, account_id ");
+        Assert.assertEquals(" ORDER BY quantity DESC, account_id, db_id ", keyset.getSort());
+        keyset = new DbKeyset("ORDER BY db_id DESC");
+        Assert.assertEquals(" ORDER BY db_id DESC ", keyset.getSort());
+    }
+
+    @Test
+    public void clause() {
+        DbKeyset keyset = new DbKeyset(" ORDER BY height DESC ");
+        Assert.assertEquals(" t.height <= ? AND (t.height < ? OR (t.height = ? AND t.db_id < ?)) ", keyset.getClause("t"));
+        keyset = new DbKeyset(" ORDER BY quantity DESC, account_id ");
+        Assert.assertEquals(" quantity <= ? AND (quantity < ? OR (quantity = ? AND (account_id > ? OR (account_id = ? AND db_id > ?)))) ",
+                keyset.getClause(null));
+        keyset = new DbKeyset("ORDER BY db_id DESC");
+        Assert.assertEquals(" db_id < ? ", keyset.getClause(null));
+    }
+
+    @Test
+    public void setClause() throws SQLException {
+        List<Long> parameters = new ArrayList<>();
+        PreparedStatement pstmt = (PreparedStatement)Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                    Assert.assertEquals("setLong", method.getName());
+                    Assert.assertEquals(parameters.size() + 3, args[0]);
+                    parameters.add((Long)args[1]);
+                    return null;
+                });
+        DbKeyset keyset = new DbKeyset(" ORDER BY height DESC ");
+        Assert.assertEquals(6, keyset.setClause(pstmt, 2, new long[] {100, 7}));
+        Assert.assertEquals(Arrays.asList(100L, 100L, 100L, 7L), parameters);
+        parameters.clear();
+        keyset = new DbKeyset("ORDER BY db_id DESC");
+        Assert.assertEquals(3, keyset.setClause(pstmt, 2, new long[] {7}));
+        Assert.assertEquals(Collections.singletonList(7L), parameters);
+    }
+
+    @Test
+    public void decode() {
+        DbKeyset keyset = new DbKeyset(" ORDER BY height DESC ");
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(12345).putLong(-1);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+        Assert.assertArrayEquals(new long[] {12345, -1}, keyset.decode(token));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decodeWrongLength() {
+        new DbKeyset("ORDER BY db_id DESC").decode(Base64.getUrlEncoder().encodeToString(new byte[12]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSort() {
+        new DbKeyset("height DESC");
+    }
+}
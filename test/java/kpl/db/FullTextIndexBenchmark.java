@@ -0,0 +1,146 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.db;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.Query;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Measure the search rate of a full text index partition while index updates are
+ * committed at a fixed interval, similar to block processing.
+ *
+ * Usage: FullTextIndexBenchmark [searchThreads [seconds [commitIntervalMillis]]]
+ *
+ * The benchmark is run with and without the query cache.
+ */
+public class FullTextIndexBenchmark {
+
+    private static final String[] words = {"asset", "token", "coin", "market", "exchange", "gold", "silver", "share",
+            "fund", "bond", "note", "credit", "data", "music", "video", "game", "poll", "vote", "energy", "water"};
+
+    private static final int DOCUMENTS = 50000;
+
+    private static final int UPDATES_PER_COMMIT = 100;
+
+    public static void main(String[] args) throws Exception {
+        int searchThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int commitInterval = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        run(searchThreads, seconds, commitInterval, 100);
+        run(searchThreads, seconds, commitInterval, 0);
+    }
+
+    private static void run(int searchThreads, int seconds, int commitInterval, int queryCacheSize) throws Exception {
+        Path path = Files.createTempDirectory("fulltext");
+        Analyzer analyzer = new StandardAnalyzer();
+        try (FullTextIndex index = new FullTextIndex(path, analyzer, queryCacheSize)) {
+            Random random = new Random(1);
+            for (int i = 0; i < DOCUMENTS; i++) {
+                index.updateDocument(term(i), document(i, random));
+            }
+            index.commit();
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicLong searches = new AtomicLong();
+            AtomicLong commits = new AtomicLong();
+            List<Thread> threads = new ArrayList<>();
+            threads.add(new Thread(() -> {
+                Random updateRandom = new Random(2);
+                try {
+                    while (!done.get()) {
+                        for (int i = 0; i < UPDATES_PER_COMMIT; i++) {
+                            int id = updateRandom.nextInt(DOCUMENTS * 2);
+                            index.updateDocument(term(id), document(id, updateRandom));
+                        }
+                        index.commit();
+                        commits.incrementAndGet();
+                        Thread.sleep(commitInterval);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    throw new RuntimeException(e.toString(), e);
+                }
+            }));
+            for (int t = 0; t < searchThreads; t++) {
+                int seed = t;
+                threads.add(new Thread(() -> {
+                    Random searchRandom = new Random(100 + seed);
+                    QueryParser parser = new QueryParser("_DATA", analyzer);
+                    parser.setDefaultOperator(QueryParser.Operator.AND);
+                    try {
+                        while (!done.get()) {
+                            String queryText = words[searchRandom.nextInt(words.length)] + " " +
+                                    words[searchRandom.nextInt(words.length)];
+                            Query query = parser.parse(queryText);
+                            index.search(query, queryText, 100);
+                            searches.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e.toString(), e);
+                    }
+                }));
+            }
+            long start = System.nanoTime();
+            threads.forEach(Thread::start);
+            Thread.sleep(seconds * 1000L);
+            done.set(true);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("query cache %d, %d search threads: %.0f searches/s, %d commits in %.1f s%n",
+                    queryCacheSize, searchThreads, searches.get() / elapsed, commits.get(), elapsed);
+        } finally {
+            try (Stream<Path> stream = Files.walk(path)) {
+                for (Path file : stream.sorted(Comparator.reverseOrder()).toArray(Path[]::new)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static Term term(int id) {
+        return new Term("_QUERY", "PUBLIC.ASSET;DB_ID;" + id);
+    }
+
+    private static Document document(int id, Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 8; i++) {
+            sb.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        Document document = new Document();
+        document.add(new StringField("_QUERY", "PUBLIC.ASSET;DB_ID;" + id, Field.Store.YES));
+        document.add(new TextField("_DATA", sb.toString(), Field.Store.NO));
+        return document;
+    }
+}
@@ -0,0 +1,88 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.mint;
+
+import kpl.CurrencyMinting;
+import kpl.crypto.HashFunction;
+import kpl.mint.MintWorker.HashSolver;
+import kpl.mint.MintWorker.NonceRange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the minting hash rate
+ *
+ * Usage: MintBenchmark [seconds [threads]]
+ *
+ * The hash solvers are run with an unreachable target for each minting algorithm and the
+ * hash rate is reported together with the single-thread rate of CurrencyMinting.getHash.
+ */
+public class MintBenchmark {
+
+    private static volatile byte result;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        byte[] target = new byte[32];
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            for (HashFunction hashFunction : CurrencyMinting.acceptedHashFunctions) {
+                long hashes = getHash(hashFunction, seconds);
+                System.out.printf("%-10s getHash    1 thread  %10.1f KH/sec%n", hashFunction, (double)hashes / seconds / 1000);
+                NonceRange nonceRange = new NonceRange(0);
+                List<HashSolver> solvers = new ArrayList<>();
+                List<Future<Long>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    HashSolver hashSolver = new HashSolver(hashFunction.getId(), 1, 2, 3, 4, target, nonceRange);
+                    solvers.add(hashSolver);
+                    futures.add(executorService.submit(hashSolver));
+                }
+                long start = System.nanoTime();
+                Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+                hashes = 0;
+                for (HashSolver hashSolver : solvers) {
+                    hashes += hashSolver.getHashCount();
+                }
+                long elapsed = System.nanoTime() - start;
+                for (Future<Long> future : futures) {
+                    future.cancel(true);
+                }
+                System.out.printf("%-10s HashSolver %d threads %10.1f KH/sec%n", hashFunction, threads,
+                        (double)hashes * 1000000 / elapsed);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private static long getHash(HashFunction hashFunction, int seconds) {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long hashes = 0;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 64; i++) {
+                result ^= CurrencyMinting.getHash(hashFunction, hashes++, 1, 4, 3, 2)[0];
+            }
+        }
+        return hashes;
+    }
+}
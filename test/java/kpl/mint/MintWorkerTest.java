@@ -0,0 +1,68 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.mint;
+
+import kpl.CurrencyMinting;
+import kpl.crypto.HashFunction;
+import kpl.mint.MintWorker.HashSolver;
+import kpl.mint.MintWorker.NonceRange;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+public class MintWorkerTest {
+
+    @Test
+    public void solutions() {
+        byte[] target = CurrencyMinting.getTarget(BigInteger.ONE.shiftLeft(252).subtract(BigInteger.ONE));
+        long currencyId = 0x1234567890abcdefL;
+        long accountId = -4013722529644937202L;
+        long units = 1000;
+        for (HashFunction hashFunction : CurrencyMinting.acceptedHashFunctions) {
+            for (long counter = 1; counter <= 5; counter++) {
+                long initialNonce = counter * 1000 - NonceRange.RANGE_SIZE / 2;
+                HashSolver hashSolver = new HashSolver(hashFunction.getId(), currencyId, accountId, counter, units,
+                        target, new NonceRange(initialNonce));
+                long solution = hashSolver.call();
+                long expected = initialNonce;
+                while (!CurrencyMinting.meetsTarget(CurrencyMinting.getHash(hashFunction, expected, currencyId, units,
+                        counter, accountId), target)) {
+                    expected++;
+                }
+                Assert.assertEquals(hashFunction.toString(), expected, solution);
+                Assert.assertEquals(solution - initialNonce + 1, hashSolver.getHashCount());
+            }
+        }
+    }
+
+    @Test
+    public void hashes() {
+        byte[] input = new byte[40];
+        byte[] output = new byte[32];
+        for (HashFunction hashFunction : HashFunction.values()) {
+            for (int i = 0; i < 10; i++) {
+                input[i] = (byte)i;
+                byte[] hash = hashFunction.hash(input).clone();
+                hashFunction.hash(input, output);
+                for (int j = 0; j < hash.length; j++) {
+                    Assert.assertEquals(hashFunction.toString(), hash[j], output[j]);
+                }
+            }
+        }
+    }
+}
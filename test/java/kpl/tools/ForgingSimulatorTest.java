@@ -0,0 +1,98 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.tools;
+
+import kpl.Account;
+import kpl.Block;
+import kpl.BlockchainTest;
+import kpl.Kpl;
+import kpl.crypto.Crypto;
+import kpl.tools.ForgingSimulator.Forger;
+import kpl.tools.ForgingSimulator.ForgerHit;
+import kpl.tools.ForgingSimulator.SimulatedBlock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ForgingSimulatorTest extends BlockchainTest {
+
+    @Test
+    public void effectiveBalances() {
+        int height = Kpl.getBlockchain().getHeight();
+        Map<Long, Long> effectiveBalances = new HashMap<>();
+        for (Forger forger : ForgingSimulator.getForgers(height)) {
+            effectiveBalances.put(forger.getAccountId(), forger.getEffectiveBalance());
+            Assert.assertEquals(Account.getAccount(forger.getAccountId()).getEffectiveBalancekpl(height), forger.getEffectiveBalance());
+        }
+        for (long accountId : new long[] {FORGY.getId(), ALICE.getId(), BOB.getId(), CHUCK.getId(), DAVE.getId()}) {
+            Account account = Account.getAccount(accountId);
+            long effectiveBalance = account == null ? 0 : account.getEffectiveBalancekpl(height);
+            Assert.assertEquals(effectiveBalance, (long)effectiveBalances.getOrDefault(accountId, 0L));
+        }
+    }
+
+    @Test
+    public void hits() {
+        Block block = Kpl.getBlockchain().getLastBlock();
+        List<Forger> forgers = ForgingSimulator.getForgers(block.getHeight());
+        List<ForgerHit> hits = ForgingSimulator.getHits(block, forgers);
+        Assert.assertEquals(forgers.size(), hits.size());
+        long previousHitTime = 0;
+        for (ForgerHit hit : hits) {
+            MessageDigest digest = Crypto.sha256();
+            digest.update(block.getGenerationSignature());
+            byte[] hash = digest.digest(hit.getForger().getPublicKey());
+            BigInteger bigHit = new BigInteger(1, new byte[] {hash[7], hash[6], hash[5], hash[4], hash[3], hash[2], hash[1], hash[0]});
+            long deadline = bigHit.divide(BigInteger.valueOf(block.getBaseTarget())
+                    .multiply(BigInteger.valueOf(hit.getForger().getEffectiveBalance()))).longValue();
+            Assert.assertEquals(deadline, hit.getDeadline());
+            Assert.assertEquals(block.getTimestamp() + deadline, hit.getHitTime());
+            Assert.assertTrue(hit.getHitTime() >= previousHitTime);
+            previousHitTime = hit.getHitTime();
+        }
+    }
+
+    @Test
+    public void simulate() {
+        Block block = Kpl.getBlockchain().getLastBlock();
+        List<Forger> forgers = ForgingSimulator.getForgers(block.getHeight());
+        List<SimulatedBlock> blocks = ForgingSimulator.simulate(block, forgers, 10);
+        if (forgers.isEmpty()) {
+            Assert.assertTrue(blocks.isEmpty());
+            return;
+        }
+        Assert.assertEquals(10, blocks.size());
+        int height = block.getHeight();
+        int timestamp = block.getTimestamp();
+        for (SimulatedBlock simulatedBlock : blocks) {
+            Assert.assertEquals(height + 1, simulatedBlock.getHeight());
+            Assert.assertTrue(simulatedBlock.getTimestamp() > timestamp);
+            Assert.assertTrue(simulatedBlock.getBaseTarget() > 0);
+            height = simulatedBlock.getHeight();
+            timestamp = simulatedBlock.getTimestamp();
+        }
+        ForgerHit first = ForgingSimulator.getHits(block, forgers).get(0);
+        Assert.assertEquals(first.getForger().getAccountId(), blocks.get(0).getGeneratorId());
+        Assert.assertEquals(first.getHitTime() + 1, blocks.get(0).getTimestamp());
+    }
+
+}
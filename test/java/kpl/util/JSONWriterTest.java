@@ -0,0 +1,66 @@
+/******************************************************************************
+ * Copyright © 2013-2016 The kpl Core Developers.                             *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * kpl software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+package kpl.util;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+public class JSONWriterTest {
+
+    @Test
+    public void sameAsJSONString() throws IOException {
+        JSONObject json = new JSONObject();
+        json.put("string", "a \"quoted\"\nvalue/");
+        json.put("number", 12345678901L);
+        json.put("boolean", true);
+        json.put("null", null);
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < 5000; i++) {
+            JSONObject element = new JSONObject();
+            element.put("index", i);
+            element.put("empty", new JSONArray());
+            array.add(element);
+        }
+        json.put("array", array);
+        StringWriter stringWriter = new StringWriter();
+        JSON.writeJSONString(json, stringWriter);
+        Assert.assertEquals(JSON.toJSONString(json), stringWriter.toString());
+    }
+
+    @Test
+    public void incremental() throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        JSONWriter writer = new JSONWriter(stringWriter);
+        writer.beginObject();
+        writer.name("values").beginArray();
+        for (int i = 0; i < 3; i++) {
+            writer.value(i);
+        }
+        writer.endArray();
+        writer.field("name", "test");
+        writer.name("empty").beginObject().endObject();
+        writer.endObject();
+        writer.flush();
+        Assert.assertEquals("{\"values\":[0,1,2],\"name\":\"test\",\"empty\":{}}", stringWriter.toString());
+    }
+
+}